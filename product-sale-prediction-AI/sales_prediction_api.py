@@ -6,13 +6,14 @@ Using FastAPI + XGBoost PKL model
 Python 3.12 compatible
 """
 
-from fastapi import FastAPI, HTTPException
+from fastapi import FastAPI, HTTPException, Request, Response
 from pydantic import BaseModel, Field
 from typing import List
 import pandas as pd
 import joblib
 import numpy as np
 import os
+import struct
 import sys
 from datetime import datetime
 
@@ -25,6 +26,23 @@ app = FastAPI(
 
 # Global model variable
 model = None
+grpc_server = None
+
+# Port of the gRPC endpoint (sales_prediction_grpc.py), 0 disables it
+GRPC_PORT = int(os.environ.get("PREDICTION_GRPC_PORT", "50051"))
+
+# Feature order the model was trained with
+FEATURES = [
+  "product_id", "seller_id", "sale_price", "original_price",
+  "is_holiday", "is_weekend", "day_of_week", "day_of_month",
+  "month", "lag_1", "lag_7", "lag_30"
+]
+INT_FEATURES = {"is_holiday", "is_weekend", "day_of_week", "day_of_month", "month"}
+
+# Binary columnar batch format, see ColumnarBatchCodec in the Java service
+COLUMNAR_FORMAT = "columnar-f32"
+FEATURES_MEDIA_TYPE = "application/x-sales-features"
+PREDICTIONS_MEDIA_TYPE = "application/x-sales-predictions"
 
 
 # Request model
@@ -87,13 +105,7 @@ def predict_sales(data: pd.DataFrame) -> np.ndarray:
 
   try:
     # Ensure feature order
-    features = [
-      "product_id", "seller_id", "sale_price", "original_price",
-      "is_holiday", "is_weekend", "day_of_week", "day_of_month",
-      "month", "lag_1", "lag_7", "lag_30"
-    ]
-
-    data_ordered = data[features]
+    data_ordered = data[FEATURES]
     predictions = model.predict(data_ordered)
     return np.maximum(predictions, 0)  #
 
@@ -101,6 +113,44 @@ def predict_sales(data: pd.DataFrame) -> np.ndarray:
     raise HTTPException(status_code=500, detail=f"predicate failure: {e}")
 
 
+def decode_columnar_batch(payload: bytes) -> pd.DataFrame:
+  """Decode an application/x-sales-features body: "SPF1", int32 rows, dictionary encoded
+  product_id and seller_id, then one float32 column per numeric feature (little-endian)"""
+  if payload[:4] != b"SPF1":
+    raise HTTPException(status_code=415, detail="not a columnar feature batch")
+
+  try:
+    rows, = struct.unpack_from("<i", payload, 4)
+    offset = 8
+    columns = {}
+    for name in FEATURES[:2]:
+      size, = struct.unpack_from("<i", payload, offset)
+      offset += 4
+      dictionary = []
+      for _ in range(size):
+        length, = struct.unpack_from("<H", payload, offset)
+        offset += 2
+        dictionary.append(payload[offset:offset + length].decode("utf-8"))
+        offset += length
+      codes = np.frombuffer(payload, dtype="<i4", count=rows, offset=offset)
+      offset += 4 * rows
+      columns[name] = np.asarray(dictionary, dtype=object)[codes]
+    for name in FEATURES[2:]:
+      values = np.frombuffer(payload, dtype="<f4", count=rows, offset=offset)
+      offset += 4 * rows
+      columns[name] = values.astype(np.int64 if name in INT_FEATURES else np.float64)
+  except (struct.error, ValueError, IndexError) as e:
+    raise HTTPException(status_code=400, detail=f"malformed columnar batch: {e}")
+
+  return pd.DataFrame(columns)
+
+
+def encode_predictions(predictions: np.ndarray) -> bytes:
+  """Encode an application/x-sales-predictions body: "SPR1", int32 count, float32 values"""
+  values = np.asarray(predictions, dtype="<f4")
+  return b"SPR1" + struct.pack("<i", len(values)) + values.tobytes()
+
+
 # API endpoints
 
 @app.on_event("startup")
@@ -109,6 +159,23 @@ async def startup():
   print("🚀 start predication API...")
   load_model()
 
+  global grpc_server
+  if GRPC_PORT:
+    try:
+      from sales_prediction_grpc import start_server
+    except ImportError as e:
+      print(f"⚠️ gRPC endpoint disabled, stubs or grpcio missing: {e}")
+    else:
+      grpc_server = await start_server(predict_sales, GRPC_PORT)
+      print(f"🔌 gRPC endpoint listening on port {GRPC_PORT}")
+
+
+@app.on_event("shutdown")
+async def shutdown():
+  """Stop the gRPC endpoint"""
+  if grpc_server is not None:
+    await grpc_server.stop(grace=5)
+
 
 @app.get("/")
 async def root():
@@ -129,6 +196,7 @@ async def health():
     "status": "healthy" if model is not None else "unhealthy",
     "model_loaded": model is not None,
     "model_path": get_model_path(),
+    "batch_formats": ["json", COLUMNAR_FORMAT],
     "timestamp": datetime.now().isoformat()
   }
 
@@ -150,9 +218,23 @@ async def predict_single(request: PredictionRequest):
     raise HTTPException(status_code=500, detail=str(e))
 
 
-@app.post("/predict/batch", response_model=BatchResponse)
-async def predict_batch(request: BatchRequest):
-  """batch predication"""
+@app.post("/predict/batch", response_model=BatchResponse,
+          openapi_extra={"requestBody": {"content": {
+            "application/json": {"schema": BatchRequest.schema()},
+            FEATURES_MEDIA_TYPE: {"schema": {"type": "string", "format": "binary"}}}}})
+async def predict_batch(http_request: Request):
+  """batch predication, JSON or columnar depending on the Content-Type"""
+  content_type = http_request.headers.get("content-type", "")
+  if content_type.startswith(FEATURES_MEDIA_TYPE):
+    data = decode_columnar_batch(await http_request.body())
+    predictions = predict_sales(data)
+    return Response(content=encode_predictions(predictions), media_type=PREDICTIONS_MEDIA_TYPE)
+
+  try:
+    request = BatchRequest.parse_obj(await http_request.json())
+  except Exception as e:
+    raise HTTPException(status_code=422, detail=str(e))
+
   try:
     # Convert to DataFrame
     data_list = [req.dict() for req in request.requests]
@@ -0,0 +1,75 @@
+#!/usr/bin/env python3
+# -*- coding: utf-8 -*-
+"""
+gRPC endpoint of the sales prediction service, see
+product-sale-prediction-service/src/main/proto/sales_prediction.proto
+
+Generate the stubs before starting the API:
+  python -m grpc_tools.protoc -I../product-sale-prediction-service/src/main/proto \
+    --python_out=. --grpc_python_out=. sales_prediction.proto
+"""
+
+import numpy as np
+import pandas as pd
+import grpc
+
+import sales_prediction_pb2 as pb
+import sales_prediction_pb2_grpc as pb_grpc
+
+NUMERIC_FEATURES = [
+  "sale_price", "original_price", "is_holiday", "is_weekend", "day_of_week",
+  "day_of_month", "month", "lag_1", "lag_7", "lag_30"
+]
+INT_FEATURES = {"is_holiday", "is_weekend", "day_of_week", "day_of_month", "month"}
+
+
+def batch_to_frame(batch: pb.FeatureBatch) -> pd.DataFrame:
+  """Expand a columnar FeatureBatch into the DataFrame the model expects"""
+  columns = {
+    "product_id": np.asarray(batch.product_ids, dtype=object)[np.asarray(batch.product_codes, dtype=np.int64)],
+    "seller_id": np.asarray(batch.seller_ids, dtype=object)[np.asarray(batch.seller_codes, dtype=np.int64)],
+  }
+  for name in NUMERIC_FEATURES:
+    values = np.asarray(getattr(batch, name), dtype=np.float32)
+    if len(values) != batch.rows:
+      raise ValueError(f"column {name} has {len(values)} values, expected {batch.rows}")
+    columns[name] = values.astype(np.int64 if name in INT_FEATURES else np.float64)
+  return pd.DataFrame(columns)
+
+
+class SalesPredictionServicer(pb_grpc.SalesPredictionServicer):
+
+  def __init__(self, predict):
+    # predict: DataFrame -> ndarray, shared with the HTTP endpoints
+    self.predict = predict
+
+  async def Predict(self, request, context):
+    row = {name: getattr(request, name) for name in ["product_id", "seller_id"] + NUMERIC_FEATURES}
+    data = pd.DataFrame([row])
+    for name in INT_FEATURES:
+      data[name] = data[name].astype(np.int64)
+    predictions = self.predict(data)
+    return pb.Prediction(quantity=float(predictions[0]))
+
+  async def PredictBatch(self, request, context):
+    return await self._score(request, context)
+
+  async def PredictStream(self, request_iterator, context):
+    async for batch in request_iterator:
+      yield await self._score(batch, context)
+
+  async def _score(self, batch, context):
+    try:
+      data = batch_to_frame(batch)
+    except (ValueError, IndexError) as e:
+      await context.abort(grpc.StatusCode.INVALID_ARGUMENT, f"malformed feature batch: {e}")
+    predictions = self.predict(data) if len(data) else np.empty(0)
+    return pb.PredictionBatch(batch_id=batch.batch_id, quantities=predictions.astype(np.float32).tolist())
+
+
+async def start_server(predict, port: int) -> grpc.aio.Server:
+  server = grpc.aio.server(options=[("grpc.max_receive_message_length", 64 * 1024 * 1024)])
+  pb_grpc.add_SalesPredictionServicer_to_server(SalesPredictionServicer(predict), server)
+  server.add_insecure_port(f"[::]:{port}")
+  await server.start()
+  return server
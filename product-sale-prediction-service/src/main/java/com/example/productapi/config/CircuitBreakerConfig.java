@@ -0,0 +1,43 @@
+package com.example.productapi.config;
+
+import com.example.productapi.util.CircuitBreakerFactory;
+import java.time.Duration;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class CircuitBreakerConfig {
+
+  @Value("${python.prediction.service.circuit-breaker.window-size:20}")
+  private int windowSize;
+
+  @Value("${python.prediction.service.circuit-breaker.minimum-calls:10}")
+  private int minimumCalls;
+
+  @Value("${python.prediction.service.circuit-breaker.failure-rate-threshold:50}")
+  private float failureRateThreshold;
+
+  @Value("${python.prediction.service.circuit-breaker.slow-call-rate-threshold:80}")
+  private float slowCallRateThreshold;
+
+  @Value("${python.prediction.service.circuit-breaker.slow-call-duration-ms:3000}")
+  private long slowCallDurationMs;
+
+  @Value("${python.prediction.service.circuit-breaker.wait-in-open-state-ms:30000}")
+  private long waitInOpenStateMs;
+
+  @Value("${python.prediction.service.circuit-breaker.half-open-calls:3}")
+  private int halfOpenCalls;
+
+  /**
+   * Every replica of the Python prediction service gets its own circuit breaker with these
+   * thresholds
+   */
+  @Bean
+  public CircuitBreakerFactory pythonPredictionCircuitBreakers() {
+    return new CircuitBreakerFactory(windowSize, minimumCalls, failureRateThreshold,
+        slowCallRateThreshold, Duration.ofMillis(slowCallDurationMs),
+        Duration.ofMillis(waitInOpenStateMs), halfOpenCalls);
+  }
+}
@@ -0,0 +1,71 @@
+package com.example.productapi.config;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Bounded executor for CPU-bound forecast work (in-process model scoring).
+ *
+ * <p>The pool has prediction.parallel.threads workers, the number of cores by default. Workers
+ * are virtual threads when the runtime supports them (Java 21+) and
+ * prediction.parallel.virtual-threads is enabled, platform daemon threads otherwise.
+ */
+@Configuration
+public class ForecastExecutorConfig {
+
+  private static final Logger logger = LoggerFactory.getLogger(ForecastExecutorConfig.class);
+
+  @Value("${prediction.parallel.threads:0}")
+  private int threads;
+
+  @Value("${prediction.parallel.virtual-threads:true}")
+  private boolean virtualThreads;
+
+  @Bean(destroyMethod = "dispose")
+  public Scheduler forecastScheduler() {
+    int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    ThreadFactory virtualFactory = virtualThreads ? virtualThreadFactory() : null;
+    ThreadFactory factory = virtualFactory != null ? virtualFactory : platformThreadFactory();
+    ExecutorService executor = Executors.newFixedThreadPool(poolSize, factory);
+
+    logger.info("Forecast executor: {} {} threads", poolSize,
+        virtualFactory != null ? "virtual" : "platform");
+    return Schedulers.fromExecutorService(executor, "forecast");
+  }
+
+  /**
+   * Thread.ofVirtual().name("forecast-", 0).factory(), looked up reflectively so the code still
+   * compiles for Java 17
+   */
+  private static ThreadFactory virtualThreadFactory() {
+    try {
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+      builder = builderType.getMethod("name", String.class, long.class)
+          .invoke(builder, "forecast-", 0L);
+      Method factory = builderType.getMethod("factory");
+      return (ThreadFactory) factory.invoke(builder);
+    } catch (ReflectiveOperationException e) {
+      return null;
+    }
+  }
+
+  private static ThreadFactory platformThreadFactory() {
+    AtomicInteger counter = new AtomicInteger();
+    return runnable -> {
+      Thread thread = new Thread(runnable, "forecast-" + counter.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+}
@@ -0,0 +1,103 @@
+package com.example.productapi.controller;
+
+import com.example.productapi.dto.PredictionRequest;
+import com.example.productapi.model.ForecastJob;
+import com.example.productapi.service.ForecastJobService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/v1/sales/predict/jobs")
+@Tag(name = "Forecast Jobs", description = "Background forecasts for large horizons and whole categories")
+public class ForecastJobController {
+
+  private final ForecastJobService forecastJobService;
+
+  @Autowired
+  public ForecastJobController(ForecastJobService forecastJobService) {
+    this.forecastJobService = forecastJobService;
+  }
+
+  @Operation(
+      summary = "Submit a forecast job",
+      description = "Queue the forecast of a product (productId) or of every product of a seller's category. "
+          + "Returns the job id at once, poll the job for progress and read results as they are stored."
+  )
+  @ApiResponse(
+      responseCode = "202",
+      description = "Queued job",
+      content = @Content(mediaType = "application/json")
+  )
+  @PostMapping
+  public ResponseEntity<?> submitJob(@RequestBody PredictionRequest request) {
+    try {
+      ForecastJob job = forecastJobService.submit(ForecastJob.builder()
+          .sellerId(request.getSellerId())
+          .productId(request.getProductId())
+          .category(request.getCategory())
+          .salePrice(request.getSalePrice())
+          .startDate(request.getStartDate())
+          .endDate(request.getEndDate())
+          .topN(request.getTopN())
+          .build());
+      return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+    } catch (IllegalArgumentException e) {
+      return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+    }
+  }
+
+  @Operation(summary = "Get a forecast job", description = "Job state and progress (productsDone of productsTotal)")
+  @GetMapping("/{jobId}")
+  public ResponseEntity<ForecastJob> getJob(@PathVariable String jobId) {
+    return forecastJobService.getJob(jobId)
+        .map(ResponseEntity::ok)
+        .orElse(ResponseEntity.notFound().build());
+  }
+
+  @Operation(
+      summary = "Get forecast job results",
+      description = "Results stored so far in product ID order, after the product ID 'after'. "
+          + "Page on with the returned 'next' until the job has finished and no results are left. "
+          + "For a finished job submitted with topN, 'top' holds the top N products by total quantity."
+  )
+  @GetMapping("/{jobId}/results")
+  public ResponseEntity<?> getResults(@PathVariable String jobId,
+      @RequestParam(required = false) String after,
+      @RequestParam(defaultValue = "100") int limit) {
+    ForecastJob job = forecastJobService.getJob(jobId).orElse(null);
+    if (job == null) {
+      return ResponseEntity.notFound().build();
+    }
+
+    int pageSize = Math.max(1, Math.min(limit, 1000));
+    ForecastJobService.ResultPage page = forecastJobService.getResults(jobId, after, pageSize);
+    Map<String, Object> response = new HashMap<>();
+    response.put("jobId", jobId);
+    response.put("status", job.getStatus());
+    response.put("productsDone", job.getProductsDone());
+    response.put("productsTotal", job.getProductsTotal());
+    response.put("results", page.results());
+    response.put("next", page.next());
+    if (job.getStatus() == ForecastJob.Status.SUCCEEDED && job.getTopN() != null) {
+      response.put("top", forecastJobService.getTopResults(jobId, job.getTopN()));
+    }
+    return ResponseEntity.ok(response);
+  }
+
+  @Operation(summary = "Cancel a forecast job", description = "A running job stops after its current step, stored results are kept")
+  @DeleteMapping("/{jobId}")
+  public ResponseEntity<ForecastJob> cancelJob(@PathVariable String jobId) {
+    return forecastJobService.cancel(jobId)
+        .map(ResponseEntity::ok)
+        .orElse(ResponseEntity.notFound().build());
+  }
+}
@@ -1,6 +1,8 @@
 package com.example.productapi.controller;
 
+import com.example.productapi.dto.OrderCursorPage;
 import com.example.productapi.model.Order;
+import com.example.productapi.service.DailySalesService;
 import com.example.productapi.service.OrderService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -8,14 +10,31 @@ import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.time.temporal.ChronoUnit;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -26,15 +45,18 @@ import org.springframework.web.bind.annotation.RestController;
 public class OrderController {
 
   private final OrderService orderService;
+  private final DailySalesService dailySalesService;
 
   @Autowired
-  public OrderController(OrderService orderService) {
+  public OrderController(OrderService orderService, DailySalesService dailySalesService) {
     this.orderService = orderService;
+    this.dailySalesService = dailySalesService;
   }
 
   @Operation(
       summary = "Get orders with filters (paginated)",
-      description = "Retrieve orders with optional filters for seller ID, product ID, category, date range. Results are sorted by timestamp in descending order. Default returns last 30 days orders."
+      description = "Retrieve orders with optional filters for seller ID, product ID, category, date range. Results are sorted by timestamp in descending order. Default returns last 30 days orders. "
+          + "Pass cursor (empty for the first page, then the nextCursor of the previous page) to page by keyset instead of page number: every page costs the same and no total is counted unless includeTotal is set."
   )
   @ApiResponse(
       responseCode = "200",
@@ -62,12 +84,21 @@ public class OrderController {
       @RequestParam(defaultValue = "0") int page,
 
       @Parameter(description = "Page size (max 100)")
-      @RequestParam(defaultValue = "20") int size) {
+      @RequestParam(defaultValue = "20") int size,
+
+      @Parameter(description = "Keyset pagination token: empty for the first page, then nextCursor of the previous page. Replaces page")
+      @RequestParam(required = false) String cursor,
+
+      @Parameter(description = "With cursor, add the planner's estimate of the number of matching orders as estimatedTotalItems")
+      @RequestParam(defaultValue = "false") boolean includeTotal) {
 
     // Enforce max size of 100
     if (size > 100) {
       size = 100;
     }
+    if (size < 1) {
+      size = 1;
+    }
 
     // Parse end time, default to now if not provided
     LocalDateTime endDateTime = endTime != null ?
@@ -79,6 +110,28 @@ public class OrderController {
         LocalDateTime.parse(startTime) :
         endDateTime.minus(30, ChronoUnit.DAYS);
 
+    Map<String, Object> response = new HashMap<>();
+    response.put("startTime", startDateTime);
+    response.put("endTime", endDateTime);
+    if (cursor != null) {
+      OrderCursorPage cursorPage;
+      try {
+        cursorPage = orderService.getOrdersAfterCursor(sellerId, productId, category,
+            startDateTime, endDateTime, cursor, size, includeTotal);
+      } catch (IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+      }
+      response.put("orders", cursorPage.getOrders());
+      response.put("size", size);
+      response.put("hasMore", cursorPage.isHasMore());
+      response.put("nextCursor", cursorPage.getNextCursor());
+      if (includeTotal) {
+        response.put("estimatedTotalItems", cursorPage.getEstimatedTotalItems());
+      }
+      putFilters(response, sellerId, productId, category);
+      return ResponseEntity.ok(response);
+    }
+
     // Get orders with filters
     Page<Order> orderPage = orderService.getOrdersWithFilters(
         sellerId,
@@ -90,15 +143,144 @@ public class OrderController {
         size
     );
 
-    Map<String, Object> response = new HashMap<>();
     response.put("orders", orderPage.getContent());
-    response.put("startTime", startDateTime);
-    response.put("endTime", endDateTime);
     response.put("currentPage", orderPage.getNumber());
     response.put("totalItems", orderPage.getTotalElements());
     response.put("totalPages", orderPage.getTotalPages());
+    putFilters(response, sellerId, productId, category);
+
+    return ResponseEntity.ok(response);
+  }
+
+  @Operation(
+      summary = "Export orders",
+      description = "Stream every order matching the filters, oldest first, as CSV with a header row (format=csv) or one JSON object per line (format=ndjson). "
+          + "Filters and their defaults are those of GET /v1/orders. Rows are written while they are read from the database, so memory use does not depend on the range. Archived orders are included. "
+          + "The body is gzip compressed when the client accepts gzip, or when gzip=true."
+  )
+  @ApiResponse(
+      responseCode = "200",
+      description = "Orders",
+      content = {@Content(mediaType = "text/csv"),
+          @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE)}
+  )
+  @GetMapping("/orders/export")
+  public ResponseEntity<?> exportOrders(
+      @Parameter(description = "Seller ID to filter orders by")
+      @RequestParam(required = false) String sellerId,
+
+      @Parameter(description = "Product ID to filter orders by")
+      @RequestParam(required = false) String productId,
+
+      @Parameter(description = "Category to filter orders by")
+      @RequestParam(required = false) String category,
+
+      @Parameter(description = "Start time (ISO format, e.g. 2024-03-21T00:00:00). Defaults to 30 days before the end time")
+      @RequestParam(required = false) String startTime,
+
+      @Parameter(description = "End time (ISO format, e.g. 2024-03-21T23:59:59). Defaults to current time if not provided")
+      @RequestParam(required = false) String endTime,
+
+      @Parameter(description = "csv or ndjson")
+      @RequestParam(defaultValue = OrderService.EXPORT_CSV) String format,
+
+      @Parameter(description = "Force gzip on or off, negotiated through Accept-Encoding when not set")
+      @RequestParam(required = false) Boolean gzip,
+
+      @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+      HttpServletResponse response) throws IOException {
+
+    boolean csv = OrderService.EXPORT_CSV.equals(format);
+    if (!csv && !OrderService.EXPORT_NDJSON.equals(format)) {
+      return ResponseEntity.badRequest().body(Map.of("error", "format must be csv or ndjson"));
+    }
+    LocalDateTime endDateTime;
+    LocalDateTime startDateTime;
+    try {
+      endDateTime = endTime != null ? LocalDateTime.parse(endTime) : LocalDateTime.now();
+      startDateTime = startTime != null ?
+          LocalDateTime.parse(startTime) :
+          endDateTime.minus(30, ChronoUnit.DAYS);
+    } catch (DateTimeParseException e) {
+      return ResponseEntity.badRequest().body(
+          Map.of("error", "startTime and endTime must be ISO date-times"));
+    }
+    boolean compress = gzip != null ? gzip
+        : acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
 
-    // Add filter information to response
+    // Written straight to the response on the request thread: an async body would be cut off by
+    // the async request timeout on large ranges
+    response.setContentType(csv ? "text/csv" : MediaType.APPLICATION_NDJSON_VALUE);
+    response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+    response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+        "attachment; filename=\"orders." + format + "\"");
+    response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+    if (compress) {
+      response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+    }
+
+    OutputStream body = response.getOutputStream();
+    GZIPOutputStream gzipBody = compress ? new GZIPOutputStream(body, 65536, true) : null;
+    Writer writer = new BufferedWriter(new OutputStreamWriter(
+        gzipBody != null ? gzipBody : body, StandardCharsets.UTF_8), 65536);
+    orderService.exportOrders(sellerId, productId, category, startDateTime, endDateTime, format,
+        writer);
+    writer.flush();
+    if (gzipBody != null) {
+      gzipBody.finish();
+    }
+    body.flush();
+
+    // The response has been written
+    return null;
+  }
+
+  @Operation(
+      summary = "Record orders",
+      description = "Save new orders. Cached forecasts of the affected seller/product pairs are invalidated. "
+          + "Orders are never overwritten: if any orderId is already recorded or repeated, nothing is saved and 409 is returned."
+  )
+  @ApiResponse(
+      responseCode = "200",
+      description = "Saved orders",
+      content = @Content(mediaType = "application/json", schema = @Schema(implementation = Order.class))
+  )
+  @ApiResponse(responseCode = "409", description = "An orderId is already recorded or repeated")
+  @PostMapping("/orders")
+  public ResponseEntity<?> recordOrders(@RequestBody List<Order> orders) {
+    if (orders == null || orders.isEmpty()) {
+      return ResponseEntity.badRequest().body(Map.of("error", "At least one order is required"));
+    }
+    for (Order order : orders) {
+      if (order.getOrderId() == null || order.getSellerId() == null
+          || order.getProductId() == null || order.getQuantity() == null
+          || order.getTimestamp() == null) {
+        return ResponseEntity.badRequest().body(
+            Map.of("error", "orderId, sellerId, productId, quantity and timestamp are required"));
+      }
+    }
+    try {
+      return ResponseEntity.ok(orderService.recordOrders(orders));
+    } catch (DuplicateKeyException e) {
+      return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+    }
+  }
+
+  @Operation(
+      summary = "Rebuild sales rollups",
+      description = "Recompute the daily and monthly sales rollups from the orders table. Order writes wait until the rebuild commits."
+  )
+  @ApiResponse(responseCode = "200", description = "Number of rollup rows written")
+  @PostMapping("/orders/rollups/backfill")
+  public ResponseEntity<Map<String, Object>> backfillRollups() {
+    return ResponseEntity.ok(Map.of("rowsWritten", dailySalesService.backfill()));
+  }
+
+  /**
+   * Add filter information to response
+   */
+  private static void putFilters(Map<String, Object> response, String sellerId, String productId,
+      String category) {
     if (sellerId != null) {
       response.put("sellerId", sellerId);
     }
@@ -108,7 +290,5 @@ public class OrderController {
     if (category != null) {
       response.put("category", category);
     }
-
-    return ResponseEntity.ok(response);
   }
-}
\ No newline at end of file
+}
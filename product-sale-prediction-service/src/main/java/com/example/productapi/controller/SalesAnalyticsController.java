@@ -1,33 +1,37 @@
 package com.example.productapi.controller;
 
+import com.example.productapi.dto.ForecastFrame;
 import com.example.productapi.dto.SalesSearchRequest;
 import com.example.productapi.dto.PredictionRequest;
 import com.example.productapi.dto.TopSellingProductResponse;
 import com.example.productapi.dto.ProductSalesSummary;
 import com.example.productapi.dto.SalesAnalyticsResponse;
 import com.example.productapi.model.Product;
-import com.example.productapi.model.Predications;
 import com.example.productapi.service.OrderService;
 import com.example.productapi.service.ProductService;
 import com.example.productapi.service.SalesAnalyticsService;
-import com.example.productapi.service.PredictionService;
+import com.example.productapi.service.ReactivePredictionService;
 import com.example.productapi.util.TimeUtils;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
-import java.util.ArrayList;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 @RestController
 @RequestMapping("/v1/sales")
@@ -37,17 +41,20 @@ public class SalesAnalyticsController {
   private final OrderService orderService;
   private final ProductService productService;
   private final SalesAnalyticsService salesAnalyticsService;
-  private final PredictionService predictionService;
+  private final ReactivePredictionService predictionService;
+  private final Duration streamTimeout;
 
   @Autowired
   public SalesAnalyticsController(OrderService orderService,
       ProductService productService,
       SalesAnalyticsService salesAnalyticsService,
-      PredictionService predictionService) {
+      ReactivePredictionService predictionService,
+      @Value("${prediction.stream.timeout-ms:540000}") long streamTimeoutMs) {
     this.orderService = orderService;
     this.productService = productService;
     this.salesAnalyticsService = salesAnalyticsService;
     this.predictionService = predictionService;
+    this.streamTimeout = Duration.ofMillis(streamTimeoutMs);
   }
 
   @Operation(
@@ -87,43 +94,18 @@ public class SalesAnalyticsController {
       endTime = LocalDateTime.now();
     }
 
-    // Get all orders for the time range
-    List<com.example.productapi.model.Order> orders = orderService.getOrdersWithFilters(
+    // Daily and total summaries, aggregated by the database
+    Map<String, List<ProductSalesSummary>> aggregationData = orderService.aggregateSales(
         request.getSellerId(),
         request.getProductId(),
         request.getCategory(),
         startTime,
         endTime,
-        0,
-        Integer.MAX_VALUE
-    ).getContent();
-
-    // Generate aggregation data
-    Map<String, List<ProductSalesSummary>> aggregationData = orderService.generateTypedAggregationData(
-        orders);
+        request.getTopN());
 
     List<ProductSalesSummary> dailyProductSales = aggregationData.get("dailyProductSales");
     List<ProductSalesSummary> totalSummary = aggregationData.get("totalSummary");
 
-    // Apply topN filter if provided
-    if (request.getTopN() != null && request.getTopN() > 0) {
-      // Get top N products by total sales
-      List<String> topProductIds = totalSummary.stream()
-          .limit(request.getTopN())
-          .map(ProductSalesSummary::getProductId)
-          .collect(Collectors.toList());
-
-      // Filter daily sales to only include top N products
-      dailyProductSales = dailyProductSales.stream()
-          .filter(summary -> topProductIds.contains(summary.getProductId()))
-          .collect(Collectors.toList());
-
-      // Limit total summary to top N
-      totalSummary = totalSummary.stream()
-          .limit(request.getTopN())
-          .collect(Collectors.toList());
-    }
-
     // Build response
     SalesAnalyticsResponse.SalesAnalyticsResponseBuilder builder = SalesAnalyticsResponse.builder()
         .dailyProductSales(dailyProductSales)
@@ -158,42 +140,116 @@ public class SalesAnalyticsController {
       content = @Content(mediaType = "application/json")
   )
   @PostMapping("/predict")
-  public ResponseEntity<?> predictProductSales(@RequestBody PredictionRequest request) {
+  public Mono<ResponseEntity<?>> predictProductSales(@RequestBody PredictionRequest request) {
 
     if (request.getSellerId() == null || request.getSellerId().isEmpty()) {
-      return ResponseEntity.badRequest().body(
+      return Mono.just(ResponseEntity.badRequest().body(
           Map.of("error", "sellerId parameter is required")
-      );
+      ));
     }
 
     if (request.getStartDate() == null) {
-      return ResponseEntity.badRequest().body(
+      return Mono.just(ResponseEntity.badRequest().body(
           Map.of("error", "startDate parameter is required")
-      );
+      ));
     }
 
-    // Make prediction
-    List<Predications> result = new ArrayList<>();
-    try {
-      if (request.getTopN() != null) {
-        return ResponseEntity.ok(predictionService.predicateTopSales(request.getSellerId(),
-            request.getCategory(),
-            request.getStartDate(), request.getEndDate(), request.getTopN()));
-      } else {
-        return ResponseEntity.ok(predictionService.predictSalesByProductId(
-            request.getProductId(),
-            request.getSellerId(),
-            request.getSalePrice(),
-            request.getStartDate(),
-            request.getEndDate()));
-      }
+    // Make prediction, the request thread is released while the forecast is computed
+    Mono<?> result;
+    if (request.getTopN() != null && Boolean.TRUE.equals(request.getPrune())) {
+      result = predictionService.predictTopSalesPruned(request.getSellerId(),
+          request.getCategory(),
+          request.getStartDate(), request.getEndDate(), request.getTopN());
+    } else if (request.getTopN() != null) {
+      result = predictionService.predictTopSales(request.getSellerId(),
+          request.getCategory(),
+          request.getStartDate(), request.getEndDate(), request.getTopN()).collectList();
+    } else {
+      result = predictionService.predictSales(
+          request.getProductId(),
+          request.getSellerId(),
+          request.getSalePrice(),
+          request.getStartDate(),
+          request.getEndDate());
+    }
 
-    } catch (Exception e) {
-      return ResponseEntity.badRequest().body(
-          Map.of("error", "Prediction error: " + e.getMessage())
-      );
+    return result
+        .<ResponseEntity<?>>map(ResponseEntity::ok)
+        .onErrorResume(e -> Mono.just(ResponseEntity.badRequest().body(
+            Map.of("error", "Prediction error: " + e.getMessage())
+        )));
+  }
+
+  @Operation(
+      summary = "Stream a product sales prediction",
+      description = "Streaming variant of /predict for one product: days are emitted in chunks of chunkDays as soon as "
+          + "they are scored ('days' frames), followed by a 'summary' frame with the totals. "
+          + "Served as application/x-ndjson (one JSON frame per line) or text/event-stream (frame type as event name)."
+  )
+  @ApiResponse(
+      responseCode = "200",
+      description = "Forecast frames",
+      content = {@Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE),
+          @Content(mediaType = MediaType.TEXT_EVENT_STREAM_VALUE)}
+  )
+  @PostMapping(value = "/predict/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+  public ResponseEntity<Flux<ForecastFrame>> streamProductSales(
+      @RequestBody PredictionRequest request) {
+    String error = validateStreamRequest(request);
+    if (error != null) {
+      return ResponseEntity.badRequest().body(Flux.just(errorFrame(error)));
     }
+    return ResponseEntity.ok(forecastFrames(request));
   }
 
+  @PostMapping(value = "/predict/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public ResponseEntity<Flux<ServerSentEvent<ForecastFrame>>> streamProductSalesEvents(
+      @RequestBody PredictionRequest request) {
+    String error = validateStreamRequest(request);
+    Flux<ForecastFrame> frames = error != null
+        ? Flux.just(errorFrame(error)) : forecastFrames(request);
+    Flux<ServerSentEvent<ForecastFrame>> events = frames
+        .map(frame -> ServerSentEvent.builder(frame).event(frame.getType()).build());
+    return error != null ? ResponseEntity.badRequest().body(events) : ResponseEntity.ok(events);
+  }
 
-} 
\ No newline at end of file
+  private String validateStreamRequest(PredictionRequest request) {
+    if (request.getSellerId() == null || request.getSellerId().isEmpty()) {
+      return "sellerId parameter is required";
+    }
+    if (request.getProductId() == null || request.getProductId().isEmpty()) {
+      return "productId parameter is required";
+    }
+    if (request.getStartDate() == null) {
+      return "startDate parameter is required";
+    }
+    if (request.getTopN() != null) {
+      return "topN is not supported when streaming, use /v1/sales/predict/jobs for category forecasts";
+    }
+    return null;
+  }
+
+  /**
+   * Forecast frames of the request, a failure ends the stream with an error frame. So does a
+   * stream still running after prediction.stream.timeout-ms: the forecast is cancelled before the
+   * async request timeout would cut the response off without a closing frame.
+   */
+  private Flux<ForecastFrame> forecastFrames(PredictionRequest request) {
+    int chunkDays = request.getChunkDays() != null ? request.getChunkDays() : 7;
+    long deadline = System.nanoTime() + streamTimeout.toNanos();
+    Mono<Long> untilDeadline = Mono.defer(() ->
+        Mono.delay(Duration.ofNanos(Math.max(0, deadline - System.nanoTime()))));
+    return predictionService.streamSales(request.getProductId(), request.getSellerId(),
+            request.getSalePrice(), request.getStartDate(), request.getEndDate(), chunkDays)
+        .timeout(untilDeadline, frame -> untilDeadline, Flux.defer(() -> Flux.just(errorFrame(
+            "Prediction timed out after " + streamTimeout.toMillis() + " ms"))))
+        .onErrorResume(e -> Flux.just(errorFrame("Prediction error: " + e.getMessage())));
+  }
+
+  private static ForecastFrame errorFrame(String message) {
+    return ForecastFrame.builder()
+        .type(ForecastFrame.ERROR)
+        .error(message)
+        .build();
+  }
+}
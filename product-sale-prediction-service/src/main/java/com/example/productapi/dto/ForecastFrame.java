@@ -0,0 +1,51 @@
+package com.example.productapi.dto;
+
+import com.example.productapi.model.Predication;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * One frame of a streamed forecast: a chunk of scored days, the closing summary, or an error
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ForecastFrame {
+
+    public static final String DAYS = "days";
+    public static final String SUMMARY = "summary";
+    public static final String ERROR = "error";
+
+    @Schema(description = "Frame type: days, summary or error", example = "days")
+    private String type;
+
+    @Schema(description = "Product ID", example = "p100")
+    private String productId;
+
+    @Schema(description = "Daily predictions of this chunk (days frames)")
+    private List<Predication> predicationList;
+
+    @Schema(description = "Prediction start date (summary frame)")
+    private LocalDate startDate;
+
+    @Schema(description = "Prediction end date (summary frame)")
+    private LocalDate endDate;
+
+    @Schema(description = "Total predicted quantity over all days (summary frame)", example = "420")
+    private Integer totalQuantity;
+
+    @Schema(description = "Number of days predicted (summary frame)", example = "30")
+    private Integer totalDays;
+
+    @Schema(description = "Error message (error frame)")
+    private String error;
+}
@@ -0,0 +1,33 @@
+package com.example.productapi.dto;
+
+import com.example.productapi.model.Order;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One page of orders read by keyset pagination, newest first
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderCursorPage {
+
+    @Schema(description = "Orders of this page, sorted by timestamp and order ID in descending order")
+    private List<Order> orders;
+
+    @Schema(description = "Opaque token of the next page, null on the last page")
+    private String nextCursor;
+
+    @Schema(description = "Whether another page follows")
+    private boolean hasMore;
+
+    @Schema(description = "Number of matching orders estimated by the query planner, null unless requested",
+            example = "125000")
+    private Long estimatedTotalItems;
+}
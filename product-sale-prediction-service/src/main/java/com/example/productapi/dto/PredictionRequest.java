@@ -32,4 +32,10 @@ public class PredictionRequest {
 
     @Schema(description = "Number of top products to predict (optional)", example = "10")
     private Integer topN;
+
+    @Schema(description = "With topN, only forecast products whose upper bound can still reach the top N (optional)", example = "true")
+    private Boolean prune;
+
+    @Schema(description = "Days per frame of a streamed forecast (/v1/sales/predict/stream only, default 7)", example = "7")
+    private Integer chunkDays;
 } 
\ No newline at end of file
@@ -1,5 +1,7 @@
 package com.example.productapi.dto;
 
+import com.example.productapi.ml.FeatureMatrix;
+import com.example.productapi.ml.FeatureSchema;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -47,4 +49,24 @@ public class PythonPredictionRequest {
     
     @JsonProperty("lag_30")
     private Double lag30;
-} 
\ No newline at end of file
+    
+    /**
+     * Build the JSON request of one feature matrix row
+     */
+    public static PythonPredictionRequest fromRow(FeatureMatrix features, int row) {
+        return PythonPredictionRequest.builder()
+                .productId(features.getProductId(row))
+                .sellerId(features.getSellerId(row))
+                .salePrice(features.get(row, FeatureSchema.SALE_PRICE))
+                .originalPrice(features.get(row, FeatureSchema.ORIGINAL_PRICE))
+                .isHoliday((int) features.get(row, FeatureSchema.IS_HOLIDAY))
+                .isWeekend((int) features.get(row, FeatureSchema.IS_WEEKEND))
+                .dayOfWeek((int) features.get(row, FeatureSchema.DAY_OF_WEEK))
+                .dayOfMonth((int) features.get(row, FeatureSchema.DAY_OF_MONTH))
+                .month((int) features.get(row, FeatureSchema.MONTH))
+                .lag1(features.get(row, FeatureSchema.LAG_1))
+                .lag7(features.get(row, FeatureSchema.LAG_7))
+                .lag30(features.get(row, FeatureSchema.LAG_30))
+                .build();
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.productapi.dto;
+
+import com.example.productapi.model.Predications;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TopSalesForecast {
+
+    @Schema(description = "Top N products by total predicted quantity, highest first")
+    private List<Predications> predictions;
+
+    @Schema(description = "Products of the seller's category", example = "2400")
+    private int productsTotal;
+
+    @Schema(description = "Products forecast live, the rest could not reach the top N or came from the nightly forecast table", example = "35")
+    private int productsScored;
+
+    @Schema(description = "Whether skipped products were provably ruled out (true), or only by the heuristic estimate or while "
+            + "some products fell back to the heuristic (false), in which case the result may differ from a full forecast",
+            example = "true")
+    private boolean exact;
+}
@@ -30,6 +30,6 @@ public class TopSellingProductResponse {
     @Schema(description = "Total quantity sold", example = "150")
     private Long totalQuantity;
     
-    @Schema(description = "Total revenue generated", example = "14998.50")
+    @Schema(description = "Total revenue generated, the sum of the orders' total prices", example = "14998.50")
     private Double totalRevenue;
 } 
\ No newline at end of file
@@ -0,0 +1,21 @@
+package com.example.productapi.event;
+
+import com.example.productapi.model.Order;
+import java.util.List;
+
+/**
+ * Published after new orders have been saved, so derived data (forecast caches, sales rollups)
+ * can be brought up to date
+ */
+public class OrdersRecordedEvent {
+
+  private final List<Order> orders;
+
+  public OrdersRecordedEvent(List<Order> orders) {
+    this.orders = List.copyOf(orders);
+  }
+
+  public List<Order> getOrders() {
+    return orders;
+  }
+}
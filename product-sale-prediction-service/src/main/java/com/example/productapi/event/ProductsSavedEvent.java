@@ -0,0 +1,21 @@
+package com.example.productapi.event;
+
+import com.example.productapi.model.Product;
+import java.util.List;
+
+/**
+ * Published after products have been created or updated, so data derived from the product table
+ * (the category of each product in the order column store) can be brought up to date
+ */
+public class ProductsSavedEvent {
+
+  private final List<Product> products;
+
+  public ProductsSavedEvent(List<Product> products) {
+    this.products = List.copyOf(products);
+  }
+
+  public List<Product> getProducts() {
+    return products;
+  }
+}
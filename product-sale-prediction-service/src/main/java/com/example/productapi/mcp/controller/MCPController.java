@@ -14,6 +14,7 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
 
 @RestController
 @RequestMapping("/api/mcp")
@@ -57,18 +58,18 @@ public class MCPController {
         operationId = "executeTool"
     )
     @PostMapping("/execute")
-    public ResponseEntity<ToolResponse> executeTool(@RequestBody ToolRequest request) {
+    public Mono<ResponseEntity<ToolResponse>> executeTool(@RequestBody ToolRequest request) {
         String toolName = request.getToolName();
         
         if (toolName == null || toolName.isEmpty()) {
-            return ResponseEntity.badRequest().body(
+            return Mono.just(ResponseEntity.badRequest().body(
                 ToolResponse.error("execute_tool", "Tool name is required")
-            );
+            ));
         }
         
-        return toolRegistry.executeTool(toolName, request.getParameters())
+        return toolRegistry.executeToolAsync(toolName, request.getParameters())
                 .map(ResponseEntity::ok)
-                .orElse(ResponseEntity.notFound().build());
+                .defaultIfEmpty(ResponseEntity.notFound().build());
     }
     
     @Operation(
@@ -4,6 +4,8 @@ import com.example.productapi.mcp.model.ToolDefinition;
 import com.example.productapi.mcp.model.ToolResponse;
 
 import java.util.Map;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 /**
  * Interface for all tools that can be executed through MCP
@@ -22,6 +24,17 @@ public interface Tool {
      */
     ToolResponse execute(Map<String, Object> parameters);
     
+    /**
+     * Execute the tool without blocking the caller. Tools backed by non-blocking services override
+     * this, the default runs {@link #execute(Map)} on the bounded elastic scheduler.
+     * @param parameters Input parameters for the tool
+     * @return Tool execution response
+     */
+    default Mono<ToolResponse> executeAsync(Map<String, Object> parameters) {
+        return Mono.fromCallable(() -> execute(parameters))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+    
     /**
      * Get the unique name of the tool
      * @return Tool name
@@ -2,6 +2,7 @@ package com.example.productapi.mcp.service;
 
 import com.example.productapi.mcp.model.ToolResponse;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
@@ -58,4 +59,14 @@ public class ToolRegistry {
           }
         });
   }
-} 
\ No newline at end of file
+
+  /**
+   * Execute a tool without blocking the caller, empty if the tool does not exist
+   */
+  public Mono<ToolResponse> executeToolAsync(String name, Map<String, Object> parameters) {
+    return Mono.justOrEmpty(getTool(name))
+        .flatMap(tool -> Mono.defer(() -> tool.executeAsync(parameters)))
+        .onErrorResume(e -> Mono.just(
+            ToolResponse.error(name, "Error executing tool: " + e.getMessage())));
+  }
+}
@@ -0,0 +1,211 @@
+package com.example.productapi.mcp.tools;
+
+import com.example.productapi.mcp.model.ToolDefinition;
+import com.example.productapi.mcp.model.ToolResponse;
+import com.example.productapi.mcp.service.Tool;
+import com.example.productapi.model.ForecastJob;
+import com.example.productapi.service.ForecastJobService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+@Component
+public class ForecastJobTool implements Tool {
+
+  private final ForecastJobService forecastJobService;
+  private final ToolDefinition definition;
+
+  @Autowired
+  public ForecastJobTool(ForecastJobService forecastJobService) {
+    this.forecastJobService = forecastJobService;
+
+    this.definition = ToolDefinition.builder()
+        .name("forecast_job")
+        .displayName("Forecast Job")
+        .description("Run heavy forecasts (long horizons, whole categories) in the background: "
+            + "submit a job, then check its status and read results later.")
+        .operationId("forecast_job")
+        .parameters(Arrays.asList(
+            ToolDefinition.ParameterDefinition.builder()
+                .name("action")
+                .type("string")
+                .description("submit, status, results or cancel, required parameter")
+                .required(true)
+                .example("submit")
+                .build(),
+            ToolDefinition.ParameterDefinition.builder()
+                .name("job_id")
+                .type("string")
+                .description("Job ID returned by submit, required for status, results and cancel")
+                .required(false)
+                .example("3f1c2a9e-8d4b-4f6a-9a51-0c7e2b1d5e44")
+                .build(),
+            ToolDefinition.ParameterDefinition.builder()
+                .name("seller_id")
+                .type("string")
+                .description("Seller ID, required for submit")
+                .required(false)
+                .example("seller_1")
+                .build(),
+            ToolDefinition.ParameterDefinition.builder()
+                .name("category")
+                .type("string")
+                .description("Category to forecast every product of, for submit when product_id is not given")
+                .required(false)
+                .example("electronics")
+                .build(),
+            ToolDefinition.ParameterDefinition.builder()
+                .name("product_id")
+                .type("string")
+                .description("Single product to forecast, for submit")
+                .required(false)
+                .example("p100")
+                .build(),
+            ToolDefinition.ParameterDefinition.builder()
+                .name("sale_price")
+                .type("number")
+                .description("Sale price for submit, optional, the product's own price if not provided")
+                .required(false)
+                .example(99.99)
+                .build(),
+            ToolDefinition.ParameterDefinition.builder()
+                .name("start_date")
+                .type("string")
+                .description("Start date, format yyyy/MM/dd, required for submit")
+                .required(false)
+                .example("2025/06/01")
+                .build(),
+            ToolDefinition.ParameterDefinition.builder()
+                .name("end_date")
+                .type("string")
+                .description("End date, format yyyy/MM/dd, optional for submit, only start_date is forecast if not provided")
+                .required(false)
+                .example("2026/05/31")
+                .build(),
+            ToolDefinition.ParameterDefinition.builder()
+                .name("top_n")
+                .type("integer")
+                .description("For submit, rank the finished job's products and return the top N with its results")
+                .required(false)
+                .example(10)
+                .build(),
+            ToolDefinition.ParameterDefinition.builder()
+                .name("after")
+                .type("string")
+                .description("For results, last product ID already read (the previous 'next'), omit to start from the beginning")
+                .required(false)
+                .example("p100")
+                .build(),
+            ToolDefinition.ParameterDefinition.builder()
+                .name("limit")
+                .type("integer")
+                .description("For results, maximum number of products returned, default 20")
+                .required(false)
+                .example(20)
+                .build()
+        ))
+        .outputSchema(Map.of(
+            "job", "Job state: id, status (QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELLED), productsDone, productsTotal",
+            "results", "Product forecasts stored so far (results action)",
+            "next", "Value to pass as 'after' to read the following results",
+            "top", "Top N products of a finished job submitted with top_n"
+        ))
+        .build();
+  }
+
+  @Override
+  public ToolDefinition getDefinition() {
+    return definition;
+  }
+
+  @Override
+  public ToolResponse execute(Map<String, Object> parameters) {
+    if (!parameters.containsKey("action")) {
+      return ToolResponse.error(getName(), "action is required");
+    }
+    String action = parameters.get("action").toString();
+    if ("submit".equals(action)) {
+      return submit(parameters);
+    }
+
+    if (!parameters.containsKey("job_id")) {
+      return ToolResponse.error(getName(), "job_id is required for " + action);
+    }
+    String jobId = parameters.get("job_id").toString();
+    ForecastJob job = forecastJobService.getJob(jobId).orElse(null);
+    if (job == null) {
+      return ToolResponse.error(getName(), "Forecast job " + jobId + " not found");
+    }
+
+    try {
+      switch (action) {
+        case "status":
+          return ToolResponse.success(getName(), Map.of("job", job));
+        case "cancel":
+          return ToolResponse.success(getName(), Map.of("job", forecastJobService.cancel(jobId).orElse(job)));
+        case "results":
+          String after = parameters.containsKey("after")
+              ? parameters.get("after").toString() : null;
+          int limit = parameters.containsKey("limit")
+              ? Math.max(1, Math.min(100, Integer.parseInt(parameters.get("limit").toString()))) : 20;
+          ForecastJobService.ResultPage page = forecastJobService.getResults(jobId, after, limit);
+          Map<String, Object> response = new HashMap<>();
+          response.put("job", job);
+          response.put("results", page.results());
+          response.put("next", page.next());
+          if (job.getStatus() == ForecastJob.Status.SUCCEEDED && job.getTopN() != null) {
+            response.put("top", forecastJobService.getTopResults(jobId, job.getTopN()));
+          }
+          return ToolResponse.success(getName(), response);
+        default:
+          return ToolResponse.error(getName(), "Unknown action " + action
+              + ", expected submit, status, results or cancel");
+      }
+    } catch (NumberFormatException e) {
+      return ToolResponse.error(getName(), "Invalid limit format");
+    }
+  }
+
+  private ToolResponse submit(Map<String, Object> parameters) {
+    DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy/MM/dd");
+    ForecastJob.ForecastJobBuilder spec = ForecastJob.builder();
+    try {
+      spec.sellerId(string(parameters, "seller_id"))
+          .category(string(parameters, "category"))
+          .productId(string(parameters, "product_id"));
+      if (parameters.containsKey("start_date")) {
+        spec.startDate(LocalDate.parse(parameters.get("start_date").toString(), formatter));
+      }
+      if (parameters.containsKey("end_date")) {
+        spec.endDate(LocalDate.parse(parameters.get("end_date").toString(), formatter));
+      }
+      if (parameters.containsKey("sale_price")) {
+        spec.salePrice(Double.parseDouble(parameters.get("sale_price").toString()));
+      }
+      if (parameters.containsKey("top_n")) {
+        spec.topN(Integer.parseInt(parameters.get("top_n").toString()));
+      }
+    } catch (NumberFormatException e) {
+      return ToolResponse.error(getName(), "Invalid sale_price or top_n format");
+    } catch (Exception e) {
+      return ToolResponse.error(getName(),
+          "Error parsing dates (expected format yyyy/MM/dd): " + e.getMessage());
+    }
+
+    try {
+      return ToolResponse.success(getName(), Map.of("job", forecastJobService.submit(spec.build())));
+    } catch (IllegalArgumentException e) {
+      return ToolResponse.error(getName(), e.getMessage());
+    }
+  }
+
+  private static String string(Map<String, Object> parameters, String name) {
+    Object value = parameters.get(name);
+    return value != null ? value.toString() : null;
+  }
+}
@@ -1,5 +1,6 @@
 package com.example.productapi.mcp.tools;
 
+import com.example.productapi.dto.OrderCursorPage;
 import com.example.productapi.mcp.model.ToolDefinition;
 import com.example.productapi.mcp.model.ToolResponse;
 import com.example.productapi.mcp.service.Tool;
@@ -28,7 +29,7 @@ public class OrderListTool implements Tool {
         this.definition = ToolDefinition.builder()
                 .name("list_orders")
                 .displayName("Order List Query")
-                .description("Query order records for a specific seller, supporting time range and pagination")
+                .description("Query order records for a specific seller, supporting time range and pagination by page number or cursor")
                 .operationId("list_orders")
                 .parameters(Arrays.asList(
                     ToolDefinition.ParameterDefinition.builder()
@@ -67,6 +68,21 @@ public class OrderListTool implements Tool {
                         .required(false)
                         .defaultValue(20)
                         .example(20)
+                        .build(),
+                    ToolDefinition.ParameterDefinition.builder()
+                        .name("cursor")
+                        .type("string")
+                        .description("Keyset pagination token, optional parameter: empty string for the first page, then next_cursor of the previous page. Replaces page, every page costs the same")
+                        .required(false)
+                        .example("")
+                        .build(),
+                    ToolDefinition.ParameterDefinition.builder()
+                        .name("include_total")
+                        .type("boolean")
+                        .description("With cursor, add the estimated number of matching orders as estimated_total_items, optional parameter, defaults to false")
+                        .required(false)
+                        .defaultValue(false)
+                        .example(false)
                         .build()
                 ))
                 .outputSchema(Map.of(
@@ -74,6 +90,9 @@ public class OrderListTool implements Tool {
                     "current_page", "Current page number",
                     "total_items", "Total number of records",
                     "total_pages", "Total number of pages",
+                    "next_cursor", "Token of the next page, null on the last page (cursor mode)",
+                    "has_more", "Whether another page follows (cursor mode)",
+                    "estimated_total_items", "Estimated number of matching orders (cursor mode with include_total)",
                     "start_time", "Query start time",
                     "end_time", "Query end time"
                 ))
@@ -150,6 +169,35 @@ public class OrderListTool implements Tool {
             }
         }
         
+        if (size < 1) {
+            size = 1;
+        }
+
+        if (parameters.containsKey("cursor") && parameters.get("cursor") != null) {
+            String cursor = parameters.get("cursor").toString();
+            boolean includeTotal = parameters.containsKey("include_total")
+                && Boolean.parseBoolean(String.valueOf(parameters.get("include_total")));
+            try {
+                OrderCursorPage cursorPage = orderService.getOrdersAfterCursor(
+                    sellerId, null, null, startTime, endTime, cursor, size, includeTotal);
+
+                Map<String, Object> result = new HashMap<>();
+                result.put("orders", convertOrders(cursorPage.getOrders()));
+                result.put("next_cursor", cursorPage.getNextCursor());
+                result.put("has_more", cursorPage.isHasMore());
+                if (includeTotal) {
+                    result.put("estimated_total_items", cursorPage.getEstimatedTotalItems());
+                }
+                result.put("start_time", startTime.format(dateFormatter));
+                result.put("end_time", endTime.format(dateFormatter));
+                return ToolResponse.success(getName(), result);
+            } catch (IllegalArgumentException e) {
+                return ToolResponse.error(getName(), "cursor must be the next_cursor of a previous page");
+            } catch (Exception e) {
+                return ToolResponse.error(getName(), "Error occurred while executing order query: " + e.getMessage());
+            }
+        }
+
         try {
             // Call service method
             Page<Order> orderPage = orderService.getOrdersWithFilters(
@@ -1,10 +1,10 @@
 package com.example.productapi.mcp.tools;
 
+import com.example.productapi.dto.TopSalesForecast;
 import com.example.productapi.mcp.model.ToolDefinition;
 import com.example.productapi.mcp.model.ToolResponse;
 import com.example.productapi.mcp.service.Tool;
-import com.example.productapi.model.Predications;
-import com.example.productapi.service.PredictionService;
+import com.example.productapi.service.ReactivePredictionService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -12,17 +12,17 @@ import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import reactor.core.publisher.Mono;
 
 @Component
 public class PredictByCategoryTool implements Tool {
 
-  private final PredictionService predictionService;
+  private final ReactivePredictionService predictionService;
   private final ToolDefinition definition;
 
   @Autowired
-  public PredictByCategoryTool(PredictionService predictionService) {
+  public PredictByCategoryTool(ReactivePredictionService predictionService) {
     this.predictionService = predictionService;
 
     // Build the tool definition
@@ -70,6 +70,14 @@ public class PredictByCategoryTool implements Tool {
                     "End date for prediction, format yyyy/MM/dd (e.g., 2025/06/01), optional parameter, if not provided will only predict one day")
                 .required(false)
                 .example("2025/06/01")
+                .build(),
+            ToolDefinition.ParameterDefinition.builder()
+                .name("prune")
+                .type("boolean")
+                .description(
+                    "Only forecast products whose upper bound can still reach the top N, optional parameter, default false")
+                .required(false)
+                .example(true)
                 .build()
         ))
         .outputSchema(Map.of(
@@ -89,15 +97,20 @@ public class PredictByCategoryTool implements Tool {
 
   @Override
   public ToolResponse execute(Map<String, Object> parameters) {
+    return executeAsync(parameters).block();
+  }
+
+  @Override
+  public Mono<ToolResponse> executeAsync(Map<String, Object> parameters) {
     // Extract and validate required parameters
     if (!parameters.containsKey("category")) {
-      return ToolResponse.error(getName(), "category is required");
+      return Mono.just(ToolResponse.error(getName(), "category is required"));
     }
     if (!parameters.containsKey("seller_id")) {
-      return ToolResponse.error(getName(), "seller_id is required");
+      return Mono.just(ToolResponse.error(getName(), "seller_id is required"));
     }
     if (!parameters.containsKey("start_date")) {
-      return ToolResponse.error(getName(), "start_date is required");
+      return Mono.just(ToolResponse.error(getName(), "start_date is required"));
     }
 
     // Extract parameters
@@ -110,7 +123,7 @@ public class PredictByCategoryTool implements Tool {
       try {
         topN = Integer.parseInt(parameters.get("top_n").toString());
       } catch (NumberFormatException e) {
-        return ToolResponse.error(getName(), "Invalid top_n format");
+        return Mono.just(ToolResponse.error(getName(), "Invalid top_n format"));
       }
     }
 
@@ -125,26 +138,42 @@ public class PredictByCategoryTool implements Tool {
         endDate = LocalDate.parse(parameters.get("end_date").toString(), formatter);
       }
     } catch (Exception e) {
-      return ToolResponse.error(getName(),
-          "Error parsing dates (expected format yyyy/MM/dd): " + e.getMessage());
+      return Mono.just(ToolResponse.error(getName(),
+          "Error parsing dates (expected format yyyy/MM/dd): " + e.getMessage()));
     }
 
-    try {
-      // Call predicateTopSales
-      List<Predications> predictions = predictionService.predicateTopSales(sellerId, category,
-          startDate, endDate, topN);
-
-      // Build response
-      Map<String, Object> response = new HashMap<>();
-      response.put("category", category);
-      response.put("seller_id", sellerId);
-      response.put("predictions", predictions);
-      response.put("start_date", startDate.toString());
-      response.put("end_date", endDate != null ? endDate.toString() : null);
-
-      return ToolResponse.success(getName(), response);
-    } catch (Exception e) {
-      return ToolResponse.error(getName(), "Error executing prediction: " + e.getMessage());
+    boolean prune = parameters.containsKey("prune")
+        && Boolean.parseBoolean(parameters.get("prune").toString());
+    if (prune && topN == null) {
+      return Mono.just(ToolResponse.error(getName(), "prune requires top_n"));
     }
+
+    LocalDate requestedEndDate = endDate;
+    Mono<TopSalesForecast> forecast = prune
+        ? predictionService.predictTopSalesPruned(sellerId, category, startDate, endDate, topN)
+        : predictionService.predictTopSales(sellerId, category, startDate, endDate, topN)
+            .collectList()
+            .map(predictions -> TopSalesForecast.builder()
+                .predictions(predictions)
+                .build());
+    return forecast
+        .map(result -> {
+          // Build response
+          Map<String, Object> response = new HashMap<>();
+          response.put("category", category);
+          response.put("seller_id", sellerId);
+          response.put("predictions", result.getPredictions());
+          response.put("start_date", startDate.toString());
+          response.put("end_date", requestedEndDate != null ? requestedEndDate.toString() : null);
+          if (prune) {
+            response.put("products_total", result.getProductsTotal());
+            response.put("products_scored", result.getProductsScored());
+            response.put("exact", result.isExact());
+          }
+
+          return ToolResponse.success(getName(), response);
+        })
+        .onErrorResume(e -> Mono.just(
+            ToolResponse.error(getName(), "Error executing prediction: " + e.getMessage())));
   }
 } 
\ No newline at end of file
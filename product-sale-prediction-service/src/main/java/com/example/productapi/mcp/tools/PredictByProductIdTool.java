@@ -3,8 +3,7 @@ package com.example.productapi.mcp.tools;
 import com.example.productapi.mcp.model.ToolDefinition;
 import com.example.productapi.mcp.model.ToolResponse;
 import com.example.productapi.mcp.service.Tool;
-import com.example.productapi.model.Predications;
-import com.example.productapi.service.PredictionService;
+import com.example.productapi.service.ReactivePredictionService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -13,15 +12,16 @@ import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import reactor.core.publisher.Mono;
 
 @Component
 public class PredictByProductIdTool implements Tool {
 
-    private final PredictionService predictionService;
+    private final ReactivePredictionService predictionService;
     private final ToolDefinition definition;
 
     @Autowired
-    public PredictByProductIdTool(PredictionService predictionService) {
+    public PredictByProductIdTool(ReactivePredictionService predictionService) {
         this.predictionService = predictionService;
 
         // Build the tool definition
@@ -84,15 +84,20 @@ public class PredictByProductIdTool implements Tool {
 
     @Override
     public ToolResponse execute(Map<String, Object> parameters) {
+        return executeAsync(parameters).block();
+    }
+
+    @Override
+    public Mono<ToolResponse> executeAsync(Map<String, Object> parameters) {
         // Extract and validate required parameters
         if (!parameters.containsKey("product_id")) {
-            return ToolResponse.error(getName(), "product_id is required");
+            return Mono.just(ToolResponse.error(getName(), "product_id is required"));
         }
         if (!parameters.containsKey("seller_id")) {
-            return ToolResponse.error(getName(), "seller_id is required");
+            return Mono.just(ToolResponse.error(getName(), "seller_id is required"));
         }
         if (!parameters.containsKey("start_date")) {
-            return ToolResponse.error(getName(), "start_date is required");
+            return Mono.just(ToolResponse.error(getName(), "start_date is required"));
         }
 
         // Extract parameters
@@ -105,7 +110,7 @@ public class PredictByProductIdTool implements Tool {
             try {
                 salePrice = Double.parseDouble(parameters.get("sale_price").toString());
             } catch (NumberFormatException e) {
-                return ToolResponse.error(getName(), "Invalid sale_price format");
+                return Mono.just(ToolResponse.error(getName(), "Invalid sale_price format"));
             }
         }
 
@@ -120,24 +125,23 @@ public class PredictByProductIdTool implements Tool {
                 endDate = LocalDate.parse(parameters.get("end_date").toString(), formatter);
             }
         } catch (Exception e) {
-            return ToolResponse.error(getName(), "Error parsing dates (expected format yyyy/MM/dd): " + e.getMessage());
+            return Mono.just(ToolResponse.error(getName(), "Error parsing dates (expected format yyyy/MM/dd): " + e.getMessage()));
         }
 
-        try {
-            // Call predictSalesByProductId
-            Predications predictions = predictionService.predictSalesByProductId(productId, sellerId, salePrice, startDate, endDate);
+        LocalDate requestedEndDate = endDate;
+        return predictionService.predictSales(productId, sellerId, salePrice, startDate, endDate)
+                .map(predictions -> {
+                    // Build response
+                    Map<String, Object> response = new HashMap<>();
+                    response.put("product_id", productId);
+                    response.put("seller_id", sellerId);
+                    response.put("predictions", predictions);
+                    response.put("start_date", startDate.toString());
+                    response.put("end_date", requestedEndDate != null ? requestedEndDate.toString() : null);
 
-            // Build response
-            Map<String, Object> response = new HashMap<>();
-            response.put("product_id", productId);
-            response.put("seller_id", sellerId);
-            response.put("predictions", predictions);
-            response.put("start_date", startDate.toString());
-            response.put("end_date", endDate != null ? endDate.toString() : null);
-
-            return ToolResponse.success(getName(), response);
-        } catch (Exception e) {
-            return ToolResponse.error(getName(), "Error executing prediction: " + e.getMessage());
-        }
+                    return ToolResponse.success(getName(), response);
+                })
+                .onErrorResume(e -> Mono.just(
+                        ToolResponse.error(getName(), "Error executing prediction: " + e.getMessage())));
     }
 } 
\ No newline at end of file
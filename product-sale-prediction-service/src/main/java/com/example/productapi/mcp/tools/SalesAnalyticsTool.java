@@ -18,7 +18,6 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 @Component
 public class SalesAnalyticsTool implements Tool {
@@ -144,42 +143,19 @@ public class SalesAnalyticsTool implements Tool {
                 }
             }
 
-            // Get all orders for the time range
-            List<com.example.productapi.model.Order> orders = orderService.getOrdersWithFilters(
+            // Daily and total summaries, aggregated by the database
+            Map<String, List<ProductSalesSummary>> aggregationData = orderService.aggregateSales(
                 sellerId,
                 productId,
                 category,
                 startTime,
                 endTime,
-                0,
-                Integer.MAX_VALUE
-            ).getContent();
-
-            // Generate aggregation data
-            Map<String, List<ProductSalesSummary>> aggregationData = orderService.generateTypedAggregationData(orders);
+                topN
+            );
             
             List<ProductSalesSummary> dailyProductSales = aggregationData.get("dailyProductSales");
             List<ProductSalesSummary> totalSummary = aggregationData.get("totalSummary");
 
-            // Apply topN filter if provided
-            if (topN != null && topN > 0) {
-                // Get top N products by total sales
-                List<String> topProductIds = totalSummary.stream()
-                    .limit(topN)
-                    .map(ProductSalesSummary::getProductId)
-                    .collect(Collectors.toList());
-                
-                // Filter daily sales to only include top N products
-                dailyProductSales = dailyProductSales.stream()
-                    .filter(summary -> topProductIds.contains(summary.getProductId()))
-                    .collect(Collectors.toList());
-                
-                // Limit total summary to top N
-                totalSummary = totalSummary.stream()
-                    .limit(topN)
-                    .collect(Collectors.toList());
-            }
-
             // Build response
             SalesAnalyticsResponse.SalesAnalyticsResponseBuilder builder = SalesAnalyticsResponse.builder()
                 .dailyProductSales(dailyProductSales)
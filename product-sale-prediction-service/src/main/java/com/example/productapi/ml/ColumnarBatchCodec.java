@@ -0,0 +1,141 @@
+package com.example.productapi.ml;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary columnar encoding of batch prediction calls, the alternative to the JSON body of
+ * /predict/batch.
+ *
+ * <p>All values are little-endian. A request ({@link #FEATURES_MEDIA_TYPE}) is laid out as:
+ * <pre>
+ *   "SPF1"                       magic
+ *   int32 rows
+ *   for product_id, seller_id:   dictionary encoded
+ *     int32 entries, then per entry uint16 length + UTF-8 bytes
+ *     int32[rows] codes
+ *   for each numeric column in {@link FeatureSchema} order (sale_price .. lag_30):
+ *     float32[rows]
+ * </pre>
+ * A response ({@link #PREDICTIONS_MEDIA_TYPE}) is {@code "SPR1"}, int32 count and
+ * float32[count]. Float32 loses nothing for the model, tree ensembles compare features as float32.
+ */
+public final class ColumnarBatchCodec {
+
+  public static final String FEATURES_MEDIA_TYPE = "application/x-sales-features";
+  public static final String PREDICTIONS_MEDIA_TYPE = "application/x-sales-predictions";
+
+  /**
+   * Name the Python service lists under batch_formats in its /health response
+   */
+  public static final String FORMAT_NAME = "columnar-f32";
+
+  private static final int FEATURES_MAGIC = magic("SPF1");
+  private static final int PREDICTIONS_MAGIC = magic("SPR1");
+
+  private ColumnarBatchCodec() {
+  }
+
+  public static byte[] encodeFeatures(FeatureMatrix features) {
+    int rows = features.getRowCount();
+    Dictionary products = new Dictionary(rows);
+    Dictionary sellers = new Dictionary(rows);
+    for (int row = 0; row < rows; row++) {
+      products.add(row, features.getProductId(row));
+      sellers.add(row, features.getSellerId(row));
+    }
+
+    int numericColumns = FeatureSchema.FEATURE_COUNT - FeatureSchema.SALE_PRICE;
+    int size = 8 + products.encodedSize() + sellers.encodedSize() + numericColumns * rows * 4;
+    ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.putInt(FEATURES_MAGIC);
+    buffer.putInt(rows);
+    products.writeTo(buffer);
+    sellers.writeTo(buffer);
+
+    double[] values = features.getValues();
+    for (int column = FeatureSchema.SALE_PRICE; column < FeatureSchema.FEATURE_COUNT; column++) {
+      for (int row = 0, i = column; row < rows; row++, i += FeatureSchema.FEATURE_COUNT) {
+        buffer.putFloat((float) values[i]);
+      }
+    }
+    return buffer.array();
+  }
+
+  /**
+   * @throws IllegalArgumentException if the payload is not an encoded prediction array
+   */
+  public static double[] decodePredictions(byte[] payload) {
+    ByteBuffer buffer = ByteBuffer.wrap(payload).order(ByteOrder.LITTLE_ENDIAN);
+    if (payload.length < 8 || buffer.getInt() != PREDICTIONS_MAGIC) {
+      throw new IllegalArgumentException("Not a columnar prediction response");
+    }
+    int count = buffer.getInt();
+    if (count < 0 || buffer.remaining() != count * 4) {
+      throw new IllegalArgumentException(
+          "Columnar prediction response is truncated, expected " + count + " values");
+    }
+    double[] predictions = new double[count];
+    for (int i = 0; i < count; i++) {
+      predictions[i] = buffer.getFloat();
+    }
+    return predictions;
+  }
+
+  private static int magic(String tag) {
+    return ByteBuffer.wrap(tag.getBytes(StandardCharsets.US_ASCII))
+        .order(ByteOrder.LITTLE_ENDIAN)
+        .getInt();
+  }
+
+  /**
+   * Distinct strings of a column plus the per-row index into them
+   */
+  private static final class Dictionary {
+
+    final Map<String, Integer> codes = new HashMap<>();
+    final List<byte[]> entries = new ArrayList<>();
+    final int[] rowCodes;
+    int entryBytes;
+
+    Dictionary(int rows) {
+      this.rowCodes = new int[rows];
+    }
+
+    void add(int row, String value) {
+      String key = value != null ? value : "";
+      Integer code = codes.get(key);
+      if (code == null) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+          throw new IllegalArgumentException("Identifier too long for columnar encoding");
+        }
+        code = entries.size();
+        codes.put(key, code);
+        entries.add(bytes);
+        entryBytes += 2 + bytes.length;
+      }
+      rowCodes[row] = code;
+    }
+
+    int encodedSize() {
+      return 4 + entryBytes + rowCodes.length * 4;
+    }
+
+    void writeTo(ByteBuffer buffer) {
+      buffer.putInt(entries.size());
+      for (byte[] entry : entries) {
+        buffer.putShort((short) entry.length);
+        buffer.put(entry);
+      }
+      for (int code : rowCodes) {
+        buffer.putInt(code);
+      }
+    }
+  }
+}
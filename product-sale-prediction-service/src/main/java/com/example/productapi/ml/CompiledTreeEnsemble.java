@@ -0,0 +1,451 @@
+package com.example.productapi.ml;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Regression tree ensemble flattened into primitive arrays, built by {@link TreeEnsembleCompiler}.
+ *
+ * <p>Input rows are {@code double[]} slices laid out in {@link #getInputNames()} order. Categorical
+ * columns hold the value returned by {@link #categoryValue(int, String)}. A missing value is NaN and
+ * fails every split on its column, as comparisons with a missing value do in the PMML evaluator
+ * (missingValueStrategy=none). Each tree feature is derived from
+ * one input column as {@code (float) ((x - shift) / scale)}, and nodes are compared and summed in
+ * float, the same way the PMML evaluator does with {@code x-mathContext="float"}, so scores are
+ * identical to the PMML model.
+ *
+ * <p>Nodes are stored with their children in contiguous slots. Walking a tree means taking the
+ * first child whose predicate holds and returning the node score when no child matches
+ * (noTrueChildStrategy=returnLastPrediction). Scoring allocates nothing after the first call on a
+ * thread, and instances are immutable and thread-safe.
+ *
+ * <p>{@link #upperBound(double[], double[], boolean[])} bounds the score over a box of input rows by walking
+ * every branch the box can reach, narrowing the box by each predicate on the way down.
+ */
+public final class CompiledTreeEnsemble {
+
+  public static final int UNKNOWN_CATEGORY = -1;
+
+  static final byte OP_TRUE = 0;
+  static final byte OP_LESS_THAN = 1;
+  static final byte OP_LESS_OR_EQUAL = 2;
+  static final byte OP_GREATER_THAN = 3;
+  static final byte OP_GREATER_OR_EQUAL = 4;
+  static final byte OP_EQUAL = 5;
+  static final byte OP_NOT_EQUAL = 6;
+
+  /**
+   * Number of rows pushed through one tree before moving to the next one in batch scoring
+   */
+  static final int BLOCK_SIZE = 64;
+
+  private final List<String> inputNames;
+  private final List<Map<String, Integer>> dictionaries;
+
+  // Derived tree features: feature f = (float) ((row[derivedInput[f]] - shift[f]) / scale[f])
+  private final int[] derivedInput;
+  private final double[] derivedShift;
+  private final double[] derivedScale;
+
+  // Tree nodes
+  private final int[] treeRoots;
+  private final int[] nodeFeature;
+  private final byte[] nodeOp;
+  private final float[] nodeThreshold;
+  private final int[] nodeFirstChild;
+  private final int[] nodeChildCount;
+  private final float[] nodeScore;
+
+  private final float rescaleFactor;
+  private final float rescaleConstant;
+
+  private final ThreadLocal<Scratch> scratch;
+
+  CompiledTreeEnsemble(List<String> inputNames, List<Map<String, Integer>> dictionaries,
+      int[] derivedInput, double[] derivedShift, double[] derivedScale,
+      int[] treeRoots, int[] nodeFeature, byte[] nodeOp, float[] nodeThreshold,
+      int[] nodeFirstChild, int[] nodeChildCount, float[] nodeScore,
+      float rescaleFactor, float rescaleConstant) {
+    this.inputNames = List.copyOf(inputNames);
+    this.dictionaries = dictionaries;
+    this.derivedInput = derivedInput;
+    this.derivedShift = derivedShift;
+    this.derivedScale = derivedScale;
+    this.treeRoots = treeRoots;
+    this.nodeFeature = nodeFeature;
+    this.nodeOp = nodeOp;
+    this.nodeThreshold = nodeThreshold;
+    this.nodeFirstChild = nodeFirstChild;
+    this.nodeChildCount = nodeChildCount;
+    this.nodeScore = nodeScore;
+    this.rescaleFactor = rescaleFactor;
+    this.rescaleConstant = rescaleConstant;
+
+    int derivedCount = derivedInput.length;
+    this.scratch = ThreadLocal.withInitial(() -> new Scratch(derivedCount));
+  }
+
+  public List<String> getInputNames() {
+    return inputNames;
+  }
+
+  public int getInputCount() {
+    return inputNames.size();
+  }
+
+  public int getTreeCount() {
+    return treeRoots.length;
+  }
+
+  public int getNodeCount() {
+    return nodeOp.length;
+  }
+
+  public boolean isCategorical(int column) {
+    return dictionaries.get(column) != null;
+  }
+
+  /**
+   * Encode a categorical value for the given input column
+   *
+   * @return Category code, or {@link #UNKNOWN_CATEGORY} for values the model has never seen
+   */
+  public int encode(int column, String value) {
+    Map<String, Integer> dictionary = dictionaries.get(column);
+    if (dictionary == null) {
+      throw new IllegalArgumentException("Column " + inputNames.get(column) + " is not categorical");
+    }
+    Integer code = value != null ? dictionary.get(value) : null;
+    return code != null ? code : UNKNOWN_CATEGORY;
+  }
+
+  /**
+   * Input value of a categorical column for scoring
+   *
+   * @return The category code of {@link #encode(int, String)}, or NaN when the value is missing
+   */
+  public double categoryValue(int column, String value) {
+    return value != null ? encode(column, value) : Double.NaN;
+  }
+
+  /**
+   * Score a single row starting at {@code offset}
+   */
+  public double score(double[] rows, int offset) {
+    Scratch s = scratch.get();
+    transform(rows, offset, s.features, 0);
+
+    float sum = 0.0f;
+    for (int root : treeRoots) {
+      sum += walk(root, s.features, 0);
+    }
+    return finish(sum);
+  }
+
+  /**
+   * Score {@code rowCount} consecutive rows into {@code out}.
+   *
+   * <p>Rows are processed in blocks of {@link #BLOCK_SIZE}: every row of a block is walked
+   * through one tree before moving to the next tree, so each tree's nodes stay in cache while
+   * the block passes through them. Per-row sums are still accumulated in tree order, so results
+   * are bit-for-bit the same as {@link #score(double[], int)}.
+   */
+  public void scoreBatch(double[] rows, int rowCount, double[] out) {
+    int inputCount = inputNames.size();
+    if (rows.length < rowCount * inputCount || out.length < rowCount) {
+      throw new IllegalArgumentException("Buffers too small for " + rowCount + " rows");
+    }
+
+    Scratch s = scratch.get();
+    int derivedCount = derivedInput.length;
+
+    for (int blockStart = 0; blockStart < rowCount; blockStart += BLOCK_SIZE) {
+      int blockRows = Math.min(BLOCK_SIZE, rowCount - blockStart);
+
+      for (int r = 0; r < blockRows; r++) {
+        transform(rows, (blockStart + r) * inputCount, s.blockFeatures, r * derivedCount);
+        s.sums[r] = 0.0f;
+      }
+
+      for (int root : treeRoots) {
+        for (int r = 0; r < blockRows; r++) {
+          s.sums[r] += walk(root, s.blockFeatures, r * derivedCount);
+        }
+      }
+
+      for (int r = 0; r < blockRows; r++) {
+        out[blockStart + r] = finish(s.sums[r]);
+      }
+    }
+  }
+
+  /**
+   * Upper bound of {@link #score(double[], int)} over every row whose input columns lie within
+   * {@code [low[c], high[c]]}. A column with {@code low[c] == high[c]} is fixed, categorical
+   * columns should be fixed to their code.
+   */
+  public double upperBound(double[] low, double[] high) {
+    return upperBound(low, high, new boolean[inputNames.size()]);
+  }
+
+  /**
+   * Upper bound of {@link #score(double[], int)} over every row whose input columns either lie
+   * within {@code [low[c], high[c]]} or, where {@code missing[c]} is set, are missing. A column
+   * with {@code low[c] > high[c]} has no present values.
+   *
+   * <p>Per tree the highest leaf reachable inside the box is taken (the lowest when the rescale
+   * factor is negative) and the leaves are summed in tree order. Float rounding is monotone, so
+   * the result is never below the score of a row in the box.
+   */
+  public double upperBound(double[] low, double[] high, boolean[] missing) {
+    int inputCount = inputNames.size();
+    if (low.length < inputCount || high.length < inputCount || missing.length < inputCount) {
+      throw new IllegalArgumentException("Bounds must cover " + inputCount + " input columns");
+    }
+
+    Box box = new Box(derivedInput.length);
+    for (int f = 0; f < derivedInput.length; f++) {
+      int column = derivedInput[f];
+      box.missing[f] = missing[column];
+      if (low[column] > high[column]) {
+        box.low[f] = Float.POSITIVE_INFINITY;
+        box.high[f] = Float.NEGATIVE_INFINITY;
+        continue;
+      }
+      float a = (float) ((low[column] - derivedShift[f]) / derivedScale[f]);
+      float b = (float) ((high[column] - derivedShift[f]) / derivedScale[f]);
+      box.low[f] = Math.min(a, b);
+      box.high[f] = Math.max(a, b);
+    }
+
+    boolean highest = rescaleFactor >= 0;
+    float sum = 0.0f;
+    for (int root : treeRoots) {
+      sum += extreme(root, box, highest);
+    }
+    return finish(sum);
+  }
+
+  /**
+   * Highest (or lowest) score of the subtree at {@code node} over the box, which holds the rows
+   * that reach the node
+   */
+  private float extreme(int node, Box box, boolean highest) {
+    int mark = box.mark();
+    float best = highest ? Float.NEGATIVE_INFINITY : Float.POSITIVE_INFINITY;
+    boolean noChildMatches = true;
+    for (int child = nodeFirstChild[node], end = child + nodeChildCount[node]; child < end;
+        child++) {
+      int childMark = box.mark();
+      if (box.restrict(nodeOp[child], nodeFeature[child], nodeThreshold[child], true)) {
+        float score = extreme(child, box, highest);
+        best = highest ? Math.max(best, score) : Math.min(best, score);
+      }
+      box.reset(childMark);
+      // Later children and the node score are only reached when this predicate is false
+      if (!box.restrict(nodeOp[child], nodeFeature[child], nodeThreshold[child], false)) {
+        noChildMatches = false;
+        break;
+      }
+    }
+    if (noChildMatches) {
+      best = highest ? Math.max(best, nodeScore[node]) : Math.min(best, nodeScore[node]);
+    }
+    box.reset(mark);
+    return best;
+  }
+
+  private void transform(double[] rows, int offset, float[] features, int featureOffset) {
+    for (int f = 0; f < derivedInput.length; f++) {
+      double raw = rows[offset + derivedInput[f]];
+      features[featureOffset + f] = (float) ((raw - derivedShift[f]) / derivedScale[f]);
+    }
+  }
+
+  private float walk(int root, float[] features, int featureOffset) {
+    int node = root;
+    while (true) {
+      int child = nodeFirstChild[node];
+      int end = child + nodeChildCount[node];
+      while (child < end && !test(child, features, featureOffset)) {
+        child++;
+      }
+      if (child == end) {
+        return nodeScore[node];
+      }
+      node = child;
+    }
+  }
+
+  private boolean test(int node, float[] features, int featureOffset) {
+    byte op = nodeOp[node];
+    if (op == OP_TRUE) {
+      return true;
+    }
+    float value = features[featureOffset + nodeFeature[node]];
+    float threshold = nodeThreshold[node];
+    switch (op) {
+      case OP_LESS_THAN:
+        return value < threshold;
+      case OP_LESS_OR_EQUAL:
+        return value <= threshold;
+      case OP_GREATER_THAN:
+        return value > threshold;
+      case OP_GREATER_OR_EQUAL:
+        return value >= threshold;
+      case OP_EQUAL:
+        return value == threshold;
+      case OP_NOT_EQUAL:
+        // NaN != x holds in Java, but a missing value fails the split
+        return value != threshold && !Float.isNaN(value);
+      default:
+        throw new IllegalStateException("Unknown operator " + op);
+    }
+  }
+
+  private double finish(float sum) {
+    return sum * rescaleFactor + rescaleConstant;
+  }
+
+  /**
+   * Interval of every derived feature and whether it may be missing, with an undo log so a walk
+   * can restore the box on the way back up
+   */
+  private static final class Box {
+
+    final float[] low;
+    final float[] high;
+    final boolean[] missing;
+    private int[] undoFeature = new int[64];
+    private float[] undoLow = new float[64];
+    private float[] undoHigh = new float[64];
+    private boolean[] undoMissing = new boolean[64];
+    private int size;
+
+    Box(int derivedCount) {
+      this.low = new float[derivedCount];
+      this.high = new float[derivedCount];
+      this.missing = new boolean[derivedCount];
+    }
+
+    int mark() {
+      return size;
+    }
+
+    void reset(int mark) {
+      while (size > mark) {
+        size--;
+        low[undoFeature[size]] = undoLow[size];
+        high[undoFeature[size]] = undoHigh[size];
+        missing[undoFeature[size]] = undoMissing[size];
+      }
+    }
+
+    /**
+     * Narrow the box to the rows for which the predicate has the given outcome
+     *
+     * @return false when no row of the box has that outcome
+     */
+    boolean restrict(byte op, int feature, float threshold, boolean outcome) {
+      if (op == OP_TRUE) {
+        return outcome;
+      }
+      if (!outcome && missing[feature]) {
+        // Missing values fail the split, present ones may go either way
+        return true;
+      }
+      float lo = low[feature];
+      float hi = high[feature];
+      if (lo > hi) {
+        // Only missing values, which never pass a split
+        return false;
+      }
+      if (!outcome) {
+        op = negate(op);
+      }
+      switch (op) {
+        case OP_LESS_THAN:
+          hi = Math.min(hi, Math.nextDown(threshold));
+          break;
+        case OP_LESS_OR_EQUAL:
+          hi = Math.min(hi, threshold);
+          break;
+        case OP_GREATER_THAN:
+          lo = Math.max(lo, Math.nextUp(threshold));
+          break;
+        case OP_GREATER_OR_EQUAL:
+          lo = Math.max(lo, threshold);
+          break;
+        case OP_EQUAL:
+          lo = Math.max(lo, threshold);
+          hi = Math.min(hi, threshold);
+          break;
+        case OP_NOT_EQUAL:
+          // An interval cannot exclude a single point unless it is that point
+          if (lo == threshold && hi == threshold) {
+            return false;
+          }
+          break;
+        default:
+          throw new IllegalStateException("Unknown operator " + op);
+      }
+      if (lo > hi) {
+        return false;
+      }
+      // Rows passing the split have a value
+      if (lo != low[feature] || hi != high[feature] || missing[feature]) {
+        push(feature);
+        low[feature] = lo;
+        high[feature] = hi;
+        missing[feature] = false;
+      }
+      return true;
+    }
+
+    private void push(int feature) {
+      if (size == undoFeature.length) {
+        undoFeature = Arrays.copyOf(undoFeature, size * 2);
+        undoLow = Arrays.copyOf(undoLow, size * 2);
+        undoHigh = Arrays.copyOf(undoHigh, size * 2);
+        undoMissing = Arrays.copyOf(undoMissing, size * 2);
+      }
+      undoFeature[size] = feature;
+      undoLow[size] = low[feature];
+      undoHigh[size] = high[feature];
+      undoMissing[size] = missing[feature];
+      size++;
+    }
+
+    private static byte negate(byte op) {
+      switch (op) {
+        case OP_LESS_THAN:
+          return OP_GREATER_OR_EQUAL;
+        case OP_LESS_OR_EQUAL:
+          return OP_GREATER_THAN;
+        case OP_GREATER_THAN:
+          return OP_LESS_OR_EQUAL;
+        case OP_GREATER_OR_EQUAL:
+          return OP_LESS_THAN;
+        case OP_EQUAL:
+          return OP_NOT_EQUAL;
+        case OP_NOT_EQUAL:
+          return OP_EQUAL;
+        default:
+          throw new IllegalStateException("Unknown operator " + op);
+      }
+    }
+  }
+
+  private static final class Scratch {
+
+    final float[] features;
+    final float[] blockFeatures;
+    final float[] sums = new float[BLOCK_SIZE];
+
+    Scratch(int derivedCount) {
+      this.features = new float[derivedCount];
+      this.blockFeatures = new float[BLOCK_SIZE * derivedCount];
+    }
+  }
+}
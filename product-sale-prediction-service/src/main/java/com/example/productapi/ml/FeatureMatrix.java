@@ -0,0 +1,117 @@
+package com.example.productapi.ml;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Feature rows of one or more forecasts, laid out row-major in {@link FeatureSchema} order.
+ *
+ * <p>Numeric features live in a single {@code double[]} of {@code rowCount *
+ * FeatureSchema.FEATURE_COUNT} values. The categorical columns (product_id, seller_id) are kept as
+ * strings next to it and their slots in the value array are left at 0, engines that need codes
+ * encode them themselves.
+ */
+public final class FeatureMatrix {
+
+  private static final int STRIDE = FeatureSchema.FEATURE_COUNT;
+
+  private final int rowCount;
+  private final double[] values;
+  private final String[] productIds;
+  private final String[] sellerIds;
+
+  private FeatureMatrix(int rowCount, double[] values, String[] productIds, String[] sellerIds) {
+    this.rowCount = rowCount;
+    this.values = values;
+    this.productIds = productIds;
+    this.sellerIds = sellerIds;
+  }
+
+  /**
+   * Allocate a zero-filled matrix
+   */
+  public static FeatureMatrix allocate(int rowCount) {
+    return new FeatureMatrix(rowCount, new double[rowCount * STRIDE], new String[rowCount],
+        new String[rowCount]);
+  }
+
+  /**
+   * Stack several matrices into one, in list order
+   */
+  public static FeatureMatrix concat(List<FeatureMatrix> parts) {
+    int rows = 0;
+    for (FeatureMatrix part : parts) {
+      rows += part.rowCount;
+    }
+
+    FeatureMatrix result = allocate(rows);
+    int row = 0;
+    for (FeatureMatrix part : parts) {
+      System.arraycopy(part.values, 0, result.values, row * STRIDE, part.rowCount * STRIDE);
+      System.arraycopy(part.productIds, 0, result.productIds, row, part.rowCount);
+      System.arraycopy(part.sellerIds, 0, result.sellerIds, row, part.rowCount);
+      row += part.rowCount;
+    }
+    return result;
+  }
+
+  public int getRowCount() {
+    return rowCount;
+  }
+
+  /**
+   * Backing array, row r starts at {@link #offset(int)}
+   */
+  public double[] getValues() {
+    return values;
+  }
+
+  public int offset(int row) {
+    return row * STRIDE;
+  }
+
+  public double get(int row, int column) {
+    return values[row * STRIDE + column];
+  }
+
+  public void set(int row, int column, double value) {
+    values[row * STRIDE + column] = value;
+  }
+
+  public String getProductId(int row) {
+    return productIds[row];
+  }
+
+  public String getSellerId(int row) {
+    return sellerIds[row];
+  }
+
+  public void setIds(int row, String productId, String sellerId) {
+    productIds[row] = productId;
+    sellerIds[row] = sellerId;
+  }
+
+  /**
+   * Copy rows [from, to) into a new matrix
+   */
+  public FeatureMatrix slice(int from, int to) {
+    return new FeatureMatrix(to - from,
+        Arrays.copyOfRange(values, from * STRIDE, to * STRIDE),
+        Arrays.copyOfRange(productIds, from, to),
+        Arrays.copyOfRange(sellerIds, from, to));
+  }
+
+  /**
+   * Copy the given rows into a new matrix, in the given order
+   */
+  public FeatureMatrix select(int[] rows, int count) {
+    FeatureMatrix result = allocate(count);
+    for (int i = 0; i < count; i++) {
+      int row = rows[i];
+      System.arraycopy(values, row * STRIDE, result.values, i * STRIDE, STRIDE);
+      result.productIds[i] = productIds[row];
+      result.sellerIds[i] = sellerIds[row];
+    }
+    return result;
+  }
+}
@@ -0,0 +1,34 @@
+package com.example.productapi.ml;
+
+import java.util.List;
+
+/**
+ * Column layout of a model feature row, in the order the sales model was trained with:
+ * product_id, seller_id, sale_price, original_price, is_holiday, is_weekend, day_of_week,
+ * day_of_month, month, lag_1, lag_7, lag_30
+ */
+public final class FeatureSchema {
+
+  public static final int PRODUCT_ID = 0;
+  public static final int SELLER_ID = 1;
+  public static final int SALE_PRICE = 2;
+  public static final int ORIGINAL_PRICE = 3;
+  public static final int IS_HOLIDAY = 4;
+  public static final int IS_WEEKEND = 5;
+  public static final int DAY_OF_WEEK = 6;
+  public static final int DAY_OF_MONTH = 7;
+  public static final int MONTH = 8;
+  public static final int LAG_1 = 9;
+  public static final int LAG_7 = 10;
+  public static final int LAG_30 = 11;
+
+  public static final int FEATURE_COUNT = 12;
+
+  public static final List<String> FEATURE_NAMES = List.of(
+      "product_id", "seller_id", "sale_price", "original_price",
+      "is_holiday", "is_weekend", "day_of_week", "day_of_month",
+      "month", "lag_1", "lag_7", "lag_30");
+
+  private FeatureSchema() {
+  }
+}
@@ -0,0 +1,381 @@
+package com.example.productapi.ml;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.dmg.pmml.Apply;
+import org.dmg.pmml.Constant;
+import org.dmg.pmml.DataDictionary;
+import org.dmg.pmml.DataField;
+import org.dmg.pmml.DataType;
+import org.dmg.pmml.DerivedField;
+import org.dmg.pmml.Expression;
+import org.dmg.pmml.FieldRef;
+import org.dmg.pmml.LocalTransformations;
+import org.dmg.pmml.MathContext;
+import org.dmg.pmml.MiningFunction;
+import org.dmg.pmml.Model;
+import org.dmg.pmml.OpType;
+import org.dmg.pmml.PMML;
+import org.dmg.pmml.Predicate;
+import org.dmg.pmml.SimplePredicate;
+import org.dmg.pmml.Target;
+import org.dmg.pmml.Targets;
+import org.dmg.pmml.TransformationDictionary;
+import org.dmg.pmml.True;
+import org.dmg.pmml.mining.MiningModel;
+import org.dmg.pmml.mining.Segment;
+import org.dmg.pmml.mining.Segmentation;
+import org.dmg.pmml.tree.Node;
+import org.dmg.pmml.tree.TreeModel;
+
+/**
+ * Compiles an XGBoost PMML export (a float MiningModel summing regression TreeModels) into a
+ * {@link CompiledTreeEnsemble}.
+ *
+ * <p>Only the constructs the sklearn2pmml XGBoost converter emits are supported: standard-scaler
+ * derived fields cast to float, {@code True} and {@link SimplePredicate} splits, and an optional
+ * target rescale. Anything else raises {@link UnsupportedOperationException} so callers can keep
+ * using the generic PMML evaluator.
+ */
+public final class TreeEnsembleCompiler {
+
+  private final List<String> inputNames;
+  private final Map<String, DataField> dataFields = new HashMap<>();
+  private final Map<String, DerivedField> derivedFields = new HashMap<>();
+  private final List<Map<String, Integer>> dictionaries = new ArrayList<>();
+
+  private final Map<String, Integer> derivedIndex = new HashMap<>();
+  private final List<double[]> derivedTransforms = new ArrayList<>();
+  private final List<Integer> derivedInputs = new ArrayList<>();
+
+  private int nodeCount;
+  private int[] nodeFeature = new int[1024];
+  private byte[] nodeOp = new byte[1024];
+  private float[] nodeThreshold = new float[1024];
+  private int[] nodeFirstChild = new int[1024];
+  private int[] nodeChildCount = new int[1024];
+  private float[] nodeScore = new float[1024];
+
+  private TreeEnsembleCompiler(List<String> inputNames) {
+    this.inputNames = inputNames;
+  }
+
+  /**
+   * Compile the first model of the PMML document
+   *
+   * @param pmml       Unmarshalled PMML document
+   * @param inputNames Input column order of the rows that will be scored
+   * @return Compiled ensemble
+   * @throws UnsupportedOperationException if the model uses constructs that cannot be compiled
+   */
+  public static CompiledTreeEnsemble compile(PMML pmml, List<String> inputNames) {
+    return new TreeEnsembleCompiler(inputNames).compileDocument(pmml);
+  }
+
+  private CompiledTreeEnsemble compileDocument(PMML pmml) {
+    if (!pmml.hasModels() || !(pmml.getModels().get(0) instanceof MiningModel)) {
+      throw new UnsupportedOperationException("Expected a MiningModel");
+    }
+    MiningModel miningModel = (MiningModel) pmml.getModels().get(0);
+    requireFloatRegression(miningModel, miningModel.getMathContext());
+
+    Segmentation segmentation = miningModel.getSegmentation();
+    if (segmentation == null
+        || segmentation.getMultipleModelMethod() != Segmentation.MultipleModelMethod.SUM) {
+      throw new UnsupportedOperationException("Expected a segmentation with multipleModelMethod=sum");
+    }
+
+    indexDataDictionary(pmml.getDataDictionary());
+    TransformationDictionary transformationDictionary = pmml.getTransformationDictionary();
+    if (transformationDictionary != null && transformationDictionary.hasDerivedFields()) {
+      transformationDictionary.getDerivedFields().forEach(this::indexDerivedField);
+    }
+    indexLocalTransformations(miningModel.getLocalTransformations());
+    indexLocalTransformations(segmentation.getLocalTransformations());
+
+    List<Segment> segments = segmentation.getSegments();
+    int[] treeRoots = new int[segments.size()];
+    for (int i = 0; i < segments.size(); i++) {
+      Segment segment = segments.get(i);
+      if (!(segment.getPredicate() instanceof True)) {
+        throw new UnsupportedOperationException("Segment " + segment.getId() + " is conditional");
+      }
+      Model model = segment.getModel();
+      if (!(model instanceof TreeModel)) {
+        throw new UnsupportedOperationException("Segment " + segment.getId() + " is not a tree");
+      }
+      treeRoots[i] = compileTree((TreeModel) model);
+    }
+
+    float[] rescale = compileTarget(miningModel.getTargets());
+
+    int derivedCount = derivedInputs.size();
+    int[] derivedInput = new int[derivedCount];
+    double[] derivedShift = new double[derivedCount];
+    double[] derivedScale = new double[derivedCount];
+    for (int f = 0; f < derivedCount; f++) {
+      derivedInput[f] = derivedInputs.get(f);
+      derivedShift[f] = derivedTransforms.get(f)[0];
+      derivedScale[f] = derivedTransforms.get(f)[1];
+    }
+
+    return new CompiledTreeEnsemble(inputNames, dictionaries,
+        derivedInput, derivedShift, derivedScale, treeRoots,
+        Arrays.copyOf(nodeFeature, nodeCount), Arrays.copyOf(nodeOp, nodeCount),
+        Arrays.copyOf(nodeThreshold, nodeCount), Arrays.copyOf(nodeFirstChild, nodeCount),
+        Arrays.copyOf(nodeChildCount, nodeCount), Arrays.copyOf(nodeScore, nodeCount),
+        rescale[0], rescale[1]);
+  }
+
+  private void requireFloatRegression(Model model, MathContext mathContext) {
+    if (model.getMiningFunction() != MiningFunction.REGRESSION) {
+      throw new UnsupportedOperationException("Expected a regression model");
+    }
+    if (mathContext != MathContext.FLOAT) {
+      throw new UnsupportedOperationException("Expected x-mathContext=float");
+    }
+  }
+
+  private void indexDataDictionary(DataDictionary dataDictionary) {
+    if (dataDictionary != null && dataDictionary.hasDataFields()) {
+      for (DataField dataField : dataDictionary.getDataFields()) {
+        dataFields.put(dataField.getName().getValue(), dataField);
+      }
+    }
+
+    for (String inputName : inputNames) {
+      DataField dataField = dataFields.get(inputName);
+      if (dataField != null && dataField.getOpType() == OpType.CATEGORICAL) {
+        Map<String, Integer> dictionary = new LinkedHashMap<>();
+        if (dataField.hasValues()) {
+          dataField.getValues().forEach(
+              value -> dictionary.putIfAbsent(String.valueOf(value.getValue()), dictionary.size()));
+        }
+        dictionaries.add(dictionary);
+      } else {
+        dictionaries.add(null);
+      }
+    }
+  }
+
+  private void indexLocalTransformations(LocalTransformations localTransformations) {
+    if (localTransformations != null && localTransformations.hasDerivedFields()) {
+      localTransformations.getDerivedFields().forEach(this::indexDerivedField);
+    }
+  }
+
+  private void indexDerivedField(DerivedField derivedField) {
+    derivedFields.put(derivedField.getName().getValue(), derivedField);
+  }
+
+  private float[] compileTarget(Targets targets) {
+    float factor = 1.0f;
+    float constant = 0.0f;
+    if (targets != null && targets.hasTargets()) {
+      if (targets.getTargets().size() != 1) {
+        throw new UnsupportedOperationException("Expected a single target");
+      }
+      Target target = targets.getTargets().get(0);
+      if (target.getMin() != null || target.getMax() != null || target.getCastInteger() != null) {
+        throw new UnsupportedOperationException("Target clamping/casting is not supported");
+      }
+      if (target.getRescaleFactor() != null) {
+        factor = target.getRescaleFactor().floatValue();
+      }
+      if (target.getRescaleConstant() != null) {
+        constant = target.getRescaleConstant().floatValue();
+      }
+    }
+    return new float[]{factor, constant};
+  }
+
+  private int compileTree(TreeModel treeModel) {
+    requireFloatRegression(treeModel, treeModel.getMathContext());
+    if (treeModel.getNoTrueChildStrategy() != TreeModel.NoTrueChildStrategy.RETURN_LAST_PREDICTION) {
+      throw new UnsupportedOperationException("Expected noTrueChildStrategy=returnLastPrediction");
+    }
+    indexLocalTransformations(treeModel.getLocalTransformations());
+
+    // Breadth-first so that the children of every node land in contiguous slots
+    int root = allocate(1);
+    Deque<Object[]> queue = new ArrayDeque<>();
+    queue.add(new Object[]{treeModel.getNode(), root});
+    while (!queue.isEmpty()) {
+      Object[] entry = queue.poll();
+      Node node = (Node) entry[0];
+      int slot = (Integer) entry[1];
+
+      compilePredicate(node.getPredicate(), slot);
+      if (node.getScore() == null) {
+        throw new UnsupportedOperationException("Tree node without score");
+      }
+      nodeScore[slot] = Float.parseFloat(String.valueOf(node.getScore()));
+
+      List<Node> children = node.hasNodes() ? node.getNodes() : List.of();
+      int firstChild = allocate(children.size());
+      nodeFirstChild[slot] = firstChild;
+      nodeChildCount[slot] = children.size();
+      for (int i = 0; i < children.size(); i++) {
+        queue.add(new Object[]{children.get(i), firstChild + i});
+      }
+    }
+    return root;
+  }
+
+  private void compilePredicate(Predicate predicate, int slot) {
+    if (predicate instanceof True) {
+      nodeOp[slot] = CompiledTreeEnsemble.OP_TRUE;
+      return;
+    }
+    if (!(predicate instanceof SimplePredicate)) {
+      throw new UnsupportedOperationException(
+          "Unsupported predicate " + (predicate != null ? predicate.getClass().getSimpleName() : null));
+    }
+
+    SimplePredicate simplePredicate = (SimplePredicate) predicate;
+    String fieldName = simplePredicate.getField().getValue();
+    int feature = resolveFeature(fieldName);
+    nodeFeature[slot] = feature;
+    nodeOp[slot] = operator(simplePredicate.getOperator());
+
+    String value = String.valueOf(simplePredicate.getValue());
+    Map<String, Integer> dictionary = dictionaries.get(derivedInputs.get(feature));
+    if (dictionary != null) {
+      nodeThreshold[slot] = dictionary.computeIfAbsent(value, key -> dictionary.size());
+    } else {
+      nodeThreshold[slot] = Float.parseFloat(value);
+    }
+  }
+
+  private byte operator(SimplePredicate.Operator operator) {
+    switch (operator) {
+      case LESS_THAN:
+        return CompiledTreeEnsemble.OP_LESS_THAN;
+      case LESS_OR_EQUAL:
+        return CompiledTreeEnsemble.OP_LESS_OR_EQUAL;
+      case GREATER_THAN:
+        return CompiledTreeEnsemble.OP_GREATER_THAN;
+      case GREATER_OR_EQUAL:
+        return CompiledTreeEnsemble.OP_GREATER_OR_EQUAL;
+      case EQUAL:
+        return CompiledTreeEnsemble.OP_EQUAL;
+      case NOT_EQUAL:
+        return CompiledTreeEnsemble.OP_NOT_EQUAL;
+      default:
+        throw new UnsupportedOperationException("Unsupported operator " + operator);
+    }
+  }
+
+  /**
+   * Resolve a field used in a split to a derived feature index. Categorical input columns are
+   * used as-is (by category code), numeric splits must be on a float cast of a scaled input.
+   */
+  private int resolveFeature(String fieldName) {
+    Integer existing = derivedIndex.get(fieldName);
+    if (existing != null) {
+      return existing;
+    }
+
+    int input;
+    double[] transform;
+    int inputColumn = inputNames.indexOf(fieldName);
+    if (inputColumn >= 0 && dictionaries.get(inputColumn) != null) {
+      input = inputColumn;
+      transform = new double[]{0.0, 1.0};
+    } else {
+      DerivedField derivedField = derivedFields.get(fieldName);
+      if (derivedField == null || derivedField.getDataType() != DataType.FLOAT
+          || !(derivedField.getExpression() instanceof FieldRef)) {
+        throw new UnsupportedOperationException("Unsupported split field " + fieldName);
+      }
+      transform = new double[]{0.0, 1.0};
+      input = resolveAffine(((FieldRef) derivedField.getExpression()).getField().getValue(),
+          transform);
+    }
+
+    int index = derivedInputs.size();
+    derivedInputs.add(input);
+    derivedTransforms.add(transform);
+    derivedIndex.put(fieldName, index);
+    return index;
+  }
+
+  /**
+   * Resolve a double field of the form {@code (x - shift) / scale} down to its input column
+   */
+  private int resolveAffine(String fieldName, double[] transform) {
+    int inputColumn = inputNames.indexOf(fieldName);
+    if (inputColumn >= 0) {
+      if (dictionaries.get(inputColumn) != null) {
+        throw new UnsupportedOperationException("Arithmetic on categorical field " + fieldName);
+      }
+      return inputColumn;
+    }
+
+    DerivedField derivedField = derivedFields.get(fieldName);
+    if (derivedField == null || derivedField.getDataType() != DataType.DOUBLE) {
+      throw new UnsupportedOperationException("Unsupported derived field " + fieldName);
+    }
+
+    Expression expression = derivedField.getExpression();
+    if (expression instanceof FieldRef) {
+      return resolveAffine(((FieldRef) expression).getField().getValue(), transform);
+    }
+
+    Expression operand = expression;
+    if (isApply(operand, "/")) {
+      Apply divide = (Apply) operand;
+      transform[1] = constant(divide.getExpressions().get(1));
+      operand = divide.getExpressions().get(0);
+    }
+    if (isApply(operand, "-")) {
+      Apply subtract = (Apply) operand;
+      transform[0] = constant(subtract.getExpressions().get(1));
+      operand = subtract.getExpressions().get(0);
+    }
+    if (!(operand instanceof FieldRef)) {
+      throw new UnsupportedOperationException("Unsupported expression in " + fieldName);
+    }
+
+    String source = ((FieldRef) operand).getField().getValue();
+    int sourceColumn = inputNames.indexOf(source);
+    if (sourceColumn < 0 || dictionaries.get(sourceColumn) != null) {
+      throw new UnsupportedOperationException("Unsupported expression in " + fieldName);
+    }
+    return sourceColumn;
+  }
+
+  private boolean isApply(Expression expression, String function) {
+    return expression instanceof Apply
+        && function.equals(((Apply) expression).getFunction())
+        && ((Apply) expression).getExpressions().size() == 2;
+  }
+
+  private double constant(Expression expression) {
+    if (!(expression instanceof Constant)) {
+      throw new UnsupportedOperationException("Expected a constant operand");
+    }
+    return Double.parseDouble(String.valueOf(((Constant) expression).getValue()));
+  }
+
+  private int allocate(int count) {
+    int first = nodeCount;
+    nodeCount += count;
+    if (nodeCount > nodeOp.length) {
+      int capacity = Math.max(nodeCount, nodeOp.length * 2);
+      nodeFeature = Arrays.copyOf(nodeFeature, capacity);
+      nodeOp = Arrays.copyOf(nodeOp, capacity);
+      nodeThreshold = Arrays.copyOf(nodeThreshold, capacity);
+      nodeFirstChild = Arrays.copyOf(nodeFirstChild, capacity);
+      nodeChildCount = Arrays.copyOf(nodeChildCount, capacity);
+      nodeScore = Arrays.copyOf(nodeScore, capacity);
+    }
+    return first;
+  }
+}
@@ -0,0 +1,53 @@
+package com.example.productapi.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Forecast units per seller, product and day at list price, written by the nightly forecast job
+ * for every inventory pair. The primary key (seller_id, product_id, forecast_date) serves the
+ * range reads of forecast requests.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@IdClass(DailyForecastId.class)
+@Table(name = "daily_forecast")
+public class DailyForecast {
+
+  @Id
+  @Column(name = "seller_id")
+  private String sellerId;
+
+  @Id
+  @Column(name = "product_id")
+  private String productId;
+
+  @Id
+  @Column(name = "forecast_date")
+  private LocalDate date;
+
+  @Column(nullable = false)
+  private Integer quantity;
+
+  /**
+   * {@link com.example.productapi.service.PredictionEngine#getModelVersion()} of the model that
+   * produced the forecast
+   */
+  @Column(name = "model_version", nullable = false)
+  private String modelVersion;
+
+  @Column(name = "generated_at", nullable = false)
+  private LocalDateTime generatedAt;
+}
@@ -0,0 +1,22 @@
+package com.example.productapi.model;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Primary key of {@link DailyForecast}
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DailyForecastId implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private String sellerId;
+  private String productId;
+  private LocalDate date;
+}
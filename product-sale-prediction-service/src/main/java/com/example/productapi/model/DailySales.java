@@ -0,0 +1,49 @@
+package com.example.productapi.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+import java.time.LocalDate;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Units sold, revenue and number of orders per seller, product and day, maintained from the orders
+ * table. The primary key (seller_id, product_id, sale_date) serves the lag feature range reads.
+ *
+ * <p>Rows written before revenue and order counts were tracked have them null until the next
+ * backfill.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@IdClass(DailySalesId.class)
+@Table(name = "daily_sales")
+public class DailySales {
+
+  @Id
+  @Column(name = "seller_id")
+  private String sellerId;
+
+  @Id
+  @Column(name = "product_id")
+  private String productId;
+
+  @Id
+  @Column(name = "sale_date")
+  private LocalDate date;
+
+  @Column(nullable = false)
+  private Integer quantity;
+
+  private Double revenue;
+
+  @Column(name = "order_count")
+  private Integer orderCount;
+}
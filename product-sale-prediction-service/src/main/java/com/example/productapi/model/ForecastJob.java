@@ -0,0 +1,92 @@
+package com.example.productapi.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Queued forecast job: the forecast spec, its state and progress. The table doubles as the job
+ * queue, so queued and interrupted jobs survive restarts.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(name = "forecast_job", indexes = @Index(name = "idx_forecast_job_status_created",
+    columnList = "status, created_at"))
+public class ForecastJob {
+
+  public enum Status {
+    QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELLED;
+
+    public boolean isFinished() {
+      return this == SUCCEEDED || this == FAILED || this == CANCELLED;
+    }
+  }
+
+  @Id
+  private String id;
+
+  @Enumerated(EnumType.STRING)
+  @Column(nullable = false, length = 16)
+  private Status status;
+
+  // Forecast spec: one product, or every product of the seller's category
+  @Column(name = "seller_id", nullable = false)
+  private String sellerId;
+
+  @Column(name = "product_id")
+  private String productId;
+
+  private String category;
+
+  @Column(name = "sale_price")
+  private Double salePrice;
+
+  @Column(name = "start_date", nullable = false)
+  private LocalDate startDate;
+
+  @Column(name = "end_date", nullable = false)
+  private LocalDate endDate;
+
+  @Column(name = "top_n")
+  private Integer topN;
+
+  // Progress
+  @Column(name = "products_total")
+  private int productsTotal;
+
+  @Column(name = "products_done")
+  private int productsDone;
+
+  private int attempts;
+
+  @Column(length = 1000)
+  private String error;
+
+  @Column(name = "created_at", nullable = false)
+  private LocalDateTime createdAt;
+
+  @Column(name = "started_at")
+  private LocalDateTime startedAt;
+
+  /**
+   * Refreshed by the worker after every step, a running job whose heartbeat stops is queued again
+   */
+  @Column(name = "heartbeat_at")
+  private LocalDateTime heartbeatAt;
+
+  @Column(name = "finished_at")
+  private LocalDateTime finishedAt;
+}
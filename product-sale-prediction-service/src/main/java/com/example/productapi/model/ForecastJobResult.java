@@ -0,0 +1,46 @@
+package com.example.productapi.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Forecast of one product of a {@link ForecastJob}, stored as soon as its step completes so
+ * partial results can be read and an interrupted job resumes where it stopped
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@IdClass(ForecastJobResultId.class)
+@Table(name = "forecast_job_result")
+public class ForecastJobResult {
+
+  @Id
+  @Column(name = "job_id")
+  private String jobId;
+
+  /**
+   * Product forecast, results are read in product ID order, which is also the tie-breaker of
+   * top-N ranking
+   */
+  @Id
+  @Column(name = "product_id")
+  private String productId;
+
+  @Column(name = "total_quantity", nullable = false)
+  private Integer totalQuantity;
+
+  /**
+   * {@link Predications} as JSON
+   */
+  @Column(nullable = false, columnDefinition = "text")
+  private String predications;
+}
@@ -0,0 +1,20 @@
+package com.example.productapi.model;
+
+import java.io.Serializable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Primary key of {@link ForecastJobResult}
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ForecastJobResultId implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private String jobId;
+  private String productId;
+}
@@ -0,0 +1,47 @@
+package com.example.productapi.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+import java.time.LocalDate;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Units sold, revenue and number of orders per seller, product and calendar month, maintained with
+ * {@link DailySales}. sale_month is the first day of the month.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@IdClass(MonthlySalesId.class)
+@Table(name = "monthly_sales")
+public class MonthlySales {
+
+  @Id
+  @Column(name = "seller_id")
+  private String sellerId;
+
+  @Id
+  @Column(name = "product_id")
+  private String productId;
+
+  @Id
+  @Column(name = "sale_month")
+  private LocalDate month;
+
+  @Column(nullable = false)
+  private Integer quantity;
+
+  @Column(nullable = false)
+  private Double revenue;
+
+  @Column(name = "order_count", nullable = false)
+  private Integer orderCount;
+}
@@ -0,0 +1,22 @@
+package com.example.productapi.model;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Primary key of {@link MonthlySales}
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MonthlySalesId implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private String sellerId;
+  private String productId;
+  private LocalDate month;
+}
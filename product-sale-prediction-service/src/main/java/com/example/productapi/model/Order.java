@@ -7,16 +7,27 @@ import lombok.NoArgsConstructor;
 
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.Table;
 import jakarta.persistence.Column;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 
+/**
+ * Composite indexes serve the seller, seller/product and product lookups over a time range; range
+ * scans without a seller or product use the BRIN index on timestamp created on startup by
+ * {@link com.example.productapi.service.impl.OrderIndexes}.
+ */
 @Entity
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+        @Index(name = "idx_orders_seller_timestamp", columnList = "seller_id, timestamp"),
+        @Index(name = "idx_orders_seller_product_timestamp", columnList = "seller_id, product_id, timestamp"),
+        @Index(name = "idx_orders_product_timestamp", columnList = "product_id, timestamp")
+})
 public class Order {
 
     @Id
@@ -32,4 +43,9 @@ public class Order {
     
     @Column(name = "timestamp")
     private LocalDateTime timestamp;
+
+    // Day of the timestamp, computed by the database for day bucketing; null on unsaved orders
+    @Column(name = "order_date", insertable = false, updatable = false,
+            columnDefinition = "date GENERATED ALWAYS AS (CAST(\"timestamp\" AS DATE)) STORED")
+    private LocalDate orderDate;
 } 
\ No newline at end of file
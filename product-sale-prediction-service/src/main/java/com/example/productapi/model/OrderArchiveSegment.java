@@ -0,0 +1,62 @@
+package com.example.productapi.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Manifest entry of an archived segment file holding one seller's orders of one month. The row is
+ * written in the transaction that deletes those orders from the orders table, so a segment is
+ * either listed here and gone from orders or neither. Files not listed are ignored.
+ *
+ * <p>A month archived again, for orders recorded after its first segment, gets another segment.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(name = "order_archive_segment", indexes = @Index(name = "idx_order_archive_segment_seller",
+    columnList = "seller_id, segment_month"))
+public class OrderArchiveSegment {
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  @Column(name = "seller_id", nullable = false)
+  private String sellerId;
+
+  // First day of the month
+  @Column(name = "segment_month", nullable = false)
+  private LocalDate month;
+
+  // Relative to orders.archive.directory
+  @Column(name = "file_name", nullable = false, unique = true)
+  private String fileName;
+
+  @Column(name = "row_count", nullable = false)
+  private Integer rowCount;
+
+  @Column(name = "min_timestamp", nullable = false)
+  private LocalDateTime minTimestamp;
+
+  @Column(name = "max_timestamp", nullable = false)
+  private LocalDateTime maxTimestamp;
+
+  @Column(name = "size_bytes", nullable = false)
+  private Long sizeBytes;
+
+  @Column(name = "created_at", nullable = false)
+  private LocalDateTime createdAt;
+}
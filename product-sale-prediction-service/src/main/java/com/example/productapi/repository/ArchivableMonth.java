@@ -0,0 +1,14 @@
+package com.example.productapi.repository;
+
+import java.time.LocalDate;
+
+/**
+ * A seller and month with orders old enough to be archived
+ */
+public interface ArchivableMonth {
+
+  String getSellerId();
+
+  // First day of the month
+  LocalDate getMonth();
+}
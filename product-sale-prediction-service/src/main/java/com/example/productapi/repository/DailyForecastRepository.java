@@ -0,0 +1,38 @@
+package com.example.productapi.repository;
+
+import com.example.productapi.model.DailyForecast;
+import com.example.productapi.model.DailyForecastId;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface DailyForecastRepository extends JpaRepository<DailyForecast, DailyForecastId> {
+
+  /**
+   * Forecasts of several products of a seller within a date range (inclusive)
+   */
+  List<DailyForecast> findBySellerIdAndProductIdInAndDateBetween(String sellerId,
+      Collection<String> productIds, LocalDate startDate, LocalDate endDate);
+
+  /**
+   * Drop a seller's forecasts within a date range (inclusive) before they are rewritten
+   */
+  @Modifying
+  @Query("DELETE FROM DailyForecast f WHERE f.sellerId = :sellerId "
+      + "AND f.date BETWEEN :startDate AND :endDate")
+  int deleteBySellerIdAndDateBetween(@Param("sellerId") String sellerId,
+      @Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
+
+  /**
+   * Drop forecasts for days that have passed
+   */
+  @Modifying
+  @Query("DELETE FROM DailyForecast f WHERE f.date < :date")
+  int deleteByDateBefore(@Param("date") LocalDate date);
+}
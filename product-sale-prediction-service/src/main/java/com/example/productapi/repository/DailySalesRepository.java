@@ -0,0 +1,163 @@
+package com.example.productapi.repository;
+
+import com.example.productapi.model.DailySales;
+import com.example.productapi.model.DailySalesId;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface DailySalesRepository extends JpaRepository<DailySales, DailySalesId> {
+
+  /**
+   * Daily totals of one seller/product within a date range (inclusive)
+   */
+  List<DailySales> findBySellerIdAndProductIdAndDateBetween(String sellerId, String productId,
+      LocalDate startDate, LocalDate endDate);
+
+  /**
+   * Daily totals of several products of a seller within a date range (inclusive)
+   */
+  List<DailySales> findBySellerIdAndProductIdInAndDateBetween(String sellerId,
+      Collection<String> productIds, LocalDate startDate, LocalDate endDate);
+
+  /**
+   * Add units, revenue and orders to a day, creating the row if needed
+   */
+  @Modifying
+  @Query(value = "INSERT INTO daily_sales (seller_id, product_id, sale_date, quantity, revenue, order_count) "
+      + "VALUES (:sellerId, :productId, :date, :quantity, :revenue, :orders) "
+      + "ON CONFLICT (seller_id, product_id, sale_date) "
+      + "DO UPDATE SET quantity = daily_sales.quantity + EXCLUDED.quantity, "
+      + "revenue = daily_sales.revenue + EXCLUDED.revenue, "
+      + "order_count = daily_sales.order_count + EXCLUDED.order_count",
+      nativeQuery = true)
+  void addSales(@Param("sellerId") String sellerId, @Param("productId") String productId,
+      @Param("date") LocalDate date, @Param("quantity") int quantity,
+      @Param("revenue") double revenue, @Param("orders") int orders);
+
+  /**
+   * Block order writes to the rollups until the end of the transaction, so a rebuild does not
+   * race with incremental updates
+   */
+  @Modifying
+  @Query(value = "LOCK TABLE daily_sales, monthly_sales IN SHARE ROW EXCLUSIVE MODE",
+      nativeQuery = true)
+  void lockRollups();
+
+  /**
+   * Rebuild every day from the orders table
+   *
+   * @return Number of rows written
+   */
+  @Modifying
+  @Query(value = "INSERT INTO daily_sales (seller_id, product_id, sale_date, quantity, revenue, order_count) "
+      + "SELECT o.seller_id, o.product_id, o.order_date, SUM(o.quantity), "
+      + "COALESCE(SUM(o.total_price), 0), COUNT(*) "
+      + "FROM orders o "
+      + "WHERE o.seller_id IS NOT NULL AND o.product_id IS NOT NULL AND o.quantity IS NOT NULL "
+      + "AND o.timestamp IS NOT NULL "
+      + "GROUP BY o.seller_id, o.product_id, o.order_date "
+      + "ON CONFLICT (seller_id, product_id, sale_date) DO UPDATE SET "
+      + "quantity = EXCLUDED.quantity, revenue = EXCLUDED.revenue, order_count = EXCLUDED.order_count",
+      nativeQuery = true)
+  int backfillFromOrders();
+
+  /**
+   * Delete the days before a date
+   *
+   * @return Number of rows deleted
+   */
+  @Modifying
+  @Query("DELETE FROM DailySales d WHERE d.date < :date")
+  int deleteBefore(@Param("date") LocalDate date);
+
+  /**
+   * Orders counted in the table, rows that predate order count tracking count as none
+   */
+  @Query("SELECT COALESCE(SUM(d.orderCount), 0) FROM DailySales d")
+  long sumOrderCount();
+
+  /**
+   * Total quantity and revenue per product with filters over a split range, best sellers first.
+   * Pass a page of size N for the top N products or {@link Pageable#unpaged()} for all of them.
+   */
+  @Query(value = "SELECT s.product_id AS \"productId\", SUM(s.quantity) AS \"quantity\", "
+      + "SUM(s.revenue) AS \"revenue\" "
+      + "FROM ("
+      + "SELECT m.seller_id, m.product_id, m.quantity, m.revenue FROM monthly_sales m "
+      + "WHERE m.sale_month >= :#{#range.monthStart} AND m.sale_month < :#{#range.monthEnd} "
+      + "UNION ALL "
+      + "SELECT d.seller_id, d.product_id, d.quantity, d.revenue FROM daily_sales d "
+      + "WHERE (d.sale_date >= :#{#range.firstDay} AND d.sale_date < :#{#range.monthStart}) "
+      + "OR (d.sale_date >= :#{#range.monthEnd} AND d.sale_date < :#{#range.dayEnd}) "
+      + "UNION ALL "
+      + "SELECT o.seller_id, o.product_id, o.quantity, o.total_price FROM orders o "
+      + "WHERE (o.timestamp >= :#{#range.start} AND o.timestamp < :#{#range.rawHeadEnd}) "
+      + "OR (o.timestamp >= :#{#range.rawTailStart} AND o.timestamp <= :#{#range.end})"
+      + ") s JOIN product p ON p.id = s.product_id "
+      + "WHERE (CAST(:sellerId AS VARCHAR) IS NULL OR s.seller_id = :sellerId) "
+      + "AND (CAST(:productId AS VARCHAR) IS NULL OR s.product_id = :productId) "
+      + "AND (CAST(:category AS VARCHAR) IS NULL OR p.category = :category) "
+      + "GROUP BY s.product_id "
+      + "ORDER BY SUM(s.quantity) DESC, s.product_id",
+      nativeQuery = true)
+  List<ProductSalesAggregate> sumSalesByProduct(@Param("sellerId") String sellerId,
+      @Param("productId") String productId, @Param("category") String category,
+      @Param("range") RollupRange range, Pageable pageable);
+
+  /**
+   * Quantity and revenue per product and day with filters over a split range, latest day first
+   */
+  @Query(value = "SELECT s.product_id AS \"productId\", s.sale_date AS \"day\", "
+      + "SUM(s.quantity) AS \"quantity\", SUM(s.revenue) AS \"revenue\" "
+      + "FROM ("
+      + "SELECT d.seller_id, d.product_id, d.sale_date, d.quantity, d.revenue "
+      + "FROM daily_sales d "
+      + "WHERE d.sale_date >= :#{#range.firstDay} AND d.sale_date < :#{#range.dayEnd} "
+      + "UNION ALL "
+      + "SELECT o.seller_id, o.product_id, o.order_date, o.quantity, o.total_price "
+      + "FROM orders o "
+      + "WHERE (o.timestamp >= :#{#range.start} AND o.timestamp < :#{#range.rawHeadEnd}) "
+      + "OR (o.timestamp >= :#{#range.rawTailStart} AND o.timestamp <= :#{#range.end})"
+      + ") s JOIN product p ON p.id = s.product_id "
+      + "WHERE (CAST(:sellerId AS VARCHAR) IS NULL OR s.seller_id = :sellerId) "
+      + "AND (CAST(:productId AS VARCHAR) IS NULL OR s.product_id = :productId) "
+      + "AND (CAST(:category AS VARCHAR) IS NULL OR p.category = :category) "
+      + "GROUP BY s.product_id, s.sale_date "
+      + "ORDER BY s.sale_date DESC, s.product_id",
+      nativeQuery = true)
+  List<ProductSalesAggregate> sumDailySalesByProduct(@Param("sellerId") String sellerId,
+      @Param("productId") String productId, @Param("category") String category,
+      @Param("range") RollupRange range);
+
+  /**
+   * Quantity and revenue per product and day over a split range, restricted to the given
+   * products
+   */
+  @Query(value = "SELECT s.product_id AS \"productId\", s.sale_date AS \"day\", "
+      + "SUM(s.quantity) AS \"quantity\", SUM(s.revenue) AS \"revenue\" "
+      + "FROM ("
+      + "SELECT d.seller_id, d.product_id, d.sale_date, d.quantity, d.revenue "
+      + "FROM daily_sales d "
+      + "WHERE d.sale_date >= :#{#range.firstDay} AND d.sale_date < :#{#range.dayEnd} "
+      + "UNION ALL "
+      + "SELECT o.seller_id, o.product_id, o.order_date, o.quantity, o.total_price "
+      + "FROM orders o "
+      + "WHERE (o.timestamp >= :#{#range.start} AND o.timestamp < :#{#range.rawHeadEnd}) "
+      + "OR (o.timestamp >= :#{#range.rawTailStart} AND o.timestamp <= :#{#range.end})"
+      + ") s "
+      + "WHERE (CAST(:sellerId AS VARCHAR) IS NULL OR s.seller_id = :sellerId) "
+      + "AND s.product_id IN (:productIds) "
+      + "GROUP BY s.product_id, s.sale_date "
+      + "ORDER BY s.sale_date DESC, s.product_id",
+      nativeQuery = true)
+  List<ProductSalesAggregate> sumDailySalesOfProducts(@Param("sellerId") String sellerId,
+      @Param("productIds") Collection<String> productIds, @Param("range") RollupRange range);
+}
@@ -0,0 +1,46 @@
+package com.example.productapi.repository;
+
+import com.example.productapi.model.ForecastJob;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ForecastJobRepository extends JpaRepository<ForecastJob, String> {
+
+  /**
+   * Oldest queued job, row-locked for the calling transaction. Jobs locked by other workers are
+   * skipped, so instances sharing the table never claim the same job.
+   */
+  @Query(value = "SELECT * FROM forecast_job WHERE status = 'QUEUED' "
+      + "ORDER BY created_at LIMIT 1 FOR UPDATE SKIP LOCKED",
+      nativeQuery = true)
+  Optional<ForecastJob> lockNextQueued();
+
+  /**
+   * Queue running jobs again whose worker stopped sending heartbeats
+   *
+   * @return Number of jobs queued again
+   */
+  @Modifying
+  @Query("UPDATE ForecastJob j SET j.status = com.example.productapi.model.ForecastJob$Status.QUEUED "
+      + "WHERE j.status = com.example.productapi.model.ForecastJob$Status.RUNNING "
+      + "AND j.heartbeatAt < :before")
+  int requeueStale(@Param("before") LocalDateTime before);
+
+  /**
+   * Refresh the heartbeat of a job still running in the given attempt
+   *
+   * @return 1 if the heartbeat was refreshed, 0 if the job was cancelled, finished or requeued
+   */
+  @Modifying
+  @Query("UPDATE ForecastJob j SET j.heartbeatAt = :now WHERE j.id = :id "
+      + "AND j.status = com.example.productapi.model.ForecastJob$Status.RUNNING "
+      + "AND j.attempts = :attempt")
+  int touchHeartbeat(@Param("id") String id, @Param("attempt") int attempt,
+      @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,40 @@
+package com.example.productapi.repository;
+
+import com.example.productapi.model.ForecastJobResult;
+import com.example.productapi.model.ForecastJobResultId;
+import java.util.List;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ForecastJobResultRepository extends
+    JpaRepository<ForecastJobResult, ForecastJobResultId> {
+
+  /**
+   * Results in product ID order, for the first page of partial results
+   */
+  List<ForecastJobResult> findByJobIdOrderByProductId(String jobId, Pageable pageable);
+
+  /**
+   * Results after a product ID in product ID order, for paging through partial results
+   */
+  List<ForecastJobResult> findByJobIdAndProductIdGreaterThanOrderByProductId(String jobId,
+      String productId, Pageable pageable);
+
+  /**
+   * Results ranked by total quantity, ties in product ID order
+   */
+  List<ForecastJobResult> findByJobIdOrderByTotalQuantityDescProductIdAsc(String jobId,
+      Pageable pageable);
+
+  long countByJobId(String jobId);
+
+  /**
+   * Product IDs already forecast, skipped when an interrupted job resumes
+   */
+  @Query("SELECT r.productId FROM ForecastJobResult r WHERE r.jobId = :jobId")
+  List<String> findProductIdsByJobId(@Param("jobId") String jobId);
+}
@@ -0,0 +1,64 @@
+package com.example.productapi.repository;
+
+import com.example.productapi.model.MonthlySales;
+import com.example.productapi.model.MonthlySalesId;
+import java.time.LocalDate;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface MonthlySalesRepository extends JpaRepository<MonthlySales, MonthlySalesId> {
+
+  /**
+   * Add units, revenue and orders to a month, creating the row if needed
+   *
+   * @param month First day of the month
+   */
+  @Modifying
+  @Query(value = "INSERT INTO monthly_sales (seller_id, product_id, sale_month, quantity, revenue, order_count) "
+      + "VALUES (:sellerId, :productId, :month, :quantity, :revenue, :orders) "
+      + "ON CONFLICT (seller_id, product_id, sale_month) "
+      + "DO UPDATE SET quantity = monthly_sales.quantity + EXCLUDED.quantity, "
+      + "revenue = monthly_sales.revenue + EXCLUDED.revenue, "
+      + "order_count = monthly_sales.order_count + EXCLUDED.order_count",
+      nativeQuery = true)
+  void addSales(@Param("sellerId") String sellerId, @Param("productId") String productId,
+      @Param("month") LocalDate month, @Param("quantity") int quantity,
+      @Param("revenue") double revenue, @Param("orders") int orders);
+
+  /**
+   * Orders counted in the table
+   */
+  @Query("SELECT COALESCE(SUM(m.orderCount), 0) FROM MonthlySales m")
+  long sumOrderCount();
+
+  /**
+   * Delete the months starting before a date
+   *
+   * @return Number of rows deleted
+   */
+  @Modifying
+  @Query("DELETE FROM MonthlySales m WHERE m.month < :date")
+  int deleteBefore(@Param("date") LocalDate date);
+
+  /**
+   * Rebuild every month from the orders table
+   *
+   * @return Number of rows written
+   */
+  @Modifying
+  @Query(value = "INSERT INTO monthly_sales (seller_id, product_id, sale_month, quantity, revenue, order_count) "
+      + "SELECT o.seller_id, o.product_id, CAST(DATE_TRUNC('month', o.timestamp) AS DATE), "
+      + "SUM(o.quantity), COALESCE(SUM(o.total_price), 0), COUNT(*) "
+      + "FROM orders o "
+      + "WHERE o.seller_id IS NOT NULL AND o.product_id IS NOT NULL AND o.quantity IS NOT NULL "
+      + "AND o.timestamp IS NOT NULL "
+      + "GROUP BY o.seller_id, o.product_id, CAST(DATE_TRUNC('month', o.timestamp) AS DATE) "
+      + "ON CONFLICT (seller_id, product_id, sale_month) DO UPDATE SET "
+      + "quantity = EXCLUDED.quantity, revenue = EXCLUDED.revenue, order_count = EXCLUDED.order_count",
+      nativeQuery = true)
+  int backfillFromOrders();
+}
@@ -0,0 +1,22 @@
+package com.example.productapi.repository;
+
+import com.example.productapi.model.OrderArchiveSegment;
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface OrderArchiveSegmentRepository extends JpaRepository<OrderArchiveSegment, Long> {
+
+  /**
+   * Every segment, in seller, month and archival order
+   */
+  List<OrderArchiveSegment> findAllByOrderBySellerIdAscMonthAscIdAsc();
+
+  /**
+   * Orders held in the archive
+   */
+  @Query("SELECT COALESCE(SUM(s.rowCount), 0) FROM OrderArchiveSegment s")
+  long sumRowCount();
+}
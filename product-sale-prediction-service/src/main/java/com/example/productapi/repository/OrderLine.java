@@ -0,0 +1,19 @@
+package com.example.productapi.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * The columns of an order needed for sales totals
+ */
+public interface OrderLine {
+
+  String getSellerId();
+
+  String getProductId();
+
+  LocalDateTime getTimestamp();
+
+  Integer getQuantity();
+
+  Double getTotalPrice();
+}
@@ -1,14 +1,21 @@
 package com.example.productapi.repository;
 
 import com.example.productapi.model.Order;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order, String> {
@@ -101,21 +108,120 @@ public interface OrderRepository extends JpaRepository<Order, String> {
             LocalDateTime endTime);
 
     /**
-     * Find top selling products with filters
+     * First page of orders with filters for keyset pagination, newest first with the order ID
+     * breaking ties. Returns a list so no count query is issued.
      */
-    @Query("SELECT o.productId, SUM(o.quantity) as totalQuantity, SUM(o.quantity * o.unitPrice) as totalRevenue " +
-           "FROM Order o JOIN Product p ON o.productId = p.id " +
+    @Query("SELECT o FROM Order o JOIN Product p ON o.productId = p.id " +
            "WHERE (:sellerId IS NULL OR o.sellerId = :sellerId) " +
+           "AND (:productId IS NULL OR o.productId = :productId) " +
            "AND (:category IS NULL OR p.category = :category) " +
            "AND o.timestamp BETWEEN :startTime AND :endTime " +
-           "GROUP BY o.productId " +
-           "ORDER BY totalQuantity DESC")
-    List<Object[]> findTopProductsWithFilters(
-            String sellerId,
-            String category,
-            LocalDateTime startTime,
-            LocalDateTime endTime,
-            Pageable pageable);
+           "ORDER BY o.timestamp DESC, o.orderId DESC")
+    List<Order> findOrdersWithFiltersFirst(@Param("sellerId") String sellerId,
+                                           @Param("productId") String productId,
+                                           @Param("category") String category,
+                                           @Param("startTime") LocalDateTime startTime,
+                                           @Param("endTime") LocalDateTime endTime,
+                                           Pageable pageable);
+
+    /**
+     * Orders with filters that sort after (afterTime, afterOrderId) in the order of
+     * {@link #findOrdersWithFiltersFirst}. The bare timestamp bound lets the index seek to the
+     * position instead of skipping the earlier pages.
+     */
+    @Query("SELECT o FROM Order o JOIN Product p ON o.productId = p.id " +
+           "WHERE (:sellerId IS NULL OR o.sellerId = :sellerId) " +
+           "AND (:productId IS NULL OR o.productId = :productId) " +
+           "AND (:category IS NULL OR p.category = :category) " +
+           "AND o.timestamp BETWEEN :startTime AND :endTime " +
+           "AND o.timestamp <= :afterTime " +
+           "AND (o.timestamp < :afterTime OR o.orderId < :afterOrderId) " +
+           "ORDER BY o.timestamp DESC, o.orderId DESC")
+    List<Order> findOrdersWithFiltersAfter(@Param("sellerId") String sellerId,
+                                           @Param("productId") String productId,
+                                           @Param("category") String category,
+                                           @Param("startTime") LocalDateTime startTime,
+                                           @Param("endTime") LocalDateTime endTime,
+                                           @Param("afterTime") LocalDateTime afterTime,
+                                           @Param("afterOrderId") String afterOrderId,
+                                           Pageable pageable);
+
+    /**
+     * Those of the given order IDs that are already stored
+     */
+    @Query("SELECT o.orderId FROM Order o WHERE o.orderId IN :orderIds")
+    List<String> findExistingOrderIds(@Param("orderIds") Collection<String> orderIds);
+
+    /**
+     * Count the orders the sales rollups are built from
+     */
+    @Query("SELECT COUNT(o) FROM Order o WHERE o.sellerId IS NOT NULL AND o.productId IS NOT NULL " +
+           "AND o.quantity IS NOT NULL AND o.timestamp IS NOT NULL")
+    long countRollupOrders();
+
+    /**
+     * Stream the orders the sales rollups are built from, ordered by seller and time
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "10000"))
+    @Query("SELECT o.sellerId AS sellerId, o.productId AS productId, o.timestamp AS timestamp, " +
+           "o.quantity AS quantity, o.totalPrice AS totalPrice FROM Order o " +
+           "WHERE o.sellerId IS NOT NULL AND o.productId IS NOT NULL " +
+           "AND o.quantity IS NOT NULL AND o.timestamp IS NOT NULL " +
+           "ORDER BY o.sellerId, o.timestamp")
+    Stream<OrderLine> streamRollupOrders();
+
+    /**
+     * Sellers and months with rollup orders before the cutoff, oldest first
+     */
+    @Query(value = "SELECT o.seller_id AS \"sellerId\", " +
+           "CAST(DATE_TRUNC('month', o.timestamp) AS DATE) AS \"month\" FROM orders o " +
+           "WHERE o.timestamp < :cutoff AND o.seller_id IS NOT NULL AND o.product_id IS NOT NULL " +
+           "AND o.quantity IS NOT NULL " +
+           "GROUP BY o.seller_id, CAST(DATE_TRUNC('month', o.timestamp) AS DATE) " +
+           "ORDER BY 2, 1",
+           nativeQuery = true)
+    List<ArchivableMonth> findArchivableMonths(@Param("cutoff") LocalDateTime cutoff);
+
+    /**
+     * Rollup orders of a seller within [startTime, endTime), in time order
+     */
+    @Query("SELECT o FROM Order o WHERE o.sellerId = :sellerId " +
+           "AND o.timestamp >= :startTime AND o.timestamp < :endTime " +
+           "AND o.productId IS NOT NULL AND o.quantity IS NOT NULL " +
+           "ORDER BY o.timestamp, o.orderId")
+    List<Order> findRollupOrdersOfSeller(@Param("sellerId") String sellerId,
+                                         @Param("startTime") LocalDateTime startTime,
+                                         @Param("endTime") LocalDateTime endTime);
+
+    /**
+     * Delete the rollup orders of a seller within [startTime, endTime)
+     *
+     * @return Number of orders deleted
+     */
+    @Modifying
+    @Query("DELETE FROM Order o WHERE o.sellerId = :sellerId " +
+           "AND o.timestamp >= :startTime AND o.timestamp < :endTime " +
+           "AND o.productId IS NOT NULL AND o.quantity IS NOT NULL")
+    int deleteRollupOrdersOfSeller(@Param("sellerId") String sellerId,
+                                   @Param("startTime") LocalDateTime startTime,
+                                   @Param("endTime") LocalDateTime endTime);
+
+    /**
+     * Create the BRIN index on timestamp unless it exists. Orders arrive roughly in time order, so
+     * per-block min/max ranges let range scans without a seller or product skip most of the table
+     * at a fraction of a B-tree's size.
+     */
+    @Modifying
+    @Query(value = "CREATE INDEX IF NOT EXISTS idx_orders_timestamp_brin ON orders USING BRIN (\"timestamp\")",
+           nativeQuery = true)
+    void createTimestampBrinIndex();
+
+    /**
+     * Block inserts into orders until the end of the transaction
+     */
+    @Modifying
+    @Query(value = "LOCK TABLE orders IN SHARE MODE", nativeQuery = true)
+    void lockAgainstWrites();
 
     /**
      * Find all orders by seller ID and product ID (without time limit)
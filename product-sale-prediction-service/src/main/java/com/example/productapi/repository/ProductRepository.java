@@ -17,4 +17,10 @@ public interface ProductRepository extends JpaRepository<Product, String> {
     
     @Query("SELECT p FROM Product p JOIN Inventory i ON p.id = i.productId WHERE i.sellerId = :sellerId AND p.category = :category")
     List<Product> findBySellerIdAndCategory(String sellerId, String category);
+    
+    /**
+     * Products of a seller's category in ID order, the stable order forecast jobs step through
+     */
+    @Query("SELECT p FROM Product p JOIN Inventory i ON p.id = i.productId WHERE i.sellerId = :sellerId AND p.category = :category ORDER BY p.id")
+    List<Product> findBySellerIdAndCategoryOrderById(String sellerId, String category);
 } 
\ No newline at end of file
@@ -0,0 +1,20 @@
+package com.example.productapi.repository;
+
+import java.time.LocalDate;
+
+/**
+ * Quantity and revenue of one product, per day or over a whole range
+ */
+public interface ProductSalesAggregate {
+
+  String getProductId();
+
+  /**
+   * Day of the sales, null for totals over the range
+   */
+  LocalDate getDay();
+
+  Long getQuantity();
+
+  Double getRevenue();
+}
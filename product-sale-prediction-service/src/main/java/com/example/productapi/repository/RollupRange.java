@@ -0,0 +1,67 @@
+package com.example.productapi.repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import lombok.Getter;
+
+/**
+ * A time range split between the sales rollups and the orders table: whole months are read from
+ * monthly_sales, the remaining whole days from daily_sales and the partial days at either end
+ * from orders.
+ *
+ * <p>Orders are read from [start, rawHeadEnd) and [rawTailStart, end], days from
+ * [firstDay, dayEnd) and months from [monthStart, monthEnd), which lies inside the days. Totals skip
+ * the days covered by months, per-day breakdowns ignore the months.
+ */
+@Getter
+public final class RollupRange {
+
+  private final LocalDateTime start;
+  private final LocalDateTime end;
+  private final LocalDateTime rawHeadEnd;
+  private final LocalDateTime rawTailStart;
+  private final LocalDate firstDay;
+  private final LocalDate dayEnd;
+  private final LocalDate monthStart;
+  private final LocalDate monthEnd;
+
+  private RollupRange(LocalDateTime start, LocalDateTime end, LocalDate firstDay,
+      LocalDate dayEnd, LocalDate monthStart, LocalDate monthEnd) {
+    this.start = start;
+    this.end = end;
+    this.rawHeadEnd = firstDay.isBefore(dayEnd) ? firstDay.atStartOfDay() : start;
+    this.rawTailStart = firstDay.isBefore(dayEnd) ? dayEnd.atStartOfDay() : start;
+    this.firstDay = firstDay;
+    this.dayEnd = dayEnd;
+    this.monthStart = monthStart;
+    this.monthEnd = monthEnd;
+  }
+
+  /**
+   * Use the coarsest rollup for every part of [start, end]
+   */
+  public static RollupRange of(LocalDateTime start, LocalDateTime end) {
+    LocalDate firstDay = start.toLocalTime().equals(LocalTime.MIDNIGHT)
+        ? start.toLocalDate() : start.toLocalDate().plusDays(1);
+    LocalDate dayEnd = end.plusNanos(1).toLocalDate();
+    if (!firstDay.isBefore(dayEnd)) {
+      return raw(start, end);
+    }
+    LocalDate monthStart = firstDay.getDayOfMonth() == 1
+        ? firstDay : firstDay.withDayOfMonth(1).plusMonths(1);
+    LocalDate monthEnd = dayEnd.withDayOfMonth(1);
+    if (!monthStart.isBefore(monthEnd)) {
+      monthStart = monthEnd = dayEnd;
+    }
+    return new RollupRange(start, end, firstDay, dayEnd, monthStart, monthEnd);
+  }
+
+  /**
+   * Read all of [start, end] from the orders table
+   */
+  public static RollupRange raw(LocalDateTime start, LocalDateTime end) {
+    LocalDate day = start.toLocalDate();
+    return new RollupRange(start, end, day, day, day, day);
+  }
+}
@@ -0,0 +1,65 @@
+package com.example.productapi.service;
+
+import com.example.productapi.repository.ProductSalesAggregate;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import org.springframework.data.domain.Pageable;
+
+/**
+ * Materialized per-day and per-month sales totals, used for lag features and sales analytics
+ */
+public interface DailySalesService {
+
+  /**
+   * Units sold per day for one seller/product
+   *
+   * @param startDate First day (inclusive)
+   * @param endDate   Last day (inclusive)
+   * @return Units sold by date, days without sales are absent
+   */
+  Map<LocalDate, Integer> getDailyQuantities(String sellerId, String productId,
+      LocalDate startDate, LocalDate endDate);
+
+  /**
+   * Units sold per day for several products of a seller, in one range read
+   *
+   * @return Units sold by product ID and date, days without sales are absent
+   */
+  Map<String, Map<LocalDate, Integer>> getDailyQuantities(String sellerId,
+      Collection<String> productIds, LocalDate startDate, LocalDate endDate);
+
+  /**
+   * Total quantity and revenue per product of the orders matching the filters, best sellers
+   * first. Whole months and days of the range are read from the rollups.
+   *
+   * @param sellerId  Optional seller ID to filter by
+   * @param productId Optional product ID to filter by
+   * @param category  Optional category to filter by
+   * @param startTime Start time (inclusive)
+   * @param endTime   End time (inclusive)
+   * @param pageable  Page of size N for the top N products, or {@link Pageable#unpaged()}
+   */
+  List<ProductSalesAggregate> sumSalesByProduct(String sellerId, String productId,
+      String category, LocalDateTime startTime, LocalDateTime endTime, Pageable pageable);
+
+  /**
+   * Quantity and revenue per product and day of the orders matching the filters, latest day
+   * first. Whole days of the range are read from the daily rollup.
+   *
+   * @param productIds Only these products when not null, the other filters except the seller
+   *                   are then ignored
+   */
+  List<ProductSalesAggregate> sumDailySalesByProduct(String sellerId, String productId,
+      String category, LocalDateTime startTime, LocalDateTime endTime,
+      Collection<String> productIds);
+
+  /**
+   * Rebuild the daily and monthly sales tables from the orders table
+   *
+   * @return Number of rows written
+   */
+  int backfill();
+}
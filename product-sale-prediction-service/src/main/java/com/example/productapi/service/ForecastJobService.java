@@ -0,0 +1,54 @@
+package com.example.productapi.service;
+
+import com.example.productapi.model.ForecastJob;
+import com.example.productapi.model.Predications;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Forecasts run as background jobs, for horizons and catalogs too large to compute within one
+ * HTTP request. Jobs are queued in the database and picked up by a bounded worker pool; results
+ * are stored per product as they complete.
+ */
+public interface ForecastJobService {
+
+  /**
+   * Queue a forecast of one product (productId set) or of every product of a seller's category
+   *
+   * @param spec Job spec, id and state fields are ignored
+   * @return The queued job
+   * @throws IllegalArgumentException if the spec is incomplete
+   */
+  ForecastJob submit(ForecastJob spec);
+
+  Optional<ForecastJob> getJob(String jobId);
+
+  /**
+   * Results stored so far, in product ID order, after the given product ID
+   *
+   * @param afterProductId Last product ID already read, null or empty to start from the beginning
+   * @param limit          Maximum number of products returned
+   */
+  ResultPage getResults(String jobId, String afterProductId, int limit);
+
+  /**
+   * Top N products of a finished job by total quantity, highest first
+   */
+  List<Predications> getTopResults(String jobId, int topN);
+
+  /**
+   * Cancel a queued or running job, a running job stops after its current step
+   *
+   * @return The job, or empty if it does not exist
+   */
+  Optional<ForecastJob> cancel(String jobId);
+
+  /**
+   * A page of job results
+   *
+   * @param next Product ID to pass as afterProductId for the following page
+   */
+  record ResultPage(List<Predications> results, String next) {
+
+  }
+}
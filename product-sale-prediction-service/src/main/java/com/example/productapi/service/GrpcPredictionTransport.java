@@ -0,0 +1,210 @@
+package com.example.productapi.service;
+
+import com.example.productapi.grpc.FeatureBatch;
+import com.example.productapi.grpc.PredictionBatch;
+import com.example.productapi.grpc.SalesPredictionGrpc;
+import com.example.productapi.ml.FeatureMatrix;
+import com.example.productapi.ml.FeatureSchema;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import io.grpc.stub.StreamObserver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * gRPC transport to the Python prediction service (see src/main/proto/sales_prediction.proto).
+ *
+ * <p>One channel is opened for the lifetime of the client and every call is multiplexed over its
+ * HTTP/2 connection. Feature rows are sent column by column with dictionary encoded ids.
+ */
+class GrpcPredictionTransport {
+
+    private static final Logger logger = LoggerFactory.getLogger(GrpcPredictionTransport.class);
+
+    private final ManagedChannel channel;
+    private final SalesPredictionGrpc.SalesPredictionStub stub;
+    private final Duration deadline;
+
+    GrpcPredictionTransport(String target, Duration deadline, int maxMessageSize) {
+        this(ManagedChannelBuilder.forTarget(target)
+                .usePlaintext()
+                .keepAliveTime(30, TimeUnit.SECONDS)
+                .maxInboundMessageSize(maxMessageSize)
+                .build(), deadline);
+        logger.info("gRPC prediction channel opened to {}", target);
+    }
+
+    /**
+     * Use an already built channel, which is shut down with the transport
+     */
+    GrpcPredictionTransport(ManagedChannel channel, Duration deadline) {
+        this.channel = channel;
+        this.stub = SalesPredictionGrpc.newStub(channel);
+        this.deadline = deadline;
+    }
+
+    /**
+     * Score one batch with the unary PredictBatch call
+     */
+    Mono<double[]> predictBatch(FeatureMatrix features) {
+        FeatureBatch request = toBatch(features, 0);
+        return Mono.create(sink -> stub
+                .withDeadlineAfter(deadline.toMillis(), TimeUnit.MILLISECONDS)
+                .predictBatch(request, new StreamObserver<>() {
+                    @Override
+                    public void onNext(PredictionBatch response) {
+                        sink.success(toArray(response));
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                        sink.error(t);
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                        sink.success();
+                    }
+                }));
+    }
+
+    /**
+     * Send batches over one PredictStream call as they are emitted and publish the scores as they
+     * come back, one array per batch in the same order. Cancelling the result, or a failure, cancels the call.
+     */
+    Flux<double[]> predictStream(Flux<FeatureMatrix> batches) {
+        return Flux.create(sink -> {
+            // Batch ids number the batches of this stream from 1
+            AtomicLong sent = new AtomicLong();
+            Disposable.Swap upstream = Disposables.swap();
+            // Guards the request observer, a cancelled call must not be sent to any more
+            Object lock = new Object();
+            boolean[] closed = new boolean[1];
+
+            StreamObserver<FeatureBatch> requests = stub.predictStream(
+                    new ClientResponseObserver<FeatureBatch, PredictionBatch>() {
+                        long expected = 1;
+
+                        @Override
+                        public void beforeStart(ClientCallStreamObserver<FeatureBatch> call) {
+                            sink.onDispose(() -> {
+                                synchronized (lock) {
+                                    closed[0] = true;
+                                }
+                                upstream.dispose();
+                                call.cancel("Prediction stream cancelled by the caller", null);
+                            });
+                        }
+
+                        @Override
+                        public void onNext(PredictionBatch response) {
+                            // Responses arrive in request order, ids are only checked
+                            if (response.getBatchId() != expected++) {
+                                sink.error(new IllegalStateException("Prediction stream out of order, got batch "
+                                        + response.getBatchId() + " expected " + (expected - 1)));
+                                return;
+                            }
+                            sink.next(toArray(response));
+                        }
+
+                        @Override
+                        public void onError(Throwable t) {
+                            sink.error(t);
+                        }
+
+                        @Override
+                        public void onCompleted() {
+                            sink.complete();
+                        }
+                    });
+
+            upstream.update(batches
+                    .map(features -> toBatch(features, sent.incrementAndGet()))
+                    .subscribe(batch -> {
+                        synchronized (lock) {
+                            if (!closed[0]) {
+                                requests.onNext(batch);
+                            }
+                        }
+                    }, error -> {
+                        synchronized (lock) {
+                            if (!closed[0]) {
+                                requests.onError(error);
+                            }
+                        }
+                    }, () -> {
+                        synchronized (lock) {
+                            if (!closed[0]) {
+                                requests.onCompleted();
+                            }
+                        }
+                    }));
+        });
+    }
+
+    void shutdown() {
+        channel.shutdown();
+        try {
+            if (!channel.awaitTermination(5, TimeUnit.SECONDS)) {
+                channel.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            channel.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static FeatureBatch toBatch(FeatureMatrix features, long batchId) {
+        int rows = features.getRowCount();
+        FeatureBatch.Builder batch = FeatureBatch.newBuilder()
+                .setBatchId(batchId)
+                .setRows(rows);
+
+        Map<String, Integer> products = new HashMap<>();
+        Map<String, Integer> sellers = new HashMap<>();
+        for (int row = 0; row < rows; row++) {
+            batch.addProductCodes(products.computeIfAbsent(features.getProductId(row), id -> {
+                batch.addProductIds(id);
+                return batch.getProductIdsCount() - 1;
+            }));
+            batch.addSellerCodes(sellers.computeIfAbsent(features.getSellerId(row), id -> {
+                batch.addSellerIds(id);
+                return batch.getSellerIdsCount() - 1;
+            }));
+        }
+
+        for (int row = 0; row < rows; row++) {
+            batch.addSalePrice((float) features.get(row, FeatureSchema.SALE_PRICE));
+            batch.addOriginalPrice((float) features.get(row, FeatureSchema.ORIGINAL_PRICE));
+            batch.addIsHoliday((float) features.get(row, FeatureSchema.IS_HOLIDAY));
+            batch.addIsWeekend((float) features.get(row, FeatureSchema.IS_WEEKEND));
+            batch.addDayOfWeek((float) features.get(row, FeatureSchema.DAY_OF_WEEK));
+            batch.addDayOfMonth((float) features.get(row, FeatureSchema.DAY_OF_MONTH));
+            batch.addMonth((float) features.get(row, FeatureSchema.MONTH));
+            batch.addLag1((float) features.get(row, FeatureSchema.LAG_1));
+            batch.addLag7((float) features.get(row, FeatureSchema.LAG_7));
+            batch.addLag30((float) features.get(row, FeatureSchema.LAG_30));
+        }
+        return batch.build();
+    }
+
+    private static double[] toArray(PredictionBatch response) {
+        double[] predictions = new double[response.getQuantitiesCount()];
+        for (int i = 0; i < predictions.length; i++) {
+            predictions[i] = response.getQuantities(i);
+        }
+        return predictions;
+    }
+}
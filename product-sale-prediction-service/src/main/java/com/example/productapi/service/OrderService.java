@@ -1,24 +1,55 @@
 package com.example.productapi.service;
 
 import com.example.productapi.dto.GetOrdersResponse;
+import com.example.productapi.dto.OrderCursorPage;
 import com.example.productapi.dto.ProductSalesSummary;
 import com.example.productapi.model.Order;
 import org.springframework.data.domain.Page;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * 订单服务接口
  */
 public interface OrderService {
 
+  /**
+   * Export formats of {@link #exportOrders}
+   */
+  String EXPORT_CSV = "csv";
+  String EXPORT_NDJSON = "ndjson";
+
   /**
    * Get orders by seller ID with pagination
    */
   Page<Order> getOrdersBySeller(String sellerId, int page, int size);
 
+  /**
+   * Save new orders and publish an {@link com.example.productapi.event.OrdersRecordedEvent}.
+   * Orders are only ever inserted: derived data counts every recorded order once, so an order ID
+   * that is already stored, or repeated within the batch, rejects the whole batch.
+   *
+   * @param orders Orders to save
+   * @return Saved orders
+   * @throws org.springframework.dao.DuplicateKeyException If an order ID is already stored or
+   *                                                       repeated
+   */
+  List<Order> recordOrders(List<Order> orders);
+
+  /**
+   * Those of the given order IDs that are already stored
+   *
+   * @param orderIds Order IDs to look up
+   * @return Stored order IDs
+   */
+  Set<String> findRecordedOrderIds(Collection<String> orderIds);
+
   /**
    * Get orders with filters
    *
@@ -40,6 +71,56 @@ public interface OrderService {
       int page,
       int size);
 
+  /**
+   * Get orders with filters by keyset pagination. Every page is read by seeking to the position
+   * in the cursor, so deep pages cost the same as the first and no count query is issued.
+   *
+   * @param sellerId     Optional seller ID to filter by
+   * @param productId    Optional product ID to filter by
+   * @param category     Optional category to filter by
+   * @param startTime    Start time for filtering orders
+   * @param endTime      End time for filtering orders
+   * @param cursor       Next-page token of the previous page, null or empty for the first page
+   * @param size         Page size
+   * @param includeTotal Whether to add the planner's estimate of the number of matching orders
+   * @return Page of filtered orders with the token of the next page
+   * @throws IllegalArgumentException If the cursor is not a valid token
+   */
+  OrderCursorPage getOrdersAfterCursor(
+      String sellerId,
+      String productId,
+      String category,
+      LocalDateTime startTime,
+      LocalDateTime endTime,
+      String cursor,
+      int size,
+      boolean includeTotal);
+
+  /**
+   * Write every order matching the filters, oldest first, as CSV with a header row or as one JSON
+   * object per line. Orders are read through a database cursor and written as they arrive, so
+   * memory use does not grow with the range. Archived orders are included, read one month at a
+   * time from the archive segments.
+   *
+   * @param sellerId  Optional seller ID to filter by
+   * @param productId Optional product ID to filter by
+   * @param category  Optional category to filter by
+   * @param startTime Start time for filtering orders
+   * @param endTime   End time for filtering orders
+   * @param format    {@link #EXPORT_CSV} or {@link #EXPORT_NDJSON}
+   * @param writer    Destination, flushed after every fetched batch and left open
+   * @return Number of orders written
+   * @throws IOException If writing fails, e.g. because the client went away
+   */
+  long exportOrders(
+      String sellerId,
+      String productId,
+      String category,
+      LocalDateTime startTime,
+      LocalDateTime endTime,
+      String format,
+      Writer writer) throws IOException;
+
   /**
    * Generate aggregation data for orders
    *
@@ -56,6 +137,26 @@ public interface OrderService {
    */
   Map<String, List<ProductSalesSummary>> generateTypedAggregationData(List<Order> orders);
 
+  /**
+   * Same summaries as {@link #generateTypedAggregationData(List)} over every order matching the
+   * filters, computed by grouped queries instead of loading the orders
+   *
+   * @param sellerId  Optional seller ID to filter by
+   * @param productId Optional product ID to filter by
+   * @param category  Optional category to filter by
+   * @param startTime Start time for filtering orders
+   * @param endTime   End time for filtering orders
+   * @param topN      Keep only the N best selling products, all products when null or not positive
+   * @return Map containing typed ProductSalesSummary lists
+   */
+  Map<String, List<ProductSalesSummary>> aggregateSales(
+      String sellerId,
+      String productId,
+      String category,
+      LocalDateTime startTime,
+      LocalDateTime endTime,
+      Integer topN);
+
   /**
    * Build GetOrdersResponse with pagination and aggregation data
    *
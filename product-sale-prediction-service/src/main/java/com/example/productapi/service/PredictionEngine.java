@@ -0,0 +1,81 @@
+package com.example.productapi.service;
+
+import com.example.productapi.ml.FeatureMatrix;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Backend that turns prepared feature rows into predicted daily sales quantities
+ */
+public interface PredictionEngine {
+
+  /**
+   * Predict the sales quantities of every row of a feature matrix in one call
+   *
+   * @param features Feature rows (product_id, seller_id, prices, calendar and lag features)
+   * @return Raw predicted quantities in row order, or null on failure
+   */
+  double[] predictBatch(FeatureMatrix features);
+
+  /**
+   * Non-blocking variant of {@link #predictBatch(FeatureMatrix)}. The default runs the
+   * synchronous call on the subscribing thread, which suits in-process engines. Remote engines
+   * override it so no thread waits on the network.
+   *
+   * @param features Feature rows
+   * @return Raw predicted quantities in row order, or an empty Mono on failure
+   */
+  default Mono<double[]> predictBatchAsync(FeatureMatrix features) {
+    return Mono.fromCallable(() -> predictBatch(features));
+  }
+
+  /**
+   * Score a sequence of feature matrices as they are produced. Emits at most one array per input
+   * matrix, in input order; an empty array, or the stream ending early, stands for matrices that
+   * could not be scored. The default issues up to maxConcurrency {@link #predictBatchAsync(FeatureMatrix)} calls at once,
+   * engines with a streaming transport override it.
+   */
+  default Flux<double[]> predictBatchStream(Flux<FeatureMatrix> batches, int maxConcurrency) {
+    return batches.flatMapSequential(
+        features -> predictBatchAsync(features).defaultIfEmpty(new double[0]), maxConcurrency);
+  }
+
+  /**
+   * Whether {@link #predictBatchStream(Flux, int)} sends the batches over one streaming call
+   * rather than one call per batch
+   */
+  default boolean isStreaming() {
+    return false;
+  }
+
+  /**
+   * Upper bound of the raw prediction over each group of {@code groupRows} consecutive rows, used
+   * to skip rows that cannot matter in a top-N search. A bound is never below the
+   * {@link #predictBatch(FeatureMatrix)} score of a row in its group.
+   *
+   * @return One bound per group, or null when the engine cannot bound its scores
+   */
+  default double[] scoreUpperBounds(FeatureMatrix features, int groupRows) {
+    return null;
+  }
+
+  /**
+   * Check if the engine is ready to serve predictions
+   *
+   * @return true if predictions can be made
+   */
+  boolean isServiceAvailable();
+
+  /**
+   * Get the engine name for logging/debugging
+   */
+  String getEngineName();
+
+  /**
+   * Identifies the model behind the predictions, stored with materialized forecasts so they are
+   * not served once the model changes. Defaults to the engine name.
+   */
+  default String getModelVersion() {
+    return getEngineName();
+  }
+}
@@ -0,0 +1,386 @@
+package com.example.productapi.service;
+
+import com.example.productapi.dto.BatchRequest;
+import com.example.productapi.dto.BatchResponse;
+import com.example.productapi.dto.PythonPredictionRequest;
+import com.example.productapi.ml.ColumnarBatchCodec;
+import com.example.productapi.ml.FeatureMatrix;
+import com.example.productapi.util.CircuitBreaker;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One instance of the Python prediction service: its transport, circuit breaker, health flag and
+ * call statistics.
+ *
+ * <p>Exported metrics, tagged by replica URL: prediction.replica.latency (with p50/p95/p99),
+ * prediction.replica.errors, prediction.replica.outstanding, prediction.backend.circuit.state and
+ * prediction.backend.healthy.
+ */
+class PredictionReplica {
+
+    private static final Logger logger = LoggerFactory.getLogger(PredictionReplica.class);
+
+    private static final Duration BATCH_TIMEOUT = Duration.ofSeconds(30); // Longer timeout for batch requests
+    private static final int LATENCY_WINDOW = 128;
+    private static final int MIN_LATENCY_SAMPLES = 20;
+
+    private final String url;
+    private final WebClient webClient;
+    private final GrpcPredictionTransport grpcTransport;
+    private final CircuitBreaker circuitBreaker;
+    private final String batchFormat;
+
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final Timer latency;
+    private final Counter errors;
+
+    // Ring buffer of recent successful call latencies, for the hedging delay
+    private final long[] recentLatencies = new long[LATENCY_WINDOW];
+    private int latencyCount;
+    private int nextLatency;
+    private long p95Nanos = -1;
+
+    private volatile boolean healthy;
+    private volatile boolean columnarSupported;
+
+    PredictionReplica(String url, String grpcTarget, String batchFormat, int maxInMemorySize,
+                      CircuitBreaker circuitBreaker, MeterRegistry meterRegistry) {
+        this.url = url;
+        this.batchFormat = batchFormat;
+        this.circuitBreaker = circuitBreaker;
+        this.webClient = WebClient.builder()
+                .baseUrl(url)
+                .codecs(configurer -> configurer
+                        .defaultCodecs()
+                        .maxInMemorySize(maxInMemorySize))
+                .build();
+        this.grpcTransport = grpcTarget != null
+                ? new GrpcPredictionTransport(grpcTarget, BATCH_TIMEOUT, maxInMemorySize)
+                : null;
+
+        this.latency = Timer.builder("prediction.replica.latency")
+                .description("Latency of successful calls to a prediction service replica")
+                .tag("replica", url)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.errors = Counter.builder("prediction.replica.errors")
+                .description("Failed calls to a prediction service replica")
+                .tag("replica", url)
+                .register(meterRegistry);
+        Gauge.builder("prediction.replica.outstanding", outstanding, AtomicInteger::get)
+                .description("Calls in flight to a prediction service replica")
+                .tag("replica", url)
+                .register(meterRegistry);
+        Gauge.builder("prediction.backend.circuit.state", circuitBreaker, cb -> cb.getState().getCode())
+                .description("Circuit breaker state: 0 = closed, 1 = open, 2 = half-open")
+                .tag("backend", "python")
+                .tag("replica", url)
+                .register(meterRegistry);
+        Gauge.builder("prediction.backend.healthy", this, replica -> replica.healthy ? 1 : 0)
+                .description("Result of the last background health probe")
+                .tag("backend", "python")
+                .tag("replica", url)
+                .register(meterRegistry);
+    }
+
+    String getUrl() {
+        return url;
+    }
+
+    /**
+     * Healthy on the last probe and the circuit lets calls through
+     */
+    boolean isAvailable() {
+        return healthy && circuitBreaker.isCallPermitted();
+    }
+
+    int getOutstanding() {
+        return outstanding.get();
+    }
+
+    boolean isStreaming() {
+        return grpcTransport != null;
+    }
+
+    /**
+     * 95th percentile of the recent successful call latencies, or -1 until enough calls were seen
+     */
+    synchronized long getP95Nanos() {
+        if (p95Nanos < 0 && latencyCount >= MIN_LATENCY_SAMPLES) {
+            long[] sorted = Arrays.copyOf(recentLatencies, latencyCount);
+            Arrays.sort(sorted);
+            p95Nanos = sorted[(int) Math.ceil(sorted.length * 0.95) - 1];
+        }
+        return p95Nanos;
+    }
+
+    /**
+     * Score one batch on this replica
+     *
+     * @return Raw predictions, or an empty Mono when the circuit is open or the call failed
+     */
+    Mono<double[]> predictBatch(FeatureMatrix features) {
+        return Mono.defer(() -> {
+            if (!circuitBreaker.tryAcquirePermission()) {
+                logger.debug("Circuit of {} is open, skipping batch call", url);
+                return Mono.empty();
+            }
+
+            logger.debug("Calling Python batch prediction service {} with {} rows", url, features.getRowCount());
+            long start = System.nanoTime();
+            AtomicBoolean recorded = new AtomicBoolean();
+            outstanding.incrementAndGet();
+            Mono<double[]> call = grpcTransport != null
+                    ? grpcTransport.predictBatch(features)
+                    : useColumnarFormat()
+                    ? postColumnar(features).onErrorResume(this::isFormatRejected, e -> {
+                        logger.warn("{} rejected the columnar batch format, falling back to JSON", url);
+                        columnarSupported = false;
+                        return postJson(features);
+                    })
+                    : postJson(features);
+
+            return call
+                    .timeout(BATCH_TIMEOUT)
+                    .flatMap(predictions -> {
+                        if (predictions.length == 0) {
+                            logger.warn("{} returned an empty batch response", url);
+                            recorded.set(true);
+                            recordOutcome(false, start);
+                            return Mono.<double[]>empty();
+                        }
+                        recorded.set(true);
+                        recordOutcome(true, start);
+                        logger.debug("{} returned {} batch predictions", url, predictions.length);
+                        return Mono.just(predictions);
+                    })
+                    .onErrorResume(e -> {
+                        logCallError(e);
+                        // A rejected request says nothing about the health of the service
+                        recorded.set(true);
+                        recordOutcome(isRejectedRequest(e), start);
+                        return Mono.empty();
+                    })
+                    // Also runs when a hedged duplicate won and this call was cancelled
+                    .doFinally(signal -> finishCall(signal, recorded));
+        });
+    }
+
+    /**
+     * Score batches over one gRPC PredictStream call, see
+     * {@link PredictionEngine#predictBatchStream(Flux, int)}
+     */
+    Flux<double[]> predictStream(Flux<FeatureMatrix> batches) {
+        return Flux.defer(() -> {
+            if (!circuitBreaker.tryAcquirePermission()) {
+                logger.debug("Circuit of {} is open, skipping prediction stream", url);
+                return Flux.empty();
+            }
+
+            long start = System.nanoTime();
+            AtomicInteger received = new AtomicInteger();
+            AtomicBoolean recorded = new AtomicBoolean();
+            outstanding.incrementAndGet();
+            return grpcTransport.predictStream(batches)
+                    .doOnNext(predictions -> received.incrementAndGet())
+                    .doOnComplete(() -> {
+                        recorded.set(true);
+                        recordStreamOutcome(true, start, received.get());
+                    })
+                    .onErrorResume(e -> {
+                        logCallError(e);
+                        recorded.set(true);
+                        recordStreamOutcome(isRejectedRequest(e), start, received.get());
+                        return Flux.empty();
+                    })
+                    // Cancelled when a sibling chunk failed or the caller went away
+                    .doFinally(signal -> finishCall(signal, recorded));
+        });
+    }
+
+    /**
+     * Probe the /health endpoint and cache the result
+     */
+    Mono<Void> refreshHealth() {
+        boolean wasHealthy = healthy;
+        return webClient
+                .get()
+                .uri("/health")
+                .retrieve()
+                .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
+                .timeout(Duration.ofSeconds(5))
+                .doOnNext(response -> {
+                    logger.debug("Python service {} health check response: {}", url, response);
+                    healthy = true;
+                    columnarSupported = response.get("batch_formats") instanceof Collection<?> formats
+                            && formats.contains(ColumnarBatchCodec.FORMAT_NAME);
+                })
+                .switchIfEmpty(Mono.fromRunnable(() -> healthy = false))
+                .onErrorResume(e -> {
+                    logger.debug("Python service {} health check failed: {}", url, e.getMessage());
+                    healthy = false;
+                    return Mono.empty();
+                })
+                .doFinally(signal -> {
+                    if (healthy != wasHealthy) {
+                        if (healthy) {
+                            logger.info("Python prediction service is available at {}", url);
+                        } else {
+                            logger.warn("Python prediction service is not available at {}", url);
+                        }
+                    }
+                })
+                .then();
+    }
+
+    void shutdown() {
+        if (grpcTransport != null) {
+            grpcTransport.shutdown();
+        }
+    }
+
+    private boolean useColumnarFormat() {
+        switch (batchFormat) {
+            case "columnar":
+                return true;
+            case "json":
+                return false;
+            default:
+                return columnarSupported;
+        }
+    }
+
+    private Mono<double[]> postColumnar(FeatureMatrix features) {
+        return webClient
+                .post()
+                .uri("/predict/batch")
+                .contentType(MediaType.parseMediaType(ColumnarBatchCodec.FEATURES_MEDIA_TYPE))
+                .accept(MediaType.parseMediaType(ColumnarBatchCodec.PREDICTIONS_MEDIA_TYPE))
+                .bodyValue(ColumnarBatchCodec.encodeFeatures(features))
+                .retrieve()
+                .bodyToMono(byte[].class)
+                .map(ColumnarBatchCodec::decodePredictions);
+    }
+
+    private Mono<double[]> postJson(FeatureMatrix features) {
+        List<PythonPredictionRequest> requests = new ArrayList<>(features.getRowCount());
+        for (int row = 0; row < features.getRowCount(); row++) {
+            requests.add(PythonPredictionRequest.fromRow(features, row));
+        }
+        return webClient
+                .post()
+                .uri("/predict/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new BatchRequest(requests))
+                .retrieve()
+                .bodyToMono(BatchResponse.class)
+                .map(response -> response.getPredictions() != null
+                        ? toArray(response.getPredictions()) : new double[0]);
+    }
+
+    private double[] toArray(List<Double> predictions) {
+        double[] result = new double[predictions.size()];
+        for (int i = 0; i < result.length; i++) {
+            Double prediction = predictions.get(i);
+            result[i] = prediction != null ? prediction : Double.NaN;
+        }
+        return result;
+    }
+
+    /**
+     * An older service answers a body it cannot parse with 415 or 422
+     */
+    private boolean isFormatRejected(Throwable e) {
+        if (!(e instanceof WebClientResponseException) || "columnar".equals(batchFormat)) {
+            return false;
+        }
+        int status = ((WebClientResponseException) e).getStatusCode().value();
+        return status == HttpStatus.UNSUPPORTED_MEDIA_TYPE.value()
+                || status == HttpStatus.UNPROCESSABLE_ENTITY.value();
+    }
+
+    private void logCallError(Throwable e) {
+        if (e instanceof WebClientResponseException) {
+            WebClientResponseException re = (WebClientResponseException) e;
+            logger.error("Python batch prediction service {} HTTP error - Status: {}, Body: {}",
+                    url, re.getStatusCode(), re.getResponseBodyAsString());
+        } else if (e instanceof StatusRuntimeException) {
+            logger.error("Python batch prediction service {} gRPC error - Status: {}",
+                    url, ((StatusRuntimeException) e).getStatus());
+        } else {
+            logger.error("Error calling Python batch prediction service {}: {}", url, e.getMessage());
+        }
+    }
+
+    private boolean isRejectedRequest(Throwable e) {
+        if (e instanceof WebClientResponseException) {
+            return ((WebClientResponseException) e).getStatusCode().is4xxClientError();
+        }
+        return e instanceof StatusRuntimeException
+                && ((StatusRuntimeException) e).getStatus().getCode() == Status.Code.INVALID_ARGUMENT;
+    }
+
+    /**
+     * End of a call in any state. A call cancelled before it had an outcome still holds its circuit
+     * breaker permission, which is given back so a half-open circuit does not run out of trial
+     * slots.
+     */
+    private void finishCall(SignalType signal, AtomicBoolean recorded) {
+        outstanding.decrementAndGet();
+        if (signal == SignalType.CANCEL && recorded.compareAndSet(false, true)) {
+            circuitBreaker.releasePermission();
+        }
+    }
+
+    /**
+     * A stream carries many batches, its duration is judged per batch
+     */
+    private void recordStreamOutcome(boolean success, long startNanos, int batches) {
+        long perBatch = (System.nanoTime() - startNanos) / Math.max(1, batches);
+        recordOutcome(success, System.nanoTime() - perBatch);
+    }
+
+    private void recordOutcome(boolean success, long startNanos) {
+        long duration = System.nanoTime() - startNanos;
+        if (success) {
+            circuitBreaker.onSuccess(duration);
+            latency.record(duration, TimeUnit.NANOSECONDS);
+            recordLatency(duration);
+        } else {
+            circuitBreaker.onError(duration);
+            errors.increment();
+        }
+    }
+
+    private synchronized void recordLatency(long durationNanos) {
+        recentLatencies[nextLatency] = durationNanos;
+        nextLatency = (nextLatency + 1) % LATENCY_WINDOW;
+        latencyCount = Math.min(latencyCount + 1, LATENCY_WINDOW);
+        p95Nanos = -1;
+    }
+}
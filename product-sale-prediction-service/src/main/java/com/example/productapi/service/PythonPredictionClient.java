@@ -1,136 +1,264 @@
 package com.example.productapi.service;
 
-import com.example.productapi.dto.BatchRequest;
-import com.example.productapi.dto.BatchResponse;
-import com.example.productapi.dto.PythonPredictionRequest;
-import com.example.productapi.dto.PythonPredictionResponse;
+import com.example.productapi.ml.ColumnarBatchCodec;
+import com.example.productapi.ml.FeatureMatrix;
+import com.example.productapi.util.CircuitBreakerFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
-import org.springframework.web.reactive.function.client.WebClientResponseException;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
 
+/**
+ * HTTP client for the Python prediction service.
+ *
+ * <p>python.prediction.service.url takes a comma separated list of replicas. Each call goes to the
+ * less loaded of two randomly picked available replicas (power of two choices on outstanding
+ * calls). When hedging is enabled and the chosen replica has not answered within its recent p95
+ * latency, a duplicate is sent to another replica and the first reply wins; the other call is
+ * cancelled.
+ *
+ * <p>Availability is answered from cached state: a background probe refreshes each replica's
+ * health flag on a fixed schedule and a per-replica {@link com.example.productapi.util.CircuitBreaker}
+ * tracks the outcome of real prediction calls. While no replica is available calls are rejected
+ * without touching the network, so callers fall back immediately instead of waiting for timeouts.
+ *
+ * <p>Batches are sent as JSON or in the binary {@link ColumnarBatchCodec} layout. With
+ * python.prediction.service.batch-format=auto (the default) the columnar format is used once a
+ * replica lists it under batch_formats in its /health response, and dropped again if the replica
+ * rejects it.
+ *
+ * <p>With python.prediction.service.transport=grpc batches go over a single long-lived gRPC
+ * channel per replica instead (see {@link GrpcPredictionTransport}), and
+ * {@link #predictBatchStream(Flux, int)} streams feature batches over one bidirectional call.
+ * The /health probe stays on HTTP.
+ */
 @Service
-public class PythonPredictionClient {
+public class PythonPredictionClient implements PredictionEngine {
     
     private static final Logger logger = LoggerFactory.getLogger(PythonPredictionClient.class);
     
-    private final WebClient webClient;
     private final String pythonServiceUrl;
+    private final List<PredictionReplica> replicas;
+    private final boolean hedgingEnabled;
+    private final Duration minHedgeDelay;
+    private final Counter rejectedCalls;
+    private final Counter hedgedCalls;
     
-    public PythonPredictionClient(@Value("${python.prediction.service.url:http://localhost:8000}") String pythonServiceUrl) {
+    public PythonPredictionClient(@Value("${python.prediction.service.url:http://localhost:8000}") String pythonServiceUrl,
+                                  @Value("${python.prediction.service.batch-format:auto}") String batchFormat,
+                                  @Value("${python.prediction.service.max-in-memory-size:16MB}") DataSize maxInMemorySize,
+                                  @Value("${python.prediction.service.transport:http}") String transport,
+                                  @Value("${python.prediction.service.grpc.target:localhost:50051}") String grpcTarget,
+                                  @Value("${python.prediction.service.hedging.enabled:true}") boolean hedgingEnabled,
+                                  @Value("${python.prediction.service.hedging.min-delay-ms:50}") long minHedgeDelayMs,
+                                  CircuitBreakerFactory pythonPredictionCircuitBreakers,
+                                  MeterRegistry meterRegistry) {
         this.pythonServiceUrl = pythonServiceUrl;
-        this.webClient = WebClient.builder()
-                .baseUrl(pythonServiceUrl)
-                .codecs(configurer -> configurer
-                        .defaultCodecs()
-                        .maxInMemorySize(1024 * 1024)) // 1MB buffer
-                .build();
+        this.hedgingEnabled = hedgingEnabled;
+        this.minHedgeDelay = Duration.ofMillis(minHedgeDelayMs);
         
-        logger.info("Python Prediction Client initialized with URL: {}", pythonServiceUrl);
+        List<String> urls = split(pythonServiceUrl);
+        List<String> grpcTargets = "grpc".equals(transport) ? split(grpcTarget) : null;
+        if (urls.isEmpty()) {
+            throw new IllegalArgumentException("python.prediction.service.url must name at least one replica");
+        }
+        if (grpcTargets != null && grpcTargets.size() != urls.size()) {
+            throw new IllegalArgumentException("python.prediction.service.grpc.target must list one target per replica URL");
+        }
+        
+        List<PredictionReplica> replicas = new ArrayList<>(urls.size());
+        for (int i = 0; i < urls.size(); i++) {
+            replicas.add(new PredictionReplica(urls.get(i), grpcTargets != null ? grpcTargets.get(i) : null,
+                    batchFormat, (int) maxInMemorySize.toBytes(),
+                    pythonPredictionCircuitBreakers.create("python-prediction-service " + urls.get(i)),
+                    meterRegistry));
+        }
+        this.replicas = List.copyOf(replicas);
+        
+        this.rejectedCalls = Counter.builder("prediction.backend.calls.rejected")
+                .description("Calls short-circuited because no replica was available")
+                .tag("backend", getEngineName())
+                .register(meterRegistry);
+        this.hedgedCalls = Counter.builder("prediction.backend.calls.hedged")
+                .description("Duplicate calls sent because the first replica was slower than its p95")
+                .tag("backend", getEngineName())
+                .register(meterRegistry);
+        
+        logger.info("Python Prediction Client initialized with {} replica(s): {}, transport: {}, batch format: {}",
+                urls.size(), pythonServiceUrl, transport, batchFormat);
     }
     
     /**
-     * Call Python prediction service for single prediction
+     * Call Python prediction service for batch prediction, blocking until the response arrives
      */
-    public Double predictSingle(PythonPredictionRequest request) {
-        try {
-            logger.debug("Calling Python prediction service with request: {}", request);
-            
-            PythonPredictionResponse response = webClient
-                    .post()
-                    .uri("/predict")
-                    .body(Mono.just(request), PythonPredictionRequest.class)
-                    .retrieve()
-                    .bodyToMono(PythonPredictionResponse.class)
-                    .timeout(Duration.ofSeconds(10)) // 10 second timeout
-                    .block();
-            
-            if (response != null && response.getPredictedQuantity() != null) {
-                logger.debug("Python service returned prediction: {}", response.getPredictedQuantity());
-                return response.getPredictedQuantity();
-            } else {
-                logger.warn("Python service returned null or invalid response: {}", response);
-                return null;
-            }
-            
-        } catch (WebClientResponseException e) {
-            logger.error("Python prediction service HTTP error - Status: {}, Body: {}", 
-                    e.getStatusCode(), e.getResponseBodyAsString());
-            return null;
-        } catch (Exception e) {
-            logger.error("Error calling Python prediction service: {}", e.getMessage(), e);
-            return null;
-        }
+    @Override
+    public double[] predictBatch(FeatureMatrix features) {
+        return predictBatchAsync(features).block();
     }
     
     /**
-     * Call Python prediction service for batch prediction - more efficient for multiple predictions
+     * Non-blocking batch prediction, the response is handled on the WebClient event loop
      */
-    public List<Double> predictBatch(List<PythonPredictionRequest> requests) {
-        try {
-            logger.debug("Calling Python batch prediction service with {} requests", requests.size());
-            
-            BatchRequest batchRequest = new BatchRequest(requests);
-            
-            BatchResponse response = webClient
-                    .post()
-                    .uri("/predict/batch")
-                    .body(Mono.just(batchRequest), BatchRequest.class)
-                    .retrieve()
-                    .bodyToMono(BatchResponse.class)
-                    .timeout(Duration.ofSeconds(30)) // Longer timeout for batch requests
-                    .block();
-            
-            if (response != null && response.getPredictions() != null && !response.getPredictions().isEmpty()) {
-                logger.debug("Python service returned {} batch predictions", response.getPredictions().size());
-                return response.getPredictions();
-            } else {
-                logger.warn("Python service returned null or empty batch response: {}", response);
-                return null;
+    @Override
+    public Mono<double[]> predictBatchAsync(FeatureMatrix features) {
+        return Mono.defer(() -> {
+            PredictionReplica primary = select(null);
+            if (primary == null) {
+                rejectedCalls.increment();
+                logger.debug("No Python prediction replica is available, skipping batch call");
+                return Mono.empty();
             }
-            
-        } catch (WebClientResponseException e) {
-            logger.error("Python batch prediction service HTTP error - Status: {}, Body: {}", 
-                    e.getStatusCode(), e.getResponseBodyAsString());
-            return null;
-        } catch (Exception e) {
-            logger.error("Error calling Python batch prediction service: {}", e.getMessage(), e);
-            return null;
+
+            Duration hedgeDelay = hedgeDelay(primary);
+            if (hedgeDelay == null) {
+                return primary.predictBatch(features);
+            }
+
+            Mono<double[]> hedge = Mono.delay(hedgeDelay)
+                    .flatMap(tick -> {
+                        PredictionReplica secondary = select(primary);
+                        if (secondary == null) {
+                            return Mono.<double[]>empty();
+                        }
+                        hedgedCalls.increment();
+                        logger.debug("{} has not answered within {} ms, hedging to {}",
+                                primary.getUrl(), hedgeDelay.toMillis(), secondary.getUrl());
+                        return secondary.predictBatch(features);
+                    });
+            return Mono.firstWithValue(primary.predictBatch(features), hedge)
+                    .onErrorResume(e -> Mono.empty()); // neither call produced a value
+        });
+    }
+
+    /**
+     * Over gRPC the batches share one bidirectional PredictStream call to a single replica and
+     * scores are published as they arrive; over HTTP each batch is a separate call. Streams are not
+     * hedged.
+     */
+    @Override
+    public Flux<double[]> predictBatchStream(Flux<FeatureMatrix> batches, int maxConcurrency) {
+        if (!isStreaming()) {
+            return PredictionEngine.super.predictBatchStream(batches, maxConcurrency);
         }
+        return Flux.defer(() -> {
+            PredictionReplica replica = select(null);
+            if (replica == null) {
+                rejectedCalls.increment();
+                logger.debug("No Python prediction replica is available, skipping prediction stream");
+                return Flux.empty();
+            }
+            return replica.predictStream(batches);
+        });
     }
-    
+
+    @Override
+    public boolean isStreaming() {
+        return replicas.get(0).isStreaming();
+    }
+
     /**
-     * Check if Python prediction service is available
+     * Check if any Python prediction replica is available, from the last health probes and the
+     * circuit breaker states. Never blocks on the network.
      */
+    @Override
     public boolean isServiceAvailable() {
-        try {
-            String response = webClient
-                    .get()
-                    .uri("/health")
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .timeout(Duration.ofSeconds(5))
-                    .block();
-            
-            logger.debug("Python service health check response: {}", response);
-            return response != null;
-            
-        } catch (Exception e) {
-            logger.warn("Python prediction service is not available: {}", e.getMessage());
-            return false;
+        for (PredictionReplica replica : replicas) {
+            if (replica.isAvailable()) {
+                return true;
+            }
         }
+        return false;
+    }
+    
+    /**
+     * Probe the /health endpoint of every replica in the background and cache the results
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${python.prediction.service.health.interval-ms:10000}")
+    public void refreshHealth() {
+        Flux.fromIterable(replicas)
+                .flatMap(PredictionReplica::refreshHealth)
+                .blockLast();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        replicas.forEach(PredictionReplica::shutdown);
+    }
+    
+    @Override
+    public String getEngineName() {
+        return "python";
     }
     
     /**
-     * Get service URL for logging/debugging
+     * Get service URL(s) for logging/debugging
      */
     public String getServiceUrl() {
         return pythonServiceUrl;
     }
-} 
\ No newline at end of file
+
+    /**
+     * Power of two choices: the replica with fewer outstanding calls out of two random available
+     * ones
+     *
+     * @param excluded Replica not to pick, may be null
+     * @return Selected replica, or null when none is available
+     */
+    private PredictionReplica select(PredictionReplica excluded) {
+        List<PredictionReplica> available = new ArrayList<>(replicas.size());
+        for (PredictionReplica replica : replicas) {
+            if (replica != excluded && replica.isAvailable()) {
+                available.add(replica);
+            }
+        }
+        if (available.size() <= 1) {
+            return available.isEmpty() ? null : available.get(0);
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(available.size());
+        int second = random.nextInt(available.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+        PredictionReplica a = available.get(first);
+        PredictionReplica b = available.get(second);
+        return a.getOutstanding() <= b.getOutstanding() ? a : b;
+    }
+
+    /**
+     * Delay before a hedged duplicate is sent, or null when the call should not be hedged (hedging
+     * disabled, a single replica, or too few samples for a p95 yet)
+     */
+    private Duration hedgeDelay(PredictionReplica primary) {
+        if (!hedgingEnabled || replicas.size() < 2) {
+            return null;
+        }
+        long p95Nanos = primary.getP95Nanos();
+        if (p95Nanos < 0) {
+            return null;
+        }
+        Duration p95 = Duration.ofNanos(p95Nanos);
+        return p95.compareTo(minHedgeDelay) > 0 ? p95 : minHedgeDelay;
+    }
+
+    private static List<String> split(String list) {
+        return List.of(list.split(",")).stream()
+                .map(String::trim)
+                .filter(item -> !item.isEmpty())
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.productapi.service;
+
+import com.example.productapi.dto.ForecastFrame;
+import com.example.productapi.dto.TopSalesForecast;
+import com.example.productapi.model.Predications;
+import java.time.LocalDate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking variant of {@link PredictionService}. Database reads run on the bounded elastic
+ * scheduler and inference is composed without blocking, so a few threads can keep many forecasts
+ * in flight.
+ */
+public interface ReactivePredictionService {
+
+  /**
+   * Predict sales for a product within a date range
+   *
+   * @param productId   ID of the product to predict sales for
+   * @param sellerId    ID of the seller
+   * @param priceToSale Discount price (if null or 0, original price will be used)
+   * @param startDate   Start date for prediction (inclusive)
+   * @param endDate     End date for prediction (inclusive), if null only startDate will be
+   *                    predicted
+   * @return Predications object containing aggregated prediction results, or an error if the
+   * product does not exist
+   */
+  Mono<Predications> predictSales(String productId, String sellerId, Double priceToSale,
+      LocalDate startDate, LocalDate endDate);
+
+  /**
+   * Streaming variant of {@link #predictSales}: days are scored in chunks and each chunk is
+   * emitted as a {@link ForecastFrame#DAYS} frame as soon as it is ready, in date order, followed
+   * by a {@link ForecastFrame#SUMMARY} frame with the totals
+   *
+   * @param chunkDays Days per frame
+   * @return Frames, or an error if the product does not exist
+   */
+  Flux<ForecastFrame> streamSales(String productId, String sellerId, Double priceToSale,
+      LocalDate startDate, LocalDate endDate, int chunkDays);
+
+  /**
+   * Predict sales for every product of a seller's category and keep the top N
+   *
+   * @param topN Number of products to return, all products if null
+   * @return Predications ordered by total predicted quantity, highest first
+   */
+  Flux<Predications> predictTopSales(String sellerId, String category, LocalDate startDate,
+      LocalDate endDate, Integer topN);
+
+  /**
+   * Top N forecast that skips products whose predicted total cannot reach the top N. Candidates
+   * are forecast in order of an upper bound on their total and the search stops once no remaining
+   * bound beats the current Nth total.
+   *
+   * @param topN Number of products to return
+   * @return The top N plus how many products were forecast
+   */
+  Mono<TopSalesForecast> predictTopSalesPruned(String sellerId, String category,
+      LocalDate startDate, LocalDate endDate, int topN);
+}
@@ -1,5 +1,6 @@
 package com.example.productapi.service.impl;
 
+import com.example.productapi.event.ProductsSavedEvent;
 import com.example.productapi.model.Inventory;
 import com.example.productapi.model.Order;
 import com.example.productapi.model.Product;
@@ -7,6 +8,7 @@ import com.example.productapi.repository.InventoryRepository;
 import com.example.productapi.repository.OrderRepository;
 import com.example.productapi.repository.ProductRepository;
 import com.example.productapi.service.CSVLoaderService;
+import com.example.productapi.service.OrderService;
 import com.openai.services.blocking.EmbeddingService;
 import com.opencsv.CSVReader;
 import com.opencsv.exceptions.CsvValidationException;
@@ -18,9 +20,11 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.event.EventListener;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Service;
@@ -39,14 +43,20 @@ public class CSVLoaderServiceImpl implements CSVLoaderService {
   private final ProductRepository productRepository;
   private final OrderRepository orderRepository;
   private final InventoryRepository inventoryRepository;
+  private final OrderService orderService;
+  private final ApplicationEventPublisher eventPublisher;
 
   public CSVLoaderServiceImpl(
       ProductRepository productRepository,
       OrderRepository orderRepository,
-      InventoryRepository inventoryRepository) {
+      InventoryRepository inventoryRepository,
+      OrderService orderService,
+      ApplicationEventPublisher eventPublisher) {
     this.productRepository = productRepository;
     this.orderRepository = orderRepository;
     this.inventoryRepository = inventoryRepository;
+    this.orderService = orderService;
+    this.eventPublisher = eventPublisher;
   }
 
   @Override
@@ -108,6 +118,7 @@ public class CSVLoaderServiceImpl implements CSVLoaderService {
 
     log.info("Saving {} products to database", products.size());
     productRepository.saveAll(products);
+    eventPublisher.publishEvent(new ProductsSavedEvent(products));
   }
 
   private void loadSales() throws IOException, CsvValidationException {
@@ -167,8 +178,16 @@ public class CSVLoaderServiceImpl implements CSVLoaderService {
       throw e;
     }
 
+    // Orders of an earlier load are already counted, recording them again would be rejected
+    Set<String> recorded = orderService.findRecordedOrderIds(
+        orders.stream().map(Order::getOrderId).collect(Collectors.toSet()));
+    if (!recorded.isEmpty()) {
+      log.info("Skipping {} orders that are already recorded", recorded.size());
+      orders.removeIf(order -> recorded.contains(order.getOrderId()));
+    }
+
     log.info("Saving {} orders to database", orders.size());
-    orderRepository.saveAll(orders);
+    orderService.recordOrders(orders);
 
     log.info("Saving {} inventory items to database", inventoryItems.size());
     inventoryRepository.saveAll(inventoryItems);
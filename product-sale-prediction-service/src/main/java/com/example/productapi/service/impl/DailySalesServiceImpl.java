@@ -0,0 +1,345 @@
+package com.example.productapi.service.impl;
+
+import com.example.productapi.event.OrdersRecordedEvent;
+import com.example.productapi.model.DailySales;
+import com.example.productapi.model.DailySalesId;
+import com.example.productapi.model.MonthlySales;
+import com.example.productapi.model.MonthlySalesId;
+import com.example.productapi.model.Order;
+import com.example.productapi.model.Product;
+import com.example.productapi.repository.DailySalesRepository;
+import com.example.productapi.repository.MonthlySalesRepository;
+import com.example.productapi.repository.OrderRepository;
+import com.example.productapi.repository.ProductRepository;
+import com.example.productapi.repository.ProductSalesAggregate;
+import com.example.productapi.repository.RollupRange;
+import com.example.productapi.service.DailySalesService;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Maintains the daily_sales and monthly_sales rollups in the transaction that records orders, and
+ * answers range aggregations from them. Until the rollups have been checked against the orders
+ * table on startup, aggregations read the orders table only. When the {@link OrderColumnStore} is
+ * enabled and loaded, reads are answered from it instead.
+ *
+ * <p>Archived orders stay counted in the rollups. Parts of a range read from the orders table
+ * that reach into the {@link OrderArchive} are completed from its segments.
+ */
+@Service
+public class DailySalesServiceImpl implements DailySalesService {
+
+  private static final Logger logger = LoggerFactory.getLogger(DailySalesServiceImpl.class);
+
+  private final DailySalesRepository dailySalesRepository;
+  private final MonthlySalesRepository monthlySalesRepository;
+  private final OrderRepository orderRepository;
+  private final OrderColumnStore orderColumnStore;
+  private final OrderArchive orderArchive;
+  private final ProductRepository productRepository;
+  private final TransactionTemplate transactionTemplate;
+
+  private volatile boolean rollupsReady;
+
+  @Autowired
+  public DailySalesServiceImpl(DailySalesRepository dailySalesRepository,
+      MonthlySalesRepository monthlySalesRepository, OrderRepository orderRepository,
+      OrderColumnStore orderColumnStore, OrderArchive orderArchive,
+      ProductRepository productRepository, PlatformTransactionManager transactionManager) {
+    this.dailySalesRepository = dailySalesRepository;
+    this.monthlySalesRepository = monthlySalesRepository;
+    this.orderRepository = orderRepository;
+    this.orderColumnStore = orderColumnStore;
+    this.orderArchive = orderArchive;
+    this.productRepository = productRepository;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+  }
+
+  @Override
+  public Map<LocalDate, Integer> getDailyQuantities(String sellerId, String productId,
+      LocalDate startDate, LocalDate endDate) {
+    if (orderColumnStore.isReady()) {
+      return orderColumnStore.getDailyQuantities(sellerId, productId, startDate, endDate);
+    }
+    if (!rollupsReady) {
+      return getDailyQuantities(sellerId, List.of(productId), startDate, endDate)
+          .getOrDefault(productId, new HashMap<>());
+    }
+    Map<LocalDate, Integer> quantities = new HashMap<>();
+    for (DailySales day : dailySalesRepository.findBySellerIdAndProductIdAndDateBetween(sellerId,
+        productId, startDate, endDate)) {
+      quantities.put(day.getDate(), day.getQuantity());
+    }
+    return quantities;
+  }
+
+  @Override
+  public Map<String, Map<LocalDate, Integer>> getDailyQuantities(String sellerId,
+      Collection<String> productIds, LocalDate startDate, LocalDate endDate) {
+    Map<String, Map<LocalDate, Integer>> quantities = new HashMap<>();
+    if (productIds.isEmpty()) {
+      return quantities;
+    }
+    if (orderColumnStore.isReady()) {
+      return orderColumnStore.getDailyQuantities(sellerId, productIds, startDate, endDate);
+    }
+    if (!rollupsReady) {
+      // daily_sales may still miss orders recorded before it existed, read the days from orders
+      for (ProductSalesAggregate day : sumDailySalesByProduct(sellerId, null, null,
+          startDate.atStartOfDay(), endDate.plusDays(1).atStartOfDay().minusNanos(1_000),
+          productIds)) {
+        quantities.computeIfAbsent(day.getProductId(), k -> new HashMap<>())
+            .put(day.getDay(), day.getQuantity().intValue());
+      }
+      return quantities;
+    }
+    for (DailySales day : dailySalesRepository.findBySellerIdAndProductIdInAndDateBetween(
+        sellerId, productIds, startDate, endDate)) {
+      quantities.computeIfAbsent(day.getProductId(), k -> new HashMap<>())
+          .put(day.getDate(), day.getQuantity());
+    }
+    return quantities;
+  }
+
+  @Override
+  public List<ProductSalesAggregate> sumSalesByProduct(String sellerId, String productId,
+      String category, LocalDateTime startTime, LocalDateTime endTime, Pageable pageable) {
+    if (orderColumnStore.isReady()) {
+      return orderColumnStore.sumSalesByProduct(sellerId, productId, category, startTime, endTime,
+          pageable);
+    }
+    RollupRange range = range(startTime, endTime);
+    if (!orderArchive.overlaps(sellerId, range)) {
+      return dailySalesRepository.sumSalesByProduct(sellerId, productId, category, range,
+          pageable);
+    }
+    List<ProductSalesAggregate> totals = withArchive(
+        dailySalesRepository.sumSalesByProduct(sellerId, productId, category, range,
+            Pageable.unpaged()),
+        sellerId, productId, category, null, range, false);
+    totals.sort(SalesAggregate.BY_QUANTITY);
+    return SalesAggregate.page(totals, pageable);
+  }
+
+  @Override
+  public List<ProductSalesAggregate> sumDailySalesByProduct(String sellerId, String productId,
+      String category, LocalDateTime startTime, LocalDateTime endTime,
+      Collection<String> productIds) {
+    if (orderColumnStore.isReady()) {
+      return orderColumnStore.sumDailySalesByProduct(sellerId, productId, category, startTime,
+          endTime, productIds);
+    }
+    if (productIds != null && productIds.isEmpty()) {
+      return Collections.emptyList();
+    }
+    RollupRange range = range(startTime, endTime);
+    List<ProductSalesAggregate> daily = productIds == null
+        ? dailySalesRepository.sumDailySalesByProduct(sellerId, productId, category, range)
+        : dailySalesRepository.sumDailySalesOfProducts(sellerId, productIds, range);
+    if (!orderArchive.overlaps(sellerId, range)) {
+      return daily;
+    }
+    daily = withArchive(daily, sellerId, productId, category, productIds, range, true);
+    daily.sort(SalesAggregate.BY_DAY);
+    return daily;
+  }
+
+  private RollupRange range(LocalDateTime startTime, LocalDateTime endTime) {
+    return rollupsReady
+        ? RollupRange.of(startTime, endTime) : RollupRange.raw(startTime, endTime);
+  }
+
+  /**
+   * Add the archived orders in the parts of the range read from the orders table to query
+   * results, filtering them like the query does
+   *
+   * @param productIds Only these products when not null, regardless of the product table
+   * @param daily      Whether the rows are per day or totals over the range
+   * @return Merged rows, unsorted
+   */
+  private List<ProductSalesAggregate> withArchive(List<ProductSalesAggregate> rows,
+      String sellerId, String productId, String category, Collection<String> productIds,
+      RollupRange range, boolean daily) {
+    Map<SimpleImmutableEntry<String, LocalDate>, long[]> archived = new HashMap<>();
+    orderArchive.scan(sellerId, range, (seller, product, micros, quantity, cents) -> {
+      long[] sums = archived.computeIfAbsent(
+          new SimpleImmutableEntry<>(product, daily ? OrderColumnStore.day(micros) : null),
+          k -> new long[2]);
+      sums[0] += quantity;
+      sums[1] += cents;
+    });
+
+    Set<String> sold = new HashSet<>();
+    archived.keySet().forEach(key -> sold.add(key.getKey()));
+    Set<String> products = new HashSet<>();
+    if (productIds != null) {
+      productIds.stream().filter(sold::contains).forEach(products::add);
+    } else {
+      for (Product product : productRepository.findAllById(sold)) {
+        if ((productId == null || productId.equals(product.getId()))
+            && (category == null || category.equals(product.getCategory()))) {
+          products.add(product.getId());
+        }
+      }
+    }
+
+    Map<SimpleImmutableEntry<String, LocalDate>, SalesAggregate> merged = new HashMap<>();
+    for (ProductSalesAggregate row : rows) {
+      LocalDate day = daily ? row.getDay() : null;
+      merged.put(new SimpleImmutableEntry<>(row.getProductId(), day), new SalesAggregate(
+          row.getProductId(), day, row.getQuantity(), row.getRevenue()));
+    }
+    for (Map.Entry<SimpleImmutableEntry<String, LocalDate>, long[]> entry : archived.entrySet()) {
+      if (products.contains(entry.getKey().getKey())) {
+        long[] sums = entry.getValue();
+        merged.merge(entry.getKey(),
+            new SalesAggregate(entry.getKey().getKey(), entry.getKey().getValue(), sums[0],
+                sums[1] / 100.0),
+            (row, cold) -> row.plus(cold.getQuantity(), cold.getRevenue()));
+      }
+    }
+    return new ArrayList<>(merged.values());
+  }
+
+  /**
+   * Add newly recorded orders to their day and month, in the transaction that saved them
+   */
+  @EventListener
+  @Transactional
+  public void onOrdersRecorded(OrdersRecordedEvent event) {
+    Map<DailySalesId, DailySales> days = new HashMap<>();
+    Map<MonthlySalesId, MonthlySales> months = new HashMap<>();
+    for (Order order : event.getOrders()) {
+      if (order.getSellerId() == null || order.getProductId() == null
+          || order.getQuantity() == null || order.getTimestamp() == null) {
+        continue;
+      }
+      accumulate(days, months, order.getSellerId(), order.getProductId(),
+          order.getTimestamp().toLocalDate(), order.getQuantity(),
+          order.getTotalPrice() != null ? order.getTotalPrice() : 0);
+    }
+    addSales(days, months);
+  }
+
+  private static void accumulate(Map<DailySalesId, DailySales> days,
+      Map<MonthlySalesId, MonthlySales> months, String sellerId, String productId,
+      LocalDate date, int quantity, double revenue) {
+    DailySales day = days.computeIfAbsent(new DailySalesId(sellerId, productId, date),
+        id -> new DailySales(id.getSellerId(), id.getProductId(), id.getDate(), 0, 0.0, 0));
+    day.setQuantity(day.getQuantity() + quantity);
+    day.setRevenue(day.getRevenue() + revenue);
+    day.setOrderCount(day.getOrderCount() + 1);
+
+    MonthlySales month = months.computeIfAbsent(
+        new MonthlySalesId(sellerId, productId, date.withDayOfMonth(1)),
+        id -> new MonthlySales(id.getSellerId(), id.getProductId(), id.getMonth(), 0, 0.0, 0));
+    month.setQuantity(month.getQuantity() + quantity);
+    month.setRevenue(month.getRevenue() + revenue);
+    month.setOrderCount(month.getOrderCount() + 1);
+  }
+
+  private void addSales(Map<DailySalesId, DailySales> days,
+      Map<MonthlySalesId, MonthlySales> months) {
+    days.values().forEach(day -> dailySalesRepository.addSales(day.getSellerId(),
+        day.getProductId(), day.getDate(), day.getQuantity(), day.getRevenue(),
+        day.getOrderCount()));
+    months.values().forEach(month -> monthlySalesRepository.addSales(month.getSellerId(),
+        month.getProductId(), month.getMonth(), month.getQuantity(), month.getRevenue(),
+        month.getOrderCount()));
+  }
+
+  /**
+   * Rows are recomputed under table locks, order writes and archive runs wait for the rebuild to
+   * commit. Days and months up to the end of the archive are rebuilt from scratch, from the
+   * orders table and the archived orders together.
+   */
+  @Override
+  @Transactional
+  public int backfill() {
+    orderRepository.lockAgainstWrites();
+    dailySalesRepository.lockRollups();
+    orderArchive.refresh();
+    LocalDate archivedUntil = orderArchive.archivedUntil();
+    if (archivedUntil != null) {
+      dailySalesRepository.deleteBefore(archivedUntil);
+      monthlySalesRepository.deleteBefore(archivedUntil);
+    }
+    int days = dailySalesRepository.backfillFromOrders();
+    int months = monthlySalesRepository.backfillFromOrders();
+    int archived = archivedUntil != null ? addArchivedSales() : 0;
+    logger.info("Sales rollup backfill wrote {} daily and {} monthly rows, {} from archived orders",
+        days, months, archived);
+    markReadyOnCommit();
+    return days + months + archived;
+  }
+
+  /**
+   * @return Number of rows written
+   */
+  private int addArchivedSales() {
+    Map<DailySalesId, DailySales> days = new HashMap<>();
+    Map<MonthlySalesId, MonthlySales> months = new HashMap<>();
+    orderArchive.scan(null, Long.MIN_VALUE, Long.MAX_VALUE,
+        (seller, product, micros, quantity, cents) -> accumulate(days, months, seller, product,
+            OrderColumnStore.day(micros), quantity, cents / 100.0));
+    addSales(days, months);
+    return days.size() + months.size();
+  }
+
+  /**
+   * Rebuild the rollups on start when they do not account for every order, e.g. against an
+   * existing orders table or rows written before revenue and order counts were tracked. The check
+   * runs in its own transaction: when it fails, the transaction is rolled back as a whole and the
+   * application starts with aggregations reading the orders table.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void backfillIfIncomplete() {
+    try {
+      transactionTemplate.executeWithoutResult(status -> {
+        long orders = orderRepository.countRollupOrders() + orderArchive.countArchivedOrders();
+        if (dailySalesRepository.sumOrderCount() != orders
+            || monthlySalesRepository.sumOrderCount() != orders) {
+          logger.info("Sales rollups do not cover all {} orders, rebuilding them", orders);
+          backfill();
+        } else {
+          markReadyOnCommit();
+        }
+      });
+    } catch (RuntimeException e) {
+      logger.error("Sales rollup backfill failed, aggregating from orders: {}", e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Other transactions only see a rebuild once it is committed
+   */
+  private void markReadyOnCommit() {
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCommit() {
+        rollupsReady = true;
+      }
+    });
+  }
+}
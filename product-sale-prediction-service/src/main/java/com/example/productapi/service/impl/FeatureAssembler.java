@@ -0,0 +1,111 @@
+package com.example.productapi.service.impl;
+
+import com.example.productapi.ml.FeatureMatrix;
+import com.example.productapi.ml.FeatureSchema;
+import com.example.productapi.model.Product;
+import com.example.productapi.service.DailySalesService;
+import com.example.productapi.util.HolidayChecker;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Builds the {@link FeatureMatrix} of a forecast: one row per product x day, product-major.
+ *
+ * <p>The calendar columns depend only on the date, so they are computed once per day and copied
+ * into every product's rows. Lag features for all products come from one daily_sales range read
+ * covering [first date - 30, last date - 1].
+ */
+@Component
+public class FeatureAssembler {
+
+  /**
+   * Longest lag feature (lag_30)
+   */
+  private static final int MAX_LAG_DAYS = 30;
+
+  private static final int[] CALENDAR_COLUMNS = {
+      FeatureSchema.IS_HOLIDAY, FeatureSchema.IS_WEEKEND, FeatureSchema.DAY_OF_WEEK,
+      FeatureSchema.DAY_OF_MONTH, FeatureSchema.MONTH};
+
+  private final DailySalesService dailySalesService;
+
+  @Autowired
+  public FeatureAssembler(DailySalesService dailySalesService) {
+    this.dailySalesService = dailySalesService;
+  }
+
+  /**
+   * Assemble the feature rows of the given products for every date
+   *
+   * @param priceToSale Sale price applied to every product, each product's own price when null or
+   *                    0 (no discount)
+   */
+  public FeatureMatrix assemble(List<Product> products, String sellerId, Double priceToSale,
+      List<LocalDate> dates) {
+    int days = dates.size();
+    FeatureMatrix features = FeatureMatrix.allocate(products.size() * days);
+    if (features.getRowCount() == 0) {
+      return features;
+    }
+
+    double[][] calendar = calendarBlock(dates);
+    Map<String, Map<LocalDate, Integer>> salesByProduct = dailySalesHistory(products, sellerId,
+        dates);
+
+    int row = 0;
+    for (Product product : products) {
+      double originalPrice = product.getPrice() != null ? product.getPrice() : 0.0;
+      double salePrice = (priceToSale == null || priceToSale == 0) ? originalPrice : priceToSale;
+      Map<LocalDate, Integer> dailySales = salesByProduct.getOrDefault(product.getId(), Map.of());
+
+      for (int day = 0; day < days; day++, row++) {
+        LocalDate date = dates.get(day);
+        features.setIds(row, product.getId(), sellerId);
+        features.set(row, FeatureSchema.SALE_PRICE, salePrice);
+        features.set(row, FeatureSchema.ORIGINAL_PRICE, originalPrice);
+        for (int i = 0; i < CALENDAR_COLUMNS.length; i++) {
+          features.set(row, CALENDAR_COLUMNS[i], calendar[day][i]);
+        }
+        // Lag features - units sold 1, 7 and 30 days before
+        features.set(row, FeatureSchema.LAG_1, dailySales.getOrDefault(date.minusDays(1), 0));
+        features.set(row, FeatureSchema.LAG_7, dailySales.getOrDefault(date.minusDays(7), 0));
+        features.set(row, FeatureSchema.LAG_30, dailySales.getOrDefault(date.minusDays(30), 0));
+      }
+    }
+    return features;
+  }
+
+  /**
+   * Calendar features of each date, in {@link #CALENDAR_COLUMNS} order
+   */
+  private double[][] calendarBlock(List<LocalDate> dates) {
+    double[][] calendar = new double[dates.size()][];
+    for (int day = 0; day < dates.size(); day++) {
+      LocalDate date = dates.get(day);
+      calendar[day] = new double[]{
+          HolidayChecker.isHoliday(date) ? 1 : 0,
+          HolidayChecker.isWeekend(date) ? 1 : 0,
+          date.getDayOfWeek().getValue() - 1, // Python weekday: Monday=0, Sunday=6
+          date.getDayOfMonth(),
+          date.getMonthValue()};
+    }
+    return calendar;
+  }
+
+  private Map<String, Map<LocalDate, Integer>> dailySalesHistory(List<Product> products,
+      String sellerId, List<LocalDate> dates) {
+    LocalDate from = dates.get(0).minusDays(MAX_LAG_DAYS);
+    LocalDate to = dates.get(dates.size() - 1).minusDays(1);
+    if (products.size() == 1) {
+      String productId = products.get(0).getId();
+      return Map.of(productId,
+          dailySalesService.getDailyQuantities(sellerId, productId, from, to));
+    }
+    List<String> productIds = products.stream().map(Product::getId).collect(Collectors.toList());
+    return dailySalesService.getDailyQuantities(sellerId, productIds, from, to);
+  }
+}
@@ -0,0 +1,239 @@
+package com.example.productapi.service.impl;
+
+import com.example.productapi.event.OrdersRecordedEvent;
+import com.example.productapi.ml.FeatureMatrix;
+import com.example.productapi.ml.FeatureSchema;
+import com.example.productapi.model.Order;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Bounded LRU cache of daily forecasts.
+ *
+ * <p>Entries are keyed on the engine and the full feature row (product, seller, prices, calendar
+ * and lag features), so a hit always returns what the engine would have returned for that row.
+ * Recording new orders for a seller/product drops its entries, since they were computed from
+ * order history that has now changed.
+ *
+ * <p>Statistics are exported as prediction.cache.hits / misses / evictions / invalidations and
+ * prediction.cache.size.
+ */
+@Component
+public class ForecastCache {
+
+  private static final Logger logger = LoggerFactory.getLogger(ForecastCache.class);
+
+  private final boolean enabled;
+  private final int maxEntries;
+
+  private final LinkedHashMap<Key, Integer> entries;
+  // seller/product -> keys of its cached rows, for invalidation
+  private final Map<String, Set<Key>> keysByProduct = new HashMap<>();
+
+  private long hits;
+  private long misses;
+  private long evictions;
+  private long invalidations;
+
+  public ForecastCache(
+      @Value("${prediction.cache.enabled:true}") boolean enabled,
+      @Value("${prediction.cache.max-entries:100000}") int maxEntries,
+      MeterRegistry meterRegistry) {
+    this.enabled = enabled && maxEntries > 0;
+    this.maxEntries = maxEntries;
+    this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, Integer> eldest) {
+        if (size() > ForecastCache.this.maxEntries) {
+          unindex(eldest.getKey());
+          evictions++;
+          return true;
+        }
+        return false;
+      }
+    };
+
+    FunctionCounter.builder("prediction.cache.hits", this, ForecastCache::getHits)
+        .register(meterRegistry);
+    FunctionCounter.builder("prediction.cache.misses", this, ForecastCache::getMisses)
+        .register(meterRegistry);
+    FunctionCounter.builder("prediction.cache.evictions", this, ForecastCache::getEvictions)
+        .register(meterRegistry);
+    FunctionCounter.builder("prediction.cache.invalidations", this,
+            ForecastCache::getInvalidations)
+        .register(meterRegistry);
+    Gauge.builder("prediction.cache.size", this, ForecastCache::size)
+        .register(meterRegistry);
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Look up the cached quantity of a feature row
+   *
+   * @return Cached quantity, or null on a miss
+   */
+  public synchronized Integer get(String engineName, FeatureMatrix features, int row) {
+    if (!enabled) {
+      return null;
+    }
+    Integer quantity = entries.get(Key.of(engineName, features, row));
+    if (quantity != null) {
+      hits++;
+    } else {
+      misses++;
+    }
+    return quantity;
+  }
+
+  public synchronized void put(String engineName, FeatureMatrix features, int row,
+      int quantity) {
+    if (!enabled) {
+      return;
+    }
+    Key key = Key.of(engineName, features, row);
+    if (entries.put(key, quantity) == null) {
+      keysByProduct.computeIfAbsent(key.productKey(), k -> new HashSet<>()).add(key);
+    }
+  }
+
+  /**
+   * Drop every cached forecast of a seller/product pair
+   */
+  public synchronized void invalidate(String sellerId, String productId) {
+    Set<Key> keys = keysByProduct.remove(productKey(sellerId, productId));
+    if (keys == null) {
+      return;
+    }
+    for (Key key : keys) {
+      entries.remove(key);
+    }
+    invalidations += keys.size();
+    logger.debug("Invalidated {} cached forecasts of seller {} product {}", keys.size(),
+        sellerId, productId);
+  }
+
+  /**
+   * Runs after the orders are committed, or right away when they were saved outside a
+   * transaction
+   */
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onOrdersRecorded(OrdersRecordedEvent event) {
+    if (!enabled) {
+      return;
+    }
+    Set<String> seen = new HashSet<>();
+    for (Order order : event.getOrders()) {
+      if (seen.add(productKey(order.getSellerId(), order.getProductId()))) {
+        invalidate(order.getSellerId(), order.getProductId());
+      }
+    }
+  }
+
+  public synchronized void clear() {
+    entries.clear();
+    keysByProduct.clear();
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+
+  public synchronized long getInvalidations() {
+    return invalidations;
+  }
+
+  private void unindex(Key key) {
+    String productKey = key.productKey();
+    Set<Key> keys = keysByProduct.get(productKey);
+    if (keys != null) {
+      keys.remove(key);
+      if (keys.isEmpty()) {
+        keysByProduct.remove(productKey);
+      }
+    }
+  }
+
+  private static String productKey(String sellerId, String productId) {
+    return sellerId + "|" + productId;
+  }
+
+  /**
+   * Engine, ids and a copy of the row's numeric features
+   */
+  private static final class Key {
+
+    final String engineName;
+    final String productId;
+    final String sellerId;
+    final double[] values;
+    final int hash;
+
+    private Key(String engineName, String productId, String sellerId, double[] values) {
+      this.engineName = engineName;
+      this.productId = productId;
+      this.sellerId = sellerId;
+      this.values = values;
+      int h = engineName.hashCode();
+      h = 31 * h + productId.hashCode();
+      h = 31 * h + sellerId.hashCode();
+      this.hash = 31 * h + Arrays.hashCode(values);
+    }
+
+    static Key of(String engineName, FeatureMatrix features, int row) {
+      int offset = features.offset(row);
+      return new Key(engineName, features.getProductId(row), features.getSellerId(row),
+          Arrays.copyOfRange(features.getValues(), offset, offset + FeatureSchema.FEATURE_COUNT));
+    }
+
+    String productKey() {
+      return ForecastCache.productKey(sellerId, productId);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key other)) {
+        return false;
+      }
+      return hash == other.hash
+          && engineName.equals(other.engineName)
+          && productId.equals(other.productId)
+          && sellerId.equals(other.sellerId)
+          && Arrays.equals(values, other.values);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+}
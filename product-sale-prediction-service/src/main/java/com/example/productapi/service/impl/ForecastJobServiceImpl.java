@@ -0,0 +1,312 @@
+package com.example.productapi.service.impl;
+
+import com.example.productapi.model.ForecastJob;
+import com.example.productapi.model.ForecastJob.Status;
+import com.example.productapi.model.ForecastJobResult;
+import com.example.productapi.model.Predications;
+import com.example.productapi.model.Product;
+import com.example.productapi.repository.ForecastJobRepository;
+import com.example.productapi.repository.ForecastJobResultRepository;
+import com.example.productapi.repository.ProductRepository;
+import com.example.productapi.service.ForecastJobService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Runs forecast jobs on a pool of prediction.jobs.workers threads.
+ *
+ * <p>The forecast_job table is the queue: workers claim the oldest queued job with a row lock
+ * that other instances skip, so jobs are picked up after a restart and never run twice at once.
+ * A job's products are forecast in steps of about prediction.jobs.step-rows product x day rows;
+ * each step's results are committed with the job's progress and heartbeat, and the heartbeat is
+ * refreshed every prediction.jobs.heartbeat-interval-ms while a step runs. A running job whose
+ * heartbeat is older than prediction.jobs.stale-after-ms (its worker died) is queued again and
+ * resumes with the products it has not stored yet. Products are stepped through in ID order and
+ * results are keyed by product ID, so a resumed attempt skips the same products however the
+ * catalog is read; a worker whose job was requeued and claimed again can no longer store results.
+ */
+@Service
+public class ForecastJobServiceImpl implements ForecastJobService {
+
+  private static final Logger logger = LoggerFactory.getLogger(ForecastJobServiceImpl.class);
+
+  private final ForecastJobStore forecastJobStore;
+  private final ForecastJobRepository forecastJobRepository;
+  private final ForecastJobResultRepository forecastJobResultRepository;
+  private final ProductRepository productRepository;
+  private final PredictionServiceImpl predictionService;
+  private final ObjectMapper objectMapper;
+  private final int workers;
+  private final int stepRows;
+  private final long staleAfterMs;
+  private final ExecutorService executor;
+  private final AtomicInteger busyWorkers = new AtomicInteger();
+  /**
+   * Attempt of every job running on this instance, by job ID
+   */
+  private final Map<String, Integer> runningAttempts = new ConcurrentHashMap<>();
+
+  public ForecastJobServiceImpl(ForecastJobStore forecastJobStore,
+      ForecastJobRepository forecastJobRepository,
+      ForecastJobResultRepository forecastJobResultRepository,
+      ProductRepository productRepository, PredictionServiceImpl predictionService,
+      ObjectMapper objectMapper,
+      @Value("${prediction.jobs.workers:2}") int workers,
+      @Value("${prediction.jobs.step-rows:20000}") int stepRows,
+      @Value("${prediction.jobs.stale-after-ms:60000}") long staleAfterMs) {
+    this.forecastJobStore = forecastJobStore;
+    this.forecastJobRepository = forecastJobRepository;
+    this.forecastJobResultRepository = forecastJobResultRepository;
+    this.productRepository = productRepository;
+    this.predictionService = predictionService;
+    this.objectMapper = objectMapper;
+    this.workers = Math.max(1, workers);
+    this.stepRows = Math.max(1, stepRows);
+    this.staleAfterMs = staleAfterMs;
+
+    AtomicInteger counter = new AtomicInteger();
+    this.executor = Executors.newFixedThreadPool(this.workers, runnable -> {
+      Thread thread = new Thread(runnable, "forecast-job-" + counter.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  @Override
+  public ForecastJob submit(ForecastJob spec) {
+    if (spec.getSellerId() == null || spec.getSellerId().isEmpty()) {
+      throw new IllegalArgumentException("sellerId is required");
+    }
+    if (spec.getStartDate() == null) {
+      throw new IllegalArgumentException("startDate is required");
+    }
+    String productId = spec.getProductId() != null && !spec.getProductId().isEmpty()
+        ? spec.getProductId() : null;
+    if (productId == null && (spec.getCategory() == null || spec.getCategory().isEmpty())) {
+      throw new IllegalArgumentException("productId or category is required");
+    }
+    if (spec.getEndDate() != null && spec.getEndDate().isBefore(spec.getStartDate())) {
+      throw new IllegalArgumentException("endDate is before startDate");
+    }
+
+    ForecastJob job = forecastJobStore.create(ForecastJob.builder()
+        .id(UUID.randomUUID().toString())
+        .status(Status.QUEUED)
+        .sellerId(spec.getSellerId())
+        .productId(productId)
+        .category(productId == null ? spec.getCategory() : null)
+        .salePrice(spec.getSalePrice())
+        .startDate(spec.getStartDate())
+        .endDate(spec.getEndDate() != null ? spec.getEndDate() : spec.getStartDate())
+        .topN(spec.getTopN())
+        .createdAt(LocalDateTime.now())
+        .build());
+    logger.info("Forecast job {} queued for seller {} ({} to {})", job.getId(), job.getSellerId(),
+        job.getStartDate(), job.getEndDate());
+    dispatch();
+    return job;
+  }
+
+  @Override
+  public Optional<ForecastJob> getJob(String jobId) {
+    return forecastJobRepository.findById(jobId);
+  }
+
+  @Override
+  public ResultPage getResults(String jobId, String afterProductId, int limit) {
+    PageRequest page = PageRequest.of(0, Math.max(1, limit));
+    List<ForecastJobResult> results = afterProductId == null || afterProductId.isEmpty()
+        ? forecastJobResultRepository.findByJobIdOrderByProductId(jobId, page)
+        : forecastJobResultRepository.findByJobIdAndProductIdGreaterThanOrderByProductId(jobId,
+            afterProductId, page);
+    String next = results.isEmpty()
+        ? afterProductId : results.get(results.size() - 1).getProductId();
+    return new ResultPage(toPredications(results), next);
+  }
+
+  @Override
+  public List<Predications> getTopResults(String jobId, int topN) {
+    return toPredications(forecastJobResultRepository
+        .findByJobIdOrderByTotalQuantityDescProductIdAsc(jobId,
+            PageRequest.of(0, Math.max(1, topN))));
+  }
+
+  @Override
+  public Optional<ForecastJob> cancel(String jobId) {
+    return forecastJobStore.cancel(jobId);
+  }
+
+  /**
+   * Requeue jobs of dead workers and hand queued jobs to idle workers. Also runs after every
+   * submission and whenever a worker finishes a job.
+   */
+  @Scheduled(initialDelay = 5000, fixedDelayString = "${prediction.jobs.poll-interval-ms:5000}")
+  public void poll() {
+    try {
+      int requeued = forecastJobStore.requeueStale(
+          LocalDateTime.now().minus(staleAfterMs, ChronoUnit.MILLIS));
+      if (requeued > 0) {
+        logger.warn("Queued {} forecast job(s) again after their worker stopped", requeued);
+      }
+      dispatch();
+    } catch (Exception e) {
+      logger.error("Forecast job poll failed: {}", e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Refresh the heartbeat of the jobs running on this instance, so a step that takes longer than
+   * prediction.jobs.stale-after-ms is not mistaken for a dead worker
+   */
+  @Scheduled(initialDelay = 5000,
+      fixedDelayString = "${prediction.jobs.heartbeat-interval-ms:20000}")
+  public void heartbeat() {
+    runningAttempts.forEach((jobId, attempt) -> {
+      try {
+        forecastJobStore.heartbeat(jobId, attempt);
+      } catch (Exception e) {
+        logger.warn("Heartbeat of forecast job {} failed: {}", jobId, e.getMessage());
+      }
+    });
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    // Interrupted jobs stay RUNNING and are queued again once their heartbeat is stale
+    executor.shutdownNow();
+  }
+
+  /**
+   * Claim queued jobs while there are idle workers
+   */
+  private void dispatch() {
+    while (true) {
+      int busy = busyWorkers.get();
+      if (busy >= workers) {
+        return;
+      }
+      if (!busyWorkers.compareAndSet(busy, busy + 1)) {
+        continue;
+      }
+      Optional<ForecastJob> claimed;
+      try {
+        claimed = forecastJobStore.claimNext();
+      } catch (RuntimeException e) {
+        busyWorkers.decrementAndGet();
+        throw e;
+      }
+      if (claimed.isEmpty()) {
+        busyWorkers.decrementAndGet();
+        return;
+      }
+      ForecastJob job = claimed.get();
+      executor.execute(() -> {
+        try {
+          run(job);
+        } finally {
+          busyWorkers.decrementAndGet();
+        }
+        if (!executor.isShutdown()) {
+          poll();
+        }
+      });
+    }
+  }
+
+  void run(ForecastJob job) {
+    String jobId = job.getId();
+    int attempt = job.getAttempts();
+    logger.info("Forecast job {} started (attempt {})", jobId, attempt);
+    runningAttempts.put(jobId, attempt);
+    try {
+      List<Product> products = job.getProductId() != null
+          ? productRepository.findById(job.getProductId()).map(List::of).orElseThrow(
+              () -> new IllegalArgumentException("Product not found with ID: " + job.getProductId()))
+          : productRepository.findBySellerIdAndCategoryOrderById(job.getSellerId(),
+              job.getCategory());
+      Set<String> done = new HashSet<>(forecastJobResultRepository.findProductIdsByJobId(jobId));
+      List<Product> remaining = new ArrayList<>(products.size());
+      for (Product product : products) {
+        if (!done.contains(product.getId())) {
+          remaining.add(product);
+        }
+      }
+      forecastJobStore.setProductsTotal(jobId, products.size(), products.size() - remaining.size());
+
+      int days = (int) ChronoUnit.DAYS.between(job.getStartDate(), job.getEndDate()) + 1;
+      int productsPerStep = Math.max(1, stepRows / days);
+      for (int from = 0; from < remaining.size(); from += productsPerStep) {
+        List<Product> step = remaining.subList(from,
+            Math.min(remaining.size(), from + productsPerStep));
+        Status status = runStep(job, attempt, step);
+        if (status != Status.RUNNING) {
+          logger.info("Forecast job {} attempt {} stopped, the job is {}", jobId, attempt,
+              status == Status.QUEUED ? "owned by a later attempt" : status);
+          return;
+        }
+      }
+
+      forecastJobStore.finish(jobId, attempt, Status.SUCCEEDED, null);
+      logger.info("Forecast job {} finished, {} products", jobId, products.size());
+    } catch (Exception e) {
+      if (Thread.currentThread().isInterrupted()) {
+        // Shutting down, the job is resumed after the restart
+        return;
+      }
+      logger.error("Forecast job {} failed: {}", jobId, e.getMessage(), e);
+      forecastJobStore.finish(jobId, attempt, Status.FAILED, e.getMessage());
+    } finally {
+      runningAttempts.remove(jobId, attempt);
+    }
+  }
+
+  private Status runStep(ForecastJob job, int attempt, List<Product> step)
+      throws JsonProcessingException {
+    List<Predications> forecasts = predictionService.forecastProducts(step,
+        job.getSellerId(), job.getSalePrice(), job.getStartDate(), job.getEndDate());
+
+    List<ForecastJobResult> results = new ArrayList<>(step.size());
+    for (Predications forecast : forecasts) {
+      results.add(ForecastJobResult.builder()
+          .jobId(job.getId())
+          .productId(forecast.getProductId())
+          .totalQuantity(forecast.getTotalQuantity())
+          .predications(objectMapper.writeValueAsString(forecast))
+          .build());
+    }
+    return forecastJobStore.recordStep(job.getId(), attempt, results);
+  }
+
+  private List<Predications> toPredications(List<ForecastJobResult> results) {
+    List<Predications> predications = new ArrayList<>(results.size());
+    for (ForecastJobResult result : results) {
+      try {
+        predications.add(objectMapper.readValue(result.getPredications(), Predications.class));
+      } catch (JsonProcessingException e) {
+        throw new IllegalStateException("Unreadable result of forecast job " + result.getJobId()
+            + " product " + result.getProductId(), e);
+      }
+    }
+    return predications;
+  }
+}
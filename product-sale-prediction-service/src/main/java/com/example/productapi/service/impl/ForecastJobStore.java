@@ -0,0 +1,131 @@
+package com.example.productapi.service.impl;
+
+import com.example.productapi.model.ForecastJob;
+import com.example.productapi.model.ForecastJob.Status;
+import com.example.productapi.model.ForecastJobResult;
+import com.example.productapi.repository.ForecastJobRepository;
+import com.example.productapi.repository.ForecastJobResultRepository;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Transactional state changes of forecast jobs, kept apart from the workers so every step commits
+ * on its own
+ */
+@Component
+public class ForecastJobStore {
+
+  private final ForecastJobRepository forecastJobRepository;
+  private final ForecastJobResultRepository forecastJobResultRepository;
+
+  public ForecastJobStore(ForecastJobRepository forecastJobRepository,
+      ForecastJobResultRepository forecastJobResultRepository) {
+    this.forecastJobRepository = forecastJobRepository;
+    this.forecastJobResultRepository = forecastJobResultRepository;
+  }
+
+  @Transactional
+  public ForecastJob create(ForecastJob job) {
+    return forecastJobRepository.save(job);
+  }
+
+  /**
+   * Mark the oldest queued job as running
+   *
+   * @return The claimed job, or empty when nothing is queued
+   */
+  @Transactional
+  public Optional<ForecastJob> claimNext() {
+    return forecastJobRepository.lockNextQueued().map(job -> {
+      LocalDateTime now = LocalDateTime.now();
+      job.setStatus(Status.RUNNING);
+      if (job.getStartedAt() == null) {
+        job.setStartedAt(now);
+      }
+      job.setHeartbeatAt(now);
+      job.setAttempts(job.getAttempts() + 1);
+      return forecastJobRepository.save(job);
+    });
+  }
+
+  @Transactional
+  public void setProductsTotal(String jobId, int productsTotal, int productsDone) {
+    forecastJobRepository.findById(jobId).ifPresent(job -> {
+      job.setProductsTotal(productsTotal);
+      job.setProductsDone(productsDone);
+      job.setHeartbeatAt(LocalDateTime.now());
+    });
+  }
+
+  /**
+   * Store the results of one step and advance the job's progress
+   *
+   * @param attempt The attempt the step belongs to, see {@link ForecastJob#getAttempts()}
+   * @return The job's status after the step, CANCELLED if it was cancelled meanwhile and QUEUED
+   *     if it was queued again and belongs to a later attempt now
+   */
+  @Transactional
+  public Status recordStep(String jobId, int attempt, List<ForecastJobResult> results) {
+    ForecastJob job = forecastJobRepository.findById(jobId).orElse(null);
+    if (job == null) {
+      return Status.CANCELLED;
+    }
+    if (job.getStatus() != Status.RUNNING) {
+      return job.getStatus();
+    }
+    if (job.getAttempts() != attempt) {
+      // Requeued while this step ran and claimed again, the later attempt owns the job
+      return Status.QUEUED;
+    }
+    forecastJobResultRepository.saveAll(results);
+    // Counted rather than added up, a step repeated after a requeue stores the same rows again
+    job.setProductsDone((int) forecastJobResultRepository.countByJobId(jobId));
+    job.setHeartbeatAt(LocalDateTime.now());
+    return job.getStatus();
+  }
+
+  /**
+   * Refresh the heartbeat of a job while a step runs
+   *
+   * @return Whether the job is still running in the given attempt
+   */
+  @Transactional
+  public boolean heartbeat(String jobId, int attempt) {
+    return forecastJobRepository.touchHeartbeat(jobId, attempt, LocalDateTime.now()) > 0;
+  }
+
+  /**
+   * Move a running job to a final state. Jobs cancelled in the meantime stay cancelled, and jobs
+   * claimed again by a later attempt are left to it.
+   */
+  @Transactional
+  public void finish(String jobId, int attempt, Status status, String error) {
+    forecastJobRepository.findById(jobId).ifPresent(job -> {
+      if (job.getStatus() != Status.RUNNING || job.getAttempts() != attempt) {
+        return;
+      }
+      job.setStatus(status);
+      job.setError(error != null && error.length() > 1000 ? error.substring(0, 1000) : error);
+      job.setFinishedAt(LocalDateTime.now());
+    });
+  }
+
+  @Transactional
+  public Optional<ForecastJob> cancel(String jobId) {
+    return forecastJobRepository.findById(jobId).map(job -> {
+      if (!job.getStatus().isFinished()) {
+        job.setStatus(Status.CANCELLED);
+        job.setFinishedAt(LocalDateTime.now());
+      }
+      return job;
+    });
+  }
+
+  @Transactional
+  public int requeueStale(LocalDateTime heartbeatBefore) {
+    return forecastJobRepository.requeueStale(heartbeatBefore);
+  }
+}
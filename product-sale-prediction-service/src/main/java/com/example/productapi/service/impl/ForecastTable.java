@@ -0,0 +1,138 @@
+package com.example.productapi.service.impl;
+
+import com.example.productapi.model.DailyForecast;
+import com.example.productapi.repository.DailyForecastRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Materialized list-price forecasts (daily_forecast), written by {@link ForecastTableJob} and read
+ * by forecast requests in place of live inference.
+ *
+ * <p>A lookup only answers when every requested product and day is present, was produced by the
+ * model currently in use and is younger than prediction.materialized.max-age-hours. Orders
+ * recorded since the last run are not reflected until the next one.
+ */
+@Component
+public class ForecastTable {
+
+  /**
+   * Rows persisted between flushes when a seller's forecasts are rewritten
+   */
+  private static final int FLUSH_ROWS = 1000;
+
+  private final DailyForecastRepository dailyForecastRepository;
+  private final boolean enabled;
+  private final int horizonDays;
+  private final long maxAgeHours;
+
+  @PersistenceContext
+  private EntityManager entityManager;
+
+  public ForecastTable(DailyForecastRepository dailyForecastRepository,
+      @Value("${prediction.materialized.enabled:true}") boolean enabled,
+      @Value("${prediction.materialized.horizon-days:30}") int horizonDays,
+      @Value("${prediction.materialized.max-age-hours:36}") long maxAgeHours) {
+    this.dailyForecastRepository = dailyForecastRepository;
+    this.enabled = enabled;
+    this.horizonDays = horizonDays;
+    this.maxAgeHours = maxAgeHours;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public int getHorizonDays() {
+    return horizonDays;
+  }
+
+  /**
+   * Materialized quantities of the given products for every date
+   *
+   * @return Quantities product-major (product x day), or null when the table does not cover the
+   * whole request
+   */
+  public int[] lookup(String sellerId, List<String> productIds, List<LocalDate> dates,
+      String modelVersion) {
+    if (!enabled || productIds.isEmpty() || dates.isEmpty()) {
+      return null;
+    }
+    LocalDate first = dates.get(0);
+    LocalDate last = dates.get(dates.size() - 1);
+    // The table never reaches past the horizon of the last run
+    if (last.isAfter(LocalDate.now().plusDays(horizonDays))) {
+      return null;
+    }
+
+    Map<String, Integer> productIndex = new HashMap<>();
+    for (int i = 0; i < productIds.size(); i++) {
+      productIndex.putIfAbsent(productIds.get(i), i);
+    }
+    int days = dates.size();
+    int[] quantities = new int[productIds.size() * days];
+    boolean[] present = new boolean[quantities.length];
+    int found = 0;
+    LocalDateTime oldest = LocalDateTime.now().minusHours(maxAgeHours);
+    for (DailyForecast forecast : dailyForecastRepository.findBySellerIdAndProductIdInAndDateBetween(
+        sellerId, productIndex.keySet(), first, last)) {
+      if (!modelVersion.equals(forecast.getModelVersion())
+          || forecast.getGeneratedAt().isBefore(oldest)) {
+        return null;
+      }
+      int slot = productIndex.get(forecast.getProductId()) * days
+          + (int) (forecast.getDate().toEpochDay() - first.toEpochDay());
+      if (!present[slot]) {
+        present[slot] = true;
+        quantities[slot] = forecast.getQuantity();
+        found++;
+      }
+    }
+    if (found < productIndex.size() * days) {
+      return null;
+    }
+
+    // Duplicate product IDs share the first one's forecast
+    for (int i = 0; i < productIds.size(); i++) {
+      int source = productIndex.get(productIds.get(i));
+      if (source != i) {
+        System.arraycopy(quantities, source * days, quantities, i * days, days);
+      }
+    }
+    return quantities;
+  }
+
+  /**
+   * Replace a seller's forecasts within [startDate, endDate] in one transaction, readers see
+   * either the previous run or this one
+   */
+  @Transactional
+  public void replace(String sellerId, LocalDate startDate, LocalDate endDate,
+      List<DailyForecast> forecasts) {
+    dailyForecastRepository.deleteBySellerIdAndDateBetween(sellerId, startDate, endDate);
+    // persist rather than save: save would merge, reading every row before inserting it
+    for (int i = 0; i < forecasts.size(); i++) {
+      entityManager.persist(forecasts.get(i));
+      if ((i + 1) % FLUSH_ROWS == 0) {
+        entityManager.flush();
+        entityManager.clear();
+      }
+    }
+  }
+
+  /**
+   * Drop forecasts of days before the given date
+   */
+  @Transactional
+  public int deleteBefore(LocalDate date) {
+    return dailyForecastRepository.deleteByDateBefore(date);
+  }
+}
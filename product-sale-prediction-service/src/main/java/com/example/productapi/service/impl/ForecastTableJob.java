@@ -0,0 +1,144 @@
+package com.example.productapi.service.impl;
+
+import com.example.productapi.ml.FeatureMatrix;
+import com.example.productapi.model.DailyForecast;
+import com.example.productapi.model.Inventory;
+import com.example.productapi.model.Product;
+import com.example.productapi.repository.InventoryRepository;
+import com.example.productapi.repository.ProductRepository;
+import com.example.productapi.service.PredictionEngine;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Nightly job that forecasts the next prediction.materialized.horizon-days days at list price for
+ * every inventory (seller, product) pair and stores the result in the {@link ForecastTable}.
+ *
+ * <p>Sellers are scored one at a time in batches of prediction.batch.max-rows rows and each
+ * seller's forecasts are replaced in their own transaction. When the engine is unavailable or
+ * fails for a seller, that seller keeps the previous run's rows; nothing is written from the
+ * fallback heuristic.
+ */
+@Component
+public class ForecastTableJob {
+
+  private static final Logger logger = LoggerFactory.getLogger(ForecastTableJob.class);
+
+  private final InventoryRepository inventoryRepository;
+  private final ProductRepository productRepository;
+  private final FeatureAssembler featureAssembler;
+  private final PredictionServiceImpl predictionService;
+  private final ForecastTable forecastTable;
+  private final int maxBatchRows;
+
+  public ForecastTableJob(InventoryRepository inventoryRepository,
+      ProductRepository productRepository, FeatureAssembler featureAssembler,
+      PredictionServiceImpl predictionService, ForecastTable forecastTable,
+      @Value("${prediction.batch.max-rows:5000}") int maxBatchRows) {
+    this.inventoryRepository = inventoryRepository;
+    this.productRepository = productRepository;
+    this.featureAssembler = featureAssembler;
+    this.predictionService = predictionService;
+    this.forecastTable = forecastTable;
+    this.maxBatchRows = Math.max(1, maxBatchRows);
+  }
+
+  @Scheduled(cron = "${prediction.materialized.cron:0 0 2 * * *}")
+  public void run() {
+    if (!forecastTable.isEnabled()) {
+      return;
+    }
+    PredictionEngine engine = predictionService.activeEngine();
+    if (!engine.isServiceAvailable()) {
+      logger.warn("{} prediction engine is not available, skipping the forecast table run",
+          engine.getEngineName());
+      return;
+    }
+
+    long started = System.currentTimeMillis();
+    LocalDate today = LocalDate.now();
+    List<LocalDate> dates = new ArrayList<>(forecastTable.getHorizonDays());
+    for (int day = 0; day < forecastTable.getHorizonDays(); day++) {
+      dates.add(today.plusDays(day));
+    }
+    if (dates.isEmpty()) {
+      return;
+    }
+    String modelVersion = engine.getModelVersion();
+    LocalDateTime generatedAt = LocalDateTime.now();
+
+    Map<String, Set<String>> productsBySeller = new TreeMap<>();
+    for (Inventory inventory : inventoryRepository.findAll()) {
+      productsBySeller.computeIfAbsent(inventory.getSellerId(), k -> new LinkedHashSet<>())
+          .add(inventory.getProductId());
+    }
+
+    int sellers = 0;
+    int rows = 0;
+    for (Map.Entry<String, Set<String>> entry : productsBySeller.entrySet()) {
+      String sellerId = entry.getKey();
+      try {
+        List<Product> products = productRepository.findAllById(entry.getValue());
+        FeatureMatrix features = featureAssembler.assemble(products, sellerId, null, dates);
+        int[] quantities = score(engine, features);
+        if (quantities == null) {
+          logger.warn("{} engine failed for seller {}, keeping the previous forecasts",
+              engine.getEngineName(), sellerId);
+          continue;
+        }
+
+        List<DailyForecast> forecasts = new ArrayList<>(quantities.length);
+        for (int row = 0; row < quantities.length; row++) {
+          forecasts.add(DailyForecast.builder()
+              .sellerId(sellerId)
+              .productId(features.getProductId(row))
+              .date(dates.get(row % dates.size()))
+              .quantity(quantities[row])
+              .modelVersion(modelVersion)
+              .generatedAt(generatedAt)
+              .build());
+        }
+        forecastTable.replace(sellerId, dates.get(0), dates.get(dates.size() - 1), forecasts);
+        sellers++;
+        rows += forecasts.size();
+      } catch (Exception e) {
+        logger.error("Forecast table run failed for seller {}: {}", sellerId, e.getMessage(), e);
+      }
+    }
+
+    int expired = forecastTable.deleteBefore(today);
+    logger.info("Forecast table run wrote {} rows for {} of {} sellers with model {} in {} ms "
+            + "({} expired rows removed)", rows, sellers, productsBySeller.size(), modelVersion,
+        System.currentTimeMillis() - started, expired);
+  }
+
+  /**
+   * @return Quantities in row order, or null if any batch failed
+   */
+  private int[] score(PredictionEngine engine, FeatureMatrix features) {
+    int rowCount = features.getRowCount();
+    int[] quantities = new int[rowCount];
+    for (int from = 0; from < rowCount; from += maxBatchRows) {
+      int to = Math.min(rowCount, from + maxBatchRows);
+      double[] predictions = engine.predictBatch(features.slice(from, to));
+      if (predictions == null || predictions.length != to - from) {
+        return null;
+      }
+      for (int i = 0; i < predictions.length; i++) {
+        quantities[from + i] = Math.max(0, (int) Math.round(predictions[i]));
+      }
+    }
+    return quantities;
+  }
+}
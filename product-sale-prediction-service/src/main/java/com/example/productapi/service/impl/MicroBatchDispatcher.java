@@ -0,0 +1,253 @@
+package com.example.productapi.service.impl;
+
+import com.example.productapi.ml.FeatureMatrix;
+import com.example.productapi.service.PredictionEngine;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Coalesces feature rows from concurrent callers into shared inference calls.
+ *
+ * <p>Each engine gets a lane with its own dispatcher thread. The first request to arrive opens a
+ * window of prediction.batching.window-ms; requests arriving during the window are appended until
+ * prediction.batching.max-batch-size rows are collected. The merged rows are scored with one
+ * {@link PredictionEngine#predictBatchAsync(FeatureMatrix)} call and every caller receives its own slice.
+ * Requests that already fill a batch on their own bypass the queue.
+ *
+ * <p>Exported metrics (tagged by engine): prediction.batch.size (rows per call),
+ * prediction.batch.requests (callers per call), prediction.batch.fill.ratio and
+ * prediction.batch.queue.wait.
+ */
+@Component
+public class MicroBatchDispatcher {
+
+  private static final Logger logger = LoggerFactory.getLogger(MicroBatchDispatcher.class);
+
+  private final boolean enabled;
+  private final long windowNanos;
+  private final int maxBatchSize;
+  private final MeterRegistry meterRegistry;
+  private final Map<String, Lane> lanes = new ConcurrentHashMap<>();
+
+  private volatile boolean running = true;
+
+  public MicroBatchDispatcher(
+      @Value("${prediction.batching.enabled:true}") boolean enabled,
+      @Value("${prediction.batching.window-ms:5}") long windowMs,
+      @Value("${prediction.batching.max-batch-size:512}") int maxBatchSize,
+      MeterRegistry meterRegistry) {
+    this.enabled = enabled;
+    this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+    this.maxBatchSize = Math.max(1, maxBatchSize);
+    this.meterRegistry = meterRegistry;
+  }
+
+  /**
+   * Score feature rows through the engine's lane, blocking until the shared batch completes
+   *
+   * @return Raw predicted quantities in row order, or null on failure
+   */
+  public double[] predictBatch(PredictionEngine engine, FeatureMatrix features) {
+    if (!enabled || features.getRowCount() >= maxBatchSize) {
+      return engine.predictBatch(features);
+    }
+    return submit(engine, features).join();
+  }
+
+  /**
+   * Non-blocking variant of {@link #predictBatch(PredictionEngine, FeatureMatrix)}
+   *
+   * @return Raw predicted quantities in row order, or an empty Mono on failure
+   */
+  public Mono<double[]> predictBatchAsync(PredictionEngine engine, FeatureMatrix features) {
+    if (!enabled || features.getRowCount() >= maxBatchSize) {
+      return engine.predictBatchAsync(features);
+    }
+    return Mono.fromFuture(() -> submit(engine, features));
+  }
+
+  /**
+   * Score a sequence of feature matrices, see
+   * {@link PredictionEngine#predictBatchStream(Flux, int)}. Streaming engines receive the
+   * sequence as is, otherwise every matrix goes through the engine's lane.
+   */
+  public Flux<double[]> predictBatchStream(PredictionEngine engine, Flux<FeatureMatrix> batches,
+      int maxConcurrency) {
+    if (engine.isStreaming()) {
+      return engine.predictBatchStream(batches, maxConcurrency);
+    }
+    return batches.flatMapSequential(
+        features -> predictBatchAsync(engine, features).defaultIfEmpty(new double[0]),
+        maxConcurrency);
+  }
+
+  private CompletableFuture<double[]> submit(PredictionEngine engine, FeatureMatrix features) {
+    Pending pending = new Pending(features);
+    if (!running) {
+      pending.future.complete(null);
+      return pending.future;
+    }
+    lanes.computeIfAbsent(engine.getEngineName(), name -> new Lane(engine)).queue.add(pending);
+    return pending.future;
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    running = false;
+    lanes.values().forEach(lane -> lane.thread.interrupt());
+  }
+
+  private static final class Pending {
+
+    final FeatureMatrix rows;
+    final CompletableFuture<double[]> future = new CompletableFuture<>();
+    final long enqueuedAt = System.nanoTime();
+
+    Pending(FeatureMatrix rows) {
+      this.rows = rows;
+    }
+
+    int size() {
+      return rows.getRowCount();
+    }
+  }
+
+  private final class Lane implements Runnable {
+
+    final PredictionEngine engine;
+    final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    final Thread thread;
+
+    final DistributionSummary batchSize;
+    final DistributionSummary batchRequests;
+    final DistributionSummary fillRatio;
+    final Timer queueWait;
+
+    Lane(PredictionEngine engine) {
+      this.engine = engine;
+      String name = engine.getEngineName();
+      this.batchSize = DistributionSummary.builder("prediction.batch.size")
+          .description("Feature rows sent per inference call")
+          .tag("engine", name)
+          .register(meterRegistry);
+      this.batchRequests = DistributionSummary.builder("prediction.batch.requests")
+          .description("Caller requests merged into one inference call")
+          .tag("engine", name)
+          .register(meterRegistry);
+      this.fillRatio = DistributionSummary.builder("prediction.batch.fill.ratio")
+          .description("Rows per inference call relative to the maximum batch size")
+          .tag("engine", name)
+          .register(meterRegistry);
+      this.queueWait = Timer.builder("prediction.batch.queue.wait")
+          .description("Time a request waited before its batch was dispatched")
+          .tag("engine", name)
+          .register(meterRegistry);
+
+      this.thread = new Thread(this, "prediction-batcher-" + name);
+      this.thread.setDaemon(true);
+      this.thread.start();
+    }
+
+    @Override
+    public void run() {
+      while (running) {
+        try {
+          dispatch(collect());
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          break;
+        } catch (Exception e) {
+          logger.error("Prediction batcher for {} failed: {}", engine.getEngineName(),
+              e.getMessage(), e);
+        }
+      }
+
+      // Release callers still waiting so they can fall back
+      Pending pending;
+      while ((pending = queue.poll()) != null) {
+        pending.future.complete(null);
+      }
+    }
+
+    private List<Pending> collect() throws InterruptedException {
+      Pending first = queue.take();
+      List<Pending> batch = new ArrayList<>();
+      batch.add(first);
+      int rows = first.size();
+
+      long deadline = first.enqueuedAt + windowNanos;
+      while (rows < maxBatchSize) {
+        Pending next = queue.peek();
+        if (next != null && rows + next.size() > maxBatchSize) {
+          // Leave it for the next batch rather than overfilling this one
+          break;
+        }
+        long remaining = deadline - System.nanoTime();
+        next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+        if (next == null) {
+          break;
+        }
+        batch.add(next);
+        rows += next.size();
+      }
+      return batch;
+    }
+
+    private void dispatch(List<Pending> batch) {
+      long now = System.nanoTime();
+      List<FeatureMatrix> parts = new ArrayList<>(batch.size());
+      for (Pending pending : batch) {
+        parts.add(pending.rows);
+        queueWait.record(now - pending.enqueuedAt, TimeUnit.NANOSECONDS);
+      }
+      FeatureMatrix rows = parts.size() == 1 ? parts.get(0) : FeatureMatrix.concat(parts);
+      int rowCount = rows.getRowCount();
+      batchSize.record(rowCount);
+      batchRequests.record(batch.size());
+      fillRatio.record((double) rowCount / maxBatchSize);
+
+      engine.predictBatchAsync(rows)
+          .subscribe(
+              predictions -> complete(batch, predictions, rowCount),
+              e -> {
+                logger.error("Batched prediction on {} failed: {}", engine.getEngineName(),
+                    e.getMessage());
+                complete(batch, null, rowCount);
+              },
+              () -> complete(batch, null, rowCount));
+    }
+
+    /**
+     * Hand each caller its slice, or null when the engine produced nothing usable
+     */
+    private void complete(List<Pending> batch, double[] predictions, int rowCount) {
+      boolean valid = predictions != null && predictions.length == rowCount;
+      int offset = 0;
+      for (Pending pending : batch) {
+        int size = pending.size();
+        if (!pending.future.isDone()) {
+          pending.future.complete(valid
+              ? Arrays.copyOfRange(predictions, offset, offset + size) : null);
+        }
+        offset += size;
+      }
+    }
+  }
+}
@@ -0,0 +1,373 @@
+package com.example.productapi.service.impl;
+
+import com.example.productapi.model.Order;
+import com.example.productapi.model.OrderArchiveSegment;
+import com.example.productapi.repository.OrderArchiveSegmentRepository;
+import com.example.productapi.repository.RollupRange;
+import jakarta.annotation.PostConstruct;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Cold tier of the orders table: immutable {@link OrderSegmentFile}s of one seller's orders of one
+ * month under orders.archive.directory, listed in the order_archive_segment table.
+ *
+ * <p>The catalog of segments is read from the table on startup and extended as the
+ * {@link OrderArchiveJob} commits new ones. Scans skip segments by seller and by the time range
+ * recorded in the table, and map the remaining files on first use.
+ *
+ * <p>The sales rollups keep counting archived orders, so only the parts of a range read from the
+ * orders table ({@link RollupRange}) have to be scanned here.
+ */
+@Component
+public class OrderArchive {
+
+  private static final Logger logger = LoggerFactory.getLogger(OrderArchive.class);
+
+  private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM");
+
+  private static final String SEGMENT_SUFFIX = ".seg";
+
+  private final OrderArchiveSegmentRepository segmentRepository;
+  private final boolean enabled;
+  private final Path directory;
+  private final int afterMonths;
+
+  private final Map<Long, OrderSegmentFile> files = new ConcurrentHashMap<>();
+  private volatile List<Entry> catalog = List.of();
+
+  @Autowired
+  public OrderArchive(OrderArchiveSegmentRepository segmentRepository,
+      @Value("${orders.archive.enabled:false}") boolean enabled,
+      @Value("${orders.archive.directory:data/order-archive}") String directory,
+      @Value("${orders.archive.after-months:24}") int afterMonths) {
+    this.segmentRepository = segmentRepository;
+    this.enabled = enabled;
+    this.directory = Paths.get(directory);
+    this.afterMonths = Math.max(1, afterMonths);
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Orders are archived once their month ended this many months ago
+   */
+  public int getAfterMonths() {
+    return afterMonths;
+  }
+
+  @PostConstruct
+  public void init() {
+    try {
+      refresh();
+      if (!catalog.isEmpty()) {
+        logger.info("Order archive lists {} segments under {}", catalog.size(), directory);
+      }
+    } catch (Exception e) {
+      logger.error("Order archive catalog could not be read, archived orders are left out: {}",
+          e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Reload the catalog from the segment table, seeing what the current transaction sees
+   */
+  public synchronized void refresh() {
+    List<Entry> entries = new ArrayList<>();
+    for (OrderArchiveSegment segment : segmentRepository.findAllByOrderBySellerIdAscMonthAscIdAsc()) {
+      entries.add(new Entry(segment));
+    }
+    Set<Long> ids = new HashSet<>();
+    entries.forEach(entry -> ids.add(entry.segment.getId()));
+    files.keySet().retainAll(ids);
+    catalog = List.copyOf(entries);
+  }
+
+  /**
+   * Add a segment committed by the archive job
+   */
+  synchronized void register(OrderArchiveSegment segment) {
+    List<Entry> entries = new ArrayList<>(catalog);
+    entries.add(new Entry(segment));
+    entries.sort(Comparator.comparing((Entry entry) -> entry.segment.getSellerId())
+        .thenComparing(entry -> entry.segment.getMonth())
+        .thenComparing(entry -> entry.segment.getId()));
+    catalog = List.copyOf(entries);
+  }
+
+  /**
+   * Orders held in the archive, as committed
+   */
+  public long countArchivedOrders() {
+    return segmentRepository.sumRowCount();
+  }
+
+  /**
+   * First day after the latest archived month, or null when nothing is archived
+   */
+  public LocalDate archivedUntil() {
+    LocalDate until = null;
+    for (Entry entry : catalog) {
+      LocalDate next = entry.segment.getMonth().plusMonths(1);
+      if (until == null || next.isAfter(until)) {
+        until = next;
+      }
+    }
+    return until;
+  }
+
+  /**
+   * Whether archived orders of the seller, or of any seller when null, fall into the parts of the
+   * range read from the orders table
+   */
+  public boolean overlaps(String sellerId, RollupRange range) {
+    long[] windows = rawWindows(range);
+    for (Entry entry : catalog) {
+      if (sellerId != null && !sellerId.equals(entry.segment.getSellerId())) {
+        continue;
+      }
+      for (int i = 0; i < windows.length; i += 2) {
+        if (entry.overlaps(windows[i], windows[i + 1])) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Visit the archived orders of the seller, or of all sellers when null, in the parts of the
+   * range read from the orders table
+   */
+  void scan(String sellerId, RollupRange range, RowConsumer consumer) {
+    long[] windows = rawWindows(range);
+    for (int i = 0; i < windows.length; i += 2) {
+      scan(sellerId, windows[i], windows[i + 1], consumer);
+    }
+  }
+
+  /**
+   * Visit the archived orders of the seller, or of all sellers when null, within [from, to] in
+   * epoch microseconds. Sellers come one after the other and each segment in time order, segments
+   * of a month archived more than once may overlap.
+   */
+  void scan(String sellerId, long from, long to, RowConsumer consumer) {
+    if (from > to) {
+      return;
+    }
+    for (Entry entry : catalog) {
+      String seller = entry.segment.getSellerId();
+      if ((sellerId == null || sellerId.equals(seller)) && entry.overlaps(from, to)) {
+        file(entry).scan(from, to, (productId, micros, quantity, cents) ->
+            consumer.accept(seller, productId, micros, quantity, cents));
+      }
+    }
+  }
+
+  /**
+   * Archived orders of a seller in one month, for audits and restores
+   *
+   * @param month Any day of the month
+   */
+  public List<Order> readOrders(String sellerId, LocalDate month) {
+    LocalDate first = month.withDayOfMonth(1);
+    List<Order> orders = new ArrayList<>();
+    for (Entry entry : catalog) {
+      if (entry.segment.getSellerId().equals(sellerId) && entry.segment.getMonth().equals(first)) {
+        orders.addAll(file(entry).readOrders(sellerId));
+      }
+    }
+    orders.sort(Comparator.comparing(Order::getTimestamp));
+    return orders;
+  }
+
+  /**
+   * Archived orders of the seller, or of all sellers when null, within [start, end], read one month
+   * at a time: months oldest first, each sorted by time and order ID. Segments are listed from the
+   * segment table as the current transaction sees it rather than from the catalog, so a repeatable
+   * read transaction that also reads the orders table sees every order once while the archive job
+   * moves a month.
+   */
+  Stream<List<Order>> readOrdersByMonth(String sellerId, LocalDateTime start, LocalDateTime end) {
+    long from = OrderColumnStore.ceilMicros(start);
+    long to = OrderColumnStore.floorMicros(end);
+    TreeMap<LocalDate, List<Entry>> months = new TreeMap<>();
+    for (OrderArchiveSegment segment : segmentRepository.findAllByOrderBySellerIdAscMonthAscIdAsc()) {
+      Entry entry = new Entry(segment);
+      if ((sellerId == null || sellerId.equals(segment.getSellerId()))
+          && entry.overlaps(from, to)) {
+        months.computeIfAbsent(segment.getMonth(), month -> new ArrayList<>()).add(entry);
+      }
+    }
+    return months.values().stream().map(entries -> {
+      List<Order> orders = new ArrayList<>();
+      for (Entry entry : entries) {
+        for (Order order : file(entry).readOrders(entry.segment.getSellerId())) {
+          long micros = OrderColumnStore.micros(order.getTimestamp());
+          if (micros >= from && micros <= to) {
+            orders.add(order);
+          }
+        }
+      }
+      orders.sort(Comparator.comparing(Order::getTimestamp).thenComparing(Order::getOrderId));
+      return orders;
+    });
+  }
+
+  /**
+   * Write orders of a seller and month, sorted by time, to a new segment file
+   *
+   * @return Manifest entry of the file, not saved yet
+   */
+  OrderArchiveSegment write(String sellerId, LocalDate month, List<Order> orders) {
+    String fileName = fileSafe(sellerId) + "/" + month.format(MONTH_FORMAT) + "-"
+        + System.currentTimeMillis() + SEGMENT_SUFFIX;
+    Path path = directory.resolve(fileName);
+    try {
+      Files.createDirectories(path.getParent());
+      long size = OrderSegmentFile.write(path, orders);
+      return OrderArchiveSegment.builder()
+          .sellerId(sellerId)
+          .month(month)
+          .fileName(fileName)
+          .rowCount(orders.size())
+          .minTimestamp(orders.get(0).getTimestamp())
+          .maxTimestamp(orders.get(orders.size() - 1).getTimestamp())
+          .sizeBytes(size)
+          .createdAt(LocalDateTime.now())
+          .build();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not write order segment " + path, e);
+    }
+  }
+
+  /**
+   * Remove the file of a segment whose transaction did not commit
+   */
+  void discard(OrderArchiveSegment segment) {
+    try {
+      Files.deleteIfExists(directory.resolve(segment.getFileName()));
+    } catch (IOException e) {
+      logger.warn("Could not remove order segment {}: {}", segment.getFileName(), e.getMessage());
+    }
+  }
+
+  /**
+   * Remove segment files the table does not list, left behind by runs that stopped between
+   * writing a file and committing it
+   *
+   * @return Number of files removed
+   */
+  int deleteUnlisted() {
+    if (!Files.isDirectory(directory)) {
+      return 0;
+    }
+    refresh();
+    Set<String> listed = new HashSet<>();
+    catalog.forEach(entry -> listed.add(entry.segment.getFileName()));
+    int removed = 0;
+    try (Stream<Path> paths = Files.walk(directory)) {
+      for (Path path : (Iterable<Path>) paths::iterator) {
+        String name = directory.relativize(path).toString().replace(File.separatorChar, '/');
+        if (Files.isRegularFile(path) && !listed.contains(name)
+            && (name.endsWith(SEGMENT_SUFFIX) || name.endsWith(SEGMENT_SUFFIX + ".tmp"))) {
+          Files.delete(path);
+          removed++;
+        }
+      }
+    } catch (IOException e) {
+      logger.warn("Could not clean up the order archive directory: {}", e.getMessage());
+    }
+    return removed;
+  }
+
+  private OrderSegmentFile file(Entry entry) {
+    return files.computeIfAbsent(entry.segment.getId(), id -> {
+      try {
+        return OrderSegmentFile.open(directory.resolve(entry.segment.getFileName()));
+      } catch (IOException e) {
+        throw new UncheckedIOException("Order segment " + entry.segment.getFileName()
+            + " is listed but cannot be read", e);
+      }
+    });
+  }
+
+  /**
+   * The parts of a range read from the orders table, as inclusive pairs of epoch microseconds
+   */
+  private static long[] rawWindows(RollupRange range) {
+    return new long[] {
+        OrderColumnStore.ceilMicros(range.getStart()),
+        OrderColumnStore.ceilMicros(range.getRawHeadEnd()) - 1,
+        OrderColumnStore.ceilMicros(range.getRawTailStart()),
+        OrderColumnStore.floorMicros(range.getEnd())};
+  }
+
+  /**
+   * Seller ids as directory names: ASCII letters, digits, '-' and '_' are kept, every other
+   * byte is written as %XX
+   */
+  private static String fileSafe(String sellerId) {
+    StringBuilder name = new StringBuilder();
+    for (byte b : sellerId.getBytes(StandardCharsets.UTF_8)) {
+      char c = (char) (b & 0xFF);
+      if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+          || c == '-' || c == '_') {
+        name.append(c);
+      } else {
+        name.append('%').append(String.format("%02X", b & 0xFF));
+      }
+    }
+    return name.toString();
+  }
+
+  @FunctionalInterface
+  interface RowConsumer {
+
+    void accept(String sellerId, String productId, long micros, int quantity, long cents);
+  }
+
+  /**
+   * Catalog entry with the segment's time range in epoch microseconds
+   */
+  private static final class Entry {
+
+    final OrderArchiveSegment segment;
+    final long minMicros;
+    final long maxMicros;
+
+    Entry(OrderArchiveSegment segment) {
+      this.segment = segment;
+      this.minMicros = OrderColumnStore.micros(segment.getMinTimestamp());
+      this.maxMicros = OrderColumnStore.micros(segment.getMaxTimestamp());
+    }
+
+    boolean overlaps(long from, long to) {
+      return from <= to && from <= maxMicros && to >= minMicros;
+    }
+  }
+}
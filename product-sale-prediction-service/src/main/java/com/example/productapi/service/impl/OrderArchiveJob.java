@@ -0,0 +1,102 @@
+package com.example.productapi.service.impl;
+
+import com.example.productapi.model.Order;
+import com.example.productapi.model.OrderArchiveSegment;
+import com.example.productapi.repository.ArchivableMonth;
+import com.example.productapi.repository.OrderArchiveSegmentRepository;
+import com.example.productapi.repository.OrderRepository;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Nightly job that moves orders whose month ended at least orders.archive.after-months months ago
+ * from the orders table into the {@link OrderArchive}, one seller and month at a time.
+ *
+ * <p>Each month is archived in its own transaction with inserts into orders blocked: the orders
+ * are read, written to a segment file that is forced to disk, listed in order_archive_segment and
+ * deleted. If the transaction fails the file is removed, or left unlisted and removed on the next
+ * run. Orders without a product or quantity are not part of the sales rollups and stay in the
+ * table.
+ */
+@Component
+public class OrderArchiveJob {
+
+  private static final Logger logger = LoggerFactory.getLogger(OrderArchiveJob.class);
+
+  private final OrderRepository orderRepository;
+  private final OrderArchiveSegmentRepository segmentRepository;
+  private final OrderArchive orderArchive;
+  private final TransactionTemplate transactionTemplate;
+
+  public OrderArchiveJob(OrderRepository orderRepository,
+      OrderArchiveSegmentRepository segmentRepository, OrderArchive orderArchive,
+      PlatformTransactionManager transactionManager) {
+    this.orderRepository = orderRepository;
+    this.segmentRepository = segmentRepository;
+    this.orderArchive = orderArchive;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+  }
+
+  @Scheduled(cron = "${orders.archive.cron:0 30 3 * * *}")
+  public void run() {
+    if (!orderArchive.isEnabled()) {
+      return;
+    }
+    long started = System.currentTimeMillis();
+    int removed = orderArchive.deleteUnlisted();
+    if (removed > 0) {
+      logger.info("Removed {} unlisted order segment files", removed);
+    }
+
+    LocalDateTime cutoff = LocalDate.now().withDayOfMonth(1)
+        .minusMonths(orderArchive.getAfterMonths()).atStartOfDay();
+    int segments = 0;
+    long rows = 0;
+    for (ArchivableMonth month : orderRepository.findArchivableMonths(cutoff)) {
+      try {
+        OrderArchiveSegment segment = transactionTemplate.execute(
+            status -> archive(month.getSellerId(), month.getMonth()));
+        if (segment != null) {
+          orderArchive.register(segment);
+          segments++;
+          rows += segment.getRowCount();
+        }
+      } catch (Exception e) {
+        logger.error("Archiving the orders of seller {} for {} failed: {}", month.getSellerId(),
+            month.getMonth(), e.getMessage(), e);
+      }
+    }
+    logger.info("Order archive run moved {} orders before {} into {} segments in {} ms", rows,
+        cutoff.toLocalDate(), segments, System.currentTimeMillis() - started);
+  }
+
+  private OrderArchiveSegment archive(String sellerId, LocalDate month) {
+    orderRepository.lockAgainstWrites();
+    LocalDateTime start = month.atStartOfDay();
+    LocalDateTime end = month.plusMonths(1).atStartOfDay();
+    List<Order> orders = orderRepository.findRollupOrdersOfSeller(sellerId, start, end);
+    if (orders.isEmpty()) {
+      return null;
+    }
+    OrderArchiveSegment segment = orderArchive.write(sellerId, month, orders);
+    try {
+      segmentRepository.save(segment);
+      int deleted = orderRepository.deleteRollupOrdersOfSeller(sellerId, start, end);
+      if (deleted != orders.size()) {
+        throw new IllegalStateException("Archived " + orders.size() + " orders but deleted "
+            + deleted);
+      }
+      return segment;
+    } catch (RuntimeException e) {
+      orderArchive.discard(segment);
+      throw e;
+    }
+  }
+}
@@ -0,0 +1,732 @@
+package com.example.productapi.service.impl;
+
+import com.example.productapi.event.OrdersRecordedEvent;
+import com.example.productapi.event.ProductsSavedEvent;
+import com.example.productapi.model.Order;
+import com.example.productapi.model.Product;
+import com.example.productapi.repository.OrderLine;
+import com.example.productapi.repository.OrderRepository;
+import com.example.productapi.repository.ProductRepository;
+import com.example.productapi.repository.ProductSalesAggregate;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Optional in-process columnar copy of the orders table for range scans by seller and time.
+ *
+ * <p>Every seller has a segment of parallel columns sorted by time: epoch microseconds (the
+ * precision of the database column), dictionary code of the product id, quantity and total price
+ * in cents. Time ranges are found by binary search. New orders go to a small sorted delta that is
+ * merged into the segment once it fills up. Segments are immutable and swapped whole, readers
+ * never lock.
+ *
+ * <p>Columns are kept on the heap, or in direct buffers with orders.column-store.off-heap. The
+ * store is loaded on startup while inserts into orders are blocked, then kept current after every
+ * commit of recorded orders. Until it is loaded {@link #isReady()} is false and callers query the
+ * database.
+ *
+ * <p>Orders moved to the {@link OrderArchive} are loaded from their segments along with the
+ * orders table.
+ *
+ * <p>As in the sales rollups only orders with seller, product, quantity and timestamp are held.
+ * Product categories are read when a product's first order is seen and refreshed on every
+ * {@link ProductsSavedEvent}; like the SQL join, totals skip orders of products missing from the
+ * product table.
+ */
+@Component
+public class OrderColumnStore {
+
+  private static final Logger logger = LoggerFactory.getLogger(OrderColumnStore.class);
+
+  private static final long MICROS_PER_DAY = 86_400_000_000L;
+
+  /**
+   * Rows a seller's delta holds before it is merged into the segment
+   */
+  private static final int DELTA_LIMIT = 1024;
+
+  private final OrderRepository orderRepository;
+  private final ProductRepository productRepository;
+  private final OrderArchive orderArchive;
+  private final TransactionTemplate transactionTemplate;
+  private final boolean enabled;
+  private final boolean offHeap;
+
+  private final Map<String, Segment> segments = new ConcurrentHashMap<>();
+  private volatile Dictionary dictionary = Dictionary.EMPTY;
+  private volatile boolean ready;
+
+  @Autowired
+  public OrderColumnStore(OrderRepository orderRepository, ProductRepository productRepository,
+      OrderArchive orderArchive, PlatformTransactionManager transactionManager,
+      @Value("${orders.column-store.enabled:false}") boolean enabled,
+      @Value("${orders.column-store.off-heap:false}") boolean offHeap) {
+    this.orderRepository = orderRepository;
+    this.productRepository = productRepository;
+    this.orderArchive = orderArchive;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.enabled = enabled;
+    this.offHeap = offHeap;
+  }
+
+  public boolean isReady() {
+    return ready;
+  }
+
+  /**
+   * Load every order, with inserts blocked so that no recorded order is missed or counted twice.
+   * The store is switched on before the lock is released.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void load() {
+    if (!enabled) {
+      return;
+    }
+    long startedAt = System.currentTimeMillis();
+    try {
+      long rows = transactionTemplate.execute(status -> {
+        orderRepository.lockAgainstWrites();
+        segments.clear();
+        Map<String, Product> products = new HashMap<>();
+        productRepository.findAll().forEach(product -> products.put(product.getId(), product));
+        DictionaryBuilder codes = new DictionaryBuilder(products);
+
+        // Archived orders as of this transaction, the archive job waits for the lock
+        orderArchive.refresh();
+        ArchiveLoader archived = new ArchiveLoader(codes);
+        orderArchive.scan(null, Long.MIN_VALUE, Long.MAX_VALUE, archived);
+
+        long count = archived.rows;
+        String seller = null;
+        ColumnsBuilder columns = null;
+        try (Stream<OrderLine> lines = orderRepository.streamRollupOrders()) {
+          for (OrderLine line : (Iterable<OrderLine>) lines::iterator) {
+            if (!line.getSellerId().equals(seller)) {
+              if (columns != null) {
+                segments.put(seller, new Segment(columns.build(offHeap), Columns.EMPTY));
+              }
+              seller = line.getSellerId();
+              columns = new ColumnsBuilder(1024);
+            }
+            columns.add(micros(line.getTimestamp()), codes.code(line.getProductId()),
+                line.getQuantity(), cents(line.getTotalPrice()));
+            count++;
+          }
+        }
+        if (columns != null) {
+          segments.put(seller, new Segment(columns.build(offHeap), Columns.EMPTY));
+        }
+        archived.finish().forEach((archivedSeller, cold) -> {
+          Segment hot = segments.get(archivedSeller);
+          Columns base = hot != null
+              ? Columns.merge(cold, hot.base, offHeap) : cold.copy(offHeap);
+          segments.put(archivedSeller, new Segment(base, Columns.EMPTY));
+        });
+        dictionary = codes.build();
+        ready = true;
+        return count;
+      });
+      logger.info("Order column store loaded {} orders of {} sellers in {} ms ({})", rows,
+          segments.size(), System.currentTimeMillis() - startedAt, offHeap ? "off-heap" : "heap");
+    } catch (Exception e) {
+      segments.clear();
+      logger.error("Order column store could not be loaded, orders are read from the database: {}",
+          e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Runs after the orders are committed, or right away when they were saved outside a
+   * transaction
+   */
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onOrdersRecorded(OrdersRecordedEvent event) {
+    if (!ready) {
+      return;
+    }
+    Map<String, List<Order>> bySeller = new HashMap<>();
+    Set<String> productIds = new HashSet<>();
+    for (Order order : event.getOrders()) {
+      if (order.getSellerId() != null && order.getProductId() != null
+          && order.getQuantity() != null && order.getTimestamp() != null) {
+        bySeller.computeIfAbsent(order.getSellerId(), k -> new ArrayList<>()).add(order);
+        productIds.add(order.getProductId());
+      }
+    }
+    addProducts(productIds);
+    bySeller.forEach((seller, orders) -> {
+      orders.sort(Comparator.comparing(Order::getTimestamp));
+      ColumnsBuilder added = new ColumnsBuilder(orders.size());
+      for (Order order : orders) {
+        added.add(micros(order.getTimestamp()), code(order.getProductId()), order.getQuantity(),
+            cents(order.getTotalPrice()));
+      }
+      Columns rows = added.build(false);
+      segments.compute(seller, (k, segment) -> {
+        if (segment == null) {
+          return new Segment(rows.copy(offHeap), Columns.EMPTY);
+        }
+        Columns delta = Columns.merge(segment.delta, rows, false);
+        if (delta.size <= DELTA_LIMIT) {
+          return new Segment(segment.base, delta);
+        }
+        return new Segment(Columns.merge(segment.base, delta, offHeap), Columns.EMPTY);
+      });
+    });
+  }
+
+  /**
+   * Refresh the categories of saved products that have orders in the store, after the products
+   * are committed. Products without orders are looked up when their first order is recorded.
+   */
+  @TransactionalEventListener(fallbackExecution = true)
+  public synchronized void onProductsSaved(ProductsSavedEvent event) {
+    if (!ready) {
+      return;
+    }
+    dictionary = dictionary.withProducts(event.getProducts());
+  }
+
+  /**
+   * Units sold per day for one seller/product
+   *
+   * @param startDate First day (inclusive)
+   * @param endDate   Last day (inclusive)
+   * @return Units sold by date, days without sales are absent
+   */
+  public Map<LocalDate, Integer> getDailyQuantities(String sellerId, String productId,
+      LocalDate startDate, LocalDate endDate) {
+    return getDailyQuantities(sellerId, List.of(productId), startDate, endDate)
+        .getOrDefault(productId, new HashMap<>());
+  }
+
+  /**
+   * Units sold per day for several products of a seller
+   *
+   * @return Units sold by product ID and date, days without sales are absent
+   */
+  public Map<String, Map<LocalDate, Integer>> getDailyQuantities(String sellerId,
+      Collection<String> productIds, LocalDate startDate, LocalDate endDate) {
+    Dictionary dict = dictionary;
+    boolean[] wanted = dict.select(productIds);
+    Map<String, Map<LocalDate, Integer>> quantities = new HashMap<>();
+    scan(sellerId, startDate.toEpochDay() * MICROS_PER_DAY,
+        endDate.plusDays(1).toEpochDay() * MICROS_PER_DAY - 1,
+        (product, micros, quantity, cents) -> {
+          if (product < wanted.length && wanted[product]) {
+            quantities.computeIfAbsent(dict.ids[product], k -> new HashMap<>())
+                .merge(day(micros), quantity, Integer::sum);
+          }
+        });
+    return quantities;
+  }
+
+  /**
+   * Total quantity and revenue per product of the orders matching the filters, best sellers
+   * first, with the semantics of the rollup query it replaces
+   *
+   * @param startTime Start time (inclusive)
+   * @param endTime   End time (inclusive)
+   * @param pageable  Page of size N for the top N products, or {@link Pageable#unpaged()}
+   */
+  public List<ProductSalesAggregate> sumSalesByProduct(String sellerId, String productId,
+      String category, LocalDateTime startTime, LocalDateTime endTime, Pageable pageable) {
+    Dictionary dict = dictionary;
+    boolean[] wanted = dict.filter(productId, category);
+    long[] quantities = new long[wanted.length];
+    long[] revenue = new long[wanted.length];
+    boolean[] sold = new boolean[wanted.length];
+    scan(sellerId, ceilMicros(startTime), floorMicros(endTime),
+        (product, micros, quantity, cents) -> {
+          if (product < wanted.length && wanted[product]) {
+            quantities[product] += quantity;
+            revenue[product] += cents;
+            sold[product] = true;
+          }
+        });
+
+    List<ProductSalesAggregate> totals = new ArrayList<>();
+    for (int product = 0; product < sold.length; product++) {
+      if (sold[product]) {
+        totals.add(new SalesAggregate(dict.ids[product], null, quantities[product],
+            revenue[product] / 100.0));
+      }
+    }
+    totals.sort(SalesAggregate.BY_QUANTITY);
+    return SalesAggregate.page(totals, pageable);
+  }
+
+  /**
+   * Quantity and revenue per product and day of the orders matching the filters, latest day
+   * first, with the semantics of the rollup queries it replaces
+   *
+   * @param productIds Only these products when not null, the other filters except the seller
+   *                   are then ignored
+   */
+  public List<ProductSalesAggregate> sumDailySalesByProduct(String sellerId, String productId,
+      String category, LocalDateTime startTime, LocalDateTime endTime,
+      Collection<String> productIds) {
+    if (productIds != null && productIds.isEmpty()) {
+      return Collections.emptyList();
+    }
+    Dictionary dict = dictionary;
+    boolean[] wanted = productIds != null
+        ? dict.select(productIds) : dict.filter(productId, category);
+    Map<Long, long[]> days = new HashMap<>();
+    long codes = wanted.length;
+    scan(sellerId, ceilMicros(startTime), floorMicros(endTime),
+        (product, micros, quantity, cents) -> {
+          if (product < wanted.length && wanted[product]) {
+            long[] sums = days.computeIfAbsent(
+                Math.floorDiv(micros, MICROS_PER_DAY) * codes + product, k -> new long[2]);
+            sums[0] += quantity;
+            sums[1] += cents;
+          }
+        });
+
+    List<ProductSalesAggregate> daily = new ArrayList<>(days.size());
+    days.forEach((key, sums) -> daily.add(new SalesAggregate(
+        dict.ids[(int) Math.floorMod(key, codes)], LocalDate.ofEpochDay(Math.floorDiv(key, codes)),
+        sums[0], sums[1] / 100.0)));
+    daily.sort(SalesAggregate.BY_DAY);
+    return daily;
+  }
+
+  /**
+   * Visit the rows of a seller, or of all sellers when null, within [from, to] in epoch
+   * microseconds
+   */
+  private void scan(String sellerId, long from, long to, RowConsumer consumer) {
+    if (from > to) {
+      return;
+    }
+    if (sellerId != null) {
+      Segment segment = segments.get(sellerId);
+      if (segment != null) {
+        segment.base.scan(from, to, consumer);
+        segment.delta.scan(from, to, consumer);
+      }
+      return;
+    }
+    for (Segment segment : segments.values()) {
+      segment.base.scan(from, to, consumer);
+      segment.delta.scan(from, to, consumer);
+    }
+  }
+
+  /**
+   * Dictionary code of a product id, adding it on first use
+   */
+  private synchronized int code(String productId) {
+    Dictionary dict = dictionary;
+    Integer code = dict.codes.get(productId);
+    if (code != null) {
+      return code;
+    }
+    addProducts(List.of(productId));
+    return dictionary.codes.get(productId);
+  }
+
+  /**
+   * Add the products the dictionary does not know yet, looked up in one query
+   */
+  private synchronized void addProducts(Collection<String> productIds) {
+    Dictionary dict = dictionary;
+    List<String> added = new ArrayList<>();
+    for (String productId : productIds) {
+      if (!dict.codes.containsKey(productId)) {
+        added.add(productId);
+      }
+    }
+    if (added.isEmpty()) {
+      return;
+    }
+    Map<String, Product> products = new HashMap<>();
+    productRepository.findAllById(added).forEach(product -> products.put(product.getId(), product));
+    dictionary = dict.with(added, products);
+  }
+
+  /**
+   * Timestamps are stored as microseconds, rounded like the JDBC driver rounds them
+   */
+  static long micros(LocalDateTime timestamp) {
+    return timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + (timestamp.getNano() + 500) / 1000;
+  }
+
+  static long ceilMicros(LocalDateTime timestamp) {
+    return timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + (timestamp.getNano() + 999) / 1000;
+  }
+
+  static long floorMicros(LocalDateTime timestamp) {
+    return timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + timestamp.getNano() / 1000;
+  }
+
+  static LocalDate day(long micros) {
+    return LocalDate.ofEpochDay(Math.floorDiv(micros, MICROS_PER_DAY));
+  }
+
+  private static long cents(Double price) {
+    return price != null ? Math.round(price * 100) : 0;
+  }
+
+  @FunctionalInterface
+  private interface RowConsumer {
+
+    void accept(int product, long micros, int quantity, long cents);
+  }
+
+  /**
+   * Segment of one seller, the delta holds recent rows not merged yet
+   */
+  private static final class Segment {
+
+    final Columns base;
+    final Columns delta;
+
+    Segment(Columns base, Columns delta) {
+      this.base = base;
+      this.delta = delta;
+    }
+  }
+
+  /**
+   * Parallel columns sorted by time, never modified once built
+   */
+  private static final class Columns {
+
+    static final Columns EMPTY = new ColumnsBuilder(0).build(false);
+
+    final LongBuffer micros;
+    final IntBuffer products;
+    final IntBuffer quantities;
+    final LongBuffer cents;
+    final int size;
+
+    Columns(LongBuffer micros, IntBuffer products, IntBuffer quantities, LongBuffer cents) {
+      this.micros = micros;
+      this.products = products;
+      this.quantities = quantities;
+      this.cents = cents;
+      this.size = micros.capacity();
+    }
+
+    /**
+     * First row at or after the given time
+     */
+    int lowerBound(long time) {
+      int low = 0;
+      int high = size;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (micros.get(mid) < time) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+
+    void scan(long from, long to, RowConsumer consumer) {
+      for (int row = lowerBound(from); row < size; row++) {
+        long time = micros.get(row);
+        if (time > to) {
+          break;
+        }
+        consumer.accept(products.get(row), time, quantities.get(row), cents.get(row));
+      }
+    }
+
+    Columns copy(boolean offHeap) {
+      ColumnsBuilder builder = new ColumnsBuilder(size);
+      builder.append(this, 0, size);
+      return builder.build(offHeap);
+    }
+
+    static Columns merge(Columns a, Columns b, boolean offHeap) {
+      ColumnsBuilder builder = new ColumnsBuilder(a.size + b.size);
+      int i = 0;
+      int j = 0;
+      while (i < a.size && j < b.size) {
+        // Equal times keep the older row first
+        int from = i;
+        long next = b.micros.get(j);
+        while (i < a.size && a.micros.get(i) <= next) {
+          i++;
+        }
+        builder.append(a, from, i);
+        if (i < a.size) {
+          from = j;
+          long limit = a.micros.get(i);
+          while (j < b.size && b.micros.get(j) < limit) {
+            j++;
+          }
+          builder.append(b, from, j);
+        }
+      }
+      builder.append(a, i, a.size);
+      builder.append(b, j, b.size);
+      return builder.build(offHeap);
+    }
+  }
+
+  /**
+   * Growable heap arrays rows are appended to in time order
+   */
+  private static final class ColumnsBuilder {
+
+    long[] micros;
+    int[] products;
+    int[] quantities;
+    long[] cents;
+    int size;
+
+    ColumnsBuilder(int capacity) {
+      micros = new long[capacity];
+      products = new int[capacity];
+      quantities = new int[capacity];
+      cents = new long[capacity];
+    }
+
+    void add(long time, int product, int quantity, long price) {
+      ensureCapacity(size + 1);
+      micros[size] = time;
+      products[size] = product;
+      quantities[size] = quantity;
+      cents[size] = price;
+      size++;
+    }
+
+    void append(Columns columns, int from, int to) {
+      int count = to - from;
+      if (count <= 0) {
+        return;
+      }
+      ensureCapacity(size + count);
+      columns.micros.get(from, micros, size, count);
+      columns.products.get(from, products, size, count);
+      columns.quantities.get(from, quantities, size, count);
+      columns.cents.get(from, cents, size, count);
+      size += count;
+    }
+
+    private void ensureCapacity(int capacity) {
+      if (capacity > micros.length) {
+        int grown = Math.max(capacity, micros.length * 2);
+        micros = Arrays.copyOf(micros, grown);
+        products = Arrays.copyOf(products, grown);
+        quantities = Arrays.copyOf(quantities, grown);
+        cents = Arrays.copyOf(cents, grown);
+      }
+    }
+
+    Columns build(boolean offHeap) {
+      if (!offHeap) {
+        return new Columns(LongBuffer.wrap(Arrays.copyOf(micros, size)),
+            IntBuffer.wrap(Arrays.copyOf(products, size)),
+            IntBuffer.wrap(Arrays.copyOf(quantities, size)),
+            LongBuffer.wrap(Arrays.copyOf(cents, size)));
+      }
+      LongBuffer directMicros = direct(size * 8L).asLongBuffer().put(micros, 0, size);
+      IntBuffer directProducts = direct(size * 4L).asIntBuffer().put(products, 0, size);
+      IntBuffer directQuantities = direct(size * 4L).asIntBuffer().put(quantities, 0, size);
+      LongBuffer directCents = direct(size * 8L).asLongBuffer().put(cents, 0, size);
+      return new Columns(directMicros, directProducts, directQuantities, directCents);
+    }
+
+    private static ByteBuffer direct(long bytes) {
+      if (bytes > Integer.MAX_VALUE) {
+        throw new IllegalStateException("Seller segment too large for a direct buffer");
+      }
+      return ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder());
+    }
+  }
+
+  /**
+   * Collects archived rows into per-seller columns. Rows arrive seller by seller and each segment
+   * in time order; a segment starting before the previous one ended is merged in.
+   */
+  private static final class ArchiveLoader implements OrderArchive.RowConsumer {
+
+    final DictionaryBuilder codes;
+    final Map<String, Columns> sellers = new HashMap<>();
+    String seller;
+    ColumnsBuilder run;
+    long last;
+    long rows;
+
+    ArchiveLoader(DictionaryBuilder codes) {
+      this.codes = codes;
+    }
+
+    @Override
+    public void accept(String sellerId, String productId, long micros, int quantity, long cents) {
+      if (run == null || !sellerId.equals(seller) || micros < last) {
+        flush();
+        seller = sellerId;
+        run = new ColumnsBuilder(1024);
+      }
+      run.add(micros, codes.code(productId), quantity, cents);
+      last = micros;
+      rows++;
+    }
+
+    Map<String, Columns> finish() {
+      flush();
+      return sellers;
+    }
+
+    private void flush() {
+      if (run != null) {
+        sellers.merge(seller, run.build(false), (a, b) -> Columns.merge(a, b, false));
+        run = null;
+      }
+    }
+  }
+
+  /**
+   * Product ids by code with the product table facts aggregations filter on, copied on write
+   */
+  private static final class Dictionary {
+
+    static final Dictionary EMPTY = new Dictionary(Map.of(), new String[0], new String[0],
+        new boolean[0]);
+
+    final Map<String, Integer> codes;
+    final String[] ids;
+    final String[] categories;
+    final boolean[] known;
+
+    Dictionary(Map<String, Integer> codes, String[] ids, String[] categories, boolean[] known) {
+      this.codes = codes;
+      this.ids = ids;
+      this.categories = categories;
+      this.known = known;
+    }
+
+    /**
+     * Copy with new product ids appended, products holds those in the product table
+     */
+    Dictionary with(List<String> productIds, Map<String, Product> products) {
+      int size = ids.length + productIds.size();
+      Map<String, Integer> grownCodes = new HashMap<>(codes);
+      String[] grownIds = Arrays.copyOf(ids, size);
+      String[] grownCategories = Arrays.copyOf(categories, size);
+      boolean[] grownKnown = Arrays.copyOf(known, size);
+      int code = ids.length;
+      for (String productId : productIds) {
+        Product product = products.get(productId);
+        grownCodes.put(productId, code);
+        grownIds[code] = productId;
+        grownCategories[code] = product != null ? product.getCategory() : null;
+        grownKnown[code] = product != null;
+        code++;
+      }
+      return new Dictionary(grownCodes, grownIds, grownCategories, grownKnown);
+    }
+
+    /**
+     * Copy with the categories of already coded products replaced, other products are skipped
+     */
+    Dictionary withProducts(Collection<Product> products) {
+      String[] updatedCategories = categories.clone();
+      boolean[] updatedKnown = known.clone();
+      for (Product product : products) {
+        Integer code = codes.get(product.getId());
+        if (code != null) {
+          updatedCategories[code] = product.getCategory();
+          updatedKnown[code] = true;
+        }
+      }
+      return new Dictionary(codes, ids, updatedCategories, updatedKnown);
+    }
+
+    /**
+     * Codes of the given products, whether or not they are in the product table
+     */
+    boolean[] select(Collection<String> productIds) {
+      boolean[] wanted = new boolean[ids.length];
+      for (String productId : productIds) {
+        Integer code = codes.get(productId);
+        if (code != null) {
+          wanted[code] = true;
+        }
+      }
+      return wanted;
+    }
+
+    /**
+     * Codes of products in the product table matching the optional product and category
+     */
+    boolean[] filter(String productId, String category) {
+      boolean[] wanted = new boolean[ids.length];
+      for (int code = 0; code < ids.length; code++) {
+        wanted[code] = known[code]
+            && (productId == null || productId.equals(ids[code]))
+            && (category == null || category.equals(categories[code]));
+      }
+      return wanted;
+    }
+  }
+
+  /**
+   * Assigns codes while the store is loaded, categories come from a product table snapshot
+   */
+  private static final class DictionaryBuilder {
+
+    final Map<String, Product> products;
+    final Map<String, Integer> codes = new HashMap<>();
+    final List<String> ids = new ArrayList<>();
+
+    DictionaryBuilder(Map<String, Product> products) {
+      this.products = products;
+    }
+
+    int code(String productId) {
+      return codes.computeIfAbsent(productId, id -> {
+        ids.add(id);
+        return ids.size() - 1;
+      });
+    }
+
+    Dictionary build() {
+      int size = ids.size();
+      String[] categories = new String[size];
+      boolean[] known = new boolean[size];
+      for (int code = 0; code < size; code++) {
+        Product product = products.get(ids.get(code));
+        categories[code] = product != null ? product.getCategory() : null;
+        known[code] = product != null;
+      }
+      return new Dictionary(codes, ids.toArray(new String[0]), categories, known);
+    }
+  }
+}
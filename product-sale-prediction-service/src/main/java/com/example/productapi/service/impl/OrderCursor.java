@@ -0,0 +1,64 @@
+package com.example.productapi.service.impl;
+
+import com.example.productapi.model.Order;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position in the order listing, the timestamp and order ID of the last order of a page. Clients
+ * get it as an opaque URL-safe token.
+ */
+final class OrderCursor {
+
+  private static final char SEPARATOR = '|';
+
+  private final LocalDateTime timestamp;
+  private final String orderId;
+
+  private OrderCursor(LocalDateTime timestamp, String orderId) {
+    this.timestamp = timestamp;
+    this.orderId = orderId;
+  }
+
+  static OrderCursor after(Order order) {
+    return new OrderCursor(order.getTimestamp(), order.getOrderId());
+  }
+
+  LocalDateTime getTimestamp() {
+    return timestamp;
+  }
+
+  String getOrderId() {
+    return orderId;
+  }
+
+  String encode() {
+    String position = timestamp.toString() + SEPARATOR + orderId;
+    return Base64.getUrlEncoder().withoutPadding()
+        .encodeToString(position.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * @throws IllegalArgumentException If the token was not produced by {@link #encode()}
+   */
+  static OrderCursor decode(String token) {
+    String position;
+    try {
+      position = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Invalid cursor", e);
+    }
+    int separator = position.indexOf(SEPARATOR);
+    if (separator < 0) {
+      throw new IllegalArgumentException("Invalid cursor");
+    }
+    try {
+      return new OrderCursor(LocalDateTime.parse(position.substring(0, separator)),
+          position.substring(separator + 1));
+    } catch (DateTimeParseException e) {
+      throw new IllegalArgumentException("Invalid cursor", e);
+    }
+  }
+}
@@ -0,0 +1,169 @@
+package com.example.productapi.service.impl;
+
+import com.example.productapi.repository.OrderRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Index maintenance for the orders table beyond what the entity declares. On startup the BRIN
+ * index on timestamp is created if missing.
+ *
+ * <p>With orders.plan-check.enabled the query planner is then asked for the plan of every order
+ * access path, with the seller, product and latest day of a sample order as parameters, and a
+ * warning is logged for each plan that scans the whole orders table. Tables smaller than
+ * orders.plan-check.min-rows are skipped, a sequential scan is the right plan for them.
+ */
+@Component
+public class OrderIndexes {
+
+  private static final Logger logger = LoggerFactory.getLogger(OrderIndexes.class);
+
+  /**
+   * SQL of each access path, as issued by the repository methods, with the named parameters
+   * seller, product, start and end of the range
+   */
+  private static final Map<String, String> ACCESS_PATHS = new LinkedHashMap<>();
+
+  static {
+    ACCESS_PATHS.put("findBySellerIdOrderByTimestampDesc",
+        "SELECT o.* FROM orders o WHERE o.seller_id = :seller ORDER BY o.timestamp DESC LIMIT 20");
+    ACCESS_PATHS.put("findOrdersWithFilters (seller)",
+        "SELECT o.* FROM orders o JOIN product p ON o.product_id = p.id "
+            + "WHERE o.seller_id = :seller AND o.timestamp BETWEEN :start AND :end "
+            + "ORDER BY o.timestamp DESC LIMIT 20");
+    ACCESS_PATHS.put("findOrdersWithFilters (seller, product)",
+        "SELECT o.* FROM orders o JOIN product p ON o.product_id = p.id "
+            + "WHERE o.seller_id = :seller AND o.product_id = :product "
+            + "AND o.timestamp BETWEEN :start AND :end ORDER BY o.timestamp DESC LIMIT 20");
+    ACCESS_PATHS.put("findOrdersWithFilters (product)",
+        "SELECT o.* FROM orders o JOIN product p ON o.product_id = p.id "
+            + "WHERE o.product_id = :product AND o.timestamp BETWEEN :start AND :end "
+            + "ORDER BY o.timestamp DESC LIMIT 20");
+    ACCESS_PATHS.put("findOrdersWithFilters (time range)",
+        "SELECT o.* FROM orders o JOIN product p ON o.product_id = p.id "
+            + "WHERE o.timestamp BETWEEN :start AND :end ORDER BY o.timestamp DESC LIMIT 20");
+    ACCESS_PATHS.put("findOrdersWithFiltersAfter (seller)",
+        "SELECT o.* FROM orders o JOIN product p ON o.product_id = p.id "
+            + "WHERE o.seller_id = :seller AND o.timestamp BETWEEN :start AND :end "
+            + "AND o.timestamp <= :end AND (o.timestamp < :end OR o.order_id < '') "
+            + "ORDER BY o.timestamp DESC, o.order_id DESC LIMIT 21");
+    ACCESS_PATHS.put("findBySellerIdAndProductIdAndTimestampAfter",
+        "SELECT o.* FROM orders o WHERE o.seller_id = :seller AND o.product_id = :product "
+            + "AND o.timestamp > :start");
+    ACCESS_PATHS.put("findByProductId",
+        "SELECT o.* FROM orders o WHERE o.product_id = :product");
+    ACCESS_PATHS.put("sales rollup edges (time range)",
+        "SELECT o.seller_id, o.product_id, o.order_date, o.quantity, o.total_price FROM orders o "
+            + "WHERE o.timestamp >= :start AND o.timestamp < :end");
+  }
+
+  private final OrderRepository orderRepository;
+  private final TransactionTemplate transactionTemplate;
+  private final boolean planCheckEnabled;
+  private final long planCheckMinRows;
+
+  @PersistenceContext
+  private EntityManager entityManager;
+
+  public OrderIndexes(OrderRepository orderRepository,
+      PlatformTransactionManager transactionManager,
+      @Value("${orders.plan-check.enabled:false}") boolean planCheckEnabled,
+      @Value("${orders.plan-check.min-rows:100000}") long planCheckMinRows) {
+    this.orderRepository = orderRepository;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.planCheckEnabled = planCheckEnabled;
+    this.planCheckMinRows = planCheckMinRows;
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void onStartup() {
+    try {
+      transactionTemplate.executeWithoutResult(
+          status -> orderRepository.createTimestampBrinIndex());
+    } catch (Exception e) {
+      logger.error("BRIN index on orders.timestamp could not be created: {}", e.getMessage(), e);
+    }
+    if (planCheckEnabled) {
+      try {
+        checkPlans();
+      } catch (Exception e) {
+        logger.error("Order query plan check failed: {}", e.getMessage(), e);
+      }
+    }
+  }
+
+  /**
+   * Explain every access path and warn about sequential scans of orders
+   *
+   * @return Names of the access paths planned as sequential scans, empty when the check was
+   * skipped
+   */
+  public List<String> checkPlans() {
+    List<String> sequential = new ArrayList<>();
+    long rows = ((Number) entityManager.createNativeQuery(
+        "SELECT CAST(GREATEST(reltuples, 0) AS BIGINT) FROM pg_class "
+            + "WHERE oid = CAST('orders' AS REGCLASS)")
+        .getSingleResult()).longValue();
+    if (rows < planCheckMinRows) {
+      logger.info("Order query plan check skipped, about {} orders is below {}", rows,
+          planCheckMinRows);
+      return sequential;
+    }
+
+    List<?> samples = entityManager.createNativeQuery(
+        "SELECT o.seller_id, o.product_id, o.timestamp FROM orders o "
+            + "WHERE o.seller_id IS NOT NULL AND o.product_id IS NOT NULL "
+            + "AND o.timestamp IS NOT NULL LIMIT 1")
+        .getResultList();
+    if (samples.isEmpty()) {
+      return sequential;
+    }
+    Object[] sample = (Object[]) samples.get(0);
+    LocalDateTime end = toLocalDateTime(sample[2]);
+
+    for (Map.Entry<String, String> path : ACCESS_PATHS.entrySet()) {
+      Query explain = entityManager.createNativeQuery("EXPLAIN " + path.getValue());
+      bind(explain, path.getValue(), "seller", sample[0]);
+      bind(explain, path.getValue(), "product", sample[1]);
+      bind(explain, path.getValue(), "start", end.minusDays(1));
+      bind(explain, path.getValue(), "end", end);
+      List<?> lines = explain.getResultList();
+      String plan = String.join("\n", lines.stream().map(String::valueOf).toList());
+      if (plan.contains("Seq Scan on orders")) {
+        sequential.add(path.getKey());
+        logger.warn("Order query {} is planned as a sequential scan:\n{}", path.getKey(), plan);
+      } else {
+        logger.debug("Order query {} plan:\n{}", path.getKey(), plan);
+      }
+    }
+    logger.info("Order query plan check: {} of {} access paths use an index",
+        ACCESS_PATHS.size() - sequential.size(), ACCESS_PATHS.size());
+    return sequential;
+  }
+
+  private static void bind(Query query, String sql, String name, Object value) {
+    if (sql.contains(":" + name)) {
+      query.setParameter(name, value);
+    }
+  }
+
+  private static LocalDateTime toLocalDateTime(Object value) {
+    return value instanceof Timestamp timestamp
+        ? timestamp.toLocalDateTime() : (LocalDateTime) value;
+  }
+}
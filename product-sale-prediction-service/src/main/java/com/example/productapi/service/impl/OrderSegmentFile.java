@@ -0,0 +1,398 @@
+package com.example.productapi.service.impl;
+
+import com.example.productapi.model.Order;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable columnar file holding one seller's orders of one month, sorted by time.
+ *
+ * <p>Layout, little-endian: a fixed header (magic, version, flags, row count, minimum and maximum
+ * time in epoch microseconds, section offsets and file length), the product and buyer id
+ * dictionaries, then one section per column. Times are varint deltas from the previous row, the
+ * first from the minimum. Product and buyer ids are varint dictionary codes, buyer code 0 being
+ * null. Quantities are zigzag varints, and prices zigzag varint cents when every price of the
+ * segment is a whole number of cents, raw doubles otherwise. Order ids are length-prefixed UTF-8.
+ *
+ * <p>Files are read through a read-only memory mapping. Scans decode the time, product, quantity
+ * and total price columns in step and stop at the end of the requested range.
+ */
+final class OrderSegmentFile {
+
+  private static final int MAGIC = 0x4745534F; // "OSEG"
+  private static final short VERSION = 1;
+  private static final short FLAG_CENTS = 1;
+  private static final int HEADER_BYTES = 72;
+
+  /**
+   * Raw double bits of a null price, a NaN arithmetic never produces
+   */
+  private static final long NULL_PRICE = 0x7FF8_0000_0000_0BADL;
+
+  private final Path path;
+  private final ByteBuffer buffer;
+  private final boolean cents;
+  private final int rows;
+  private final long minMicros;
+  private final long maxMicros;
+  private final String[] productIds;
+  private final String[] buyerIds;
+  private final int timeOffset;
+  private final int productOffset;
+  private final int buyerOffset;
+  private final int quantityOffset;
+  private final int unitPriceOffset;
+  private final int totalPriceOffset;
+  private final int orderIdOffset;
+
+  private OrderSegmentFile(Path path, ByteBuffer buffer) throws IOException {
+    this.path = path;
+    this.buffer = buffer;
+    if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+      throw new IOException(path + " is not an order segment file");
+    }
+    if (buffer.getShort(4) != VERSION) {
+      throw new IOException(path + " has unsupported segment version " + buffer.getShort(4));
+    }
+    if (buffer.getInt(68) != buffer.capacity()) {
+      throw new IOException(path + " is truncated");
+    }
+    this.cents = (buffer.getShort(6) & FLAG_CENTS) != 0;
+    this.rows = buffer.getInt(8);
+    this.minMicros = buffer.getLong(16);
+    this.maxMicros = buffer.getLong(24);
+    this.productIds = new Cursor(buffer.getInt(32)).dictionary();
+    this.buyerIds = new Cursor(buffer.getInt(36)).dictionary();
+    this.timeOffset = buffer.getInt(40);
+    this.productOffset = buffer.getInt(44);
+    this.buyerOffset = buffer.getInt(48);
+    this.quantityOffset = buffer.getInt(52);
+    this.unitPriceOffset = buffer.getInt(56);
+    this.totalPriceOffset = buffer.getInt(60);
+    this.orderIdOffset = buffer.getInt(64);
+  }
+
+  /**
+   * Map a segment file for reading. The mapping outlives the channel and is released with the
+   * returned object.
+   */
+  static OrderSegmentFile open(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException(path + " is too large for an order segment");
+      }
+      ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size)
+          .order(ByteOrder.LITTLE_ENDIAN);
+      return new OrderSegmentFile(path, mapped);
+    }
+  }
+
+  /**
+   * Write orders sorted by time to a new segment file. The file is written next to its final
+   * name, forced to disk and then renamed, so it is either complete or absent.
+   *
+   * @return Size of the file in bytes
+   */
+  static long write(Path path, List<Order> orders) throws IOException {
+    if (orders.isEmpty()) {
+      throw new IllegalArgumentException("A segment holds at least one order");
+    }
+    Map<String, Integer> productCodes = new HashMap<>();
+    Map<String, Integer> buyerCodes = new HashMap<>();
+    Sink products = new Sink(64);
+    Sink buyers = new Sink(64);
+    Sink times = new Sink(orders.size() * 3);
+    Sink productColumn = new Sink(orders.size());
+    Sink buyerColumn = new Sink(orders.size() * 2);
+    Sink quantities = new Sink(orders.size());
+    Sink unitPrices = new Sink(orders.size() * 3);
+    Sink totalPrices = new Sink(orders.size() * 3);
+    Sink orderIds = new Sink(orders.size() * 16);
+
+    boolean inCents = true;
+    for (Order order : orders) {
+      inCents &= isCents(order.getUnitPrice()) && isCents(order.getTotalPrice());
+    }
+
+    long min = OrderColumnStore.micros(orders.get(0).getTimestamp());
+    long previous = min;
+    for (Order order : orders) {
+      long micros = OrderColumnStore.micros(order.getTimestamp());
+      if (micros < previous) {
+        throw new IllegalArgumentException("Segment orders must be sorted by time");
+      }
+      times.varint(micros - previous);
+      previous = micros;
+      productColumn.varint(productCodes.computeIfAbsent(order.getProductId(), id -> {
+        products.string(id);
+        return productCodes.size();
+      }));
+      buyerColumn.varint(order.getBuyerId() == null ? 0
+          : buyerCodes.computeIfAbsent(order.getBuyerId(), id -> {
+            buyers.string(id);
+            return buyerCodes.size() + 1;
+          }));
+      quantities.zigzag(order.getQuantity());
+      price(unitPrices, order.getUnitPrice(), inCents);
+      price(totalPrices, order.getTotalPrice(), inCents);
+      orderIds.string(order.getOrderId());
+    }
+
+    Sink productDictionary = new Sink(products.size + 4).varint(productCodes.size()).append(products);
+    Sink buyerDictionary = new Sink(buyers.size + 4).varint(buyerCodes.size()).append(buyers);
+    Sink[] sections = {productDictionary, buyerDictionary, times, productColumn, buyerColumn,
+        quantities, unitPrices, totalPrices, orderIds};
+
+    ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    header.putInt(MAGIC).putShort(VERSION).putShort(inCents ? FLAG_CENTS : 0)
+        .putInt(orders.size()).putInt(0).putLong(min).putLong(previous);
+    long offset = HEADER_BYTES;
+    for (Sink section : sections) {
+      header.putInt((int) offset);
+      offset += section.size;
+    }
+    if (offset > Integer.MAX_VALUE) {
+      throw new IOException("Segment of " + orders.size() + " orders is too large");
+    }
+    header.putInt((int) offset).flip();
+
+    Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+    try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      writeFully(channel, header);
+      for (Sink section : sections) {
+        writeFully(channel, ByteBuffer.wrap(section.bytes, 0, section.size));
+      }
+      channel.force(true);
+    }
+    Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE);
+    return offset;
+  }
+
+  int getRows() {
+    return rows;
+  }
+
+  long getMinMicros() {
+    return minMicros;
+  }
+
+  long getMaxMicros() {
+    return maxMicros;
+  }
+
+  /**
+   * Visit the rows within [from, to] in epoch microseconds, in time order
+   */
+  void scan(long from, long to, RowConsumer consumer) {
+    if (from > maxMicros || to < minMicros) {
+      return;
+    }
+    Cursor time = new Cursor(timeOffset);
+    Cursor product = new Cursor(productOffset);
+    Cursor quantity = new Cursor(quantityOffset);
+    Cursor totalPrice = new Cursor(totalPriceOffset);
+    long micros = minMicros;
+    for (int row = 0; row < rows; row++) {
+      micros += time.varint();
+      int code = (int) product.varint();
+      int units = (int) quantity.zigzag();
+      long price = cents ? totalPrice.zigzag() : centsOf(totalPrice.rawDouble());
+      if (micros > to) {
+        break;
+      }
+      if (micros >= from) {
+        consumer.accept(productIds[code], micros, units, price);
+      }
+    }
+  }
+
+  /**
+   * Decode every order of the segment
+   */
+  List<Order> readOrders(String sellerId) {
+    Cursor time = new Cursor(timeOffset);
+    Cursor product = new Cursor(productOffset);
+    Cursor buyer = new Cursor(buyerOffset);
+    Cursor quantity = new Cursor(quantityOffset);
+    Cursor unitPrice = new Cursor(unitPriceOffset);
+    Cursor totalPrice = new Cursor(totalPriceOffset);
+    Cursor orderId = new Cursor(orderIdOffset);
+    List<Order> orders = new ArrayList<>(rows);
+    long micros = minMicros;
+    for (int row = 0; row < rows; row++) {
+      micros += time.varint();
+      int buyerCode = (int) buyer.varint();
+      LocalDateTime timestamp = LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+          (int) Math.floorMod(micros, 1_000_000L) * 1000, ZoneOffset.UTC);
+      orders.add(Order.builder()
+          .orderId(orderId.string())
+          .sellerId(sellerId)
+          .productId(productIds[(int) product.varint()])
+          .buyerId(buyerCode == 0 ? null : buyerIds[buyerCode - 1])
+          .quantity((int) quantity.zigzag())
+          .unitPrice(cents ? (Double) (unitPrice.zigzag() / 100.0) : unitPrice.rawDouble())
+          .totalPrice(cents ? (Double) (totalPrice.zigzag() / 100.0) : totalPrice.rawDouble())
+          .timestamp(timestamp)
+          .orderDate(timestamp.toLocalDate())
+          .build());
+    }
+    return orders;
+  }
+
+  @Override
+  public String toString() {
+    return path.toString();
+  }
+
+  private static boolean isCents(Double price) {
+    return price != null && Math.abs(price) < 1e13 && Math.round(price * 100) / 100.0 == price;
+  }
+
+  private static void price(Sink sink, Double price, boolean inCents) {
+    if (inCents) {
+      sink.zigzag(Math.round(price * 100));
+    } else {
+      sink.rawLong(price != null ? Double.doubleToRawLongBits(price) : NULL_PRICE);
+    }
+  }
+
+  private static long centsOf(Double price) {
+    return price != null ? Math.round(price * 100) : 0;
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer bytes) throws IOException {
+    while (bytes.hasRemaining()) {
+      channel.write(bytes);
+    }
+  }
+
+  @FunctionalInterface
+  interface RowConsumer {
+
+    void accept(String productId, long micros, int quantity, long cents);
+  }
+
+  /**
+   * Sequential reader over one section, using absolute reads so that scans can share the mapping
+   */
+  private final class Cursor {
+
+    private int position;
+
+    Cursor(int position) {
+      this.position = position;
+    }
+
+    long varint() {
+      long value = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = buffer.get(position++);
+        value |= (long) (b & 0x7F) << shift;
+        shift += 7;
+      } while (b < 0);
+      return value;
+    }
+
+    long zigzag() {
+      long value = varint();
+      return (value >>> 1) ^ -(value & 1);
+    }
+
+    Double rawDouble() {
+      long bits = buffer.getLong(position);
+      position += 8;
+      return bits == NULL_PRICE ? null : Double.longBitsToDouble(bits);
+    }
+
+    String string() {
+      int length = (int) varint();
+      byte[] bytes = new byte[length];
+      buffer.get(position, bytes);
+      position += length;
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    String[] dictionary() {
+      String[] entries = new String[(int) varint()];
+      for (int code = 0; code < entries.length; code++) {
+        entries[code] = string();
+      }
+      return entries;
+    }
+  }
+
+  /**
+   * Growable byte array sections are encoded into
+   */
+  private static final class Sink {
+
+    byte[] bytes;
+    int size;
+
+    Sink(int capacity) {
+      bytes = new byte[Math.max(16, capacity)];
+    }
+
+    Sink varint(long value) {
+      ensureCapacity(10);
+      while ((value & ~0x7FL) != 0) {
+        bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      bytes[size++] = (byte) value;
+      return this;
+    }
+
+    Sink zigzag(long value) {
+      return varint((value << 1) ^ (value >> 63));
+    }
+
+    Sink rawLong(long value) {
+      ensureCapacity(8);
+      for (int i = 0; i < 8; i++) {
+        bytes[size++] = (byte) (value >>> (8 * i));
+      }
+      return this;
+    }
+
+    Sink string(String value) {
+      byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+      varint(encoded.length);
+      ensureCapacity(encoded.length);
+      System.arraycopy(encoded, 0, bytes, size, encoded.length);
+      size += encoded.length;
+      return this;
+    }
+
+    Sink append(Sink other) {
+      ensureCapacity(other.size);
+      System.arraycopy(other.bytes, 0, bytes, size, other.size);
+      size += other.size;
+      return this;
+    }
+
+    private void ensureCapacity(int extra) {
+      if (size + extra > bytes.length) {
+        bytes = Arrays.copyOf(bytes, Math.max(size + extra, bytes.length * 2));
+      }
+    }
+  }
+}
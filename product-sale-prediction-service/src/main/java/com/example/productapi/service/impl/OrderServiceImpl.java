@@ -1,33 +1,182 @@
 package com.example.productapi.service.impl;
 
 import com.example.productapi.dto.GetOrdersResponse;
+import com.example.productapi.dto.OrderCursorPage;
 import com.example.productapi.dto.ProductSalesSummary;
+import com.example.productapi.event.OrdersRecordedEvent;
 import com.example.productapi.model.Order;
+import com.example.productapi.model.Product;
 import com.example.productapi.repository.OrderRepository;
+import com.example.productapi.repository.ProductRepository;
+import com.example.productapi.repository.ProductSalesAggregate;
+import com.example.productapi.service.DailySalesService;
 import com.example.productapi.service.OrderService;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.opencsv.CSVWriter;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.hibernate.exception.ConstraintViolationException;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class OrderServiceImpl implements OrderService {
 
+  private static final Logger logger = LoggerFactory.getLogger(OrderServiceImpl.class);
+
+  /**
+   * SQLSTATE of a unique or primary key violation
+   */
+  private static final String UNIQUE_VIOLATION = "23505";
+
+  /**
+   * Order IDs per existence query, well below the bind parameter limit of PostgreSQL
+   */
+  private static final int ID_LOOKUP_CHUNK = 1000;
+
+  private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("yyyy/MM/dd");
+
+  /**
+   * Row estimate of the top node in the text output of EXPLAIN
+   */
+  private static final Pattern PLAN_ROWS = Pattern.compile("rows=(\\d+)");
+
+  /**
+   * Order columns of an export, as read by {@link #EXPORT_QUERY}
+   */
+  private static final String[] EXPORT_COLUMNS = {"orderId", "productId", "buyerId", "sellerId",
+      "unitPrice", "quantity", "totalPrice", "timestamp"};
+
+  /**
+   * Filters of {@link OrderRepository#findOrdersWithFiltersNoPaging}, selecting columns instead of
+   * entities so nothing is kept in the persistence context while streaming
+   */
+  private static final String EXPORT_QUERY = "SELECT o.orderId, o.productId, o.buyerId, "
+      + "o.sellerId, o.unitPrice, o.quantity, o.totalPrice, o.timestamp "
+      + "FROM Order o JOIN Product p ON o.productId = p.id "
+      + "WHERE (:sellerId IS NULL OR o.sellerId = :sellerId) "
+      + "AND (:productId IS NULL OR o.productId = :productId) "
+      + "AND (:category IS NULL OR p.category = :category) "
+      + "AND o.timestamp BETWEEN :startTime AND :endTime "
+      + "ORDER BY o.timestamp, o.orderId";
+
+  /**
+   * Order of export rows, that of {@link #EXPORT_QUERY}
+   */
+  private static final Comparator<Object[]> EXPORT_ORDER = Comparator
+      .comparing((Object[] row) -> (LocalDateTime) row[7])
+      .thenComparing(row -> (String) row[0]);
+
+  private static final JsonFactory JSON = new JsonFactory().setRootValueSeparator(null);
+
   private final OrderRepository orderRepository;
+  private final DailySalesService dailySalesService;
+  private final ApplicationEventPublisher eventPublisher;
+  private final OrderArchive orderArchive;
+  private final ProductRepository productRepository;
+  private final int exportFetchSize;
+
+  @PersistenceContext
+  private EntityManager entityManager;
 
   @Autowired
-  public OrderServiceImpl(OrderRepository orderRepository) {
+  public OrderServiceImpl(OrderRepository orderRepository, DailySalesService dailySalesService,
+      ApplicationEventPublisher eventPublisher, OrderArchive orderArchive,
+      ProductRepository productRepository,
+      @Value("${orders.export.fetch-size:1000}") int exportFetchSize) {
     this.orderRepository = orderRepository;
+    this.dailySalesService = dailySalesService;
+    this.eventPublisher = eventPublisher;
+    this.orderArchive = orderArchive;
+    this.productRepository = productRepository;
+    this.exportFetchSize = Math.max(1, exportFetchSize);
+  }
+
+  /**
+   * Save new orders. Listeners of {@link OrdersRecordedEvent} run inside the same transaction
+   * unless they are transactional event listeners.
+   *
+   * <p>Orders are persisted rather than merged, so an order ID stored by a concurrent request
+   * after the check fails on its primary key instead of overwriting the row.
+   */
+  @Override
+  @Transactional
+  public List<Order> recordOrders(List<Order> orders) {
+    Set<String> orderIds = new HashSet<>();
+    Set<String> duplicates = new TreeSet<>();
+    for (Order order : orders) {
+      if (!orderIds.add(order.getOrderId())) {
+        duplicates.add(order.getOrderId());
+      }
+    }
+    duplicates.addAll(findRecordedOrderIds(orderIds));
+    if (!duplicates.isEmpty()) {
+      throw new DuplicateKeyException("Orders already recorded: " + String.join(", ", duplicates));
+    }
+
+    try {
+      orders.forEach(entityManager::persist);
+      entityManager.flush();
+    } catch (ConstraintViolationException e) {
+      if (UNIQUE_VIOLATION.equals(e.getSQLState())) {
+        throw new DuplicateKeyException("Orders already recorded by a concurrent request", e);
+      }
+      throw e;
+    }
+    if (!orders.isEmpty()) {
+      eventPublisher.publishEvent(new OrdersRecordedEvent(orders));
+    }
+    return orders;
+  }
+
+  @Override
+  public Set<String> findRecordedOrderIds(Collection<String> orderIds) {
+    Set<String> recorded = new HashSet<>();
+    List<String> chunk = new ArrayList<>(ID_LOOKUP_CHUNK);
+    for (String orderId : orderIds) {
+      chunk.add(orderId);
+      if (chunk.size() == ID_LOOKUP_CHUNK) {
+        recorded.addAll(orderRepository.findExistingOrderIds(chunk));
+        chunk.clear();
+      }
+    }
+    if (!chunk.isEmpty()) {
+      recorded.addAll(orderRepository.findExistingOrderIds(chunk));
+    }
+    return recorded;
   }
 
   /**
@@ -50,6 +199,207 @@ public class OrderServiceImpl implements OrderService {
         pageable);
   }
 
+  /**
+   * One row more than the page size is read to tell whether another page follows
+   */
+  @Override
+  public OrderCursorPage getOrdersAfterCursor(String sellerId, String productId, String category,
+      LocalDateTime startTime, LocalDateTime endTime, String cursor, int size,
+      boolean includeTotal) {
+    Pageable limit = PageRequest.of(0, size + 1);
+    List<Order> orders;
+    if (cursor == null || cursor.isEmpty()) {
+      orders = orderRepository.findOrdersWithFiltersFirst(sellerId, productId, category, startTime,
+          endTime, limit);
+    } else {
+      OrderCursor after = OrderCursor.decode(cursor);
+      orders = orderRepository.findOrdersWithFiltersAfter(sellerId, productId, category,
+          startTime, endTime, after.getTimestamp(), after.getOrderId(), limit);
+    }
+
+    boolean hasMore = orders.size() > size;
+    if (hasMore) {
+      orders = new ArrayList<>(orders.subList(0, size));
+    }
+    return OrderCursorPage.builder()
+        .orders(orders)
+        .hasMore(hasMore)
+        .nextCursor(hasMore ? OrderCursor.after(orders.get(size - 1)).encode() : null)
+        .estimatedTotalItems(includeTotal
+            ? estimateOrderCount(sellerId, productId, category, startTime, endTime) : null)
+        .build();
+  }
+
+  /**
+   * Read-only transaction, so PostgreSQL hands out the rows in batches of
+   * orders.export.fetch-size through a cursor instead of sending the whole result at once.
+   * Archived orders are merged in from the {@link OrderArchive} a month at a time. Repeatable
+   * read, so the segment list and the orders table come from one snapshot and an order moved by
+   * a concurrent archive run is written once.
+   */
+  @Override
+  @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+  public long exportOrders(String sellerId, String productId, String category,
+      LocalDateTime startTime, LocalDateTime endTime, String format, Writer writer)
+      throws IOException {
+    boolean csv = EXPORT_CSV.equals(format);
+    if (!csv && !EXPORT_NDJSON.equals(format)) {
+      throw new IllegalArgumentException("Unsupported export format: " + format);
+    }
+
+    long started = System.currentTimeMillis();
+    long count = 0;
+    CSVWriter csvWriter = csv ? new CSVWriter(writer) : null;
+    JsonGenerator json = csv ? null : JSON.createGenerator(writer)
+        .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    if (csv) {
+      csvWriter.writeNext(EXPORT_COLUMNS, false);
+    }
+
+    String[] values = new String[EXPORT_COLUMNS.length];
+    try (Stream<Object[]> archivedRows = archivedExportRows(sellerId, productId, category,
+            startTime, endTime);
+        Stream<Object[]> rows = entityManager.createQuery(EXPORT_QUERY, Object[].class)
+        .setParameter("sellerId", sellerId)
+        .setParameter("productId", productId)
+        .setParameter("category", category)
+        .setParameter("startTime", startTime)
+        .setParameter("endTime", endTime)
+        .setHint(HibernateHints.HINT_FETCH_SIZE, exportFetchSize)
+        .setHint(HibernateHints.HINT_READ_ONLY, true)
+        .getResultStream()) {
+      Iterator<Object[]> archived = archivedRows.iterator();
+      Iterator<Object[]> current = rows.iterator();
+      Object[] nextArchived = archived.hasNext() ? archived.next() : null;
+      Object[] nextCurrent = current.hasNext() ? current.next() : null;
+      while (nextArchived != null || nextCurrent != null) {
+        Object[] columns;
+        if (nextCurrent == null
+            || (nextArchived != null && EXPORT_ORDER.compare(nextArchived, nextCurrent) <= 0)) {
+          columns = nextArchived;
+          nextArchived = archived.hasNext() ? archived.next() : null;
+        } else {
+          columns = nextCurrent;
+          nextCurrent = current.hasNext() ? current.next() : null;
+        }
+        if (csv) {
+          for (int i = 0; i < columns.length; i++) {
+            values[i] = exportText(columns[i]);
+          }
+          csvWriter.writeNext(values, false);
+        } else {
+          json.writeStartObject();
+          for (int i = 0; i < columns.length; i++) {
+            writeJsonField(json, EXPORT_COLUMNS[i], columns[i]);
+          }
+          json.writeEndObject();
+          json.writeRaw('\n');
+        }
+        if (++count % exportFetchSize == 0) {
+          if (csv) {
+            csvWriter.flush();
+          } else {
+            json.flush();
+          }
+        }
+      }
+    }
+    if (csv) {
+      csvWriter.flush();
+    } else {
+      json.close();
+    }
+    writer.flush();
+    logger.info("Exported {} orders as {} in {} ms", count, format,
+        System.currentTimeMillis() - started);
+    return count;
+  }
+
+  /**
+   * Archived orders matching the export filters as rows of {@link #EXPORT_QUERY}, in its order.
+   * Like the query, orders of products missing from the product table are left out.
+   */
+  private Stream<Object[]> archivedExportRows(String sellerId, String productId,
+      String category, LocalDateTime startTime, LocalDateTime endTime) {
+    return orderArchive.readOrdersByMonth(sellerId, startTime, endTime).flatMap(month -> {
+      List<Order> orders = month.stream()
+          .filter(order -> productId == null || productId.equals(order.getProductId()))
+          .toList();
+      Map<String, String> categories = new HashMap<>();
+      for (Product product : productRepository.findAllById(
+          orders.stream().map(Order::getProductId).collect(Collectors.toSet()))) {
+        categories.put(product.getId(), product.getCategory());
+      }
+      return orders.stream()
+          .filter(order -> categories.containsKey(order.getProductId())
+              && (category == null || category.equals(categories.get(order.getProductId()))))
+          .map(order -> new Object[] {order.getOrderId(), order.getProductId(),
+              order.getBuyerId(), order.getSellerId(), order.getUnitPrice(), order.getQuantity(),
+              order.getTotalPrice(), order.getTimestamp()});
+    });
+  }
+
+  private static void writeJsonField(JsonGenerator json, String name, Object value)
+      throws IOException {
+    if (value == null) {
+      json.writeNullField(name);
+    } else if (value instanceof Integer number) {
+      json.writeNumberField(name, number);
+    } else if (value instanceof Double number) {
+      json.writeNumberField(name, number);
+    } else {
+      json.writeStringField(name, exportText(value));
+    }
+  }
+
+  /**
+   * Timestamps always with seconds, as the CSV loader reads them
+   */
+  private static String exportText(Object value) {
+    if (value instanceof LocalDateTime timestamp) {
+      return timestamp.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+    }
+    return value != null ? value.toString() : null;
+  }
+
+  /**
+   * Number of orders matching the filters as estimated by the query planner from the table
+   * statistics, without running the query
+   *
+   * @return The estimate, or null when the database could not provide one
+   */
+  private Long estimateOrderCount(String sellerId, String productId, String category,
+      LocalDateTime startTime, LocalDateTime endTime) {
+    StringBuilder sql = new StringBuilder("EXPLAIN SELECT 1 FROM orders o "
+        + "JOIN product p ON o.product_id = p.id WHERE o.timestamp BETWEEN ?1 AND ?2");
+    List<Object> parameters = new ArrayList<>(List.of(startTime, endTime));
+    if (sellerId != null) {
+      parameters.add(sellerId);
+      sql.append(" AND o.seller_id = ?").append(parameters.size());
+    }
+    if (productId != null) {
+      parameters.add(productId);
+      sql.append(" AND o.product_id = ?").append(parameters.size());
+    }
+    if (category != null) {
+      parameters.add(category);
+      sql.append(" AND p.category = ?").append(parameters.size());
+    }
+
+    try {
+      Query explain = entityManager.createNativeQuery(sql.toString());
+      for (int i = 0; i < parameters.size(); i++) {
+        explain.setParameter(i + 1, parameters.get(i));
+      }
+      List<?> plan = explain.getResultList();
+      Matcher rows = plan.isEmpty() ? null : PLAN_ROWS.matcher(String.valueOf(plan.get(0)));
+      return rows != null && rows.find() ? Long.valueOf(rows.group(1)) : null;
+    } catch (RuntimeException e) {
+      logger.warn("Could not estimate the number of orders: {}", e.getMessage());
+      return null;
+    }
+  }
+
   @Override
   public Map<String, Object> generateAggregationData(List<Order> orders) {
     DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy/MM/dd");
@@ -170,6 +520,44 @@ public class OrderServiceImpl implements OrderService {
     return result;
   }
 
+  /**
+   * The database returns one row per product (and per product and day) instead of every order,
+   * read from the sales rollups where they cover the range. With topN the best sellers are picked
+   * in SQL and only their days are fetched.
+   */
+  @Override
+  @Transactional(readOnly = true)
+  public Map<String, List<ProductSalesSummary>> aggregateSales(String sellerId, String productId,
+      String category, LocalDateTime startTime, LocalDateTime endTime, Integer topN) {
+    boolean limited = topN != null && topN > 0;
+    List<ProductSalesAggregate> totals = dailySalesService.sumSalesByProduct(sellerId, productId,
+        category, startTime, endTime, limited ? PageRequest.of(0, topN) : Pageable.unpaged());
+
+    List<String> topProductIds = limited
+        ? totals.stream().map(ProductSalesAggregate::getProductId).collect(Collectors.toList())
+        : null;
+    List<ProductSalesAggregate> daily = dailySalesService.sumDailySalesByProduct(sellerId,
+        productId, category, startTime, endTime, topProductIds);
+
+    Map<String, List<ProductSalesSummary>> result = new HashMap<>();
+    result.put("dailyProductSales", daily.stream()
+        .map(row -> toSummary(row, row.getDay().format(DAY_FORMAT)))
+        .collect(Collectors.toList()));
+    result.put("totalSummary", totals.stream()
+        .map(row -> toSummary(row, "total"))
+        .collect(Collectors.toList()));
+    return result;
+  }
+
+  private static ProductSalesSummary toSummary(ProductSalesAggregate row, String date) {
+    return ProductSalesSummary.builder()
+        .productId(row.getProductId())
+        .quantity(row.getQuantity().intValue())
+        .date(date)
+        .totalRevenue(row.getRevenue())
+        .build();
+  }
+
   @Override
   public GetOrdersResponse buildGetOrdersResponse(
       Page<Order> orderPage,
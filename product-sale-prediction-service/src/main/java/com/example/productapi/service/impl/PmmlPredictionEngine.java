@@ -0,0 +1,337 @@
+package com.example.productapi.service.impl;
+
+import com.example.productapi.ml.CompiledTreeEnsemble;
+import com.example.productapi.ml.FeatureMatrix;
+import com.example.productapi.ml.FeatureSchema;
+import com.example.productapi.ml.TreeEnsembleCompiler;
+import com.example.productapi.service.PredictionEngine;
+import jakarta.annotation.PostConstruct;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.dmg.pmml.FieldName;
+import org.dmg.pmml.PMML;
+import org.jpmml.evaluator.Evaluator;
+import org.jpmml.evaluator.EvaluatorUtil;
+import org.jpmml.evaluator.InputField;
+import org.jpmml.evaluator.LoadingModelEvaluatorBuilder;
+import org.jpmml.evaluator.TargetField;
+import org.jpmml.model.PMMLUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * In-process prediction engine that scores feature rows with the exported XGBoost PMML model
+ * (xgb_sales_predictor.pmml), so no Python sidecar is needed for forecasting.
+ *
+ * <p>When ml.model.compiled.enabled is set, the trees are also compiled into a
+ * {@link CompiledTreeEnsemble} that is used for scoring once it has been checked to reproduce the
+ * evaluator's output. The JPMML evaluator remains the reference and the fallback.
+ *
+ * <p>Non-blocking calls are scored on the bounded forecast executor, so concurrent batches run in
+ * parallel up to its size.
+ */
+@Service
+public class PmmlPredictionEngine implements PredictionEngine {
+
+  private static final Logger logger = LoggerFactory.getLogger(PmmlPredictionEngine.class);
+
+  static final String MODEL_FILE_NAME = "xgb_sales_predictor.pmml";
+
+  /**
+   * Price points used to check the compiled ensemble against the evaluator
+   */
+  private static final double[] VERIFICATION_PRICES = {9.99, 49.5, 199.0, 467.26, 899.99, 1599.0};
+
+  private final String modelBasePath;
+  private final boolean useLocalModel;
+  private final boolean useCompiledModel;
+  private final Scheduler forecastScheduler;
+
+  private volatile Evaluator evaluator;
+  private volatile CompiledTreeEnsemble compiledEnsemble;
+  private volatile String modelVersion;
+  private List<InputField> inputFields;
+  // FeatureSchema column of each input field
+  private int[] inputColumns;
+  private FieldName targetFieldName;
+
+  public PmmlPredictionEngine(
+      @Value("${ml.model.base.path:../product-sale-prediction-AI/model}") String modelBasePath,
+      @Value("${ml.model.use.local.model:true}") boolean useLocalModel,
+      @Value("${ml.model.compiled.enabled:true}") boolean useCompiledModel,
+      Scheduler forecastScheduler) {
+    this.modelBasePath = modelBasePath;
+    this.useLocalModel = useLocalModel;
+    this.useCompiledModel = useCompiledModel;
+    this.forecastScheduler = forecastScheduler;
+  }
+
+  @PostConstruct
+  public void loadModel() {
+    if (!useLocalModel) {
+      logger.info("Local PMML model disabled (ml.model.use.local.model=false)");
+      return;
+    }
+
+    Path modelPath = Paths.get(modelBasePath, MODEL_FILE_NAME);
+    if (!Files.isRegularFile(modelPath)) {
+      logger.warn("PMML model not found at {}, local prediction engine disabled",
+          modelPath.toAbsolutePath());
+      return;
+    }
+
+    try {
+      Evaluator loaded = new LoadingModelEvaluatorBuilder()
+          .load(modelPath.toFile())
+          .build();
+      loaded.verify();
+
+      List<? extends TargetField> targetFields = loaded.getTargetFields();
+      if (targetFields.size() != 1) {
+        throw new IllegalStateException(
+            "Expected exactly one target field, found " + targetFields.size());
+      }
+
+      this.inputFields = new ArrayList<>(loaded.getInputFields());
+      this.inputColumns = new int[inputFields.size()];
+      for (int i = 0; i < inputFields.size(); i++) {
+        String name = inputFields.get(i).getName().getValue();
+        inputColumns[i] = FeatureSchema.FEATURE_NAMES.indexOf(name);
+        if (inputColumns[i] < 0) {
+          throw new IllegalStateException("Unsupported model input field: " + name);
+        }
+      }
+      this.targetFieldName = targetFields.get(0).getName();
+      this.modelVersion = "pmml-" + HexFormat.of().formatHex(
+          MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(modelPath)), 0, 6);
+      this.evaluator = loaded;
+
+      logger.info("PMML model loaded from {} ({} input fields, target '{}', version {})",
+          modelPath.toAbsolutePath(), inputFields.size(), targetFieldName, modelVersion);
+    } catch (Exception e) {
+      logger.error("Failed to load PMML model from {}: {}", modelPath.toAbsolutePath(),
+          e.getMessage(), e);
+      return;
+    }
+
+    if (useCompiledModel) {
+      compileModel(modelPath);
+    }
+  }
+
+  /**
+   * Compile the tree ensemble into primitive arrays and only switch to it if it reproduces the
+   * evaluator's predictions exactly on a grid of feature rows
+   */
+  private void compileModel(Path modelPath) {
+    try (InputStream is = Files.newInputStream(modelPath)) {
+      PMML pmml = PMMLUtil.unmarshal(is);
+      CompiledTreeEnsemble compiled = TreeEnsembleCompiler.compile(pmml,
+          FeatureSchema.FEATURE_NAMES);
+
+      FeatureMatrix samples = verificationSamples();
+      double[] actual = scoreCompiled(compiled, samples);
+      for (int row = 0; row < samples.getRowCount(); row++) {
+        double expected = evaluate(evaluator, samples, row);
+        if (Double.compare(expected, actual[row]) != 0) {
+          logger.error("Compiled tree ensemble disagrees with PMML evaluator on row {}: {} != {}",
+              row, actual[row], expected);
+          return;
+        }
+      }
+
+      this.compiledEnsemble = compiled;
+      logger.info("Compiled tree ensemble enabled ({} trees, {} nodes, verified on {} rows)",
+          compiled.getTreeCount(), compiled.getNodeCount(), samples.getRowCount());
+    } catch (UnsupportedOperationException e) {
+      logger.warn("PMML model cannot be compiled, using the PMML evaluator: {}", e.getMessage());
+    } catch (Exception e) {
+      logger.error("Failed to compile PMML model: {}", e.getMessage(), e);
+    }
+  }
+
+  private FeatureMatrix verificationSamples() {
+    String[] productIds = {"p100", "p101", "p200", "p300", "p402", "unknown", null};
+    String[] sellerIds = {"seller_1", "seller_2", "seller_6", "unknown", null};
+    FeatureMatrix samples = FeatureMatrix.allocate(
+        productIds.length * sellerIds.length * VERIFICATION_PRICES.length);
+    int row = 0;
+    for (String productId : productIds) {
+      for (String sellerId : sellerIds) {
+        for (double price : VERIFICATION_PRICES) {
+          int day = row % 28;
+          samples.setIds(row, productId, sellerId);
+          samples.set(row, FeatureSchema.SALE_PRICE, price * (day % 3 == 0 ? 0.8 : 1.0));
+          samples.set(row, FeatureSchema.ORIGINAL_PRICE, price);
+          samples.set(row, FeatureSchema.IS_HOLIDAY, day % 11 == 0 ? 1 : 0);
+          samples.set(row, FeatureSchema.IS_WEEKEND, day % 7 >= 5 ? 1 : 0);
+          samples.set(row, FeatureSchema.DAY_OF_WEEK, day % 7);
+          samples.set(row, FeatureSchema.DAY_OF_MONTH, day + 1);
+          samples.set(row, FeatureSchema.MONTH, day % 12 + 1);
+          samples.set(row, FeatureSchema.LAG_1, day * 37.0 % 1200);
+          samples.set(row, FeatureSchema.LAG_7, day * 53.0 % 1200);
+          samples.set(row, FeatureSchema.LAG_30, day * 71.0 % 1200);
+          row++;
+        }
+      }
+    }
+    return samples;
+  }
+
+  @Override
+  public double[] predictBatch(FeatureMatrix features) {
+    Evaluator current = evaluator;
+    if (current == null) {
+      logger.warn("PMML model is not loaded");
+      return null;
+    }
+
+    try {
+      CompiledTreeEnsemble compiled = compiledEnsemble;
+      if (compiled != null) {
+        return scoreCompiled(compiled, features);
+      }
+
+      double[] predictions = new double[features.getRowCount()];
+      for (int row = 0; row < predictions.length; row++) {
+        predictions[row] = evaluate(current, features, row);
+      }
+      return predictions;
+    } catch (Exception e) {
+      logger.error("Error evaluating PMML model batch: {}", e.getMessage(), e);
+      return null;
+    }
+  }
+
+  @Override
+  public Mono<double[]> predictBatchAsync(FeatureMatrix features) {
+    return Mono.fromCallable(() -> predictBatch(features))
+        .subscribeOn(forecastScheduler);
+  }
+
+  /**
+   * Bounds come from the compiled ensemble, each group's bound covers the range of every column
+   * over its rows. Null when only the PMML evaluator is in use.
+   */
+  @Override
+  public double[] scoreUpperBounds(FeatureMatrix features, int groupRows) {
+    CompiledTreeEnsemble compiled = compiledEnsemble;
+    if (compiled == null || evaluator == null) {
+      return null;
+    }
+
+    int rowCount = features.getRowCount();
+    double[] bounds = new double[(rowCount + groupRows - 1) / groupRows];
+    double[] low = new double[FeatureSchema.FEATURE_COUNT];
+    double[] high = new double[FeatureSchema.FEATURE_COUNT];
+    boolean[] missing = new boolean[FeatureSchema.FEATURE_COUNT];
+    double[] values = features.getValues();
+    for (int group = 0; group < bounds.length; group++) {
+      int from = group * groupRows;
+      int to = Math.min(rowCount, from + groupRows);
+      Arrays.fill(low, Double.POSITIVE_INFINITY);
+      Arrays.fill(high, Double.NEGATIVE_INFINITY);
+      Arrays.fill(missing, false);
+      for (int row = from; row < to; row++) {
+        int offset = features.offset(row);
+        for (int column = 0; column < FeatureSchema.FEATURE_COUNT; column++) {
+          double value;
+          if (column == FeatureSchema.PRODUCT_ID) {
+            value = compiled.categoryValue(column, features.getProductId(row));
+          } else if (column == FeatureSchema.SELLER_ID) {
+            value = compiled.categoryValue(column, features.getSellerId(row));
+          } else {
+            value = values[offset + column];
+          }
+          if (Double.isNaN(value)) {
+            missing[column] = true;
+            continue;
+          }
+          low[column] = Math.min(low[column], value);
+          high[column] = Math.max(high[column], value);
+        }
+      }
+      bounds[group] = compiled.upperBound(low, high, missing);
+    }
+    return bounds;
+  }
+
+  @Override
+  public boolean isServiceAvailable() {
+    return evaluator != null;
+  }
+
+  @Override
+  public String getEngineName() {
+    return "pmml";
+  }
+
+  /**
+   * "pmml-" followed by the start of the model file's SHA-256
+   */
+  @Override
+  public String getModelVersion() {
+    String version = modelVersion;
+    return version != null ? version : getEngineName();
+  }
+
+  /**
+   * Score with the compiled ensemble on a copy of the matrix values whose categorical slots hold
+   * the ensemble's category codes, NaN for a missing ID
+   */
+  private double[] scoreCompiled(CompiledTreeEnsemble compiled, FeatureMatrix features) {
+    int rowCount = features.getRowCount();
+    double[] rows = features.getValues().clone();
+    for (int row = 0; row < rowCount; row++) {
+      int offset = features.offset(row);
+      rows[offset + FeatureSchema.PRODUCT_ID] =
+          compiled.categoryValue(FeatureSchema.PRODUCT_ID, features.getProductId(row));
+      rows[offset + FeatureSchema.SELLER_ID] =
+          compiled.categoryValue(FeatureSchema.SELLER_ID, features.getSellerId(row));
+    }
+
+    double[] scores = new double[rowCount];
+    compiled.scoreBatch(rows, rowCount, scores);
+    return scores;
+  }
+
+  private double evaluate(Evaluator current, FeatureMatrix features, int row) {
+    Map<FieldName, Object> arguments = new LinkedHashMap<>();
+    for (int i = 0; i < inputFields.size(); i++) {
+      InputField inputField = inputFields.get(i);
+      arguments.put(inputField.getName(),
+          inputField.prepare(rawValue(inputColumns[i], features, row)));
+    }
+
+    Map<FieldName, ?> results = current.evaluate(arguments);
+    Object target = EvaluatorUtil.decode(results.get(targetFieldName));
+    if (!(target instanceof Number)) {
+      throw new IllegalStateException("PMML model returned non-numeric target: " + target);
+    }
+    return ((Number) target).doubleValue();
+  }
+
+  private Object rawValue(int column, FeatureMatrix features, int row) {
+    switch (column) {
+      case FeatureSchema.PRODUCT_ID:
+        return features.getProductId(row);
+      case FeatureSchema.SELLER_ID:
+        return features.getSellerId(row);
+      default:
+        return features.get(row, column);
+    }
+  }
+}
@@ -1,67 +1,128 @@
 package com.example.productapi.service.impl;
 
-import com.example.productapi.dto.PythonPredictionRequest;
-import com.example.productapi.model.Order;
+import com.example.productapi.dto.ForecastFrame;
+import com.example.productapi.dto.TopSalesForecast;
+import com.example.productapi.ml.FeatureMatrix;
+import com.example.productapi.ml.FeatureSchema;
 import com.example.productapi.model.Predication;
 import com.example.productapi.model.Predications;
 import com.example.productapi.model.Product;
-import com.example.productapi.repository.OrderRepository;
 import com.example.productapi.repository.ProductRepository;
+import com.example.productapi.service.PredictionEngine;
 import com.example.productapi.service.PredictionService;
 import com.example.productapi.service.PythonPredictionClient;
-import com.example.productapi.util.HolidayChecker;
+import com.example.productapi.service.ReactivePredictionService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PostConstruct;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
-import software.amazon.awssdk.services.sagemakerruntime.endpoints.internal.Value.Int;
-import java.util.stream.Collectors;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.function.Consumer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 @Service
-public class PredictionServiceImpl implements PredictionService {
+public class PredictionServiceImpl implements PredictionService, ReactivePredictionService {
 
   private static final Logger logger = LoggerFactory.getLogger(PredictionServiceImpl.class);
 
+  /**
+   * Smallest chunk a matrix is split into for parallel scoring, below this the per-call overhead
+   * outweighs the gain
+   */
+  private static final int MIN_PARALLEL_CHUNK_ROWS = 256;
+
   private final ProductRepository productRepository;
-  private final OrderRepository orderRepository;
+  private final FeatureAssembler featureAssembler;
+  private final PmmlPredictionEngine pmmlPredictionEngine;
   private final PythonPredictionClient pythonPredictionClient;
+  private final MicroBatchDispatcher microBatchDispatcher;
+  private final ForecastCache forecastCache;
+  private final ForecastTable forecastTable;
+  private final int reactiveConcurrency;
+  private final int maxBatchRows;
 
   @Autowired
-  public PredictionServiceImpl(ProductRepository productRepository, OrderRepository orderRepository,
-      PythonPredictionClient pythonPredictionClient) {
+  public PredictionServiceImpl(ProductRepository productRepository,
+      FeatureAssembler featureAssembler,
+      PmmlPredictionEngine pmmlPredictionEngine, PythonPredictionClient pythonPredictionClient,
+      MicroBatchDispatcher microBatchDispatcher, ForecastCache forecastCache,
+      ForecastTable forecastTable,
+      @Value("${prediction.reactive.max-concurrency:32}") int reactiveConcurrency,
+      @Value("${prediction.batch.max-rows:5000}") int maxBatchRows) {
     this.productRepository = productRepository;
-    this.orderRepository = orderRepository;
+    this.featureAssembler = featureAssembler;
+    this.pmmlPredictionEngine = pmmlPredictionEngine;
     this.pythonPredictionClient = pythonPredictionClient;
+    this.microBatchDispatcher = microBatchDispatcher;
+    this.forecastCache = forecastCache;
+    this.forecastTable = forecastTable;
+    this.reactiveConcurrency = Math.max(1, reactiveConcurrency);
+    this.maxBatchRows = Math.max(1, maxBatchRows);
   }
 
   @PostConstruct
   public void initializeModel() {
-    // This method is now empty as the model initialization logic has been moved to the PythonPredictionClient
+    // The PMML model is loaded by PmmlPredictionEngine, this only reports which backend is active
+    logger.info("Prediction engine in use: {}", activeEngine().getEngineName());
+  }
+
+  /**
+   * Use the in-process PMML engine when it is enabled (ml.model.use.local.model) and loaded,
+   * otherwise fall back to the Python prediction service
+   */
+  PredictionEngine activeEngine() {
+    if (pmmlPredictionEngine.isServiceAvailable()) {
+      return pmmlPredictionEngine;
+    }
+    return pythonPredictionClient;
   }
 
   @Override
   public List<Predications> predicateTopSales(String sellerId, String category, LocalDate startDate,
       LocalDate endDate, Integer topN) {
+    LocalDate lastDate = endDate != null ? endDate : startDate;
+    List<LocalDate> dates = datesBetween(startDate, lastDate);
     List<Product> products = productRepository.findBySellerIdAndCategory(sellerId, category);
-    List<Predications> predicationsList = new ArrayList<>();
-    for (Product product : products) {
-      Predications predications = predictSalesByProductId(product.getId(), sellerId,
-          product.getPrice(), startDate, endDate);
-      predicationsList.add(predications);
+    int[] quantities = lookupMaterialized(sellerId, products, dates);
+    if (quantities == null) {
+      FeatureMatrix features = featureAssembler.assemble(products, sellerId, null, dates);
+      quantities = predictChunkedDailySales(features).block();
     }
-    return predicationsList.stream()
-        .sorted((a, b) -> Integer.compare(b.getTotalQuantity(), a.getTotalQuantity()))
-        .limit(topN)
-        .collect(Collectors.toList());
+    return rankTopSales(products, startDate, lastDate, dates, quantities, topN);
+  }
+
+  /**
+   * Forecast every product for every date, in product order. Forecast jobs call this for one
+   * slice of their catalog at a time, from their own worker threads.
+   */
+  List<Predications> forecastProducts(List<Product> products, String sellerId,
+      Double priceToSale, LocalDate startDate, LocalDate endDate) {
+    List<LocalDate> dates = datesBetween(startDate, endDate);
+    boolean listPrice = products.stream().allMatch(product -> isListPrice(product, priceToSale));
+    int[] quantities = listPrice ? lookupMaterialized(sellerId, products, dates) : null;
+    if (quantities == null) {
+      FeatureMatrix features = featureAssembler.assemble(products, sellerId, priceToSale, dates);
+      quantities = predictChunkedDailySales(features).block();
+    }
+
+    List<Predications> predicationsList = new ArrayList<>(products.size());
+    for (int i = 0; i < products.size(); i++) {
+      predicationsList.add(buildPredications(products.get(i).getId(), startDate, endDate, dates,
+          quantities, i * dates.size()));
+    }
+    return predicationsList;
   }
 
   @Override
@@ -69,231 +130,568 @@ public class PredictionServiceImpl implements PredictionService {
       LocalDate startDate, LocalDate endDate) {
 
     // Get product details
-    Product product = productRepository.findById(productId)
-        .orElseThrow(() -> new IllegalArgumentException("Product not found with ID: " + productId));
+    Product product = findProduct(productId);
 
     // If endDate is null, only predict for startDate
     if (endDate == null) {
       endDate = startDate;
     }
 
-    // Calculate total days
-    long totalDays = ChronoUnit.DAYS.between(startDate, endDate.plusDays(1));
+    List<LocalDate> dates = datesBetween(startDate, endDate);
+    if (isListPrice(product, priceToSale)) {
+      int[] materialized = lookupMaterialized(sellerId, List.of(product), dates);
+      if (materialized != null) {
+        return buildPredications(productId, startDate, endDate, dates, materialized, 0);
+      }
+    }
 
-    // Get historical sales data for lag features
-    List<Order> historicalOrders = getHistoricalOrders(productId, sellerId, startDate);
+    // Prepare features for all dates, lag features come from one daily sales range read
+    FeatureMatrix features = featureAssembler.assemble(List.of(product), sellerId, priceToSale,
+        dates);
 
-    // Generate daily predictions
-    List<Predication> predictions = new ArrayList<>();
-    int totalQuantity = 0;
+    int[] quantities = predictBatchDailySales(features);
+    if (quantities == null) {
+      logger.warn("Batch prediction failed, using fallback logic");
+      quantities = predictAllWithFallbackLogic(features);
+    }
 
-    // Optimize: use batch prediction for multiple days, single prediction for one day
-    if (totalDays == 1) {
-      // Single day prediction
-      Map<String, Object> features = prepareFeatures(productId, sellerId, priceToSale,
-          startDate, historicalOrders);
-      int quantity = predictDailySales(features);
+    return buildPredications(productId, startDate, endDate, dates, quantities, 0);
+  }
 
-      predictions.add(Predication.builder()
-          .date(startDate)
-          .quantity(quantity)
-          .build());
+  @Override
+  public Mono<Predications> predictSales(String productId, String sellerId, Double priceToSale,
+      LocalDate startDate, LocalDate endDate) {
+    return predictSales(() -> findProduct(productId), sellerId, priceToSale, startDate, endDate);
+  }
 
-      totalQuantity = quantity;
+  @Override
+  public Flux<ForecastFrame> streamSales(String productId, String sellerId, Double priceToSale,
+      LocalDate startDate, LocalDate endDate, int chunkDays) {
+    LocalDate lastDate = endDate != null ? endDate : startDate;
+    List<LocalDate> dates = datesBetween(startDate, lastDate);
+    int chunkRows = Math.max(1, chunkDays);
+
+    return Mono.fromCallable(() -> {
+          Product product = findProduct(productId);
+          int[] materialized = isListPrice(product, priceToSale)
+              ? lookupMaterialized(sellerId, List.of(product), dates) : null;
+          return new ForecastInput(product.getId(), materialized == null
+              ? featureAssembler.assemble(List.of(product), sellerId, priceToSale, dates) : null,
+              materialized);
+        })
+        .subscribeOn(Schedulers.boundedElastic())
+        .flatMapMany(input -> {
+          Flux<int[]> chunks = input.materialized() != null
+              ? Flux.range(0, (dates.size() + chunkRows - 1) / chunkRows)
+                  .map(chunk -> Arrays.copyOfRange(input.materialized(), chunk * chunkRows,
+                      Math.min(dates.size(), (chunk + 1) * chunkRows)))
+              : Flux.range(0, (dates.size() + chunkRows - 1) / chunkRows)
+                  .map(chunk -> input.features().slice(chunk * chunkRows,
+                      Math.min(dates.size(), (chunk + 1) * chunkRows)))
+                  .flatMapSequential(this::predictBatchDailySalesAsync, reactiveConcurrency);
+
+          // Only the running totals are kept, each chunk is released once emitted
+          int[] emitted = new int[2]; // days, total quantity
+          return chunks
+              .map(quantities -> {
+                List<Predication> predictions = new ArrayList<>(quantities.length);
+                for (int quantity : quantities) {
+                  predictions.add(Predication.builder()
+                      .date(dates.get(emitted[0]++))
+                      .quantity(quantity)
+                      .build());
+                  emitted[1] += quantity;
+                }
+                return ForecastFrame.builder()
+                    .type(ForecastFrame.DAYS)
+                    .productId(input.productId())
+                    .predicationList(predictions)
+                    .build();
+              })
+              .concatWith(Mono.fromSupplier(() -> ForecastFrame.builder()
+                  .type(ForecastFrame.SUMMARY)
+                  .productId(input.productId())
+                  .startDate(startDate)
+                  .endDate(lastDate)
+                  .totalQuantity(emitted[1])
+                  .totalDays((int) ChronoUnit.DAYS.between(startDate, lastDate.plusDays(1)))
+                  .build()));
+        });
+  }
 
-    } else {
-      // Multiple days - use batch prediction for better performance
-      List<Map<String, Object>> allFeatures = new ArrayList<>();
-      List<LocalDate> dates = new ArrayList<>();
+  @Override
+  public Flux<Predications> predictTopSales(String sellerId, String category,
+      LocalDate startDate, LocalDate endDate, Integer topN) {
+    LocalDate lastDate = endDate != null ? endDate : startDate;
+    List<LocalDate> dates = datesBetween(startDate, lastDate);
+
+    return Mono.fromCallable(() -> {
+          List<Product> products = productRepository.findBySellerIdAndCategory(sellerId, category);
+          int[] materialized = lookupMaterialized(sellerId, products, dates);
+          return new CategoryForecastInput(products, materialized == null
+              ? featureAssembler.assemble(products, sellerId, null, dates) : null, materialized);
+        })
+        .subscribeOn(Schedulers.boundedElastic())
+        .flatMapMany(input -> (input.materialized() != null
+            ? Mono.just(input.materialized())
+            : predictChunkedDailySales(input.features()))
+            .flatMapIterable(quantities -> rankTopSales(input.products(), startDate, lastDate,
+                dates, quantities, topN)));
+  }
 
-      // Prepare features for all dates
-      for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
-        Map<String, Object> features = prepareFeatures(productId, sellerId, priceToSale,
-            date, historicalOrders);
-        allFeatures.add(features);
-        dates.add(date);
-      }
+  @Override
+  public Mono<TopSalesForecast> predictTopSalesPruned(String sellerId, String category,
+      LocalDate startDate, LocalDate endDate, int topN) {
+    LocalDate lastDate = endDate != null ? endDate : startDate;
+    List<LocalDate> dates = datesBetween(startDate, lastDate);
+
+    return Mono.fromCallable(() -> {
+          List<Product> products = productRepository.findBySellerIdAndCategory(sellerId, category);
+          int[] materialized = lookupMaterialized(sellerId, products, dates);
+          return new CategoryForecastInput(products, materialized == null
+              ? featureAssembler.assemble(products, sellerId, null, dates) : null, materialized);
+        })
+        .subscribeOn(Schedulers.boundedElastic())
+        .flatMap(input -> (input.materialized() != null
+            ? Mono.just(new TopSalesSearch(input.products().size(), dates.size(), topN,
+                input.materialized()))
+            : new TopSalesSearch(input.features(), input.products().size(), dates.size(), topN)
+                .run())
+            .map(search -> {
+              logger.debug("Top {} search forecast {} of {} products (exact: {})", topN,
+                  search.scored, input.products().size(), search.exact);
+              return TopSalesForecast.builder()
+                  .predictions(buildTopSales(input.products(), startDate, lastDate, dates,
+                      search.quantities, search.top))
+                  .productsTotal(input.products().size())
+                  .productsScored(search.scored)
+                  .exact(search.exact)
+                  .build();
+            }));
+  }
 
-      // Try batch prediction first
-      List<Integer> quantities = predictBatchDailySales(allFeatures);
+  /**
+   * Score a product x day matrix in chunks of at most prediction.batch.max-rows rows, split
+   * further so up to prediction.reactive.max-concurrency chunks of the request can be scored in
+   * parallel. Cached rows are skipped and the remaining chunks are handed to the engine as one
+   * stream, so a streaming backend receives them over a single call. Chunks the engine could not
+   * score use the fallback heuristic; an unexpected error cancels the chunks still in flight.
+   */
+  private Mono<int[]> predictChunkedDailySales(FeatureMatrix features) {
+    return predictChunkedDailySales(features, fallback -> {
+    });
+  }
 
-      // If batch prediction failed, fall back to individual predictions
-      if (quantities == null || quantities.size() != dates.size()) {
-        logger.warn("Batch prediction failed, falling back to individual predictions");
-        quantities = new ArrayList<>();
-        for (Map<String, Object> features : allFeatures) {
-          quantities.add(predictDailySales(features));
-        }
-      }
+  /**
+   * @param onChunk Told for every chunk, in order, whether its quantities came from the fallback
+   *                heuristic instead of the engine
+   */
+  private Mono<int[]> predictChunkedDailySales(FeatureMatrix features,
+      Consumer<Boolean> onChunk) {
+    List<FeatureMatrix> chunks = chunks(features);
+    PredictionEngine engine = activeEngine();
+    if (!engine.isServiceAvailable()) {
+      logger.debug("{} prediction engine is not available, using fallback logic for batch",
+          engine.getEngineName());
+      return Mono.fromSupplier(() -> {
+        chunks.forEach(chunk -> onChunk.accept(true));
+        return predictAllWithFallbackLogic(features);
+      });
+    }
 
-      // Build predictions list
-      for (int i = 0; i < dates.size(); i++) {
-        int quantity = quantities.get(i);
-        predictions.add(Predication.builder()
-            .date(dates.get(i))
-            .quantity(quantity)
-            .build());
-        totalQuantity += quantity;
+    List<CachedRows> cachedChunks = new ArrayList<>(chunks.size());
+    List<CachedRows> pending = new ArrayList<>();
+    for (FeatureMatrix chunk : chunks) {
+      CachedRows cachedRows = lookupCached(engine, chunk);
+      cachedChunks.add(cachedRows);
+      if (!cachedRows.isComplete()) {
+        pending.add(cachedRows);
       }
     }
 
-    // Build and return Predications object
-    return Predications.builder()
-        .productId(productId)
-        .predicationList(predictions)
-        .startDate(startDate)
-        .endDate(endDate)
-        .totalQuantity(totalQuantity)
-        .totalDays((int) totalDays)
-        .build();
+    return microBatchDispatcher.predictBatchStream(engine,
+            Flux.fromIterable(pending).map(CachedRows::missingRows), reactiveConcurrency)
+        .index()
+        .doOnNext(scored -> {
+          CachedRows cachedRows = pending.get(scored.getT1().intValue());
+          if (scored.getT2().length == cachedRows.missingCount) {
+            cachedRows.fill(engine, cachedRows.missingRows(), scored.getT2());
+            cachedRows.scored = true;
+          }
+        })
+        .then(Mono.fromSupplier(() -> {
+          List<int[]> parts = new ArrayList<>(cachedChunks.size());
+          for (CachedRows cachedRows : cachedChunks) {
+            if (!cachedRows.isComplete() && !cachedRows.scored) {
+              logger.warn("Batch prediction failed for {} rows, using fallback logic",
+                  cachedRows.features.getRowCount());
+              onChunk.accept(true);
+              parts.add(predictAllWithFallbackLogic(cachedRows.features));
+            } else {
+              onChunk.accept(false);
+              parts.add(cachedRows.quantities);
+            }
+          }
+          return concat(parts, features.getRowCount());
+        }));
   }
 
   /**
-   * Prepare features for prediction using the specific features required by the Python prediction
-   * service Features: product_id, seller_id, sale_price, original_price, is_holiday, is_weekend,
-   * day_of_week, day_of_month, month, lag_1, lag_7, lag_30
+   * Reactive forecast pipeline: the product and sales history are read on the bounded elastic
+   * scheduler, then the feature rows are scored through the engine's non-blocking batch call
    */
-  private Map<String, Object> prepareFeatures(String productId, String sellerId, Double priceToSale,
-      LocalDate predictionDate,
-      List<Order> historicalOrders) {
-
-    // Retrieve product details
-    Product product = productRepository.findById(productId)
-        .orElseThrow(() -> new IllegalArgumentException("Product not found with ID: " + productId));
-
-    // Determine price to use - if priceToSale is null or 0, use original price (no discount)
-    Double salePrice = (priceToSale == null || priceToSale == 0) ? product.getPrice() : priceToSale;
-    Double originalPrice = product.getPrice();
-
-    // Prepare features map with ALL features needed by Python API
-    Map<String, Object> features = new HashMap<>();
-
-    // Product and seller identifiers (now included for Python API)
-    features.put("product_id", productId);
-    features.put("seller_id", sellerId);
+  private Mono<Predications> predictSales(Callable<Product> productLoader, String sellerId,
+      Double priceToSale, LocalDate startDate, LocalDate endDate) {
+    LocalDate lastDate = endDate != null ? endDate : startDate;
+    List<LocalDate> dates = datesBetween(startDate, lastDate);
+
+    return Mono.fromCallable(() -> {
+          Product product = productLoader.call();
+          int[] materialized = isListPrice(product, priceToSale)
+              ? lookupMaterialized(sellerId, List.of(product), dates) : null;
+          return new ForecastInput(product.getId(), materialized == null
+              ? featureAssembler.assemble(List.of(product), sellerId, priceToSale, dates) : null,
+              materialized);
+        })
+        .subscribeOn(Schedulers.boundedElastic())
+        .flatMap(input -> (input.materialized() != null
+            ? Mono.just(input.materialized())
+            : predictBatchDailySalesAsync(input.features()))
+            .map(quantities -> buildPredications(input.productId(), startDate, lastDate, dates,
+                quantities, 0)));
+  }
 
-    // Price features
-    features.put("sale_price", salePrice);
-    features.put("original_price", originalPrice);
+  /**
+   * Feature rows to score, or the quantities read from the forecast table (features null)
+   */
+  private record ForecastInput(String productId, FeatureMatrix features, int[] materialized) {
 
-    // Date-based features
-    features.put("is_holiday", HolidayChecker.isHoliday(predictionDate) ? 1 : 0);
-    features.put("is_weekend", HolidayChecker.isWeekend(predictionDate) ? 1 : 0);
-    features.put("day_of_week",
-        predictionDate.getDayOfWeek().getValue() - 1); // Python weekday: Monday=0, Sunday=6
-    features.put("day_of_month", predictionDate.getDayOfMonth());
-    features.put("month", predictionDate.getMonthValue());
+  }
 
-    // Lag features - get historical sales quantities
-    Map<String, Double> lagFeatures = calculateLagFeatures(historicalOrders, predictionDate);
-    features.put("lag_1", lagFeatures.get("lag_1"));
-    features.put("lag_7", lagFeatures.get("lag_7"));
-    features.put("lag_30", lagFeatures.get("lag_30"));
+  private record CategoryForecastInput(List<Product> products, FeatureMatrix features,
+      int[] materialized) {
 
-    return features;
   }
 
   /**
-   * Calculate lag features (lag_1, lag_7, lag_30) based on historical orders
+   * No what-if price: the sale price is absent, 0 or the product's own price
    */
-  private Map<String, Double> calculateLagFeatures(List<Order> historicalOrders,
-      LocalDate predictionDate) {
-    Map<String, Double> lagFeatures = new HashMap<>();
+  private static boolean isListPrice(Product product, Double priceToSale) {
+    return priceToSale == null || priceToSale == 0 || priceToSale.equals(product.getPrice());
+  }
 
-    // Group orders by date and sum quantities
-    Map<LocalDate, Integer> dailySales = new HashMap<>();
-    for (Order order : historicalOrders) {
-      LocalDate orderDate = order.getTimestamp().toLocalDate();
-      dailySales.merge(orderDate, order.getQuantity(), Integer::sum);
+  /**
+   * List-price quantities of the products from the nightly forecast table, product-major
+   *
+   * @return Quantities, or null when the table does not cover every product and date for the
+   * model in use
+   */
+  private int[] lookupMaterialized(String sellerId, List<Product> products,
+      List<LocalDate> dates) {
+    if (!forecastTable.isEnabled()) {
+      return null;
     }
-
-    // Calculate lag features
-    lagFeatures.put("lag_1", getDailySales(dailySales, predictionDate.minusDays(1)));
-    lagFeatures.put("lag_7", getDailySales(dailySales, predictionDate.minusDays(7)));
-    lagFeatures.put("lag_30", getDailySales(dailySales, predictionDate.minusDays(30)));
-
-    return lagFeatures;
+    List<String> productIds = new ArrayList<>(products.size());
+    for (Product product : products) {
+      productIds.add(product.getId());
+    }
+    int[] quantities = forecastTable.lookup(sellerId, productIds, dates,
+        activeEngine().getModelVersion());
+    if (quantities != null) {
+      logger.debug("Served {} products x {} days from the forecast table", products.size(),
+          dates.size());
+    }
+    return quantities;
   }
 
   /**
-   * Get daily sales for a specific date, return 0.0 if no sales
+   * Keep the top N products by total quantity of the product-major quantities. Totals are ranked
+   * with a bounded min-heap, only the winners are turned into Predications. Ties keep product
+   * order.
    */
-  private Double getDailySales(Map<LocalDate, Integer> dailySales, LocalDate date) {
-    return dailySales.getOrDefault(date, 0).doubleValue();
+  private List<Predications> rankTopSales(List<Product> products, LocalDate startDate,
+      LocalDate endDate, List<LocalDate> dates, int[] quantities, Integer topN) {
+    int days = dates.size();
+    int[] totals = new int[products.size()];
+    for (int i = 0; i < totals.length; i++) {
+      for (int day = 0; day < days; day++) {
+        totals[i] += quantities[i * days + day];
+      }
+    }
+
+    int limit = topN != null ? Math.max(0, Math.min(topN, totals.length)) : totals.length;
+    TopN top = new TopN(totals, limit);
+    for (int i = 0; i < totals.length; i++) {
+      top.offer(i);
+    }
+    return buildTopSales(products, startDate, endDate, dates, quantities, top);
+  }
+
+  private List<Predications> buildTopSales(List<Product> products, LocalDate startDate,
+      LocalDate endDate, List<LocalDate> dates, int[] quantities, TopN top) {
+    List<Integer> winners = top.winners();
+    List<Predications> predicationsList = new ArrayList<>(winners.size());
+    for (int i : winners) {
+      predicationsList.add(buildPredications(products.get(i).getId(), startDate, endDate, dates,
+          quantities, i * dates.size()));
+    }
+    return predicationsList;
   }
 
   /**
-   * Get historical orders for lag feature calculation
+   * Bounded min-heap of the best product indices by total: higher total first, then earlier
+   * product
    */
-  private List<Order> getHistoricalOrders(String productId, String sellerId, LocalDate startDate) {
-    // Get orders from last 60 days to have enough data for lag features
-    LocalDateTime cutoffDate = startDate.minusDays(60).atStartOfDay();
-    return orderRepository.findBySellerIdAndProductIdAndTimestampAfter(sellerId, productId,
-        cutoffDate);
+  private static final class TopN {
+
+    final int[] totals;
+    final int limit;
+    final Comparator<Integer> ranking;
+    final PriorityQueue<Integer> heap;
+
+    TopN(int[] totals, int limit) {
+      this.totals = totals;
+      this.limit = limit;
+      this.ranking = Comparator.<Integer>comparingInt(i -> -totals[i]).thenComparingInt(i -> i);
+      this.heap = new PriorityQueue<>(Math.max(1, limit), ranking.reversed());
+    }
+
+    void offer(int i) {
+      if (limit == 0) {
+        return;
+      }
+      if (heap.size() < limit) {
+        heap.add(i);
+      } else if (ranking.compare(i, heap.peek()) < 0) {
+        heap.poll();
+        heap.add(i);
+      }
+    }
+
+    /**
+     * Whether a product whose total is at most {@code bound} could still enter
+     */
+    boolean admits(int i, long bound) {
+      if (limit == 0) {
+        return false;
+      }
+      if (heap.size() < limit) {
+        return true;
+      }
+      int nth = heap.peek();
+      return bound > totals[nth] || (bound == totals[nth] && i < nth);
+    }
+
+    List<Integer> winners() {
+      List<Integer> winners = new ArrayList<>(heap);
+      winners.sort(ranking);
+      return winners;
+    }
   }
 
   /**
-   * Predict sales for a specific day using the Python prediction service
+   * Branch-and-bound top N search over a product-major matrix. Products are forecast in rounds,
+   * highest upper bound first, each round twice the size of the previous one, until no remaining
+   * product's bound can beat the current Nth total.
+   *
+   * <p>Bounds come from {@link PredictionEngine#scoreUpperBounds(FeatureMatrix, int)} when the
+   * engine supports them, so skipped products provably could not make the top N. Otherwise each
+   * day is estimated as the larger of the fallback heuristic and the lag window's sales, which
+   * orders candidates well but is not a guarantee. Either kind of bound only holds for quantities
+   * of the same source, so the result stops being exact once a chunk is scored by the other one:
+   * the heuristic standing in for a failed engine call under model bounds, or the engine coming
+   * back under heuristic bounds.
    */
-  private int predictDailySales(Map<String, Object> features) {
+  private final class TopSalesSearch {
+
+    final FeatureMatrix features;
+    final int days;
+    final int[] quantities;
+    final int[] totals;
+    final long[] bounds;
+    final Integer[] order;
+    final TopN top;
+    // Whether the bounds come from the model rather than the heuristic estimate
+    final boolean modelBounds;
+    boolean exact;
+    int next;
+    int scored;
+    int roundProducts;
+
+    /**
+     * Search over quantities that are already known, nothing is scored
+     */
+    TopSalesSearch(int productCount, int days, int topN, int[] quantities) {
+      this.features = null;
+      this.days = days;
+      this.quantities = quantities;
+      this.totals = new int[productCount];
+      this.top = new TopN(totals, Math.max(0, Math.min(topN, productCount)));
+      this.modelBounds = false;
+      this.exact = true;
+      this.bounds = null;
+      this.order = null;
+      for (int i = 0; i < productCount; i++) {
+        for (int day = 0; day < days; day++) {
+          totals[i] += quantities[i * days + day];
+        }
+        top.offer(i);
+      }
+    }
+
+    TopSalesSearch(FeatureMatrix features, int productCount, int days, int topN) {
+      this.features = features;
+      this.days = days;
+      this.quantities = new int[features.getRowCount()];
+      this.totals = new int[productCount];
+      this.top = new TopN(totals, Math.max(0, Math.min(topN, productCount)));
+      this.roundProducts = Math.max(1, top.limit);
+
+      PredictionEngine engine = activeEngine();
+      double[] dailyBounds = engine.isServiceAvailable() && days > 0
+          ? engine.scoreUpperBounds(features, days) : null;
+      // Without an engine every product gets the fallback heuristic, which the estimate bounds
+      this.modelBounds = dailyBounds != null;
+      this.exact = modelBounds || !engine.isServiceAvailable();
+      this.bounds = new long[productCount];
+      for (int i = 0; i < productCount; i++) {
+        bounds[i] = dailyBounds != null
+            ? days * Math.max(0, Math.round(dailyBounds[i]))
+            : estimateTotal(i);
+      }
 
-    // Check if Python service is available
-    if (!pythonPredictionClient.isServiceAvailable()) {
-      logger.warn("Python prediction service is not available, using fallback logic");
-      return predictWithFallbackLogic(features);
+      this.order = new Integer[productCount];
+      for (int i = 0; i < productCount; i++) {
+        order[i] = i;
+      }
+      Arrays.sort(order, Comparator.<Integer>comparingLong(i -> -bounds[i])
+          .thenComparingInt(i -> i));
     }
 
-    try {
-      // Build Python prediction request from features
-      PythonPredictionRequest request = PythonPredictionRequest.builder()
-          .productId((String) features.get("product_id"))
-          .sellerId((String) features.get("seller_id"))
-          .salePrice((Double) features.get("sale_price"))
-          .originalPrice((Double) features.get("original_price"))
-          .isHoliday((Integer) features.get("is_holiday"))
-          .isWeekend((Integer) features.get("is_weekend"))
-          .dayOfWeek((Integer) features.get("day_of_week"))
-          .dayOfMonth((Integer) features.get("day_of_month"))
-          .month((Integer) features.get("month"))
-          .lag1((Double) features.get("lag_1"))
-          .lag7((Double) features.get("lag_7"))
-          .lag30((Double) features.get("lag_30"))
-          .build();
-
-      logger.debug("Calling Python prediction service with request: {}", request);
-
-      // Call Python service
-      Double prediction = pythonPredictionClient.predictSingle(request);
-
-      if (prediction != null) {
-        int result = Math.max(0, (int) Math.round(prediction));
-        logger.debug("Python service returned prediction: {}", result);
-        return result;
-      } else {
-        logger.warn("Python service returned null, using fallback logic");
-        return predictWithFallbackLogic(features);
+    private long estimateTotal(int product) {
+      long total = 0;
+      for (int row = product * days; row < (product + 1) * days; row++) {
+        double lags = Math.max(features.get(row, FeatureSchema.LAG_1),
+            Math.max(features.get(row, FeatureSchema.LAG_7),
+                features.get(row, FeatureSchema.LAG_30)));
+        total += Math.max(predictWithFallbackLogic(features, row), Math.round(lags));
       }
+      return total;
+    }
 
-    } catch (Exception e) {
-      logger.error("Error calling Python prediction service: {}", e.getMessage(), e);
-      logger.warn("Falling back to simple prediction logic");
-      return predictWithFallbackLogic(features);
+    Mono<TopSalesSearch> run() {
+      return Mono.defer(() -> {
+        List<Integer> round = new ArrayList<>(roundProducts);
+        while (round.size() < roundProducts && next < order.length
+            && top.admits(order[next], bounds[order[next]])) {
+          round.add(order[next++]);
+        }
+        if (round.isEmpty()) {
+          return Mono.just(this);
+        }
+
+        int[] rows = new int[round.size() * days];
+        for (int p = 0; p < round.size(); p++) {
+          for (int day = 0; day < days; day++) {
+            rows[p * days + day] = round.get(p) * days + day;
+          }
+        }
+        return predictChunkedDailySales(features.select(rows, rows.length), fallback -> {
+              if (fallback == modelBounds) {
+                exact = false;
+              }
+            })
+            .flatMap(roundQuantities -> {
+              for (int p = 0; p < round.size(); p++) {
+                int product = round.get(p);
+                System.arraycopy(roundQuantities, p * days, quantities, product * days, days);
+                for (int day = 0; day < days; day++) {
+                  totals[product] += roundQuantities[p * days + day];
+                }
+                top.offer(product);
+              }
+              scored += round.size();
+              roundProducts *= 2;
+              return run();
+            });
+      });
     }
   }
 
+  private List<FeatureMatrix> chunks(FeatureMatrix features) {
+    int rows = features.getRowCount();
+    int chunkRows = Math.min(maxBatchRows, Math.max(MIN_PARALLEL_CHUNK_ROWS,
+        (rows + reactiveConcurrency - 1) / reactiveConcurrency));
+    if (rows <= chunkRows) {
+      return List.of(features);
+    }
+    List<FeatureMatrix> chunks = new ArrayList<>();
+    for (int from = 0; from < rows; from += chunkRows) {
+      chunks.add(features.slice(from, Math.min(rows, from + chunkRows)));
+    }
+    return chunks;
+  }
+
+  private static int[] concat(List<int[]> parts, int size) {
+    int[] result = new int[size];
+    int offset = 0;
+    for (int[] part : parts) {
+      System.arraycopy(part, 0, result, offset, part.length);
+      offset += part.length;
+    }
+    return result;
+  }
+
+  private Product findProduct(String productId) {
+    return productRepository.findById(productId)
+        .orElseThrow(() -> new IllegalArgumentException("Product not found with ID: " + productId));
+  }
+
+  private List<LocalDate> datesBetween(LocalDate startDate, LocalDate endDate) {
+    List<LocalDate> dates = new ArrayList<>();
+    for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
+      dates.add(date);
+    }
+    return dates;
+  }
+
   /**
-   * Simple fallback prediction logic when Python service is not available
+   * Build the predications of one product from quantities[offset, offset + dates.size())
    */
-  private int predictWithFallbackLogic(Map<String, Object> features) {
-    logger.debug("Using fallback prediction logic with features: {}", features);
+  private Predications buildPredications(String productId, LocalDate startDate,
+      LocalDate endDate, List<LocalDate> dates, int[] quantities, int offset) {
+    List<Predication> predictions = new ArrayList<>(dates.size());
+    int totalQuantity = 0;
+    for (int i = 0; i < dates.size(); i++) {
+      int quantity = quantities[offset + i];
+      predictions.add(Predication.builder()
+          .date(dates.get(i))
+          .quantity(quantity)
+          .build());
+      totalQuantity += quantity;
+    }
 
+    return Predications.builder()
+        .productId(productId)
+        .predicationList(predictions)
+        .startDate(startDate)
+        .endDate(endDate)
+        .totalQuantity(totalQuantity)
+        .totalDays((int) ChronoUnit.DAYS.between(startDate, endDate.plusDays(1)))
+        .build();
+  }
+
+  /**
+   * Simple fallback prediction logic when no prediction engine is available
+   */
+  private int predictWithFallbackLogic(FeatureMatrix features, int row) {
     // Simple heuristic-based prediction
-    double salePrice = (Double) features.getOrDefault("sale_price", 100.0);
-    double originalPrice = (Double) features.getOrDefault("original_price", 100.0);
-    int isWeekend = (Integer) features.getOrDefault("is_weekend", 0);
-    int isHoliday = (Integer) features.getOrDefault("is_holiday", 0);
-    double lag1 = (Double) features.getOrDefault("lag_1", 0.0);
-    double lag7 = (Double) features.getOrDefault("lag_7", 0.0);
+    double salePrice = features.get(row, FeatureSchema.SALE_PRICE);
+    double originalPrice = features.get(row, FeatureSchema.ORIGINAL_PRICE);
+    boolean isWeekend = features.get(row, FeatureSchema.IS_WEEKEND) == 1;
+    boolean isHoliday = features.get(row, FeatureSchema.IS_HOLIDAY) == 1;
+    double lag1 = features.get(row, FeatureSchema.LAG_1);
+    double lag7 = features.get(row, FeatureSchema.LAG_7);
 
     // Simple prediction logic based on business rules
     double basePrediction = 5.0; // Base sales quantity
@@ -305,12 +703,12 @@ public class PredictionServiceImpl implements PredictionService {
     }
 
     // Weekend effect
-    if (isWeekend == 1) {
+    if (isWeekend) {
       basePrediction *= 1.3; // 30% more sales on weekends
     }
 
     // Holiday effect
-    if (isHoliday == 1) {
+    if (isHoliday) {
       basePrediction *= 1.5; // 50% more sales on holidays
     }
 
@@ -320,67 +718,149 @@ public class PredictionServiceImpl implements PredictionService {
       basePrediction = basePrediction * 0.7 + avgLag * 0.3; // Mix with historical data
     }
 
-    int prediction = Math.max(1, (int) Math.round(basePrediction));
-    logger.debug("Fallback prediction result: {}", prediction);
-    return prediction;
+    return Math.max(1, (int) Math.round(basePrediction));
+  }
+
+  private int[] predictAllWithFallbackLogic(FeatureMatrix features) {
+    int[] quantities = new int[features.getRowCount()];
+    for (int row = 0; row < quantities.length; row++) {
+      quantities[row] = predictWithFallbackLogic(features, row);
+    }
+    logger.debug("Fallback prediction for {} rows", quantities.length);
+    return quantities;
   }
 
   /**
-   * Predict sales for multiple days using batch prediction for better performance
+   * Predict sales for every row using batch prediction
+   *
+   * @return Quantities in row order, or null when the engine returned nothing usable
    */
-  private List<Integer> predictBatchDailySales(List<Map<String, Object>> allFeatures) {
-
-    // Check if Python service is available
-    if (!pythonPredictionClient.isServiceAvailable()) {
-      logger.warn("Python prediction service is not available, using fallback logic for batch");
-      return allFeatures.stream()
-          .map(this::predictWithFallbackLogic)
-          .collect(java.util.stream.Collectors.toList());
+  private int[] predictBatchDailySales(FeatureMatrix features) {
+    PredictionEngine engine = activeEngine();
+
+    // Check if prediction engine is available
+    if (!engine.isServiceAvailable()) {
+      logger.warn("{} prediction engine is not available, using fallback logic for batch",
+          engine.getEngineName());
+      return predictAllWithFallbackLogic(features);
     }
 
     try {
-      // Build batch request from all features
-      List<PythonPredictionRequest> requests = allFeatures.stream()
-          .map(features -> PythonPredictionRequest.builder()
-              .productId((String) features.get("product_id"))
-              .sellerId((String) features.get("seller_id"))
-              .salePrice((Double) features.get("sale_price"))
-              .originalPrice((Double) features.get("original_price"))
-              .isHoliday((Integer) features.get("is_holiday"))
-              .isWeekend((Integer) features.get("is_weekend"))
-              .dayOfWeek((Integer) features.get("day_of_week"))
-              .dayOfMonth((Integer) features.get("day_of_month"))
-              .month((Integer) features.get("month"))
-              .lag1((Double) features.get("lag_1"))
-              .lag7((Double) features.get("lag_7"))
-              .lag30((Double) features.get("lag_30"))
-              .build())
-          .collect(java.util.stream.Collectors.toList());
-
-      logger.debug("Calling Python batch prediction service with {} requests", requests.size());
-
-      // Call Python batch service
-      List<Double> predictions = pythonPredictionClient.predictBatch(requests);
-
-      if (predictions != null && predictions.size() == requests.size()) {
-        List<Integer> results = predictions.stream()
-            .map(prediction -> Math.max(0, (int) Math.round(prediction)))
-            .collect(java.util.stream.Collectors.toList());
-        logger.debug("Python batch service returned {} predictions", results.size());
-        return results;
+      // Only score the rows that are not cached yet
+      CachedRows cachedRows = lookupCached(engine, features);
+      if (cachedRows.isComplete()) {
+        return cachedRows.quantities;
+      }
+
+      logger.debug("Calling {} batch prediction with {} rows ({} cached)",
+          engine.getEngineName(), cachedRows.missingCount,
+          features.getRowCount() - cachedRows.missingCount);
+
+      FeatureMatrix missing = cachedRows.missingRows();
+      double[] predictions = microBatchDispatcher.predictBatch(engine, missing);
+
+      if (predictions != null && predictions.length == cachedRows.missingCount) {
+        logger.debug("{} engine returned {} batch predictions", engine.getEngineName(),
+            predictions.length);
+        return cachedRows.fill(engine, missing, predictions);
       } else {
-        logger.warn("Python batch service returned invalid response");
+        logger.warn("{} engine returned invalid batch response", engine.getEngineName());
         return null;
       }
 
     } catch (Exception e) {
-      logger.error("Error calling Python batch prediction service: {}", e.getMessage(), e);
+      logger.error("Error calling {} batch prediction: {}", engine.getEngineName(),
+          e.getMessage(), e);
       return null;
     }
   }
 
+  /**
+   * Non-blocking counterpart of {@link #predictBatchDailySales(FeatureMatrix)}. Falls back to the
+   * heuristic for every row when the engine is unavailable or returns nothing usable.
+   */
+  private Mono<int[]> predictBatchDailySalesAsync(FeatureMatrix features) {
+    PredictionEngine engine = activeEngine();
+    if (!engine.isServiceAvailable()) {
+      logger.debug("{} prediction engine is not available, using fallback logic for batch",
+          engine.getEngineName());
+      return Mono.fromSupplier(() -> predictAllWithFallbackLogic(features));
+    }
+
+    CachedRows cachedRows = lookupCached(engine, features);
+    if (cachedRows.isComplete()) {
+      return Mono.just(cachedRows.quantities);
+    }
+
+    FeatureMatrix missing = cachedRows.missingRows();
+    return microBatchDispatcher.predictBatchAsync(engine, missing)
+        .filter(predictions -> predictions.length == cachedRows.missingCount)
+        .map(predictions -> cachedRows.fill(engine, missing, predictions))
+        .switchIfEmpty(Mono.fromSupplier(() -> {
+          logger.warn("{} engine returned invalid batch response, using fallback logic",
+              engine.getEngineName());
+          return predictAllWithFallbackLogic(features);
+        }));
+  }
+
+  private CachedRows lookupCached(PredictionEngine engine, FeatureMatrix features) {
+    CachedRows cachedRows = new CachedRows(features);
+    for (int row = 0; row < features.getRowCount(); row++) {
+      Integer cached = forecastCache.get(engine.getEngineName(), features, row);
+      if (cached != null) {
+        cachedRows.quantities[row] = cached;
+      } else {
+        cachedRows.missingIndex[cachedRows.missingCount++] = row;
+      }
+    }
+    return cachedRows;
+  }
+
+  /**
+   * Quantities of a batch taken from the forecast cache, plus the rows that still need scoring
+   */
+  private final class CachedRows {
+
+    final FeatureMatrix features;
+    final int[] quantities;
+    final int[] missingIndex;
+    int missingCount;
+    boolean scored;
+    private FeatureMatrix missing;
+
+    CachedRows(FeatureMatrix features) {
+      this.features = features;
+      this.quantities = new int[features.getRowCount()];
+      this.missingIndex = new int[features.getRowCount()];
+    }
+
+    boolean isComplete() {
+      return missingCount == 0;
+    }
+
+    FeatureMatrix missingRows() {
+      if (missing == null) {
+        missing = missingCount == features.getRowCount()
+            ? features : features.select(missingIndex, missingCount);
+      }
+      return missing;
+    }
+
+    /**
+     * Merge the scores of the missing rows and cache them
+     */
+    int[] fill(PredictionEngine engine, FeatureMatrix missing, double[] predictions) {
+      for (int i = 0; i < predictions.length; i++) {
+        int quantity = Math.max(0, (int) Math.round(predictions[i]));
+        quantities[missingIndex[i]] = quantity;
+        forecastCache.put(engine.getEngineName(), missing, i, quantity);
+      }
+      return quantities;
+    }
+  }
+
   @Override
   public boolean isModelInitialized() {
-    return pythonPredictionClient.isServiceAvailable();
+    return activeEngine().isServiceAvailable();
   }
-} 
\ No newline at end of file
+}
@@ -1,10 +1,12 @@
 package com.example.productapi.service.impl;
 
+import com.example.productapi.event.ProductsSavedEvent;
 import com.example.productapi.model.Product;
 import com.example.productapi.repository.ProductRepository;
 import com.example.productapi.service.ProductService;
 import com.openai.services.blocking.EmbeddingService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import lombok.extern.slf4j.Slf4j;
 
@@ -20,10 +22,13 @@ import java.util.Random;
 public class ProductServiceImpl implements ProductService {
 
   private final ProductRepository productRepository;
+  private final ApplicationEventPublisher eventPublisher;
 
   @Autowired
-  public ProductServiceImpl(ProductRepository productRepository) {
+  public ProductServiceImpl(ProductRepository productRepository,
+      ApplicationEventPublisher eventPublisher) {
     this.productRepository = productRepository;
+    this.eventPublisher = eventPublisher;
   }
 
   /**
@@ -89,6 +94,7 @@ public class ProductServiceImpl implements ProductService {
 
     // Save product
     product = productRepository.save(product);
+    eventPublisher.publishEvent(new ProductsSavedEvent(List.of(product)));
     return product;
   }
 
@@ -119,6 +125,8 @@ public class ProductServiceImpl implements ProductService {
       existingProduct.setDescription(newDescription);
     }
     // Save and return updated product
-    return productRepository.save(existingProduct);
+    Product savedProduct = productRepository.save(existingProduct);
+    eventPublisher.publishEvent(new ProductsSavedEvent(List.of(savedProduct)));
+    return savedProduct;
   }
 }
\ No newline at end of file
@@ -0,0 +1,57 @@
+package com.example.productapi.service.impl;
+
+import com.example.productapi.repository.ProductSalesAggregate;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.data.domain.Pageable;
+
+/**
+ * Product sales totals computed in memory, ordered like the rollup queries order theirs
+ */
+@Getter
+@AllArgsConstructor
+final class SalesAggregate implements ProductSalesAggregate {
+
+  /**
+   * Best sellers first
+   */
+  static final Comparator<ProductSalesAggregate> BY_QUANTITY =
+      Comparator.comparing(ProductSalesAggregate::getQuantity).reversed()
+          .thenComparing(ProductSalesAggregate::getProductId);
+
+  /**
+   * Latest day first
+   */
+  static final Comparator<ProductSalesAggregate> BY_DAY =
+      Comparator.comparing(ProductSalesAggregate::getDay).reversed()
+          .thenComparing(ProductSalesAggregate::getProductId);
+
+  private final String productId;
+  private final LocalDate day;
+  private final Long quantity;
+  private final Double revenue;
+
+  /**
+   * Add to the totals, a null total counts as zero like in SQL sums
+   */
+  SalesAggregate plus(long units, double income) {
+    return new SalesAggregate(productId, day, (quantity != null ? quantity : 0) + units,
+        (revenue != null ? revenue : 0) + income);
+  }
+
+  /**
+   * The requested page of sorted totals
+   */
+  static List<ProductSalesAggregate> page(List<ProductSalesAggregate> sorted, Pageable pageable) {
+    if (!pageable.isPaged()) {
+      return sorted;
+    }
+    int from = (int) Math.min(pageable.getOffset(), sorted.size());
+    int to = (int) Math.min((long) from + pageable.getPageSize(), sorted.size());
+    return new ArrayList<>(sorted.subList(from, to));
+  }
+}
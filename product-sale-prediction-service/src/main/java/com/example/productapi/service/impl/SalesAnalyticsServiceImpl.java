@@ -3,8 +3,9 @@ package com.example.productapi.service.impl;
 import com.example.productapi.dto.TopSellingProductResponse;
 import com.example.productapi.model.Order;
 import com.example.productapi.model.Product;
-import com.example.productapi.repository.OrderRepository;
 import com.example.productapi.repository.ProductRepository;
+import com.example.productapi.repository.ProductSalesAggregate;
+import com.example.productapi.service.DailySalesService;
 import com.example.productapi.service.OrderService;
 import com.example.productapi.service.SalesAnalyticsService;
 import com.example.productapi.util.TimeUtils;
@@ -20,13 +21,13 @@ import java.util.stream.Collectors;
 @Service
 public class SalesAnalyticsServiceImpl implements SalesAnalyticsService {
 
-  private final OrderRepository orderRepository;
+  private final DailySalesService dailySalesService;
   private final ProductRepository productRepository;
 
   @Autowired
-  public SalesAnalyticsServiceImpl(OrderRepository orderRepository,
+  public SalesAnalyticsServiceImpl(DailySalesService dailySalesService,
       ProductRepository productRepository) {
-    this.orderRepository = orderRepository;
+    this.dailySalesService = dailySalesService;
     this.productRepository = productRepository;
   }
 
@@ -52,20 +53,28 @@ public class SalesAnalyticsServiceImpl implements SalesAnalyticsService {
       throw new IllegalArgumentException("topN must be greater than 0");
     }
 
-    // Get top products
-    List<Object[]> topResults = orderRepository.findTopProductsWithFilters(
+    // Get top products, summed from the sales rollups where they cover the range
+    List<ProductSalesAggregate> topResults = dailySalesService.sumSalesByProduct(
         sellerId,
+        null,
         category,
         startTime,
         endTime,
         PageRequest.of(0, topN)
     );
 
+    // Product details of all results in one query
+    Map<String, Product> products = new HashMap<>();
+    productRepository.findAllById(topResults.stream()
+            .map(ProductSalesAggregate::getProductId)
+            .collect(Collectors.toSet()))
+        .forEach(product -> products.put(product.getId(), product));
+
     // Convert results to response format
     return topResults.stream().map(result -> {
-      String productId = (String) result[0];
-      Long totalQuantity = (Long) result[1];
-      Double totalRevenue = (Double) result[2];
+      String productId = result.getProductId();
+      Long totalQuantity = result.getQuantity();
+      Double totalRevenue = result.getRevenue();
 
       TopSellingProductResponse.TopSellingProductResponseBuilder builder = 
           TopSellingProductResponse.builder()
@@ -77,13 +86,14 @@ public class SalesAnalyticsServiceImpl implements SalesAnalyticsService {
       }
 
       // Add product details if available
-      productRepository.findById(productId).ifPresent(product -> {
+      Product product = products.get(productId);
+      if (product != null) {
         builder
             .name(product.getName())
             .category(product.getCategory())
             .brand(product.getBrand())
             .price(product.getPrice());
-      });
+      }
 
       return builder.build();
     }).collect(Collectors.toList());
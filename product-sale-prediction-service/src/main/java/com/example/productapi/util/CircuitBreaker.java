@@ -0,0 +1,222 @@
+package com.example.productapi.util;
+
+import java.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Count-based circuit breaker for calls to a remote backend.
+ *
+ * <p>The outcome of the last {@code windowSize} calls is kept in a ring buffer. Once at least
+ * {@code minimumCalls} have been recorded, the circuit opens when the failure rate or the slow
+ * call rate reaches its threshold. While open every call is rejected immediately. After
+ * {@code waitInOpenState} the circuit goes half-open and lets {@code halfOpenPermittedCalls}
+ * trial calls through: if they are healthy it closes again, otherwise it re-opens.
+ */
+public class CircuitBreaker {
+
+  private static final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+
+  public enum State {
+    CLOSED(0), OPEN(1), HALF_OPEN(2);
+
+    private final int code;
+
+    State(int code) {
+      this.code = code;
+    }
+
+    /**
+     * Numeric value used when the state is exported as a gauge
+     */
+    public int getCode() {
+      return code;
+    }
+  }
+
+  private final String name;
+  private final int windowSize;
+  private final int minimumCalls;
+  private final float failureRateThreshold;
+  private final float slowCallRateThreshold;
+  private final long slowCallDurationNanos;
+  private final long waitInOpenStateNanos;
+  private final int halfOpenPermittedCalls;
+
+  // Ring buffer of call outcomes
+  private final boolean[] failed;
+  private final boolean[] slow;
+  private int recorded;
+  private int next;
+  private int failureCount;
+  private int slowCount;
+
+  private State state = State.CLOSED;
+  private long openedAt;
+  private int halfOpenInFlight;
+  private int halfOpenCompleted;
+
+  public CircuitBreaker(String name, int windowSize, int minimumCalls,
+      float failureRateThreshold, float slowCallRateThreshold, Duration slowCallDuration,
+      Duration waitInOpenState, int halfOpenPermittedCalls) {
+    if (windowSize <= 0 || minimumCalls <= 0 || halfOpenPermittedCalls <= 0) {
+      throw new IllegalArgumentException("Circuit breaker sizes must be greater than 0");
+    }
+    this.name = name;
+    this.windowSize = windowSize;
+    this.minimumCalls = Math.min(minimumCalls, windowSize);
+    this.failureRateThreshold = failureRateThreshold;
+    this.slowCallRateThreshold = slowCallRateThreshold;
+    this.slowCallDurationNanos = slowCallDuration.toNanos();
+    this.waitInOpenStateNanos = waitInOpenState.toNanos();
+    this.halfOpenPermittedCalls = halfOpenPermittedCalls;
+    this.failed = new boolean[windowSize];
+    this.slow = new boolean[windowSize];
+  }
+
+  /**
+   * Check whether a call would currently be let through, without reserving a half-open slot
+   */
+  public synchronized boolean isCallPermitted() {
+    refreshOpenState();
+    if (state == State.OPEN) {
+      return false;
+    }
+    return state == State.CLOSED || halfOpenInFlight < halfOpenPermittedCalls;
+  }
+
+  /**
+   * Reserve permission for a call. Every successful acquire must be followed by
+   * {@link #onSuccess(long)}, {@link #onError(long)} or, when the call was abandoned without an
+   * outcome, {@link #releasePermission()}.
+   *
+   * @return false if the call must not be made
+   */
+  public synchronized boolean tryAcquirePermission() {
+    refreshOpenState();
+    switch (state) {
+      case CLOSED:
+        return true;
+      case HALF_OPEN:
+        if (halfOpenInFlight < halfOpenPermittedCalls) {
+          halfOpenInFlight++;
+          return true;
+        }
+        return false;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Record a successful call
+   *
+   * @param durationNanos Call duration, used for slow call detection
+   */
+  public synchronized void onSuccess(long durationNanos) {
+    record(false, durationNanos >= slowCallDurationNanos);
+  }
+
+  /**
+   * Record a failed call
+   *
+   * @param durationNanos Call duration, used for slow call detection
+   */
+  public synchronized void onError(long durationNanos) {
+    record(true, durationNanos >= slowCallDurationNanos);
+  }
+
+  /**
+   * Give back the permission of a call that was cancelled before it had an outcome. A cancelled
+   * call says nothing about the backend, so nothing is recorded, but its half-open trial slot is
+   * freed for another call.
+   */
+  public synchronized void releasePermission() {
+    if (state == State.HALF_OPEN) {
+      halfOpenInFlight = Math.max(0, halfOpenInFlight - 1);
+    }
+  }
+
+  public synchronized State getState() {
+    refreshOpenState();
+    return state;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  private void record(boolean isFailure, boolean isSlow) {
+    if (state == State.OPEN) {
+      // Late result of a call started before the circuit opened
+      return;
+    }
+
+    if (state == State.HALF_OPEN) {
+      halfOpenInFlight = Math.max(0, halfOpenInFlight - 1);
+      halfOpenCompleted++;
+      add(isFailure, isSlow);
+      if (halfOpenCompleted >= halfOpenPermittedCalls) {
+        if (exceedsThresholds(halfOpenCompleted)) {
+          transitionTo(State.OPEN);
+        } else {
+          transitionTo(State.CLOSED);
+        }
+      }
+      return;
+    }
+
+    add(isFailure, isSlow);
+    if (recorded >= minimumCalls && exceedsThresholds(recorded)) {
+      transitionTo(State.OPEN);
+    }
+  }
+
+  private void add(boolean isFailure, boolean isSlow) {
+    if (recorded == windowSize) {
+      if (failed[next]) {
+        failureCount--;
+      }
+      if (slow[next]) {
+        slowCount--;
+      }
+    } else {
+      recorded++;
+    }
+    failed[next] = isFailure;
+    slow[next] = isSlow;
+    if (isFailure) {
+      failureCount++;
+    }
+    if (isSlow) {
+      slowCount++;
+    }
+    next = (next + 1) % windowSize;
+  }
+
+  private boolean exceedsThresholds(int calls) {
+    float failureRate = failureCount * 100.0f / calls;
+    float slowRate = slowCount * 100.0f / calls;
+    return failureRate >= failureRateThreshold || slowRate >= slowCallRateThreshold;
+  }
+
+  private void refreshOpenState() {
+    if (state == State.OPEN && System.nanoTime() - openedAt >= waitInOpenStateNanos) {
+      transitionTo(State.HALF_OPEN);
+    }
+  }
+
+  private void transitionTo(State newState) {
+    logger.info("Circuit breaker '{}' changed state from {} to {}", name, state, newState);
+    state = newState;
+    recorded = 0;
+    next = 0;
+    failureCount = 0;
+    slowCount = 0;
+    halfOpenInFlight = 0;
+    halfOpenCompleted = 0;
+    if (newState == State.OPEN) {
+      openedAt = System.nanoTime();
+    }
+  }
+}
@@ -0,0 +1,35 @@
+package com.example.productapi.util;
+
+import java.time.Duration;
+
+/**
+ * Creates {@link CircuitBreaker}s that share one set of thresholds, e.g. one per replica of a
+ * backend
+ */
+public class CircuitBreakerFactory {
+
+  private final int windowSize;
+  private final int minimumCalls;
+  private final float failureRateThreshold;
+  private final float slowCallRateThreshold;
+  private final Duration slowCallDuration;
+  private final Duration waitInOpenState;
+  private final int halfOpenPermittedCalls;
+
+  public CircuitBreakerFactory(int windowSize, int minimumCalls, float failureRateThreshold,
+      float slowCallRateThreshold, Duration slowCallDuration, Duration waitInOpenState,
+      int halfOpenPermittedCalls) {
+    this.windowSize = windowSize;
+    this.minimumCalls = minimumCalls;
+    this.failureRateThreshold = failureRateThreshold;
+    this.slowCallRateThreshold = slowCallRateThreshold;
+    this.slowCallDuration = slowCallDuration;
+    this.waitInOpenState = waitInOpenState;
+    this.halfOpenPermittedCalls = halfOpenPermittedCalls;
+  }
+
+  public CircuitBreaker create(String name) {
+    return new CircuitBreaker(name, windowSize, minimumCalls, failureRateThreshold,
+        slowCallRateThreshold, slowCallDuration, waitInOpenState, halfOpenPermittedCalls);
+  }
+}
@@ -0,0 +1,116 @@
+package com.example.productapi.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.example.productapi.service.DailySalesService;
+import com.example.productapi.service.OrderService;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+/**
+ * Response headers and compression of {@link OrderController#exportOrders}
+ */
+class OrderControllerTest {
+
+  private static final String CSV = "orderId,productId\no1,p1\no2,p2\n";
+
+  private OrderService orderService;
+  private OrderController controller;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    orderService = mock(OrderService.class);
+    controller = new OrderController(orderService, mock(DailySalesService.class));
+    when(orderService.exportOrders(any(), any(), any(), any(), any(), anyString(), any()))
+        .thenAnswer(invocation -> {
+          Writer writer = invocation.getArgument(6);
+          writer.write(CSV);
+          writer.flush();
+          return 2L;
+        });
+  }
+
+  @Test
+  void exportIsGzippedWhenTheClientAcceptsGzip() throws IOException {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    controller.exportOrders("seller_1", null, null, "2024-03-01T00:00:00",
+        "2024-03-31T23:59:59", OrderService.EXPORT_CSV, null, "deflate, GZIP;q=0.8", response);
+
+    assertThat(response.getHeader(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+    assertThat(response.getHeader(HttpHeaders.VARY)).isEqualTo(HttpHeaders.ACCEPT_ENCODING);
+    assertThat(response.getContentType()).startsWith("text/csv");
+    assertThat(response.getHeader(HttpHeaders.CONTENT_DISPOSITION))
+        .isEqualTo("attachment; filename=\"orders.csv\"");
+    assertThat(gunzip(response.getContentAsByteArray())).isEqualTo(CSV);
+    verify(orderService).exportOrders(eq("seller_1"), eq(null), eq(null),
+        eq(LocalDateTime.of(2024, 3, 1, 0, 0)), eq(LocalDateTime.of(2024, 3, 31, 23, 59, 59)),
+        eq(OrderService.EXPORT_CSV), any());
+  }
+
+  @Test
+  void exportIsPlainWithoutAcceptEncoding() throws IOException {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    controller.exportOrders(null, null, null, null, null, OrderService.EXPORT_NDJSON, null, null,
+        response);
+
+    assertThat(response.getHeader(HttpHeaders.CONTENT_ENCODING)).isNull();
+    assertThat(response.getContentType()).startsWith("application/x-ndjson");
+    assertThat(response.getContentAsString(StandardCharsets.UTF_8)).isEqualTo(CSV);
+  }
+
+  @Test
+  void gzipParameterOverridesAcceptEncoding() throws IOException {
+    MockHttpServletResponse forcedOff = new MockHttpServletResponse();
+    controller.exportOrders(null, null, null, null, null, OrderService.EXPORT_CSV, false, "gzip",
+        forcedOff);
+    MockHttpServletResponse forcedOn = new MockHttpServletResponse();
+    controller.exportOrders(null, null, null, null, null, OrderService.EXPORT_CSV, true, null,
+        forcedOn);
+
+    assertThat(forcedOff.getHeader(HttpHeaders.CONTENT_ENCODING)).isNull();
+    assertThat(forcedOff.getContentAsString(StandardCharsets.UTF_8)).isEqualTo(CSV);
+    assertThat(forcedOn.getHeader(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+    assertThat(gunzip(forcedOn.getContentAsByteArray())).isEqualTo(CSV);
+  }
+
+  @Test
+  void badRequestsAreRejectedBeforeWriting() throws IOException {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    ResponseEntity<?> badFormat = controller.exportOrders(null, null, null, null, null, "xml",
+        null, null, response);
+    ResponseEntity<?> badTime = controller.exportOrders(null, null, null, "yesterday", null,
+        OrderService.EXPORT_CSV, null, null, response);
+
+    assertThat(badFormat.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    assertThat(badTime.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    assertThat(response.isCommitted()).isFalse();
+    verify(orderService, never()).exportOrders(any(), any(), any(), any(), any(), anyString(),
+        any());
+  }
+
+  private static String gunzip(byte[] body) throws IOException {
+    try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+      return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+  }
+}
@@ -0,0 +1,108 @@
+package com.example.productapi.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.example.productapi.dto.ForecastFrame;
+import com.example.productapi.dto.PredictionRequest;
+import com.example.productapi.service.OrderService;
+import com.example.productapi.service.ProductService;
+import com.example.productapi.service.ReactivePredictionService;
+import com.example.productapi.service.SalesAnalyticsService;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.publisher.Flux;
+
+/**
+ * Closing frames of {@link SalesAnalyticsController} forecast streams
+ */
+class SalesAnalyticsControllerTest {
+
+  private static final Duration WAIT = Duration.ofSeconds(5);
+
+  private ReactivePredictionService predictionService;
+  private SalesAnalyticsController controller;
+
+  @BeforeEach
+  void setUp() {
+    predictionService = mock(ReactivePredictionService.class);
+    controller = new SalesAnalyticsController(mock(OrderService.class),
+        mock(ProductService.class), mock(SalesAnalyticsService.class), predictionService, 200);
+  }
+
+  @Test
+  void streamEndsWithAnErrorFrameAfterTheTimeout() {
+    AtomicBoolean cancelled = new AtomicBoolean();
+    stream(Flux.concat(Flux.just(frame(ForecastFrame.DAYS)), Flux.<ForecastFrame>never())
+        .doOnCancel(() -> cancelled.set(true)));
+
+    List<ForecastFrame> frames = controller.streamProductSales(request()).getBody()
+        .collectList().block(WAIT);
+
+    assertThat(frames).extracting(ForecastFrame::getType)
+        .containsExactly(ForecastFrame.DAYS, ForecastFrame.ERROR);
+    assertThat(frames.get(1).getError()).isEqualTo("Prediction timed out after 200 ms");
+    assertThat(cancelled).isTrue();
+  }
+
+  @Test
+  void deadlineCoversTheWholeStreamNotTheGapBetweenFrames() {
+    // Every frame arrives well within the timeout, the stream as a whole does not
+    stream(Flux.interval(Duration.ofMillis(50)).map(tick -> frame(ForecastFrame.DAYS)));
+
+    List<ForecastFrame> frames = controller.streamProductSales(request()).getBody()
+        .collectList().block(WAIT);
+
+    assertThat(frames).hasSizeBetween(2, 5);
+    assertThat(frames.get(frames.size() - 1).getType()).isEqualTo(ForecastFrame.ERROR);
+  }
+
+  @Test
+  void streamWithinTheTimeoutIsUnchanged() {
+    stream(Flux.just(frame(ForecastFrame.DAYS), frame(ForecastFrame.SUMMARY)));
+
+    List<ForecastFrame> frames = controller.streamProductSales(request()).getBody()
+        .collectList().block(WAIT);
+
+    assertThat(frames).extracting(ForecastFrame::getType)
+        .containsExactly(ForecastFrame.DAYS, ForecastFrame.SUMMARY);
+  }
+
+  @Test
+  void eventStreamEndsWithAnErrorEventAfterTheTimeout() {
+    stream(Flux.concat(Flux.just(frame(ForecastFrame.DAYS)), Flux.<ForecastFrame>never()));
+
+    List<ServerSentEvent<ForecastFrame>> events = controller.streamProductSalesEvents(request())
+        .getBody().collectList().block(WAIT);
+
+    assertThat(events).extracting(ServerSentEvent::event)
+        .containsExactly(ForecastFrame.DAYS, ForecastFrame.ERROR);
+  }
+
+  private void stream(Flux<ForecastFrame> frames) {
+    when(predictionService.streamSales(eq("p1"), eq("seller_1"), any(), any(), any(), anyInt()))
+        .thenReturn(frames);
+  }
+
+  private static PredictionRequest request() {
+    PredictionRequest request = new PredictionRequest();
+    request.setProductId("p1");
+    request.setSellerId("seller_1");
+    request.setStartDate(LocalDate.of(2024, 3, 1));
+    request.setEndDate(LocalDate.of(2025, 3, 1));
+    return request;
+  }
+
+  private static ForecastFrame frame(String type) {
+    return ForecastFrame.builder().type(type).productId("p1").build();
+  }
+}
@@ -0,0 +1,111 @@
+package com.example.productapi.ml;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+class ColumnarBatchCodecTest {
+
+  @Test
+  void featuresRoundTripThroughTheDocumentedLayout() {
+    String[] productIds = {"p100", "p101", "p100", "商品-7", null};
+    String[] sellerIds = {"seller_1", "seller_1", "seller_2", "seller_1", "seller_2"};
+    FeatureMatrix features = FeatureMatrix.allocate(productIds.length);
+    for (int row = 0; row < productIds.length; row++) {
+      features.setIds(row, productIds[row], sellerIds[row]);
+      for (int column = FeatureSchema.SALE_PRICE; column < FeatureSchema.FEATURE_COUNT; column++) {
+        features.set(row, column, row * 100.0 + column + 0.1);
+      }
+    }
+
+    FeatureMatrix decoded = ColumnarPayloads.decodeFeatures(
+        ColumnarBatchCodec.encodeFeatures(features));
+
+    assertThat(decoded.getRowCount()).isEqualTo(productIds.length);
+    for (int row = 0; row < productIds.length; row++) {
+      // A missing ID travels as the empty string
+      assertThat(decoded.getProductId(row))
+          .isEqualTo(productIds[row] != null ? productIds[row] : "");
+      assertThat(decoded.getSellerId(row)).isEqualTo(sellerIds[row]);
+      for (int column = FeatureSchema.SALE_PRICE; column < FeatureSchema.FEATURE_COUNT; column++) {
+        assertThat(decoded.get(row, column)).isEqualTo((float) features.get(row, column));
+      }
+    }
+  }
+
+  @Test
+  void repeatedIdsAreStoredOnce() {
+    FeatureMatrix features = FeatureMatrix.allocate(1000);
+    for (int row = 0; row < 1000; row++) {
+      features.setIds(row, "p" + (row % 3), "seller_1");
+    }
+
+    byte[] payload = ColumnarBatchCodec.encodeFeatures(features);
+
+    ByteBuffer buffer = ByteBuffer.wrap(payload).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.position(8);
+    assertThat(buffer.getInt()).isEqualTo(3);
+    // Header, two dictionaries with codes, ten float32 columns
+    assertThat(payload).hasSize(8 + (4 + 3 * 4 + 4000) + (4 + 10 + 4000) + 10 * 4000);
+  }
+
+  @Test
+  void emptyBatchRoundTrips() {
+    FeatureMatrix decoded = ColumnarPayloads.decodeFeatures(
+        ColumnarBatchCodec.encodeFeatures(FeatureMatrix.allocate(0)));
+
+    assertThat(decoded.getRowCount()).isZero();
+    assertThat(ColumnarBatchCodec.decodePredictions(ColumnarPayloads.encodePredictions(new double[0])))
+        .isEmpty();
+  }
+
+  @Test
+  void predictionsDecodeAsFloat32() {
+    double[] predictions = {0.0, 12.5, 467.26, -3.75, 1e6 + 0.3};
+
+    double[] decoded = ColumnarBatchCodec.decodePredictions(
+        ColumnarPayloads.encodePredictions(predictions));
+
+    assertThat(decoded).containsExactly(Arrays.stream(predictions)
+        .map(prediction -> (float) prediction)
+        .toArray());
+  }
+
+  @Test
+  void rejectsPayloadsThatAreNotPredictions() {
+    byte[] features = ColumnarBatchCodec.encodeFeatures(FeatureMatrix.allocate(2));
+    assertThatThrownBy(() -> ColumnarBatchCodec.decodePredictions(features))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("Not a columnar prediction response");
+    assertThatThrownBy(() -> ColumnarBatchCodec.decodePredictions(new byte[3]))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void rejectsTruncatedPredictions() {
+    byte[] payload = ColumnarPayloads.encodePredictions(new double[]{1.0, 2.0, 3.0});
+
+    assertThatThrownBy(() -> ColumnarBatchCodec.decodePredictions(
+        Arrays.copyOf(payload, payload.length - 2)))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("truncated");
+  }
+
+  @Test
+  void rejectsIdentifiersLongerThanTheLengthPrefix() {
+    FeatureMatrix features = FeatureMatrix.allocate(1);
+    features.setIds(0, "x".repeat(0x10000), "seller_1");
+
+    assertThatThrownBy(() -> ColumnarBatchCodec.encodeFeatures(features))
+        .isInstanceOf(IllegalArgumentException.class);
+    // The longest allowed identifier still fits its uint16 length
+    features.setIds(0, "é".repeat(0xFFFF / 2), "seller_1");
+    assertThat(ColumnarPayloads.decodeFeatures(ColumnarBatchCodec.encodeFeatures(features))
+        .getProductId(0).getBytes(StandardCharsets.UTF_8)).hasSize(0xFFFF - 1);
+  }
+}
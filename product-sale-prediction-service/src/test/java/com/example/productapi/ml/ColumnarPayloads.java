@@ -0,0 +1,72 @@
+package com.example.productapi.ml;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The Python service's side of {@link ColumnarBatchCodec}: decodes feature batches and encodes
+ * prediction responses following the documented layout
+ */
+public final class ColumnarPayloads {
+
+  private ColumnarPayloads() {
+  }
+
+  /**
+   * Decode an application/x-sales-features body, numeric values are float32 rounded
+   */
+  public static FeatureMatrix decodeFeatures(byte[] payload) {
+    ByteBuffer buffer = ByteBuffer.wrap(payload).order(ByteOrder.LITTLE_ENDIAN);
+    byte[] magic = new byte[4];
+    buffer.get(magic);
+    if (!"SPF1".equals(new String(magic, StandardCharsets.US_ASCII))) {
+      throw new IllegalArgumentException("Not a columnar feature batch");
+    }
+    int rows = buffer.getInt();
+    String[] productIds = readDictionaryColumn(buffer, rows);
+    String[] sellerIds = readDictionaryColumn(buffer, rows);
+
+    FeatureMatrix features = FeatureMatrix.allocate(rows);
+    for (int row = 0; row < rows; row++) {
+      features.setIds(row, productIds[row], sellerIds[row]);
+    }
+    for (int column = FeatureSchema.SALE_PRICE; column < FeatureSchema.FEATURE_COUNT; column++) {
+      for (int row = 0; row < rows; row++) {
+        features.set(row, column, buffer.getFloat());
+      }
+    }
+    if (buffer.hasRemaining()) {
+      throw new IllegalArgumentException(buffer.remaining() + " trailing bytes");
+    }
+    return features;
+  }
+
+  /**
+   * Encode an application/x-sales-predictions body
+   */
+  public static byte[] encodePredictions(double[] predictions) {
+    ByteBuffer buffer = ByteBuffer.allocate(8 + predictions.length * 4)
+        .order(ByteOrder.LITTLE_ENDIAN);
+    buffer.put("SPR1".getBytes(StandardCharsets.US_ASCII));
+    buffer.putInt(predictions.length);
+    for (double prediction : predictions) {
+      buffer.putFloat((float) prediction);
+    }
+    return buffer.array();
+  }
+
+  private static String[] readDictionaryColumn(ByteBuffer buffer, int rows) {
+    String[] entries = new String[buffer.getInt()];
+    for (int i = 0; i < entries.length; i++) {
+      byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+      buffer.get(bytes);
+      entries[i] = new String(bytes, StandardCharsets.UTF_8);
+    }
+    String[] column = new String[rows];
+    for (int row = 0; row < rows; row++) {
+      column[row] = entries[buffer.getInt()];
+    }
+    return column;
+  }
+}
@@ -0,0 +1,104 @@
+package com.example.productapi.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class RollupRangeTest {
+
+  @Test
+  void splitsPartialDaysWholeDaysAndWholeMonths() {
+    RollupRange range = RollupRange.of(LocalDateTime.of(2024, 1, 15, 10, 0),
+        LocalDateTime.of(2024, 4, 10, 12, 0));
+
+    assertThat(range.getRawHeadEnd()).isEqualTo(LocalDateTime.of(2024, 1, 16, 0, 0));
+    assertThat(range.getFirstDay()).isEqualTo(LocalDate.of(2024, 1, 16));
+    assertThat(range.getMonthStart()).isEqualTo(LocalDate.of(2024, 2, 1));
+    assertThat(range.getMonthEnd()).isEqualTo(LocalDate.of(2024, 4, 1));
+    assertThat(range.getDayEnd()).isEqualTo(LocalDate.of(2024, 4, 10));
+    assertThat(range.getRawTailStart()).isEqualTo(LocalDateTime.of(2024, 4, 10, 0, 0));
+  }
+
+  @Test
+  void wholeMonthsNeedNoOrders() {
+    LocalDateTime start = LocalDateTime.of(2024, 2, 1, 0, 0);
+    LocalDateTime end = LocalDateTime.of(2024, 3, 31, 23, 59, 59, 999_999_999);
+    RollupRange range = RollupRange.of(start, end);
+
+    assertThat(range.getRawHeadEnd()).isEqualTo(start);
+    assertThat(range.getMonthStart()).isEqualTo(LocalDate.of(2024, 2, 1));
+    assertThat(range.getMonthEnd()).isEqualTo(LocalDate.of(2024, 4, 1));
+    assertThat(range.getDayEnd()).isEqualTo(LocalDate.of(2024, 4, 1));
+    assertThat(range.getRawTailStart()).isAfter(end);
+  }
+
+  @Test
+  void rangeWithoutWholeMonthUsesNoMonths() {
+    RollupRange range = RollupRange.of(LocalDateTime.of(2024, 1, 10, 5, 0),
+        LocalDateTime.of(2024, 1, 20, 5, 0));
+
+    assertThat(range.getFirstDay()).isEqualTo(LocalDate.of(2024, 1, 11));
+    assertThat(range.getDayEnd()).isEqualTo(LocalDate.of(2024, 1, 20));
+    assertThat(range.getMonthStart()).isEqualTo(range.getMonthEnd());
+  }
+
+  @Test
+  void rangeWithinOneDayIsReadFromOrders() {
+    LocalDateTime start = LocalDateTime.of(2024, 1, 10, 5, 0);
+    RollupRange range = RollupRange.of(start, LocalDateTime.of(2024, 1, 10, 17, 30));
+
+    assertThat(range.getFirstDay()).isEqualTo(range.getDayEnd());
+    assertThat(range.getRawHeadEnd()).isEqualTo(start);
+    assertThat(range.getRawTailStart()).isEqualTo(start);
+  }
+
+  @Test
+  void everyInstantIsCountedOnce() {
+    Random random = new Random(19);
+    LocalDateTime origin = LocalDateTime.of(2023, 11, 1, 0, 0);
+    for (int i = 0; i < 300; i++) {
+      // Whole hours, so ranges often start or end at midnight and on the first of a month
+      LocalDateTime start = origin.plusHours(random.nextInt(24 * 150));
+      LocalDateTime end = start.plusHours(random.nextInt(24 * 120)).minusNanos(random.nextInt(2));
+      if (end.isBefore(start)) {
+        end = start;
+      }
+      RollupRange range = i % 10 == 0 ? RollupRange.raw(start, end) : RollupRange.of(start, end);
+
+      for (LocalDateTime t = start.minusHours(30); !t.isAfter(end.plusHours(30));
+          t = t.plusMinutes(30)) {
+        boolean inRange = !t.isBefore(start) && !t.isAfter(end);
+        assertThat(sources(range, t)).as("%s in %s..%s", t, start, end)
+            .isEqualTo(inRange ? 1 : 0);
+      }
+      assertThat(sources(range, end)).as("end of %s..%s", start, end).isEqualTo(1);
+    }
+  }
+
+  /**
+   * Number of parts of the split that count an order at t: raw orders, days outside the months
+   * or months
+   */
+  private static int sources(RollupRange range, LocalDateTime t) {
+    int sources = 0;
+    if (!t.isBefore(range.getStart()) && t.isBefore(range.getRawHeadEnd())) {
+      sources++;
+    }
+    if (!t.isBefore(range.getRawTailStart()) && !t.isAfter(range.getEnd())) {
+      sources++;
+    }
+    LocalDate day = t.toLocalDate();
+    boolean inDays = !day.isBefore(range.getFirstDay()) && day.isBefore(range.getDayEnd());
+    boolean inMonths = !day.isBefore(range.getMonthStart()) && day.isBefore(range.getMonthEnd());
+    if (inDays && !inMonths) {
+      sources++;
+    }
+    if (inMonths) {
+      sources++;
+    }
+    return sources;
+  }
+}
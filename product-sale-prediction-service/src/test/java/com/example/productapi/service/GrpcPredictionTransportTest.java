@@ -0,0 +1,211 @@
+package com.example.productapi.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.example.productapi.grpc.FeatureBatch;
+import com.example.productapi.grpc.PredictionBatch;
+import com.example.productapi.grpc.SalesPredictionGrpc;
+import com.example.productapi.ml.FeatureMatrix;
+import com.example.productapi.ml.FeatureSchema;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Hooks;
+
+/**
+ * GrpcPredictionTransport against an in-process stub of the Python service, which predicts twice
+ * the sale price
+ */
+class GrpcPredictionTransportTest {
+
+  private Server server;
+  private GrpcPredictionTransport transport;
+
+  // Stub behaviour, and what it saw
+  private volatile boolean silent;
+  private volatile long batchIdOffset;
+  private volatile Status failure;
+  private final List<FeatureBatch> received = new CopyOnWriteArrayList<>();
+  private final CountDownLatch streamCancelled = new CountDownLatch(1);
+  private final List<Throwable> droppedErrors = new CopyOnWriteArrayList<>();
+
+  @BeforeEach
+  void setUp() throws IOException {
+    Hooks.onErrorDropped(droppedErrors::add);
+    String name = InProcessServerBuilder.generateName();
+    server = InProcessServerBuilder.forName(name)
+        .directExecutor()
+        .addService(new StubService())
+        .build()
+        .start();
+    transport = new GrpcPredictionTransport(
+        InProcessChannelBuilder.forName(name).directExecutor().build(), Duration.ofMillis(500));
+  }
+
+  @AfterEach
+  void tearDown() {
+    Hooks.resetOnErrorDropped();
+    // Nothing may be sent on a call after it failed or was cancelled
+    assertThat(droppedErrors).isEmpty();
+    transport.shutdown();
+    server.shutdownNow();
+  }
+
+  @Test
+  void predictBatchSendsDictionaryEncodedColumns() {
+    FeatureMatrix features = features(0, 4);
+
+    double[] predictions = transport.predictBatch(features).block(Duration.ofSeconds(5));
+
+    assertThat(predictions).containsExactly(20.0, 22.0, 24.0, 26.0);
+    FeatureBatch batch = received.get(0);
+    assertThat(batch.getRows()).isEqualTo(4);
+    assertThat(batch.getProductIdsList()).containsExactly("p0", "p1");
+    assertThat(batch.getSellerIdsList()).containsExactly("seller_1");
+    for (int row = 0; row < 4; row++) {
+      assertThat(batch.getProductIds(batch.getProductCodes(row)))
+          .isEqualTo(features.getProductId(row));
+      assertThat(batch.getSellerIds(batch.getSellerCodes(row)))
+          .isEqualTo(features.getSellerId(row));
+      assertThat(batch.getLag7(row)).isEqualTo((float) features.get(row, FeatureSchema.LAG_7));
+    }
+  }
+
+  @Test
+  void predictBatchFailsAfterTheDeadline() {
+    silent = true;
+
+    assertThatThrownBy(() -> transport.predictBatch(features(0, 1)).block(Duration.ofSeconds(5)))
+        .isInstanceOf(StatusRuntimeException.class)
+        .satisfies(e -> assertThat(((StatusRuntimeException) e).getStatus().getCode())
+            .isEqualTo(Status.Code.DEADLINE_EXCEEDED));
+  }
+
+  @Test
+  void predictStreamReturnsOneArrayPerBatchInOrder() {
+    Flux<FeatureMatrix> batches = Flux.range(0, 5).map(batch -> features(batch * 10, 3));
+
+    List<double[]> predictions = transport.predictStream(batches)
+        .collectList()
+        .block(Duration.ofSeconds(5));
+
+    assertThat(predictions).hasSize(5);
+    for (int batch = 0; batch < 5; batch++) {
+      double first = 2 * (10 + batch * 10);
+      assertThat(predictions.get(batch)).containsExactly(first, first + 2, first + 4);
+    }
+    assertThat(received).extracting(FeatureBatch::getBatchId).containsExactly(1L, 2L, 3L, 4L, 5L);
+  }
+
+  @Test
+  void predictStreamRejectsOutOfOrderResponses() {
+    batchIdOffset = 1;
+
+    assertThatThrownBy(() -> transport.predictStream(Flux.just(features(0, 1), features(1, 1)))
+        .collectList()
+        .block(Duration.ofSeconds(5)))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessageContaining("out of order");
+  }
+
+  @Test
+  void predictStreamPassesServerErrorsOn() {
+    failure = Status.INVALID_ARGUMENT.withDescription("rows mismatch");
+
+    assertThatThrownBy(() -> transport.predictStream(Flux.just(features(0, 1)))
+        .collectList()
+        .block(Duration.ofSeconds(5)))
+        .isInstanceOf(StatusRuntimeException.class)
+        .hasMessageContaining("rows mismatch");
+  }
+
+  @Test
+  void cancellingTheStreamCancelsTheCallAndTheBatches() throws InterruptedException {
+    AtomicBoolean batchesCancelled = new AtomicBoolean();
+    Flux<FeatureMatrix> endless = Flux.interval(Duration.ofMillis(5))
+        .map(batch -> features(batch.intValue(), 2))
+        .doOnCancel(() -> batchesCancelled.set(true));
+
+    List<double[]> predictions = transport.predictStream(endless)
+        .take(3)
+        .collectList()
+        .block(Duration.ofSeconds(5));
+
+    assertThat(predictions).hasSize(3);
+    assertThat(streamCancelled.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(batchesCancelled).isTrue();
+  }
+
+  private static FeatureMatrix features(int first, int rows) {
+    FeatureMatrix features = FeatureMatrix.allocate(rows);
+    for (int row = 0; row < rows; row++) {
+      features.setIds(row, "p" + (row % 2), "seller_1");
+      features.set(row, FeatureSchema.SALE_PRICE, 10 + first + row);
+      features.set(row, FeatureSchema.LAG_7, 0.1 * row);
+    }
+    return features;
+  }
+
+  private PredictionBatch score(FeatureBatch batch) {
+    PredictionBatch.Builder response = PredictionBatch.newBuilder()
+        .setBatchId(batch.getBatchId() + batchIdOffset);
+    for (int row = 0; row < batch.getRows(); row++) {
+      response.addQuantities(2 * batch.getSalePrice(row));
+    }
+    return response.build();
+  }
+
+  private final class StubService extends SalesPredictionGrpc.SalesPredictionImplBase {
+
+    @Override
+    public void predictBatch(FeatureBatch request, StreamObserver<PredictionBatch> responses) {
+      received.add(request);
+      if (!silent) {
+        responses.onNext(score(request));
+        responses.onCompleted();
+      }
+    }
+
+    @Override
+    public StreamObserver<FeatureBatch> predictStream(StreamObserver<PredictionBatch> responses) {
+      ((ServerCallStreamObserver<PredictionBatch>) responses)
+          .setOnCancelHandler(streamCancelled::countDown);
+      return new StreamObserver<>() {
+        @Override
+        public void onNext(FeatureBatch batch) {
+          received.add(batch);
+          if (failure != null) {
+            responses.onError(failure.asRuntimeException());
+          } else {
+            responses.onNext(score(batch));
+          }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+        }
+
+        @Override
+        public void onCompleted() {
+          responses.onCompleted();
+        }
+      };
+    }
+  }
+}
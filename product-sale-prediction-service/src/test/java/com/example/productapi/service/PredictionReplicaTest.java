@@ -0,0 +1,72 @@
+package com.example.productapi.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.productapi.ml.FeatureMatrix;
+import com.example.productapi.util.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.net.ServerSocket;
+import java.time.Duration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+class PredictionReplicaTest {
+
+  // Accepts connections but never answers, so a call stays in flight until it is cancelled
+  private ServerSocket silentServer;
+  private CircuitBreaker circuitBreaker;
+  private PredictionReplica replica;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    silentServer = new ServerSocket(0);
+    circuitBreaker = new CircuitBreaker("python", 10, 1, 50, 100, Duration.ofSeconds(10),
+        Duration.ZERO, 1);
+    replica = new PredictionReplica("http://localhost:" + silentServer.getLocalPort(), null,
+        "json", 1024 * 1024, circuitBreaker, new SimpleMeterRegistry());
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    replica.shutdown();
+    silentServer.close();
+  }
+
+  @Test
+  void hedgeLoserReleasesItsHalfOpenPermit() {
+    openThenHalfOpen();
+
+    double[] winner = {42.0};
+    double[] result = Mono.firstWithValue(replica.predictBatch(FeatureMatrix.allocate(1)),
+            Mono.delay(Duration.ofMillis(200)).map(tick -> winner))
+        .block(Duration.ofSeconds(10));
+
+    assertThat(result).isSameAs(winner);
+    assertThat(replica.getOutstanding()).isZero();
+    assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+    assertThat(circuitBreaker.isCallPermitted()).isTrue();
+  }
+
+  @Test
+  void cancelledCallRecordsNoOutcome() {
+    openThenHalfOpen();
+
+    replica.predictBatch(FeatureMatrix.allocate(1))
+        .timeout(Duration.ofMillis(200), Mono.empty())
+        .block(Duration.ofSeconds(10));
+
+    // A trial call that never finished neither closes nor re-opens the circuit
+    assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+    assertThat(circuitBreaker.tryAcquirePermission()).isTrue();
+    circuitBreaker.onSuccess(0);
+    assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+  }
+
+  private void openThenHalfOpen() {
+    circuitBreaker.onError(0);
+    // No wait in the open state, so the next look moves it to half-open
+    assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+  }
+}
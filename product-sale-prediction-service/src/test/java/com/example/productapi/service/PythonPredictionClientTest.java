@@ -0,0 +1,174 @@
+package com.example.productapi.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.productapi.ml.ColumnarBatchCodec;
+import com.example.productapi.ml.ColumnarPayloads;
+import com.example.productapi.ml.FeatureMatrix;
+import com.example.productapi.ml.FeatureSchema;
+import com.example.productapi.util.CircuitBreakerFactory;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Batch format negotiation against a stub of the Python service, which predicts twice the sale
+ * price
+ */
+class PythonPredictionClientTest {
+
+  private static final ObjectMapper objectMapper = new ObjectMapper();
+
+  private HttpServer server;
+  private PythonPredictionClient client;
+
+  // Stub behaviour and the Content-Type of every /predict/batch call it received
+  private volatile String healthBody;
+  private volatile boolean rejectColumnar;
+  private final List<String> batchContentTypes = new CopyOnWriteArrayList<>();
+
+  @BeforeEach
+  void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/health", exchange -> respond(exchange, 200, "application/json",
+        healthBody.getBytes(StandardCharsets.UTF_8)));
+    server.createContext("/predict/batch", this::predictBatch);
+    server.start();
+  }
+
+  @AfterEach
+  void tearDown() {
+    if (client != null) {
+      client.shutdown();
+    }
+    server.stop(0);
+  }
+
+  @Test
+  void usesColumnarFormatOnceAdvertised() {
+    healthBody = "{\"status\":\"healthy\",\"batch_formats\":[\"json\",\"columnar-f32\"]}";
+    client = client("auto");
+    client.refreshHealth();
+
+    double[] predictions = client.predictBatch(features(3));
+
+    assertThat(predictions).containsExactly(20.0, 22.0, 24.0);
+    assertThat(batchContentTypes).containsExactly(ColumnarBatchCodec.FEATURES_MEDIA_TYPE);
+  }
+
+  @Test
+  void staysOnJsonWhenNotAdvertised() {
+    healthBody = "{\"status\":\"healthy\"}";
+    client = client("auto");
+    client.refreshHealth();
+
+    double[] predictions = client.predictBatch(features(2));
+
+    assertThat(predictions).containsExactly(20.0, 22.0);
+    assertThat(batchContentTypes).containsExactly("application/json");
+  }
+
+  @Test
+  void fallsBackToJsonWhenColumnarIsRejected() {
+    healthBody = "{\"status\":\"healthy\",\"batch_formats\":[\"json\",\"columnar-f32\"]}";
+    rejectColumnar = true;
+    client = client("auto");
+    client.refreshHealth();
+
+    assertThat(client.predictBatch(features(2))).containsExactly(20.0, 22.0);
+    // The rejection sticks, the next call goes straight to JSON
+    assertThat(client.predictBatch(features(1))).containsExactly(20.0);
+    assertThat(batchContentTypes).containsExactly(ColumnarBatchCodec.FEATURES_MEDIA_TYPE,
+        "application/json", "application/json");
+  }
+
+  @Test
+  void forcedColumnarFormatDoesNotFallBack() {
+    healthBody = "{\"status\":\"healthy\"}";
+    rejectColumnar = true;
+    client = client("columnar");
+    client.refreshHealth();
+
+    assertThat(client.predictBatch(features(2))).isNull();
+    assertThat(batchContentTypes).containsExactly(ColumnarBatchCodec.FEATURES_MEDIA_TYPE);
+  }
+
+  @Test
+  void forcedJsonFormatIgnoresTheAdvertisement() {
+    healthBody = "{\"status\":\"healthy\",\"batch_formats\":[\"json\",\"columnar-f32\"]}";
+    client = client("json");
+    client.refreshHealth();
+
+    assertThat(client.predictBatch(features(1))).containsExactly(20.0);
+    assertThat(batchContentTypes).containsExactly("application/json");
+  }
+
+  private PythonPredictionClient client(String batchFormat) {
+    CircuitBreakerFactory circuitBreakers = new CircuitBreakerFactory(10, 10, 50, 100,
+        Duration.ofSeconds(10), Duration.ofSeconds(10), 1);
+    return new PythonPredictionClient("http://localhost:" + server.getAddress().getPort(),
+        batchFormat, DataSize.ofMegabytes(1), "http", "localhost:50051", false, 50,
+        circuitBreakers, new SimpleMeterRegistry());
+  }
+
+  private void predictBatch(HttpExchange exchange) throws IOException {
+    String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+    batchContentTypes.add(contentType);
+    byte[] body = exchange.getRequestBody().readAllBytes();
+
+    if (contentType.startsWith(ColumnarBatchCodec.FEATURES_MEDIA_TYPE)) {
+      if (rejectColumnar) {
+        respond(exchange, 415, "application/json",
+            "{\"detail\":\"unsupported\"}".getBytes(StandardCharsets.UTF_8));
+        return;
+      }
+      FeatureMatrix features = ColumnarPayloads.decodeFeatures(body);
+      double[] predictions = new double[features.getRowCount()];
+      for (int row = 0; row < predictions.length; row++) {
+        predictions[row] = 2 * features.get(row, FeatureSchema.SALE_PRICE);
+      }
+      respond(exchange, 200, ColumnarBatchCodec.PREDICTIONS_MEDIA_TYPE,
+          ColumnarPayloads.encodePredictions(predictions));
+      return;
+    }
+
+    StringBuilder predictions = new StringBuilder();
+    for (JsonNode request : objectMapper.readTree(body).get("requests")) {
+      predictions.append(predictions.length() > 0 ? "," : "")
+          .append(2 * request.get("sale_price").asDouble());
+    }
+    respond(exchange, 200, "application/json",
+        ("{\"predictions\":[" + predictions + "],\"status\":\"success\"}")
+            .getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static void respond(HttpExchange exchange, int status, String contentType, byte[] body)
+      throws IOException {
+    exchange.getResponseHeaders().set("Content-Type", contentType);
+    exchange.sendResponseHeaders(status, body.length);
+    exchange.getResponseBody().write(body);
+    exchange.close();
+  }
+
+  private static FeatureMatrix features(int rows) {
+    FeatureMatrix features = FeatureMatrix.allocate(rows);
+    for (int row = 0; row < rows; row++) {
+      features.setIds(row, "p10" + row, "seller_1");
+      features.set(row, FeatureSchema.SALE_PRICE, 10 + row);
+      features.set(row, FeatureSchema.ORIGINAL_PRICE, 12 + row);
+    }
+    return features;
+  }
+}
@@ -0,0 +1,147 @@
+package com.example.productapi.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import com.example.productapi.repository.DailySalesRepository;
+import com.example.productapi.repository.MonthlySalesRepository;
+import com.example.productapi.repository.OrderRepository;
+import com.example.productapi.repository.ProductRepository;
+import com.example.productapi.repository.RollupRange;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+class DailySalesServiceImplTest {
+
+  private static final LocalDate START = LocalDate.of(2024, 3, 1);
+  private static final LocalDate END = LocalDate.of(2024, 3, 28);
+
+  private DailySalesRepository dailySalesRepository;
+  private OrderRepository orderRepository;
+  private RecordingTransactionManager transactionManager;
+  private DailySalesServiceImpl dailySalesService;
+
+  @BeforeEach
+  void setUp() {
+    dailySalesRepository = mock(DailySalesRepository.class);
+    orderRepository = mock(OrderRepository.class);
+    transactionManager = new RecordingTransactionManager();
+    dailySalesService = new DailySalesServiceImpl(dailySalesRepository,
+        mock(MonthlySalesRepository.class), orderRepository, mock(OrderColumnStore.class),
+        mock(OrderArchive.class), mock(ProductRepository.class), transactionManager);
+  }
+
+  @Test
+  void lagWindowIsReadFromOrdersUntilTheRollupsAreReady() {
+    when(dailySalesRepository.sumDailySalesOfProducts(eq("seller_1"), anyCollection(), any()))
+        .thenReturn(List.of(
+            new SalesAggregate("p1", START.plusDays(2), 3L, 30.0),
+            new SalesAggregate("p2", END, 1L, 5.0)));
+
+    Map<String, Map<LocalDate, Integer>> quantities = dailySalesService.getDailyQuantities(
+        "seller_1", List.of("p1", "p2"), START, END);
+
+    assertThat(quantities).isEqualTo(Map.of(
+        "p1", Map.of(START.plusDays(2), 3),
+        "p2", Map.of(END, 1)));
+    assertThat(dailySalesService.getDailyQuantities("seller_1", "p1", START, END))
+        .isEqualTo(Map.of(START.plusDays(2), 3));
+
+    // Every day of the window comes from the orders table, none from daily_sales
+    ArgumentCaptor<RollupRange> range = ArgumentCaptor.forClass(RollupRange.class);
+    verify(dailySalesRepository).sumDailySalesOfProducts(eq("seller_1"),
+        eq(List.of("p1", "p2")), range.capture());
+    assertThat(range.getValue().getStart()).isEqualTo(START.atStartOfDay());
+    assertThat(range.getValue().getEnd())
+        .isBetween(END.atTime(23, 59, 59), END.plusDays(1).atStartOfDay());
+    assertThat(range.getValue().getFirstDay()).isEqualTo(range.getValue().getDayEnd());
+  }
+
+  @Test
+  void completeRollupsAreReadOnceTheCheckCommitted() {
+    // No orders and no rollup rows: the rollups are complete
+    dailySalesService.backfillIfIncomplete();
+
+    assertThat(transactionManager.commits).isEqualTo(1);
+    dailySalesService.getDailyQuantities("seller_1", List.of("p1"), START, END);
+    verify(dailySalesRepository).findBySellerIdAndProductIdInAndDateBetween("seller_1",
+        List.of("p1"), START, END);
+    verify(dailySalesRepository, never()).sumDailySalesOfProducts(any(), any(), any());
+  }
+
+  @Test
+  void failedBackfillIsRolledBackAndLeavesOrdersAsTheSource() {
+    when(orderRepository.countRollupOrders()).thenReturn(5L);
+    doThrow(new QueryTimeoutException("lock timeout")).when(orderRepository).lockAgainstWrites();
+
+    dailySalesService.backfillIfIncomplete();
+
+    assertThat(transactionManager.commits).isZero();
+    assertThat(transactionManager.rollbacks).isEqualTo(1);
+    verify(dailySalesRepository, never()).backfillFromOrders();
+    dailySalesService.getDailyQuantities("seller_1", List.of("p1"), START, END);
+    verify(dailySalesRepository).sumDailySalesOfProducts(eq("seller_1"), eq(List.of("p1")),
+        any());
+    verify(dailySalesRepository, never()).findBySellerIdAndProductIdInAndDateBetween(any(),
+        any(), any(), any());
+  }
+
+  @Test
+  void productWithoutOrdersHasNoDays() {
+    assertThat(dailySalesService.getDailyQuantities("seller_1", "p3", START, END)).isEmpty();
+  }
+
+  @Test
+  void emptyProductListReadsNothing() {
+    assertThat(dailySalesService.getDailyQuantities("seller_1", List.<String>of(), START, END))
+        .isEmpty();
+
+    verifyNoInteractions(dailySalesRepository);
+  }
+
+  /**
+   * Runs synchronizations like a real transaction manager, so rollups only become ready on commit
+   */
+  private static class RecordingTransactionManager extends AbstractPlatformTransactionManager {
+
+    private static final long serialVersionUID = 1L;
+
+    private int commits;
+    private int rollbacks;
+
+    @Override
+    protected Object doGetTransaction() {
+      return new Object();
+    }
+
+    @Override
+    protected void doBegin(Object transaction, TransactionDefinition definition) {
+    }
+
+    @Override
+    protected void doCommit(DefaultTransactionStatus status) {
+      commits++;
+    }
+
+    @Override
+    protected void doRollback(DefaultTransactionStatus status) {
+      rollbacks++;
+    }
+  }
+}
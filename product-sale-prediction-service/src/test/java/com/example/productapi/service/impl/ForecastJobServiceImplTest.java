@@ -0,0 +1,158 @@
+package com.example.productapi.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.example.productapi.model.ForecastJob;
+import com.example.productapi.model.ForecastJob.Status;
+import com.example.productapi.model.ForecastJobResult;
+import com.example.productapi.model.Predications;
+import com.example.productapi.model.Product;
+import com.example.productapi.repository.ForecastJobRepository;
+import com.example.productapi.repository.ForecastJobResultRepository;
+import com.example.productapi.repository.ProductRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+class ForecastJobServiceImplTest {
+
+  private static final LocalDate DAY = LocalDate.of(2025, 6, 1);
+
+  private ForecastJobStore forecastJobStore;
+  private ForecastJobResultRepository forecastJobResultRepository;
+  private ProductRepository productRepository;
+  private PredictionServiceImpl predictionService;
+  private ForecastJobServiceImpl forecastJobService;
+
+  @BeforeEach
+  void setUp() {
+    forecastJobStore = mock(ForecastJobStore.class);
+    forecastJobResultRepository = mock(ForecastJobResultRepository.class);
+    productRepository = mock(ProductRepository.class);
+    predictionService = mock(PredictionServiceImpl.class);
+    // One day per job below, so every step forecasts two products
+    forecastJobService = new ForecastJobServiceImpl(forecastJobStore,
+        mock(ForecastJobRepository.class), forecastJobResultRepository, productRepository,
+        predictionService, new ObjectMapper().registerModule(new JavaTimeModule()), 1, 2, 60000);
+
+    when(productRepository.findBySellerIdAndCategoryOrderById("seller_1", "electronics"))
+        .thenReturn(List.of(product("p1"), product("p2"), product("p3"), product("p4")));
+    when(predictionService.forecastProducts(anyList(), eq("seller_1"), any(), eq(DAY), eq(DAY)))
+        .thenAnswer(invocation -> forecasts(invocation.getArgument(0)));
+  }
+
+  @AfterEach
+  void tearDown() {
+    forecastJobService.shutdown();
+  }
+
+  @Test
+  void resumedJobSkipsStoredProductsById() {
+    when(forecastJobResultRepository.findProductIdsByJobId("job")).thenReturn(List.of("p2"));
+    when(forecastJobStore.recordStep(eq("job"), eq(2), anyList())).thenReturn(Status.RUNNING);
+
+    forecastJobService.run(job(2));
+
+    ArgumentCaptor<List<ForecastJobResult>> steps = stepCaptor();
+    verify(forecastJobStore, times(2)).recordStep(eq("job"), eq(2), steps.capture());
+    assertThat(steps.getAllValues()).extracting(ForecastJobServiceImplTest::productIds)
+        .containsExactly(List.of("p1", "p3"), List.of("p4"));
+    verify(forecastJobStore).setProductsTotal("job", 4, 1);
+    verify(forecastJobStore).finish("job", 2, Status.SUCCEEDED, null);
+  }
+
+  @Test
+  void supersededAttemptStopsWithoutFinishing() {
+    when(forecastJobResultRepository.findProductIdsByJobId("job")).thenReturn(List.of());
+    when(forecastJobStore.recordStep(eq("job"), eq(1), anyList())).thenReturn(Status.QUEUED);
+
+    forecastJobService.run(job(1));
+
+    verify(forecastJobStore, times(1)).recordStep(eq("job"), eq(1), anyList());
+    verify(forecastJobStore, never()).finish(any(), anyInt(), any(), any());
+  }
+
+  @Test
+  void heartbeatIsRefreshedWhileAStepRuns() throws Exception {
+    when(forecastJobResultRepository.findProductIdsByJobId("job")).thenReturn(List.of());
+    when(forecastJobStore.recordStep(eq("job"), eq(3), anyList())).thenReturn(Status.RUNNING);
+    when(productRepository.findBySellerIdAndCategoryOrderById("seller_1", "electronics"))
+        .thenReturn(List.of(product("p1")));
+    CountDownLatch stepStarted = new CountDownLatch(1);
+    CountDownLatch releaseStep = new CountDownLatch(1);
+    when(predictionService.forecastProducts(anyList(), eq("seller_1"), any(), eq(DAY), eq(DAY)))
+        .thenAnswer(invocation -> {
+          stepStarted.countDown();
+          releaseStep.await(5, TimeUnit.SECONDS);
+          return forecasts(invocation.getArgument(0));
+        });
+
+    CompletableFuture<Void> running = CompletableFuture.runAsync(() -> forecastJobService.run(job(3)));
+    assertThat(stepStarted.await(5, TimeUnit.SECONDS)).isTrue();
+    forecastJobService.heartbeat();
+    verify(forecastJobStore).heartbeat("job", 3);
+
+    releaseStep.countDown();
+    running.get(5, TimeUnit.SECONDS);
+    forecastJobService.heartbeat();
+    verify(forecastJobStore, times(1)).heartbeat("job", 3);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static ArgumentCaptor<List<ForecastJobResult>> stepCaptor() {
+    return ArgumentCaptor.forClass(List.class);
+  }
+
+  private static ForecastJob job(int attempt) {
+    return ForecastJob.builder()
+        .id("job")
+        .status(Status.RUNNING)
+        .sellerId("seller_1")
+        .category("electronics")
+        .startDate(DAY)
+        .endDate(DAY)
+        .attempts(attempt)
+        .build();
+  }
+
+  private static Product product(String id) {
+    return Product.builder().id(id).category("electronics").price(10.0).build();
+  }
+
+  private static List<Predications> forecasts(List<Product> products) {
+    List<Predications> forecasts = new ArrayList<>();
+    for (Product product : products) {
+      forecasts.add(Predications.builder()
+          .productId(product.getId())
+          .predicationList(List.of())
+          .startDate(DAY)
+          .endDate(DAY)
+          .totalQuantity(1)
+          .totalDays(1)
+          .build());
+    }
+    return forecasts;
+  }
+
+  private static List<String> productIds(List<ForecastJobResult> results) {
+    return results.stream().map(ForecastJobResult::getProductId).toList();
+  }
+}
@@ -0,0 +1,77 @@
+package com.example.productapi.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.example.productapi.model.ForecastJob;
+import com.example.productapi.model.ForecastJob.Status;
+import com.example.productapi.model.ForecastJobResult;
+import com.example.productapi.repository.ForecastJobRepository;
+import com.example.productapi.repository.ForecastJobResultRepository;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ForecastJobStoreTest {
+
+  private ForecastJobRepository forecastJobRepository;
+  private ForecastJobResultRepository forecastJobResultRepository;
+  private ForecastJobStore forecastJobStore;
+  private ForecastJob job;
+
+  @BeforeEach
+  void setUp() {
+    forecastJobRepository = mock(ForecastJobRepository.class);
+    forecastJobResultRepository = mock(ForecastJobResultRepository.class);
+    forecastJobStore = new ForecastJobStore(forecastJobRepository, forecastJobResultRepository);
+    // Requeued after attempt 1 stalled and claimed again by attempt 2
+    job = ForecastJob.builder().id("job").status(Status.RUNNING).attempts(2).build();
+    when(forecastJobRepository.findById("job")).thenReturn(Optional.of(job));
+  }
+
+  @Test
+  void recordStepStoresResultsOfTheCurrentAttempt() {
+    List<ForecastJobResult> results = List.of(result("p1"));
+    when(forecastJobResultRepository.countByJobId("job")).thenReturn(1L);
+
+    assertThat(forecastJobStore.recordStep("job", 2, results)).isEqualTo(Status.RUNNING);
+
+    verify(forecastJobResultRepository).saveAll(results);
+    assertThat(job.getProductsDone()).isEqualTo(1);
+  }
+
+  @Test
+  void recordStepRejectsAnEarlierAttempt() {
+    assertThat(forecastJobStore.recordStep("job", 1, List.of(result("p1"))))
+        .isEqualTo(Status.QUEUED);
+
+    verify(forecastJobResultRepository, never()).saveAll(any());
+  }
+
+  @Test
+  void finishLeavesTheJobOfALaterAttempt() {
+    forecastJobStore.finish("job", 1, Status.FAILED, "stalled");
+
+    assertThat(job.getStatus()).isEqualTo(Status.RUNNING);
+    assertThat(job.getError()).isNull();
+
+    forecastJobStore.finish("job", 2, Status.SUCCEEDED, null);
+
+    assertThat(job.getStatus()).isEqualTo(Status.SUCCEEDED);
+    assertThat(job.getFinishedAt()).isNotNull();
+  }
+
+  private static ForecastJobResult result(String productId) {
+    return ForecastJobResult.builder()
+        .jobId("job")
+        .productId(productId)
+        .totalQuantity(1)
+        .predications("{}")
+        .build();
+  }
+}
@@ -0,0 +1,147 @@
+package com.example.productapi.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.example.productapi.event.OrdersRecordedEvent;
+import com.example.productapi.event.ProductsSavedEvent;
+import com.example.productapi.model.Order;
+import com.example.productapi.model.Product;
+import com.example.productapi.repository.OrderLine;
+import com.example.productapi.repository.OrderRepository;
+import com.example.productapi.repository.ProductRepository;
+import com.example.productapi.repository.ProductSalesAggregate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+
+class OrderColumnStoreTest {
+
+  private static final LocalDateTime TIME = LocalDateTime.of(2024, 3, 1, 12, 0);
+
+  private ProductRepository productRepository;
+  private OrderColumnStore store;
+
+  @BeforeEach
+  void setUp() {
+    OrderRepository orderRepository = mock(OrderRepository.class);
+    productRepository = mock(ProductRepository.class);
+    store = new OrderColumnStore(orderRepository, productRepository, mock(OrderArchive.class),
+        mock(PlatformTransactionManager.class), true, false);
+
+    when(productRepository.findAll()).thenReturn(List.of(product("p1", "books")));
+    List<OrderLine> lines = List.of(line("p1", 2), line("p2", 3));
+    when(orderRepository.streamRollupOrders()).thenAnswer(invocation -> lines.stream());
+    store.load();
+    assertThat(store.isReady()).isTrue();
+  }
+
+  @Test
+  void savedProductMovesToItsNewCategory() {
+    store.onProductsSaved(new ProductsSavedEvent(List.of(product("p1", "toys"))));
+
+    assertThat(productIds("books")).isEmpty();
+    assertThat(productIds("toys")).containsExactly("p1");
+  }
+
+  @Test
+  void productCreatedAfterItsOrdersIsCounted() {
+    // p2 had orders but no product row when the store was loaded
+    assertThat(productIds(null)).containsExactly("p1");
+
+    store.onProductsSaved(new ProductsSavedEvent(List.of(product("p2", "toys"))));
+
+    assertThat(productIds(null)).containsExactly("p2", "p1");
+    assertThat(productIds("toys")).containsExactly("p2");
+  }
+
+  @Test
+  void productWithoutOrdersIsLookedUpWithItsFirstOrder() {
+    store.onProductsSaved(new ProductsSavedEvent(List.of(product("p3", "games"))));
+    when(productRepository.findAllById(anyCollection()))
+        .thenReturn(List.of(product("p3", "games")));
+
+    store.onOrdersRecorded(new OrdersRecordedEvent(List.of(Order.builder()
+        .orderId("o1")
+        .sellerId("seller_1")
+        .productId("p3")
+        .quantity(4)
+        .totalPrice(8.0)
+        .timestamp(TIME)
+        .build())));
+
+    assertThat(productIds("games")).containsExactly("p3");
+  }
+
+  @Test
+  void newProductsOfARecordedBatchAreLookedUpInOneQuery() {
+    when(productRepository.findAllById(anyCollection()))
+        .thenReturn(List.of(product("p3", "games"), product("p5", "games")));
+    List<Order> orders = new ArrayList<>();
+    for (int i = 0; i < 12; i++) {
+      // p1 is known, p3 to p5 are new and each ordered several times, p4 has no product row
+      orders.add(order("o" + i, i % 4 == 0 ? "p1" : "p" + (3 + i % 3), TIME.plusMinutes(i)));
+    }
+
+    store.onOrdersRecorded(new OrdersRecordedEvent(orders));
+
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<Collection<String>> ids = ArgumentCaptor.forClass(Collection.class);
+    verify(productRepository).findAllById(ids.capture());
+    assertThat(ids.getValue()).containsExactlyInAnyOrder("p3", "p4", "p5");
+    verify(productRepository, never()).findById(anyString());
+    assertThat(productIds("games")).containsExactlyInAnyOrder("p3", "p5");
+    // Orders of a product without a row are left out, like the join of the orders query does
+    assertThat(productIds(null)).doesNotContain("p4");
+
+    // Products seen once are not looked up again
+    clearInvocations(productRepository);
+    store.onOrdersRecorded(new OrdersRecordedEvent(List.of(
+        order("o20", "p3", TIME.plusHours(1)), order("o21", "p1", TIME.plusHours(1)))));
+    verify(productRepository, never()).findAllById(anyCollection());
+  }
+
+  private List<String> productIds(String category) {
+    return store.sumSalesByProduct("seller_1", null, category, TIME.minusDays(1),
+            TIME.plusDays(1), Pageable.unpaged()).stream()
+        .map(ProductSalesAggregate::getProductId)
+        .toList();
+  }
+
+  private static Order order(String orderId, String productId, LocalDateTime timestamp) {
+    return Order.builder()
+        .orderId(orderId)
+        .sellerId("seller_1")
+        .productId(productId)
+        .quantity(1)
+        .totalPrice(2.0)
+        .timestamp(timestamp)
+        .build();
+  }
+
+  private static Product product(String id, String category) {
+    return Product.builder().id(id).category(category).price(10.0).build();
+  }
+
+  private static OrderLine line(String productId, int quantity) {
+    OrderLine line = mock(OrderLine.class);
+    when(line.getSellerId()).thenReturn("seller_1");
+    when(line.getProductId()).thenReturn(productId);
+    when(line.getTimestamp()).thenReturn(TIME);
+    when(line.getQuantity()).thenReturn(quantity);
+    when(line.getTotalPrice()).thenReturn(quantity * 2.0);
+    return line;
+  }
+}
@@ -0,0 +1,55 @@
+package com.example.productapi.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.example.productapi.model.Order;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import org.junit.jupiter.api.Test;
+
+class OrderCursorTest {
+
+  @Test
+  void tokenRoundTrips() {
+    LocalDateTime timestamp = LocalDateTime.of(2024, 3, 1, 12, 30, 5, 123_456_000);
+    // The separator may occur in order IDs, only the first one splits the token
+    Order order = Order.builder().orderId("o|1-ü").timestamp(timestamp).build();
+
+    String token = OrderCursor.after(order).encode();
+    OrderCursor cursor = OrderCursor.decode(token);
+
+    assertThat(token).matches("[A-Za-z0-9_-]+");
+    assertThat(cursor.getTimestamp()).isEqualTo(timestamp);
+    assertThat(cursor.getOrderId()).isEqualTo("o|1-ü");
+  }
+
+  @Test
+  void wholeSecondsRoundTrip() {
+    LocalDateTime timestamp = LocalDateTime.of(2024, 3, 1, 0, 0);
+
+    OrderCursor cursor = OrderCursor.decode(OrderCursor.after(
+        Order.builder().orderId("o1").timestamp(timestamp).build()).encode());
+
+    assertThat(cursor.getTimestamp()).isEqualTo(timestamp);
+  }
+
+  @Test
+  void invalidTokensAreRejected() {
+    assertThatThrownBy(() -> OrderCursor.decode("not base64!"))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Invalid cursor");
+    assertThatThrownBy(() -> OrderCursor.decode(token("2024-03-01T12:00")))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Invalid cursor");
+    assertThatThrownBy(() -> OrderCursor.decode(token("yesterday|o1")))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Invalid cursor");
+  }
+
+  private static String token(String position) {
+    return Base64.getUrlEncoder().withoutPadding()
+        .encodeToString(position.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,92 @@
+package com.example.productapi.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.productapi.repository.OrderRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+/**
+ * Plans of the order access paths on a seeded Postgres, so a query or index change that turns one
+ * of them into a sequential scan of orders fails the build. Skipped without Docker.
+ */
+@DataJpaTest(properties = {
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "orders.plan-check.min-rows=100000"})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(OrderIndexes.class)
+@Testcontainers(disabledWithoutDocker = true)
+class OrderIndexesTest {
+
+  private static final int ORDERS = 250_000;
+
+  @Container
+  static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+  @DynamicPropertySource
+  static void datasource(DynamicPropertyRegistry registry) {
+    registry.add("spring.datasource.url", postgres::getJdbcUrl);
+    registry.add("spring.datasource.username", postgres::getUsername);
+    registry.add("spring.datasource.password", postgres::getPassword);
+  }
+
+  @Autowired
+  private EntityManager entityManager;
+
+  @Autowired
+  private OrderRepository orderRepository;
+
+  @Autowired
+  private OrderIndexes orderIndexes;
+
+  /**
+   * A year of orders in time order from 100 sellers over 2000 products, analyzed. Rolled back
+   * after every test.
+   */
+  @BeforeEach
+  void seed() {
+    execute("INSERT INTO product (id, name, category, brand, price, create_timestamp, description) "
+        + "SELECT 'p' || i, 'Product ' || i, 'category_' || (i % 20), 'brand', 10 + i % 90, "
+        + "TIMESTAMP '2023-01-01', '' FROM generate_series(1, 2000) i");
+    execute("INSERT INTO orders (order_id, product_id, buyer_id, seller_id, unit_price, quantity, "
+        + "total_price, \"timestamp\") "
+        + "SELECT 'o' || i, 'p' || (1 + i % 2000), 'b' || (i % 5000), 'seller_' || (i % 100), "
+        + "10, 1 + i % 3, 10 * (1 + i % 3), TIMESTAMP '2024-01-01' + i * INTERVAL '2 minutes' "
+        + "FROM generate_series(1, " + ORDERS + ") i");
+    orderRepository.createTimestampBrinIndex();
+    execute("ANALYZE product");
+    execute("ANALYZE orders");
+
+    // Below orders.plan-check.min-rows the check is skipped and would pass without looking
+    Number rows = (Number) entityManager.createNativeQuery(
+        "SELECT reltuples FROM pg_class WHERE oid = CAST('orders' AS REGCLASS)")
+        .getSingleResult();
+    assertThat(rows.longValue()).isGreaterThanOrEqualTo(100_000);
+  }
+
+  @Test
+  void everyAccessPathUsesAnIndex() {
+    assertThat(orderIndexes.checkPlans()).isEmpty();
+  }
+
+  @Test
+  void missingIndexIsReported() {
+    execute("DROP INDEX idx_orders_product_timestamp");
+
+    assertThat(orderIndexes.checkPlans()).contains("findByProductId");
+  }
+
+  private void execute(String sql) {
+    entityManager.createNativeQuery(sql).executeUpdate();
+  }
+}
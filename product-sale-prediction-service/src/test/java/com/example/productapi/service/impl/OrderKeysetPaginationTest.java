@@ -0,0 +1,124 @@
+package com.example.productapi.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import com.example.productapi.dto.OrderCursorPage;
+import com.example.productapi.model.Order;
+import com.example.productapi.model.Product;
+import com.example.productapi.repository.OrderRepository;
+import com.example.productapi.repository.ProductRepository;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+/**
+ * Keyset pages of the order listing on Postgres, with many orders sharing a timestamp so pages
+ * end in the middle of a tie. Skipped without Docker.
+ */
+@DataJpaTest(properties = "spring.jpa.hibernate.ddl-auto=create-drop")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers(disabledWithoutDocker = true)
+class OrderKeysetPaginationTest {
+
+  private static final LocalDateTime TIME = LocalDateTime.of(2024, 3, 1, 12, 0);
+
+  @Container
+  static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+  @DynamicPropertySource
+  static void datasource(DynamicPropertyRegistry registry) {
+    registry.add("spring.datasource.url", postgres::getJdbcUrl);
+    registry.add("spring.datasource.username", postgres::getUsername);
+    registry.add("spring.datasource.password", postgres::getPassword);
+  }
+
+  @Autowired
+  private OrderRepository orderRepository;
+
+  @Autowired
+  private ProductRepository productRepository;
+
+  private OrderServiceImpl orderService;
+
+  @BeforeEach
+  void seed() {
+    orderService = new OrderServiceImpl(orderRepository, null,
+        mock(ApplicationEventPublisher.class), null, productRepository, 1000);
+    productRepository.saveAll(List.of(
+        Product.builder().id("p1").name("Product 1").category("books").price(5.0).build(),
+        Product.builder().id("p2").name("Product 2").category("toys").price(5.0).build()));
+
+    // 60 orders on 4 distinct timestamps, IDs of different lengths so "o9" sorts after "o10"
+    List<Order> orders = new ArrayList<>();
+    for (int i = 0; i < 60; i++) {
+      orders.add(Order.builder()
+          .orderId("o" + i)
+          .sellerId(i % 3 == 0 ? "seller_2" : "seller_1")
+          .productId(i % 2 == 0 ? "p1" : "p2")
+          .quantity(1)
+          .unitPrice(5.0)
+          .totalPrice(5.0)
+          .timestamp(TIME.plusMinutes(i % 4))
+          .build());
+    }
+    orderRepository.saveAll(orders);
+    orderRepository.flush();
+  }
+
+  @Test
+  void pagesCoverEveryOrderOnceInListingOrder() {
+    assertThat(listing(null, null)).hasSize(60).doesNotHaveDuplicates();
+    for (int size : new int[] {1, 7, 15, 59, 60, 61}) {
+      assertThat(readAllPages(null, null, size))
+          .as("page size %d", size)
+          .isEqualTo(listing(null, null));
+    }
+  }
+
+  @Test
+  void pagesCoverEveryOrderOnceWithFilters() {
+    assertThat(readAllPages("seller_1", null, 4)).isEqualTo(listing("seller_1", null));
+    assertThat(readAllPages("seller_1", "toys", 3)).isEqualTo(listing("seller_1", "toys"));
+    assertThat(listing("seller_1", "toys")).hasSize(20);
+  }
+
+  private List<String> readAllPages(String sellerId, String category, int size) {
+    List<String> orderIds = new ArrayList<>();
+    String cursor = null;
+    for (int pages = 0; pages <= 60; pages++) {
+      OrderCursorPage page = orderService.getOrdersAfterCursor(sellerId, null, category,
+          TIME.minusDays(1), TIME.plusDays(1), cursor, size, false);
+      page.getOrders().forEach(order -> orderIds.add(order.getOrderId()));
+      assertThat(page.isHasMore()).isEqualTo(page.getNextCursor() != null);
+      if (!page.isHasMore()) {
+        return orderIds;
+      }
+      assertThat(page.getOrders()).hasSize(size);
+      cursor = page.getNextCursor();
+    }
+    throw new AssertionError("Paging did not end");
+  }
+
+  /**
+   * Every matching order in the listing's order, read in one query
+   */
+  private List<String> listing(String sellerId, String category) {
+    return orderRepository.findOrdersWithFiltersFirst(sellerId, null, category,
+            TIME.minusDays(1), TIME.plusDays(1), PageRequest.of(0, 1000)).stream()
+        .map(Order::getOrderId)
+        .toList();
+  }
+}
@@ -0,0 +1,154 @@
+package com.example.productapi.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.example.productapi.model.Order;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class OrderSegmentFileTest {
+
+  private static final LocalDateTime TIME = LocalDateTime.of(2024, 3, 1, 0, 0);
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void ordersInCentsRoundTrip() throws IOException {
+    List<Order> orders = List.of(
+        order("o1", "p1", "b1", 2, 4.99, 9.98, TIME),
+        order("o2", "p2", null, 1, 10.0, 10.0, TIME),
+        order("o3", "p1", "b2", -1, 4.99, -4.99, TIME.plusSeconds(1)),
+        order("o4-ü漢", "pé", "b1", 0, 0.0, 0.0, TIME.plusDays(30)));
+    Path path = directory.resolve("seller_1-2024-03.seg");
+
+    long size = OrderSegmentFile.write(path, orders);
+
+    assertThat(Files.size(path)).isEqualTo(size);
+    assertThat(directory.resolve("seller_1-2024-03.seg.tmp")).doesNotExist();
+    OrderSegmentFile segment = OrderSegmentFile.open(path);
+    assertThat(segment.getRows()).isEqualTo(4);
+    assertThat(segment.getMinMicros()).isEqualTo(OrderColumnStore.micros(TIME));
+    assertThat(segment.getMaxMicros()).isEqualTo(OrderColumnStore.micros(TIME.plusDays(30)));
+    assertThat(segment.readOrders("seller_1")).isEqualTo(orders);
+  }
+
+  @Test
+  void pricesThatAreNotCentsAreStoredAsDoubles() throws IOException {
+    List<Order> orders = List.of(
+        order("o1", "p1", "b1", 3, 1.0 / 3, 1.0, TIME),
+        order("o2", "p1", "b1", 1, null, null, TIME.plusHours(1)),
+        order("o3", "p2", "b1", 1, 1e15, 1e15, TIME.plusHours(2)));
+    Path path = directory.resolve("doubles.seg");
+    OrderSegmentFile.write(path, orders);
+
+    OrderSegmentFile segment = OrderSegmentFile.open(path);
+
+    assertThat(segment.readOrders("seller_1")).isEqualTo(orders);
+    List<Long> cents = new ArrayList<>();
+    segment.scan(Long.MIN_VALUE, Long.MAX_VALUE, (productId, micros, quantity, price) ->
+        cents.add(price));
+    assertThat(cents).containsExactly(100L, 0L, 100_000_000_000_000_000L);
+  }
+
+  @Test
+  void timesAreKeptToTheMicrosecond() throws IOException {
+    LocalDateTime beforeEpoch = LocalDateTime.of(1969, 12, 31, 23, 59, 59, 999_999_000);
+    List<Order> orders = List.of(
+        order("o1", "p1", null, 1, 1.0, 1.0, beforeEpoch),
+        order("o2", "p1", null, 1, 1.0, 1.0, TIME.withNano(1_234_567)));
+    Path path = directory.resolve("times.seg");
+    OrderSegmentFile.write(path, orders);
+
+    List<Order> read = OrderSegmentFile.open(path).readOrders("seller_1");
+
+    assertThat(read.get(0).getTimestamp()).isEqualTo(beforeEpoch);
+    assertThat(read.get(0).getOrderDate()).isEqualTo(beforeEpoch.toLocalDate());
+    // Rounded to microseconds like the timestamp column
+    assertThat(read.get(1).getTimestamp()).isEqualTo(TIME.withNano(1_235_000));
+  }
+
+  @Test
+  void scanVisitsTheRowsWithinTheRange() throws IOException {
+    List<Order> orders = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      orders.add(order("o" + i, "p" + (i % 7), null, i % 5 + 1, 2.5, (i % 5 + 1) * 2.5,
+          TIME.plusMinutes(i / 2)));
+    }
+    Path path = directory.resolve("scan.seg");
+    OrderSegmentFile.write(path, orders);
+    OrderSegmentFile segment = OrderSegmentFile.open(path);
+    long from = OrderColumnStore.micros(TIME.plusMinutes(100));
+    long to = OrderColumnStore.micros(TIME.plusMinutes(149));
+
+    List<String> visited = new ArrayList<>();
+    segment.scan(from, to, (productId, micros, quantity, cents) -> {
+      assertThat(micros).isBetween(from, to);
+      visited.add(productId + ":" + quantity + ":" + cents);
+    });
+
+    List<String> expected = new ArrayList<>();
+    for (Order order : orders.subList(200, 300)) {
+      expected.add(order.getProductId() + ":" + order.getQuantity() + ":"
+          + Math.round(order.getTotalPrice() * 100));
+    }
+    assertThat(visited).isEqualTo(expected);
+
+    List<String> outside = new ArrayList<>();
+    segment.scan(segment.getMaxMicros() + 1, Long.MAX_VALUE,
+        (productId, micros, quantity, cents) -> outside.add(productId));
+    assertThat(outside).isEmpty();
+  }
+
+  @Test
+  void writeRejectsEmptyAndUnsortedSegments() {
+    Path path = directory.resolve("rejected.seg");
+
+    assertThatThrownBy(() -> OrderSegmentFile.write(path, List.of()))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> OrderSegmentFile.write(path, List.of(
+        order("o1", "p1", null, 1, 1.0, 1.0, TIME.plusSeconds(1)),
+        order("o2", "p1", null, 1, 1.0, 1.0, TIME))))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("sorted");
+  }
+
+  @Test
+  void openRejectsForeignAndTruncatedFiles() throws IOException {
+    Path foreign = Files.write(directory.resolve("foreign.seg"), new byte[100]);
+    assertThatThrownBy(() -> OrderSegmentFile.open(foreign))
+        .isInstanceOf(IOException.class)
+        .hasMessageContaining("not an order segment file");
+
+    Path path = directory.resolve("truncated.seg");
+    OrderSegmentFile.write(path, List.of(order("o1", "p1", "b1", 1, 1.0, 1.0, TIME)));
+    byte[] bytes = Files.readAllBytes(path);
+    Files.write(path, Arrays.copyOf(bytes, bytes.length - 1));
+    assertThatThrownBy(() -> OrderSegmentFile.open(path))
+        .isInstanceOf(IOException.class)
+        .hasMessageContaining("truncated");
+  }
+
+  private static Order order(String orderId, String productId, String buyerId, int quantity,
+      Double unitPrice, Double totalPrice, LocalDateTime timestamp) {
+    return Order.builder()
+        .orderId(orderId)
+        .sellerId("seller_1")
+        .productId(productId)
+        .buyerId(buyerId)
+        .quantity(quantity)
+        .unitPrice(unitPrice)
+        .totalPrice(totalPrice)
+        .timestamp(timestamp)
+        .orderDate(timestamp.toLocalDate())
+        .build();
+  }
+}
@@ -0,0 +1,290 @@
+package com.example.productapi.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.example.productapi.event.OrdersRecordedEvent;
+import com.example.productapi.model.Order;
+import com.example.productapi.model.Product;
+import com.example.productapi.repository.OrderRepository;
+import com.example.productapi.repository.ProductRepository;
+import com.example.productapi.service.OrderService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+import org.hibernate.exception.ConstraintViolationException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class OrderServiceImplTest {
+
+  private static final LocalDateTime TIME = LocalDateTime.of(2024, 3, 1, 12, 0);
+
+  private static final String CSV_HEADER =
+      "orderId,productId,buyerId,sellerId,unitPrice,quantity,totalPrice,timestamp\n";
+
+  private OrderRepository orderRepository;
+  private EntityManager entityManager;
+  private ApplicationEventPublisher eventPublisher;
+  private OrderArchive orderArchive;
+  private ProductRepository productRepository;
+  private OrderServiceImpl orderService;
+
+  @BeforeEach
+  void setUp() {
+    orderRepository = mock(OrderRepository.class);
+    entityManager = mock(EntityManager.class);
+    eventPublisher = mock(ApplicationEventPublisher.class);
+    orderArchive = mock(OrderArchive.class);
+    productRepository = mock(ProductRepository.class);
+    orderService = service(1000);
+
+    when(orderArchive.readOrdersByMonth(any(), any(), any())).thenAnswer(invocation -> Stream.of());
+    when(productRepository.findAllById(anyCollection())).thenAnswer(invocation -> {
+      Collection<String> ids = invocation.getArgument(0);
+      return Stream.of(product("p1", "books"), product("p2", "toys"))
+          .filter(product -> ids.contains(product.getId()))
+          .toList();
+    });
+  }
+
+  @Test
+  void recordOrdersPersistsNewOrdersAndPublishesThem() {
+    when(orderRepository.findExistingOrderIds(anyCollection())).thenReturn(List.of());
+    List<Order> orders = List.of(order("o1"), order("o2"));
+
+    assertThat(orderService.recordOrders(orders)).isEqualTo(orders);
+
+    verify(entityManager).persist(orders.get(0));
+    verify(entityManager).persist(orders.get(1));
+    verify(entityManager).flush();
+    verify(orderRepository, never()).saveAll(any());
+    ArgumentCaptor<OrdersRecordedEvent> event = ArgumentCaptor.forClass(OrdersRecordedEvent.class);
+    verify(eventPublisher).publishEvent(event.capture());
+    assertThat(event.getValue().getOrders()).isEqualTo(orders);
+  }
+
+  @Test
+  void recordOrdersRejectsStoredOrderIds() {
+    when(orderRepository.findExistingOrderIds(anyCollection())).thenReturn(List.of("o2"));
+
+    assertThatThrownBy(() -> orderService.recordOrders(List.of(order("o1"), order("o2"))))
+        .isInstanceOf(DuplicateKeyException.class)
+        .hasMessageContaining("o2");
+
+    verify(entityManager, never()).persist(any());
+    verify(eventPublisher, never()).publishEvent(any());
+  }
+
+  @Test
+  void recordOrdersRejectsOrderIdsRepeatedInTheBatch() {
+    when(orderRepository.findExistingOrderIds(anyCollection())).thenReturn(List.of());
+
+    assertThatThrownBy(() -> orderService.recordOrders(List.of(order("o1"), order("o1"))))
+        .isInstanceOf(DuplicateKeyException.class)
+        .hasMessageContaining("o1");
+
+    verify(entityManager, never()).persist(any());
+    verify(eventPublisher, never()).publishEvent(any());
+  }
+
+  @Test
+  void recordOrdersReportsOrdersInsertedConcurrentlyAsDuplicates() {
+    when(orderRepository.findExistingOrderIds(anyCollection())).thenReturn(List.of());
+    doThrow(new ConstraintViolationException("duplicate key",
+        new SQLException("duplicate key", "23505"), "orders_pkey"))
+        .when(entityManager).flush();
+
+    assertThatThrownBy(() -> orderService.recordOrders(List.of(order("o1"))))
+        .isInstanceOf(DuplicateKeyException.class);
+
+    verify(eventPublisher, never()).publishEvent(any());
+  }
+
+  @Test
+  void findRecordedOrderIdsQueriesInChunks() {
+    List<String> orderIds = new ArrayList<>();
+    for (int i = 0; i < 2500; i++) {
+      orderIds.add("o" + i);
+    }
+    when(orderRepository.findExistingOrderIds(anyCollection())).thenReturn(List.of("o7"));
+
+    assertThat(orderService.findRecordedOrderIds(orderIds)).containsExactly("o7");
+
+    verify(orderRepository, times(3)).findExistingOrderIds(anyCollection());
+  }
+
+  @Test
+  void exportWritesCsvWithArchivedOrdersMergedInTimeOrder() throws IOException {
+    TypedQuery<Object[]> query = exportQuery(
+        row("o3", "p1", "b1", 2.5, 2, 5.0, TIME.plusHours(2)),
+        row("o4", "p2", "b,\"1\"", null, 1, 3.0, TIME.plusHours(3)));
+    archived(List.of(
+        archivedOrder("o1", "p1", TIME.minusDays(40)),
+        archivedOrder("o9", "p9", TIME.minusDays(40)),
+        archivedOrder("o2", "p2", TIME.plusHours(2))));
+    StringWriter body = new StringWriter();
+
+    long written = orderService.exportOrders(null, null, null, TIME.minusDays(60),
+        TIME.plusDays(1), OrderService.EXPORT_CSV, body);
+
+    // o9 has no product row and is left out like the query leaves it out
+    assertThat(written).isEqualTo(4);
+    assertThat(body.toString()).isEqualTo(CSV_HEADER
+        + "o1,p1,b1,seller_1,1.5,1,1.5,2024-01-21T12:00:00\n"
+        + "o2,p2,b1,seller_1,1.5,1,1.5,2024-03-01T14:00:00\n"
+        + "o3,p1,b1,seller_1,2.5,2,5.0,2024-03-01T14:00:00\n"
+        + "o4,p2,\"b,\"\"1\"\"\",seller_1,,1,3.0,2024-03-01T15:00:00\n");
+    verify(query).setParameter("startTime", TIME.minusDays(60));
+  }
+
+  @Test
+  void exportWritesOneJsonObjectPerLine() throws IOException {
+    exportQuery(
+        row("o3", "p1", null, 2.5, 2, 5.0, TIME),
+        row("o4", "p2", "b2", null, 1, 3.0, TIME.plusSeconds(1)));
+    archived(List.of(archivedOrder("o1", "p1", TIME.minusDays(40))));
+    StringWriter body = new StringWriter();
+
+    orderService.exportOrders(null, null, null, TIME.minusDays(60), TIME.plusDays(1),
+        OrderService.EXPORT_NDJSON, body);
+
+    assertThat(body.toString()).isEqualTo(
+        "{\"orderId\":\"o1\",\"productId\":\"p1\",\"buyerId\":\"b1\",\"sellerId\":\"seller_1\","
+            + "\"unitPrice\":1.5,\"quantity\":1,\"totalPrice\":1.5,"
+            + "\"timestamp\":\"2024-01-21T12:00:00\"}\n"
+            + "{\"orderId\":\"o3\",\"productId\":\"p1\",\"buyerId\":null,\"sellerId\":\"seller_1\","
+            + "\"unitPrice\":2.5,\"quantity\":2,\"totalPrice\":5.0,"
+            + "\"timestamp\":\"2024-03-01T12:00:00\"}\n"
+            + "{\"orderId\":\"o4\",\"productId\":\"p2\",\"buyerId\":\"b2\",\"sellerId\":\"seller_1\","
+            + "\"unitPrice\":null,\"quantity\":1,\"totalPrice\":3.0,"
+            + "\"timestamp\":\"2024-03-01T12:00:01\"}\n");
+  }
+
+  @Test
+  void exportFiltersArchivedOrdersLikeTheQuery() throws IOException {
+    TypedQuery<Object[]> query = exportQuery();
+    archived(List.of(
+        archivedOrder("o1", "p1", TIME.minusDays(40)),
+        archivedOrder("o2", "p2", TIME.minusDays(39))));
+    StringWriter body = new StringWriter();
+
+    orderService.exportOrders("seller_1", null, "toys", TIME.minusDays(60), TIME,
+        OrderService.EXPORT_CSV, body);
+
+    assertThat(body.toString())
+        .isEqualTo(CSV_HEADER + "o2,p2,b1,seller_1,1.5,1,1.5,2024-01-22T12:00:00\n");
+    verify(query).setParameter("category", "toys");
+    verify(orderArchive).readOrdersByMonth("seller_1", TIME.minusDays(60), TIME);
+  }
+
+  @Test
+  void exportFlushesAfterEveryFetchedBatch() throws IOException {
+    orderService = service(2);
+    exportQuery(
+        row("o1", "p1", "b1", 1.0, 1, 1.0, TIME),
+        row("o2", "p1", "b1", 1.0, 1, 1.0, TIME.plusMinutes(1)),
+        row("o3", "p1", "b1", 1.0, 1, 1.0, TIME.plusMinutes(2)),
+        row("o4", "p1", "b1", 1.0, 1, 1.0, TIME.plusMinutes(3)),
+        row("o5", "p1", "b1", 1.0, 1, 1.0, TIME.plusMinutes(4)));
+    List<Long> flushedLines = new ArrayList<>();
+    StringWriter body = new StringWriter() {
+      @Override
+      public void flush() {
+        flushedLines.add(toString().lines().count());
+      }
+    };
+
+    orderService.exportOrders(null, null, null, TIME.minusDays(1), TIME.plusDays(1),
+        OrderService.EXPORT_CSV, body);
+
+    // Header and two rows, then two more rows, then the rest when the export ends
+    assertThat(flushedLines).startsWith(3L, 5L).endsWith(6L);
+  }
+
+  @Test
+  void exportRejectsUnknownFormats() {
+    assertThatThrownBy(() -> orderService.exportOrders(null, null, null, TIME, TIME, "xml",
+        new StringWriter())).isInstanceOf(IllegalArgumentException.class);
+
+    verify(entityManager, never()).createQuery(anyString(), eq(Object[].class));
+  }
+
+  private OrderServiceImpl service(int exportFetchSize) {
+    OrderServiceImpl service = new OrderServiceImpl(orderRepository, null, eventPublisher,
+        orderArchive, productRepository, exportFetchSize);
+    ReflectionTestUtils.setField(service, "entityManager", entityManager);
+    return service;
+  }
+
+  @SuppressWarnings("unchecked")
+  private TypedQuery<Object[]> exportQuery(Object[]... rows) {
+    TypedQuery<Object[]> query = mock(TypedQuery.class);
+    when(entityManager.createQuery(anyString(), eq(Object[].class))).thenReturn(query);
+    when(query.setParameter(anyString(), any())).thenReturn(query);
+    when(query.setHint(anyString(), any())).thenReturn(query);
+    when(query.getResultStream()).thenAnswer(invocation -> Stream.of(rows));
+    return query;
+  }
+
+  private void archived(List<Order> month) {
+    when(orderArchive.readOrdersByMonth(any(), any(), any()))
+        .thenAnswer(invocation -> Stream.of(month));
+  }
+
+  private static Object[] row(String orderId, String productId, String buyerId,
+      Double unitPrice, int quantity, Double totalPrice, LocalDateTime timestamp) {
+    return new Object[] {orderId, productId, buyerId, "seller_1", unitPrice, quantity,
+        totalPrice, timestamp};
+  }
+
+  private static Order archivedOrder(String orderId, String productId, LocalDateTime timestamp) {
+    return Order.builder()
+        .orderId(orderId)
+        .sellerId("seller_1")
+        .productId(productId)
+        .buyerId("b1")
+        .quantity(1)
+        .unitPrice(1.5)
+        .totalPrice(1.5)
+        .timestamp(timestamp)
+        .build();
+  }
+
+  private static Product product(String id, String category) {
+    return Product.builder().id(id).category(category).build();
+  }
+
+  private static Order order(String orderId) {
+    return Order.builder()
+        .orderId(orderId)
+        .sellerId("seller_1")
+        .productId("p1")
+        .quantity(1)
+        .unitPrice(2.0)
+        .totalPrice(2.0)
+        .timestamp(LocalDateTime.of(2024, 3, 1, 12, 0))
+        .build();
+  }
+}
@@ -0,0 +1,101 @@
+package com.example.productapi.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import com.example.productapi.ml.FeatureMatrix;
+import com.example.productapi.ml.FeatureSchema;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Checks the compiled tree ensemble against the JPMML evaluator on the exported model
+ */
+class PmmlPredictionEngineTest {
+
+  private static final String MODEL_BASE_PATH = "../product-sale-prediction-AI/model";
+  private static final String[] PRODUCT_IDS = {"p100", "p101", "p150", "p200", "p300", "p402",
+      "p999", "unknown", null};
+  private static final String[] SELLER_IDS = {"seller_1", "seller_2", "seller_3", "seller_6",
+      "unknown", null};
+
+  private static PmmlPredictionEngine evaluatorEngine;
+  private static PmmlPredictionEngine compiledEngine;
+
+  @BeforeAll
+  static void loadModels() {
+    assumeTrue(Files.isRegularFile(
+            Path.of(MODEL_BASE_PATH, PmmlPredictionEngine.MODEL_FILE_NAME)),
+        "Model file not found");
+    evaluatorEngine = new PmmlPredictionEngine(MODEL_BASE_PATH, true, false,
+        Schedulers.immediate());
+    evaluatorEngine.loadModel();
+    compiledEngine = new PmmlPredictionEngine(MODEL_BASE_PATH, true, true,
+        Schedulers.immediate());
+    compiledEngine.loadModel();
+  }
+
+  @Test
+  void compiledEnsemblePassesStartupVerification() {
+    assertThat(evaluatorEngine.isServiceAvailable()).isTrue();
+    // Upper bounds are only available once the compiled ensemble is in use
+    assertThat(evaluatorEngine.scoreUpperBounds(randomRows(1, 1L), 1)).isNull();
+    assertThat(compiledEngine.scoreUpperBounds(randomRows(1, 1L), 1)).isNotNull();
+  }
+
+  @Test
+  void compiledEnsembleMatchesEvaluatorExactly() {
+    // More rows than one scoring block, and a partial last block
+    FeatureMatrix rows = randomRows(1000, 42L);
+
+    double[] expected = evaluatorEngine.predictBatch(rows);
+    double[] actual = compiledEngine.predictBatch(rows);
+
+    assertThat(actual).hasSize(expected.length);
+    for (int row = 0; row < expected.length; row++) {
+      assertThat(Double.compare(actual[row], expected[row]))
+          .as("row %d: %s != %s", row, actual[row], expected[row])
+          .isZero();
+    }
+  }
+
+  @Test
+  void upperBoundsCoverEveryRowOfTheirGroup() {
+    int groupRows = 7;
+    FeatureMatrix rows = randomRows(700, 7L);
+
+    double[] scores = evaluatorEngine.predictBatch(rows);
+    double[] bounds = compiledEngine.scoreUpperBounds(rows, groupRows);
+
+    assertThat(bounds).hasSize(100);
+    for (int row = 0; row < scores.length; row++) {
+      assertThat(bounds[row / groupRows]).as("row %d", row).isGreaterThanOrEqualTo(scores[row]);
+    }
+  }
+
+  private static FeatureMatrix randomRows(int rowCount, long seed) {
+    Random random = new Random(seed);
+    FeatureMatrix rows = FeatureMatrix.allocate(rowCount);
+    for (int row = 0; row < rowCount; row++) {
+      int dayOfWeek = random.nextInt(7);
+      double price = Math.round(random.nextDouble() * 200000) / 100.0;
+      rows.setIds(row, PRODUCT_IDS[random.nextInt(PRODUCT_IDS.length)],
+          SELLER_IDS[random.nextInt(SELLER_IDS.length)]);
+      rows.set(row, FeatureSchema.SALE_PRICE, random.nextBoolean() ? price : price * 0.8);
+      rows.set(row, FeatureSchema.ORIGINAL_PRICE, price);
+      rows.set(row, FeatureSchema.IS_HOLIDAY, random.nextInt(10) == 0 ? 1 : 0);
+      rows.set(row, FeatureSchema.IS_WEEKEND, dayOfWeek >= 5 ? 1 : 0);
+      rows.set(row, FeatureSchema.DAY_OF_WEEK, dayOfWeek);
+      rows.set(row, FeatureSchema.DAY_OF_MONTH, 1 + random.nextInt(31));
+      rows.set(row, FeatureSchema.MONTH, 1 + random.nextInt(12));
+      rows.set(row, FeatureSchema.LAG_1, random.nextInt(1500));
+      rows.set(row, FeatureSchema.LAG_7, random.nextInt(1500));
+      rows.set(row, FeatureSchema.LAG_30, random.nextInt(1500));
+    }
+    return rows;
+  }
+}
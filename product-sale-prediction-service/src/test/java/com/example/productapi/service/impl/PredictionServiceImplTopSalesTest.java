@@ -0,0 +1,187 @@
+package com.example.productapi.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.example.productapi.dto.TopSalesForecast;
+import com.example.productapi.ml.FeatureMatrix;
+import com.example.productapi.ml.FeatureSchema;
+import com.example.productapi.model.Predications;
+import com.example.productapi.model.Product;
+import com.example.productapi.repository.ProductRepository;
+import com.example.productapi.service.PythonPredictionClient;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+/**
+ * Branch-and-bound top N search of {@link PredictionServiceImpl#predictTopSalesPruned}
+ */
+class PredictionServiceImplTopSalesTest {
+
+  private static final LocalDate START = LocalDate.of(2024, 3, 1);
+  private static final LocalDate END = LocalDate.of(2024, 3, 3);
+  private static final int DAYS = 3;
+
+  // Model score of every day of product i, p4 and p9 tie for the lead
+  private static final int[] DAILY = {5, 12, 3, 30, 41, 7, 19, 2, 26, 41, 11, 8};
+
+  private final List<Product> products = new ArrayList<>();
+  private PmmlPredictionEngine engine;
+  private PythonPredictionClient pythonClient;
+  private PredictionServiceImpl predictionService;
+
+  @BeforeEach
+  void setUp() {
+    for (int i = 0; i < DAILY.length; i++) {
+      products.add(Product.builder().id("p" + i).category("toys").price(100.0).build());
+    }
+    ProductRepository productRepository = mock(ProductRepository.class);
+    when(productRepository.findBySellerIdAndCategory("seller_1", "toys")).thenReturn(products);
+
+    FeatureAssembler featureAssembler = mock(FeatureAssembler.class);
+    when(featureAssembler.assemble(anyList(), eq("seller_1"), isNull(), anyList()))
+        .thenAnswer(invocation -> features(invocation.getArgument(0)));
+
+    engine = mock(PmmlPredictionEngine.class);
+    when(engine.getEngineName()).thenReturn("pmml");
+    when(engine.isServiceAvailable()).thenReturn(true);
+    when(engine.predictBatchAsync(any())).thenAnswer(
+        invocation -> Mono.just(modelScores(invocation.getArgument(0))));
+    // Each product's bound covers its score, within rounding
+    when(engine.scoreUpperBounds(any(), anyInt())).thenAnswer(invocation -> {
+      FeatureMatrix features = invocation.getArgument(0);
+      int groupRows = invocation.getArgument(1);
+      double[] bounds = new double[features.getRowCount() / groupRows];
+      for (int group = 0; group < bounds.length; group++) {
+        bounds[group] = daily(features.getProductId(group * groupRows)) + 0.4;
+      }
+      return bounds;
+    });
+    pythonClient = mock(PythonPredictionClient.class);
+    when(pythonClient.getEngineName()).thenReturn("python");
+    ForecastCache forecastCache = mock(ForecastCache.class);
+    when(forecastCache.get(any(), any(), anyInt())).thenReturn(null);
+
+    predictionService = new PredictionServiceImpl(productRepository, featureAssembler, engine,
+        pythonClient, new MicroBatchDispatcher(false, 5, 512, new SimpleMeterRegistry()),
+        forecastCache, mock(ForecastTable.class), 4, 5000);
+  }
+
+  @Test
+  void modelBoundsPruneProductsThatCannotReachTheTopN() {
+    TopSalesForecast forecast = predictionService
+        .predictTopSalesPruned("seller_1", "toys", START, END, 3)
+        .block();
+
+    assertThat(ids(forecast.getPredictions())).containsExactly("p4", "p9", "p3");
+    assertThat(forecast.getPredictions()).extracting(Predications::getTotalQuantity)
+        .containsExactly(123, 123, 90);
+    assertThat(forecast.isExact()).isTrue();
+    assertThat(forecast.getProductsTotal()).isEqualTo(12);
+    // A first round of three, then every remaining bound is below the third total
+    assertThat(forecast.getProductsScored()).isLessThan(12);
+  }
+
+  @Test
+  void prunedSearchMatchesTheFullForecast() {
+    for (int topN = 0; topN <= DAILY.length + 1; topN++) {
+      List<Predications> full = predictionService.predicateTopSales("seller_1", "toys", START, END,
+          topN);
+      TopSalesForecast pruned = predictionService
+          .predictTopSalesPruned("seller_1", "toys", START, END, topN)
+          .block();
+
+      assertThat(ids(pruned.getPredictions())).as("top %d", topN).isEqualTo(ids(full));
+      assertThat(pruned.getPredictions()).as("top %d", topN)
+          .usingRecursiveFieldByFieldElementComparator()
+          .isEqualTo(full);
+    }
+  }
+
+  @Test
+  void chunksThatFellBackToTheHeuristicClearExact() {
+    doReturn(Mono.empty()).when(engine).predictBatchAsync(any());
+
+    TopSalesForecast forecast = predictionService
+        .predictTopSalesPruned("seller_1", "toys", START, END, 3)
+        .block();
+
+    assertThat(forecast.getPredictions()).hasSize(3);
+    assertThat(forecast.isExact()).isFalse();
+  }
+
+  @Test
+  void heuristicEstimateIsNotExactWhileTheEngineScores() {
+    doReturn(null).when(engine).scoreUpperBounds(any(), anyInt());
+
+    TopSalesForecast forecast = predictionService
+        .predictTopSalesPruned("seller_1", "toys", START, END, 3)
+        .block();
+
+    assertThat(forecast.isExact()).isFalse();
+  }
+
+  @Test
+  void heuristicEstimateIsExactWithoutAnEngine() {
+    when(engine.isServiceAvailable()).thenReturn(false);
+
+    List<Predications> full = predictionService.predicateTopSales("seller_1", "toys", START, END,
+        4);
+    TopSalesForecast forecast = predictionService
+        .predictTopSalesPruned("seller_1", "toys", START, END, 4)
+        .block();
+
+    assertThat(forecast.isExact()).isTrue();
+    assertThat(ids(forecast.getPredictions())).isEqualTo(ids(full));
+    assertThat(forecast.getProductsScored()).isLessThan(12);
+  }
+
+  /**
+   * Rows of every product for every day; the discount and sales history grow with the model
+   * score, so the fallback heuristic ranks products like the model does
+   */
+  private static FeatureMatrix features(List<Product> products) {
+    FeatureMatrix features = FeatureMatrix.allocate(products.size() * DAYS);
+    for (int p = 0; p < products.size(); p++) {
+      int daily = daily(products.get(p).getId());
+      for (int day = 0; day < DAYS; day++) {
+        int row = p * DAYS + day;
+        features.setIds(row, products.get(p).getId(), "seller_1");
+        features.set(row, FeatureSchema.ORIGINAL_PRICE, 100);
+        features.set(row, FeatureSchema.SALE_PRICE, 100 - daily);
+        features.set(row, FeatureSchema.LAG_1, daily);
+        features.set(row, FeatureSchema.LAG_7, daily);
+      }
+    }
+    return features;
+  }
+
+  private static double[] modelScores(FeatureMatrix features) {
+    double[] scores = new double[features.getRowCount()];
+    for (int row = 0; row < scores.length; row++) {
+      scores[row] = daily(features.getProductId(row));
+    }
+    return scores;
+  }
+
+  private static int daily(String productId) {
+    return DAILY[Integer.parseInt(productId.substring(1))];
+  }
+
+  private static List<String> ids(List<Predications> predictions) {
+    return predictions.stream().map(Predications::getProductId).collect(Collectors.toList());
+  }
+}
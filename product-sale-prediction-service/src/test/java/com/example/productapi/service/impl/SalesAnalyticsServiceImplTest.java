@@ -0,0 +1,104 @@
+package com.example.productapi.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.example.productapi.dto.TopSellingProductResponse;
+import com.example.productapi.model.Product;
+import com.example.productapi.repository.ProductRepository;
+import com.example.productapi.repository.ProductSalesAggregate;
+import com.example.productapi.service.DailySalesService;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+/**
+ * Product details of {@link SalesAnalyticsServiceImpl#getTopSellingProducts}
+ */
+class SalesAnalyticsServiceImplTest {
+
+  private static final LocalDateTime START = LocalDateTime.of(2024, 3, 1, 0, 0);
+  private static final LocalDateTime END = LocalDateTime.of(2024, 3, 31, 23, 59, 59);
+
+  private DailySalesService dailySalesService;
+  private ProductRepository productRepository;
+  private SalesAnalyticsServiceImpl salesAnalyticsService;
+
+  @BeforeEach
+  void setUp() {
+    dailySalesService = mock(DailySalesService.class);
+    productRepository = mock(ProductRepository.class);
+    salesAnalyticsService = new SalesAnalyticsServiceImpl(dailySalesService, productRepository);
+  }
+
+  @Test
+  void productDetailsOfAllResultsAreReadInOneQuery() {
+    List<ProductSalesAggregate> top = new ArrayList<>();
+    List<Product> products = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      top.add(new SalesAggregate("p" + i, null, 100L - i, 10.0 * (100 - i)));
+      products.add(product("p" + i));
+    }
+    when(dailySalesService.sumSalesByProduct(eq("seller_1"), isNull(), eq("toys"), eq(START),
+        eq(END), any())).thenReturn(top);
+    when(productRepository.findAllById(any())).thenReturn(products);
+
+    List<TopSellingProductResponse> result = salesAnalyticsService.getTopSellingProducts(
+        "seller_1", "toys", START, END, 20, true);
+
+    assertThat(result).extracting(TopSellingProductResponse::getProductId)
+        .containsExactlyElementsOf(top.stream().map(ProductSalesAggregate::getProductId).toList());
+    assertThat(result).allSatisfy(response -> {
+      assertThat(response.getName()).isEqualTo("Product " + response.getProductId());
+      assertThat(response.getTotalRevenue()).isEqualTo(response.getTotalQuantity() * 10.0);
+    });
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<Collection<String>> ids = ArgumentCaptor.forClass(Collection.class);
+    verify(productRepository).findAllById(ids.capture());
+    assertThat(ids.getValue()).hasSize(20);
+    verify(productRepository, never()).findById(anyString());
+  }
+
+  @Test
+  void resultsWithoutProductRowKeepTheirTotals() {
+    when(dailySalesService.sumSalesByProduct(any(), any(), any(), any(), any(), any()))
+        .thenReturn(List.of(
+            new SalesAggregate("p1", null, 9L, 90.0),
+            new SalesAggregate("gone", null, 5L, 50.0),
+            new SalesAggregate("p2", null, 3L, 30.0)));
+    when(productRepository.findAllById(any())).thenReturn(List.of(product("p2"), product("p1")));
+
+    List<TopSellingProductResponse> result = salesAnalyticsService.getTopSellingProducts(
+        null, null, START, END, 3, false);
+
+    assertThat(result).extracting(TopSellingProductResponse::getProductId)
+        .containsExactly("p1", "gone", "p2");
+    assertThat(result.get(0).getName()).isEqualTo("Product p1");
+    assertThat(result.get(1).getName()).isNull();
+    assertThat(result.get(1).getCategory()).isNull();
+    assertThat(result.get(1).getTotalQuantity()).isEqualTo(5L);
+    assertThat(result).extracting(TopSellingProductResponse::getTotalRevenue).containsOnlyNulls();
+    assertThat(result.get(2).getPrice()).isEqualTo(12.5);
+  }
+
+  private static Product product(String id) {
+    return Product.builder()
+        .id(id)
+        .name("Product " + id)
+        .category("toys")
+        .brand("brand")
+        .price(12.5)
+        .build();
+  }
+}